@@ -0,0 +1,226 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.DRay;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Narrowphase: <tt>OdeHelper.collide()</tt> for one pair of intersecting
+ * geoms, for every pair of geom classes that has a collider.
+ * <p>
+ * The first geom of <tt>plane-*</tt>, <tt>trimesh-*</tt> and
+ * <tt>heightfield-*</tt> pairs is a ground below the origin, the second
+ * geom penetrates it. Other pairs are two overlapping geoms, rays point
+ * down through the other geom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ColliderBenchmark {
+
+	private static final int MAX_CONTACTS = 16;
+
+	@Param({
+		"sphere-sphere", "sphere-box", "box-box",
+		"capsule-sphere", "capsule-box", "capsule-capsule",
+		"cylinder-sphere", "cylinder-box", "cylinder-cylinder", "capsule-cylinder",
+		"convex-sphere", "convex-box", "convex-capsule", "convex-cylinder", "convex-convex",
+		"plane-sphere", "plane-box", "plane-capsule", "plane-cylinder", "plane-convex", "plane-trimesh",
+		"trimesh-sphere", "trimesh-box", "trimesh-capsule", "trimesh-cylinder", "trimesh-convex", "trimesh-trimesh",
+		"heightfield-sphere", "heightfield-box", "heightfield-capsule", "heightfield-cylinder",
+		"heightfield-convex", "heightfield-trimesh",
+		"ray-sphere", "ray-box", "ray-capsule", "ray-cylinder", "ray-convex",
+		"plane-ray", "trimesh-ray", "heightfield-ray"})
+	public String pair;
+
+	private DGeom g1;
+	private DGeom g2;
+	private final DContactGeomBuffer contacts = new DContactGeomBuffer(MAX_CONTACTS);
+
+	// a cube with half size 0.25
+	private static final double[] CONVEX_PLANES = {
+		1, 0, 0, 0.25,  0, 1, 0, 0.25,  0, 0, 1, 0.25,
+		-1, 0, 0, 0.25,  0, -1, 0, 0.25,  0, 0, -1, 0.25 };
+	private static final double[] CONVEX_POINTS = {
+		0.25, 0.25, 0.25,  -0.25, 0.25, 0.25,  0.25, -0.25, 0.25,  -0.25, -0.25, 0.25,
+		0.25, 0.25, -0.25,  -0.25, 0.25, -0.25,  0.25, -0.25, -0.25,  -0.25, -0.25, -0.25 };
+	private static final int[] CONVEX_POLYGONS = {
+		4, 0, 2, 6, 4,  4, 1, 0, 4, 5,  4, 0, 1, 3, 2,
+		4, 3, 1, 5, 7,  4, 2, 3, 7, 6,  4, 5, 4, 6, 7 };
+
+	private static final float[] CUBE_VERTICES = {
+		-0.25f, -0.25f, -0.25f,  0.25f, -0.25f, -0.25f,  -0.25f, 0.25f, -0.25f,  0.25f, 0.25f, -0.25f,
+		-0.25f, -0.25f, 0.25f,  0.25f, -0.25f, 0.25f,  -0.25f, 0.25f, 0.25f,  0.25f, 0.25f, 0.25f };
+	private static final int[] CUBE_INDICES = {
+		0, 2, 1,  1, 2, 3,  4, 5, 6,  5, 7, 6,  0, 1, 4,  1, 5, 4,
+		2, 6, 3,  3, 6, 7,  0, 4, 2,  2, 4, 6,  1, 3, 5,  3, 7, 5 };
+
+	private static boolean isGround(String kind) {
+		return "plane".equals(kind) || "trimesh".equals(kind) || "heightfield".equals(kind);
+	}
+
+	/** A ground of about 4x4 around the origin, with its surface near z=0. */
+	static DGeom createGround(String kind) {
+		if ("plane".equals(kind)) {
+			return OdeHelper.createPlane(null, 0, 0, 1, 0);
+		} else if ("trimesh".equals(kind)) {
+			int n = 8;
+			float[] vertices = new float[(n + 1) * (n + 1) * 3];
+			for (int i = 0; i <= n; i++) {
+				for (int j = 0; j <= n; j++) {
+					int v = (i * (n + 1) + j) * 3;
+					vertices[v] = i * 0.5f - 2;
+					vertices[v + 1] = j * 0.5f - 2;
+					vertices[v + 2] = 0.05f * ((i + j) % 3) - 0.05f;
+				}
+			}
+			int[] indices = new int[n * n * 6];
+			for (int i = 0, k = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					int v = i * (n + 1) + j;
+					indices[k++] = v;
+					indices[k++] = v + n + 1;
+					indices[k++] = v + 1;
+					indices[k++] = v + 1;
+					indices[k++] = v + n + 1;
+					indices[k++] = v + n + 2;
+				}
+			}
+			DTriMeshData data = OdeHelper.createTriMeshData();
+			data.build(vertices, indices);
+			data.preprocess();
+			return OdeHelper.createTriMesh(null, data, null, null, null);
+		} else if ("heightfield".equals(kind)) {
+			double[] heights = new double[16 * 16];
+			for (int i = 0; i < heights.length; i++) {
+				heights[i] = 0.05 * Math.sin(i * 0.7);
+			}
+			DHeightfieldData data = OdeHelper.createHeightfieldData();
+			data.build(heights, false, 4, 4, 16, 16, 1, 0, 1, false);
+			DHeightfield hf = OdeHelper.createHeightfield(null, data, true);
+			// heightfields are y-up
+			DMatrix3 R = new DMatrix3();
+			DRotation.dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+			hf.setRotation(R);
+			return hf;
+		}
+		throw new IllegalArgumentException(kind);
+	}
+
+	/** An object of about 0.5 in size, centered at the origin. */
+	static DGeom createObject(String kind) {
+		if ("sphere".equals(kind)) {
+			return OdeHelper.createSphere(null, 0.3);
+		} else if ("box".equals(kind)) {
+			return OdeHelper.createBox(null, 0.5, 0.5, 0.5);
+		} else if ("capsule".equals(kind)) {
+			return OdeHelper.createCapsule(null, 0.2, 0.5);
+		} else if ("cylinder".equals(kind)) {
+			return OdeHelper.createCylinder(null, 0.25, 0.5);
+		} else if ("convex".equals(kind)) {
+			return OdeHelper.createConvex(null, CONVEX_PLANES, 6, CONVEX_POINTS, 8, CONVEX_POLYGONS);
+		} else if ("trimesh".equals(kind)) {
+			DTriMeshData data = OdeHelper.createTriMeshData();
+			data.build(CUBE_VERTICES, CUBE_INDICES);
+			data.preprocess();
+			return OdeHelper.createTriMesh(null, data, null, null, null);
+		} else if ("ray".equals(kind)) {
+			DRay ray = OdeHelper.createRay(null, 3);
+			ray.set(0.05, 0.02, 2, 0, 0, -1);
+			return ray;
+		}
+		throw new IllegalArgumentException(kind);
+	}
+
+	@Setup(Level.Trial)
+	public void init() {
+		OdeHelper.initODE2(0);
+		String[] kinds = pair.split("-");
+		DMatrix3 R = new DMatrix3();
+		if (isGround(kinds[0])) {
+			g1 = createGround(kinds[0]);
+			g2 = createObject(kinds[1]);
+			if (!"ray".equals(kinds[1])) {
+				DRotation.dRFromAxisAndAngle(R, 1, 1, 0, 0.3);
+				g2.setRotation(R);
+				g2.setPosition(0.1, 0.05, 0.25);
+			}
+		} else {
+			g1 = createObject(kinds[0]);
+			g2 = createObject(kinds[1]);
+			if ("ray".equals(kinds[0])) {
+				g2.setPosition(0, 0, 0.3);
+			} else {
+				g1.setPosition(0, 0, 0.3);
+				DRotation.dRFromAxisAndAngle(R, 1, 1, 0, 0.4);
+				g2.setRotation(R);
+				g2.setPosition(0.2, 0.1, 0.65);
+			}
+		}
+		// Spaces compute the AABBs before the narrowphase, trimeshes update
+		// their transformed vertices there.
+		g1.getAABB();
+		g2.getAABB();
+		if (collide() == 0) {
+			throw new IllegalStateException("No contacts for " + pair);
+		}
+	}
+
+	@Benchmark
+	public int collide() {
+		return OdeHelper.collide(g1, g2, MAX_CONTACTS, contacts);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		g1.destroy();
+		g2.destroy();
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,240 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.Random;
+
+import org.ode4j.demo.ragdoll.DxDefaultHumanRagdollConfig;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DQuaternion;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact.DSurfaceParameters;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.OdeMath;
+import org.ode4j.ode.internal.ragdoll.DxRagdoll;
+import org.ode4j.ode.internal.ragdoll.DxRagdoll.DxRagdollBody;
+
+/**
+ * Standard scenes for the stepper benchmarks. The scenes are built from a
+ * fixed seed, so that every run simulates the same thing.
+ */
+final class Scenes {
+
+	enum Scene {
+		/** Towers of stacked boxes. */
+		BOX_STACK,
+		/** Hinge chains hanging from a static anchor and swinging onto the ground. */
+		CHAIN,
+		/** Human ragdolls falling onto the ground, see DemoRagdoll. */
+		RAGDOLL,
+		/** A cloud of mixed geoms falling onto the ground, see DemoSpaceStress. */
+		CLOUD
+	}
+
+	private static final int MAX_CONTACTS = 4;
+
+	/**
+	 * A world with a space and the usual near callback. Contact joints are
+	 * created with OdeHelper.createContactJoints(), so that the benchmarks
+	 * measure the engine rather than the allocations of the callback.
+	 */
+	static final class Simulation {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contacts;
+		private final DSurfaceParameters surface = new DSurfaceParameters();
+		private final DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+
+		private final DNearCallback nearCallback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				DBody b1 = o1.getBody();
+				DBody b2 = o2.getBody();
+				// contact joints have already been removed, all others are permanent
+				if (b1 != null && b2 != null && OdeHelper.areConnected(b1, b2)) {
+					return;
+				}
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buffer);
+				OdeHelper.createContactJoints(world, contacts, b1, b2, surface, buffer, n);
+			}
+		};
+
+		Simulation(DSpace space) {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(20);
+			world.setDamping(1e-4, 1e-5);
+			this.space = space;
+			contacts = OdeHelper.createJointGroup();
+			surface.mode = OdeConstants.dContactApprox1 | OdeConstants.dContactSoftCFM;
+			surface.mu = 0.8;
+			surface.soft_cfm = 1e-5;
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+		}
+
+		void collide() {
+			contacts.empty();
+			space.collide(null, nearCallback);
+		}
+
+		void step(boolean quickStep, double stepSize) {
+			collide();
+			if (quickStep) {
+				world.quickStep(stepSize);
+			} else {
+				world.step(stepSize);
+			}
+		}
+
+		void destroy() {
+			contacts.destroy();
+			space.destroy();
+			world.destroy();
+		}
+	}
+
+	private Scenes() {}
+
+	static Simulation create(Scene scene) {
+		Simulation sim = new Simulation(OdeHelper.createHashSpace());
+		switch (scene) {
+		case BOX_STACK: createBoxStacks(sim, 4, 10); break;
+		case CHAIN: createChains(sim, 8, 20); break;
+		case RAGDOLL: createRagdolls(sim, 6); break;
+		case CLOUD: createCloud(sim, 1000); break;
+		default: throw new IllegalArgumentException(scene.toString());
+		}
+		return sim;
+	}
+
+	private static DBody createBody(DWorld world, double x, double y, double z) {
+		DBody b = OdeHelper.createBody(world);
+		b.setPosition(x, y, z);
+		return b;
+	}
+
+	static void createBoxStacks(Simulation sim, int stacks, int height) {
+		for (int s = 0; s < stacks; s++) {
+			for (int i = 0; i < height; i++) {
+				DBody b = createBody(sim.world, s * 3, (i % 2) * 0.05, 0.5 + i * 1.0);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				OdeHelper.createBox(sim.space, 1, 1, 1).setBody(b);
+			}
+		}
+	}
+
+	static void createChains(Simulation sim, int chains, int links) {
+		for (int c = 0; c < chains; c++) {
+			double y = c * 1.5;
+			DBody prev = null;
+			for (int i = 0; i < links; i++) {
+				DBody b = createBody(sim.world, i * 0.5, y, 10);
+				DMass m = OdeHelper.createMass();
+				m.setSphere(1, 0.2);
+				b.setMass(m);
+				OdeHelper.createSphere(sim.space, 0.2).setBody(b);
+				DHingeJoint h = OdeHelper.createHingeJoint(sim.world);
+				// the first link hangs from the static environment
+				h.attach(b, prev);
+				h.setAnchor(i * 0.5 - 0.25, y, 10);
+				h.setAxis(0, 1, 0);
+				prev = b;
+			}
+		}
+	}
+
+	static void createRagdolls(Simulation sim, int count) {
+		DQuaternion q = new DQuaternion(1, 0, 0, 0);
+		DRotation.dQFromAxisAndAngle(q, 1, 0, 0, -0.5 * Math.PI);
+		DMatrix3 R = new DMatrix3();
+		OdeMath.dRfromQ(R, q);
+		for (int r = 0; r < count; r++) {
+			DxRagdoll ragdoll = new DxRagdoll(sim.world, sim.space, new DxDefaultHumanRagdollConfig());
+			ragdoll.setAngularDamping(0.1);
+			for (DxRagdollBody bone : ragdoll.getBones()) {
+				DGeom g = OdeHelper.createCapsule(sim.space, bone.getRadius(), bone.getLength());
+				DBody body = bone.getBody();
+				// lay the ragdoll down as in DemoRagdoll, then lift it and
+				// move it next to the others
+				DQuaternion qq = new DQuaternion();
+				OdeMath.dQMultiply1(qq, q, body.getQuaternion());
+				body.setQuaternion(qq);
+				DVector3 v = new DVector3();
+				OdeMath.dMultiply0_133(v, body.getPosition(), R);
+				body.setPosition(v.get0() + (r % 3) * 2.5, v.get1() + (r / 3) * 2.5, v.get2() + 1 + r * 0.5);
+				g.setBody(body);
+			}
+		}
+	}
+
+	static void createCloud(Simulation sim, int count) {
+		Random rnd = new Random(42);
+		DMatrix3 R = new DMatrix3();
+		int side = (int) Math.ceil(Math.sqrt(count / 4.0));
+		for (int i = 0; i < count; i++) {
+			double x = (rnd.nextDouble() - 0.5) * side * 1.5;
+			double y = (rnd.nextDouble() - 0.5) * side * 1.5;
+			double z = 1 + rnd.nextDouble() * 6;
+			DBody b = createBody(sim.world, x, y, z);
+			DRotation.dRFromAxisAndAngle(R, rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() + 0.1,
+					rnd.nextDouble() * Math.PI);
+			b.setRotation(R);
+			double size = 0.2 + rnd.nextDouble() * 0.3;
+			DMass m = OdeHelper.createMass();
+			DGeom g;
+			switch (i % 4) {
+			case 0:
+				m.setBox(1, size, size, size);
+				g = OdeHelper.createBox(sim.space, size, size, size);
+				break;
+			case 1:
+				m.setSphere(1, size * 0.5);
+				g = OdeHelper.createSphere(sim.space, size * 0.5);
+				break;
+			case 2:
+				m.setCapsule(1, 3, size * 0.3, size);
+				g = OdeHelper.createCapsule(sim.space, size * 0.3, size);
+				break;
+			default:
+				m.setCylinder(1, 3, size * 0.4, size);
+				g = OdeHelper.createCylinder(sim.space, size * 0.4, size);
+				break;
+			}
+			b.setMass(m);
+			g.setBody(b);
+		}
+	}
+}
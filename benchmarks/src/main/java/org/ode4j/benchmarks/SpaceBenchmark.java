@@ -0,0 +1,155 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Broadphase: <tt>DSpace.collide()</tt> of every space implementation on
+ * a cloud of boxes and spheres, with all geoms at rest or with a tenth of
+ * the geoms moving between two calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SpaceBenchmark {
+
+	@Param({"simple", "hash", "quadtree", "sap", "sap2", "bvh", "incrementalSap"})
+	public String space;
+
+	@Param({"1000", "10000"})
+	public int geoms;
+
+	@Param({"false", "true"})
+	public boolean moving;
+
+	private DSpace dSpace;
+	private DGeom[] geomArray;
+	private double[] offsets;
+	private int moveStart;
+	private int pairs;
+
+	private final DNearCallback countPairs = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			pairs++;
+		}
+	};
+
+	static DSpace createSpace(String kind, double extent) {
+		if ("simple".equals(kind)) {
+			return OdeHelper.createSimpleSpace();
+		} else if ("hash".equals(kind)) {
+			return OdeHelper.createHashSpace();
+		} else if ("quadtree".equals(kind)) {
+			return OdeHelper.createQuadTreeSpace(new DVector3(0, 0, 0),
+					new DVector3(extent, extent, extent), 6);
+		} else if ("sap".equals(kind)) {
+			return OdeHelper.createSapSpace(DSapSpace.AXES.XYZ);
+		} else if ("sap2".equals(kind)) {
+			return OdeHelper.createSapSpace2(DSapSpace.AXES.XYZ, 0);
+		} else if ("bvh".equals(kind)) {
+			return OdeHelper.createBHVSpace(0);
+		} else if ("incrementalSap".equals(kind)) {
+			return OdeHelper.createIncrementalSapSpace(0);
+		}
+		throw new IllegalArgumentException(kind);
+	}
+
+	@Setup(Level.Trial)
+	public void init() {
+		OdeHelper.initODE2(0);
+		// about 8 geoms per unit volume, each with a few neighbours
+		double extent = Math.cbrt(geoms / 8.0) * 0.5;
+		dSpace = createSpace(space, extent);
+		geomArray = new DGeom[geoms];
+		offsets = new double[geoms];
+		Random rnd = new Random(42);
+		for (int i = 0; i < geoms; i++) {
+			double size = 0.1 + rnd.nextDouble() * 0.3;
+			DGeom g = i % 2 == 0 ?
+					OdeHelper.createBox(dSpace, size, size, size) :
+					OdeHelper.createSphere(dSpace, size * 0.5);
+			g.setPosition((rnd.nextDouble() - 0.5) * 2 * extent,
+					(rnd.nextDouble() - 0.5) * 2 * extent,
+					(rnd.nextDouble() - 0.5) * 2 * extent);
+			geomArray[i] = g;
+			offsets[i] = (rnd.nextDouble() - 0.5) * 0.1;
+		}
+		// build the internal structures of incremental spaces
+		dSpace.collide(null, countPairs);
+	}
+
+	/** Moves the next tenth of the geoms back or forth along x. */
+	private void move() {
+		int count = geoms / 10;
+		for (int i = 0; i < count; i++) {
+			int k = (moveStart + i) % geoms;
+			DVector3C p = geomArray[k].getPosition();
+			geomArray[k].setPosition(p.get0() + offsets[k], p.get1(), p.get2());
+			offsets[k] = -offsets[k];
+		}
+		moveStart = (moveStart + count) % geoms;
+	}
+
+	@Benchmark
+	public int collide() {
+		if (moving) {
+			move();
+		}
+		pairs = 0;
+		dSpace.collide(null, countPairs);
+		return pairs;
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		dSpace.destroy();
+		OdeHelper.closeODE();
+	}
+}
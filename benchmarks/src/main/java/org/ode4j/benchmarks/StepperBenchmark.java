@@ -0,0 +1,107 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ode4j.benchmarks.Scenes.Scene;
+import org.ode4j.benchmarks.Scenes.Simulation;
+import org.ode4j.ode.OdeHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One simulation step (collision and stepping) of the standard scenes with
+ * QuickStep and with the exact stepper.
+ * <p>
+ * The scene is rebuilt at the start of every iteration and after every
+ * {@link #STEPS} steps, so that the measurement covers falling as well
+ * as resting objects. The rebuild is part of one in {@link #STEPS}
+ * invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StepperBenchmark {
+
+	/** Number of steps per iteration. */
+	static final int STEPS = 300;
+	private static final double STEP_SIZE = 0.01;
+
+	@Param({"BOX_STACK", "CHAIN", "RAGDOLL", "CLOUD"})
+	public Scene scene;
+
+	@Param({"quickStep", "step"})
+	public String stepper;
+
+	private Simulation sim;
+	private boolean quickStep;
+	private int steps;
+
+	@Setup(Level.Trial)
+	public void init() {
+		OdeHelper.initODE2(0);
+		quickStep = "quickStep".equals(stepper);
+	}
+
+	@Setup(Level.Iteration)
+	public void createScene() {
+		sim = Scenes.create(scene);
+		steps = 0;
+	}
+
+	@Benchmark
+	public void collideAndStep() {
+		if (steps++ == STEPS) {
+			// start over, the scene has come to rest
+			sim.destroy();
+			sim = Scenes.create(scene);
+			steps = 1;
+		}
+		sim.step(quickStep, STEP_SIZE);
+	}
+
+	@TearDown(Level.Iteration)
+	public void destroyScene() {
+		sim.destroy();
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		OdeHelper.closeODE();
+	}
+}
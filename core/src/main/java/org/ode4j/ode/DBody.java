@@ -808,6 +808,34 @@ public interface DBody {
 	 */
 	void setGyroscopicMode(boolean enabled);
 
+	/**
+	 * Enable continuous collision for a fast body, e.g. a bullet, so that it
+	 * does not pass through thin geoms within one step.
+	 * <p>
+	 * The radius is that of a sphere around the body position that lies
+	 * inside the geoms of the body. When the body moves further than this 
+	 * radius in one step, the AABBs of its geoms are extended along its
+	 * motion and, if the geoms do not touch, {@link OdeHelper#collide} casts
+	 * the sphere along the motion relative to the other geom. If it hits, 
+	 * the result is a speculative contact (see {@link DContactGeom#speculative})
+	 * whose depth is the negative distance to the other geom. Its contact 
+	 * joint lets the body move up to the other geom in the next step, but
+	 * not further.
+	 * <p>
+	 * REMARK:
+	 * The motion is extrapolated from the velocities with the step size of
+	 * the last step of the world, so nothing is swept before the first step.
+	 * Rotations are not swept and speculative contacts do not bounce.
+	 *
+	 * @param radius radius of the swept sphere, 0 (default) to disable
+	 */
+	void setContinuousCollisionRadius(double radius);
+	/**
+	 * @return radius of the swept sphere, 0 if continuous collision is disabled
+	 * @see #setContinuousCollisionRadius(double)
+	 */
+	double getContinuousCollisionRadius();
+
 
 	/**
 	 * Set the 'moved' callback of a body.
@@ -60,6 +60,28 @@ public class DContact {
 		public double motion1,motion2,motionN;
 		public double slip1;
 		public double slip2;
+
+		/**
+		 * Copies all parameters of another surface into this one.
+		 * @param s surface to copy
+		 */
+		public void set(DSurfaceParameters s) {
+			mode = s.mode;
+			mu = s.mu;
+			mu2 = s.mu2;
+			rho = s.rho;
+			rho2 = s.rho2;
+			rhoN = s.rhoN;
+			bounce = s.bounce;
+			bounce_vel = s.bounce_vel;
+			soft_erp = s.soft_erp;
+			soft_cfm = s.soft_cfm;
+			motion1 = s.motion1;
+			motion2 = s.motion2;
+			motionN = s.motionN;
+			slip1 = s.slip1;
+			slip2 = s.slip2;
+		}
 	}
 
 	public DContactGeom getContactGeom() {
@@ -53,4 +53,25 @@ public class DContactGeom {
 	/** (to be documented) */
 	public int side1;       
 	public int side2;
+	/** 
+	 * A contact of a fast body that does not touch the other geom yet, 
+	 * its depth is the negative distance of the geoms, see 
+	 * {@link DBody#setContinuousCollisionRadius(double)}.
+	 */
+	public boolean speculative;
+
+	/**
+	 * Copies all fields of another contact geom into this one.
+	 * @param c contact geom to copy
+	 */
+	public void set(DContactGeom c) {
+		pos.set(c.pos);
+		normal.set(c.normal);
+		depth = c.depth;
+		g1 = c.g1;
+		g2 = c.g2;
+		side1 = c.side1;
+		side2 = c.side2;
+		speculative = c.speculative;
+	}
 }
@@ -0,0 +1,104 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+/**
+ * Post-collision stage that reduces the contacts of a geom pair to a small,
+ * well spread set and keeps that set stable from frame to frame.
+ * <p>
+ * Colliders such as box-box, convex-convex or trimeshes can report many 
+ * contacts that are almost the same. Each of them becomes a contact joint 
+ * with its own constraint rows. A manifold keeps the deepest contact and 
+ * fills the remaining slots with the contacts that span the largest area. 
+ * Contacts that continue a contact kept in the previous frame are 
+ * preferred, which avoids jitter of resting objects and helps QuickStep
+ * warm starting, see {@link DWorld#setQuickStepWarmStarting(double)}.
+ * <p>
+ * Usage in a near callback, with more contact slots than kept contacts:
+ * <pre>
+ * int n = manifold.collide(o1, o2, 16, contacts);
+ * </pre>
+ * and once per frame, after all geoms were collided:
+ * <pre>
+ * manifold.purge();
+ * </pre>
+ * Different geom pairs may be processed concurrently, e.g. from 
+ * {@link DSpace#collideParallel(int, org.ode4j.ode.threading.task.TaskExecutor, Object, DGeom.DNearContactsCallback)}.
+ * <p>
+ * Create manifolds with {@link OdeHelper#createContactManifold(int)}.
+ */
+public interface DContactManifold {
+
+	/**
+	 * Collides two geoms like {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)}
+	 * and reduces the contacts with {@link #reduce(DGeom, DGeom, DContactGeomBuffer, int)}.
+	 * @param o1 first geom
+	 * @param o2 second geom
+	 * @param flags flags, including the number of contacts the collider may report
+	 * @param contacts receives the contacts
+	 * @return number of contacts kept, at most {@link #getMaxContacts()}
+	 */
+	int collide(DGeom o1, DGeom o2, int flags, DContactGeomBuffer contacts);
+
+	/**
+	 * Reduces the contacts of a geom pair in place. The kept contacts are 
+	 * moved to the start of the buffer and remembered for the next frame.
+	 * @param o1 first geom
+	 * @param o2 second geom
+	 * @param contacts contacts of the geom pair
+	 * @param count number of contacts in the buffer
+	 * @return number of contacts kept, at most {@link #getMaxContacts()}
+	 */
+	int reduce(DGeom o1, DGeom o2, DContactGeomBuffer contacts, int count);
+
+	/**
+	 * Forgets the geom pairs that were not collided since the last call,
+	 * should be called once per frame.
+	 */
+	void purge();
+
+	/**
+	 * Forgets all geom pairs.
+	 */
+	void clear();
+
+	/**
+	 * @return Maximum number of contacts kept per geom pair.
+	 */
+	int getMaxContacts();
+
+	/**
+	 * Set the maximum distance between a contact and the contact of the 
+	 * previous frame that it continues. 
+	 * @param distance The default is 0.05.
+	 */
+	void setMatchDistance(double distance);
+
+	/**
+	 * @return Maximum distance between a contact and the contact of the 
+	 * previous frame that it continues.
+	 */
+	double getMatchDistance();
+}
@@ -429,6 +429,28 @@ public interface DGeom {
 		public void call (Object data, DGeom o1, DGeom o2);
 	}
 
+	/**
+	 * User callback for the results of a parallel space collision.
+	 *
+	 * <p>REMARK: The callback is called in the thread that started the
+	 * collision, once for every geom pair that has contacts, in the order
+	 * in which the space reported the pairs. The contact buffer is only
+	 * valid until the callback returns.
+	 *
+	 * @see DSpace#collideParallel(int, org.ode4j.ode.threading.task.TaskExecutor, Object, DNearContactsCallback)
+	 */
+	public interface DNearContactsCallback {
+	    /**
+	     * @param data        The user data object, as passed to collideParallel.
+	     * @param o1          The first geom of the pair.
+	     * @param o2          The second geom of the pair.
+	     * @param contacts    The contacts of the pair, starting at index 0.
+	     * @param numContacts The number of contacts, always at least 1.
+	     */
+		public void call (Object data, DGeom o1, DGeom o2,
+				DContactGeomBuffer contacts, int numContacts);
+	}
+
 	void collide2 (DGeom g, Object data, DNearCallback callback);
 
 
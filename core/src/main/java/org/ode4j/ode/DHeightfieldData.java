@@ -24,6 +24,10 @@
  *************************************************************************/
 package org.ode4j.ode;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
 import org.ode4j.ode.DHeightfield.DHeightfieldGetHeight;
 
 public interface DHeightfieldData {
@@ -308,4 +312,40 @@ public interface DHeightfieldData {
 			final double scale, final double offset, 
 			final double thickness, final boolean bWrap );
 
+	/**
+	 * Configures a dHeightfieldData to read 16 bit signed samples from a 
+	 * file, for terrains that are too large for the heap.
+	 * <p>
+	 * The samples are stored like the arrays of the other build methods: 
+	 * sample <code>(x, z)</code> is at 
+	 * <code>position + 2 * (x + widthSamples * z)</code>. The file is
+	 * memory mapped and divided into square tiles. Tiles are read on demand 
+	 * into a cache that holds the most recently used tiles. Only the minimum
+	 * and maximum height of each tile stay on the heap, they let collisions
+	 * skip tiles that are below a geom without reading their samples. These
+	 * bounds are computed here, which reads the whole file once.
+	 * <p>
+	 * The file may be closed after this call, the mapping stays valid.
+	 *
+	 * @param file file with the samples
+	 * @param position position of the first sample in the file
+	 * @param order byte order of the samples
+	 * @param widthSamples number of samples along the width, at least two
+	 * @param depthSamples number of samples along the depth, at least two
+	 * @param tileSize number of samples along each side of a tile, e.g. 128
+	 * @param cachedTiles number of tiles kept in the cache
+	 * @param width total width of the heightfield along the local x axis
+	 * @param depth total depth of the heightfield along the local z axis
+	 * @param scale A uniform scale applied to all raw height data.
+	 * @param offset An offset applied to the scaled height data.
+	 * @param thickness A value subtracted from the lowest height value.
+	 * @param bWrap whether the heightfield tiles infinitely
+	 * @throws IOException if the file can not be mapped or read
+	 * @see #build(short[], boolean, double, double, int, int, double, double, double, boolean)
+	 */
+	void buildMapped( FileChannel file, long position, ByteOrder order,
+			int widthSamples, int depthSamples, int tileSize, int cachedTiles,
+			double width, double depth, double scale, double offset,
+			double thickness, boolean bWrap ) throws IOException;
+
 }
@@ -0,0 +1,161 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import java.util.Arrays;
+
+import org.ode4j.math.DVector3;
+
+/**
+ * Results of {@link DSpace#rayCastBatch(double[], double[], double, boolean, DRayCastResults)}:
+ * for every ray the hit geom, the distance from the origin of the ray and
+ * the position, normal and side of the hit, as for a contact of a
+ * {@link DRay} with the geom.
+ * <p>
+ * The results are stored in primitive arrays that can be reused for
+ * every batch.
+ */
+public final class DRayCastResults {
+
+	private DGeom[] geoms;
+	private double[] distances;
+	private double[] positions;
+	private double[] normals;
+	private int[] sides;
+	private int numRays;
+
+	/**
+	 * @param capacity maximum number of rays per batch
+	 */
+	public DRayCastResults(int capacity) {
+		geoms = new DGeom[capacity];
+		distances = new double[capacity];
+		positions = new double[capacity * 3];
+		normals = new double[capacity * 3];
+		sides = new int[capacity];
+	}
+
+	/**
+	 * @return maximum number of rays per batch
+	 */
+	public int getCapacity() {
+		return geoms.length;
+	}
+
+	/**
+	 * @return number of rays of the last batch
+	 */
+	public int getNumRays() {
+		return numRays;
+	}
+
+	/**
+	 * Resets the results to <tt>numRays</tt> rays without hits.
+	 * @param numRays number of rays
+	 */
+	public void clear(int numRays) {
+		if (numRays > geoms.length) {
+			throw new IllegalArgumentException("numRays=" + numRays + "; capacity=" + geoms.length);
+		}
+		Arrays.fill(geoms, null);
+		Arrays.fill(distances, 0, numRays, OdeConstants.dInfinity);
+		this.numRays = numRays;
+	}
+
+	/**
+	 * Stores the hit of a ray, <tt>contact.g2</tt> is the hit geom.
+	 * @param ray index of the ray
+	 * @param contact contact of the ray (<tt>g1</tt>) with the hit geom (<tt>g2</tt>)
+	 */
+	public void set(int ray, DContactGeom contact) {
+		geoms[ray] = contact.g2;
+		distances[ray] = contact.depth;
+		positions[ray * 3] = contact.pos.get0();
+		positions[ray * 3 + 1] = contact.pos.get1();
+		positions[ray * 3 + 2] = contact.pos.get2();
+		normals[ray * 3] = contact.normal.get0();
+		normals[ray * 3 + 1] = contact.normal.get1();
+		normals[ray * 3 + 2] = contact.normal.get2();
+		sides[ray] = contact.side2;
+	}
+
+	public boolean isHit(int ray) {
+		return geoms[ray] != null;
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return the hit geom, or null if the ray hit nothing
+	 */
+	public DGeom getGeom(int ray) {
+		return geoms[ray];
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return distance of the hit from the origin of the ray, 
+	 * <tt>dInfinity</tt> if the ray hit nothing
+	 */
+	public double getDistance(int ray) {
+		return distances[ray];
+	}
+
+	public void getPosition(int ray, DVector3 pos) {
+		pos.set(positions[ray * 3], positions[ray * 3 + 1], positions[ray * 3 + 2]);
+	}
+
+	public void getNormal(int ray, DVector3 normal) {
+		normal.set(normals[ray * 3], normals[ray * 3 + 1], normals[ray * 3 + 2]);
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return the side of the hit geom, e.g. the triangle index of a trimesh
+	 */
+	public int getSide(int ray) {
+		return sides[ray];
+	}
+
+	/**
+	 * @return the distances of all rays, not a copy
+	 */
+	public double[] getDistances() {
+		return distances;
+	}
+
+	/**
+	 * @return the hit positions of all rays as (x, y, z) triples, not a copy
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * @return the hit normals of all rays as (x, y, z) triples, not a copy
+	 */
+	public double[] getNormals() {
+		return normals;
+	}
+}
@@ -25,6 +25,7 @@
 package org.ode4j.ode;
 
 import org.ode4j.ode.internal.DxGeom;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 /**
  * collision space.
@@ -62,7 +63,51 @@ public interface DSpace extends DGeom {
 	 * @param callback callback
 	 */
 	void collide (Object data, DNearCallback callback);
-	
+
+	/**
+	 * This is equivalent to OdeHelper.spaceCollideParallel(...)
+	 * @param flags flags, including the maximum number of contacts per pair
+	 * @param executor executor that runs the narrowphase
+	 * @param data data
+	 * @param callback callback
+	 */
+	void collideParallel (int flags, TaskExecutor executor, Object data,
+			DNearContactsCallback callback);
+
+	/**
+	 * Casts a batch of rays into this space, without creating ray geoms.
+	 * <p>
+	 * The rays are collided with the geoms of this space and its child 
+	 * spaces as a {@link DRay} would be. With <tt>anyHit</tt> the result 
+	 * of a ray is the first hit that is found, e.g. for line of sight 
+	 * tests, otherwise it is the closest hit. 
+	 * <p>
+	 * The space must not be modified while the rays are cast.
+	 *
+	 * @param origins origins of the rays as (x, y, z) triples
+	 * @param directions directions of the rays as (x, y, z) triples, need not be normalized
+	 * @param maxDist length of the rays
+	 * @param anyHit whether any hit is good enough
+	 * @param results receives one result per ray
+	 */
+	void rayCastBatch (double[] origins, double[] directions, double maxDist,
+			boolean anyHit, DRayCastResults results);
+
+	/**
+	 * Casts a batch of rays into this space on a {@link TaskExecutor}, 
+	 * e.g. the one of {@link DWorld#getTaskExecutor()}, see 
+	 * {@link #rayCastBatch(double[], double[], double, boolean, DRayCastResults)}.
+	 *
+	 * @param origins origins of the rays as (x, y, z) triples
+	 * @param directions directions of the rays as (x, y, z) triples, need not be normalized
+	 * @param maxDist length of the rays
+	 * @param anyHit whether any hit is good enough
+	 * @param executor executor that casts the rays
+	 * @param results receives one result per ray
+	 */
+	void rayCastBatch (double[] origins, double[] directions, double maxDist,
+			boolean anyHit, TaskExecutor executor, DRayCastResults results);
+
 	
 	/**
 	 * Sets manual cleanup flag for a space.
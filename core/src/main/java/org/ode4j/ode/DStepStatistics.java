@@ -0,0 +1,125 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+/**
+ * Timings and sizes of one step of a world, reported to the 
+ * {@link DWorld.DStepListener} of the world.
+ * <p>
+ * The statistics are only collected while a listener is set, a world 
+ * without listener does not measure anything. The stage times are summed
+ * over all islands, with several island threads they can add up to more 
+ * than the wall time of the step.
+ * <p>
+ * The object is reused by the world, it is only valid during 
+ * {@link DWorld.DStepListener#stepFinished(DWorld, DStepStatistics)}.
+ */
+public interface DStepStatistics {
+
+	/**
+	 * Stages of a step. The stages 0 to 6 are those of QuickStep,
+	 * {@link DWorld#step(double)} has the stages 0 to 3 and LCP only, its 
+	 * stage 3 includes the work of the stages 4 to 6 of QuickStep.
+	 */
+	enum Stage {
+		/** Auto-disabling of bodies before the islands are built. */
+		AUTO_DISABLE,
+		/** Building the islands of bodies and joints. */
+		ISLAND_SEARCH,
+		/** Joint information and inertia tensors. */
+		STAGE0,
+		/** Gathering of the constraint rows. */
+		STAGE1,
+		/** Jacobians and right hand side. */
+		STAGE2,
+		/** Preparation of the LCP, e.g. inverse mass times Jacobian. */
+		STAGE3,
+		/** Constraint forces and joint feedback, without the LCP iterations. */
+		STAGE4,
+		/** Solving of the LCP: the iterations of QuickStep, or the 
+		 * direct solver of {@link DWorld#step(double)}. */
+		LCP,
+		/** Preparation of the integration. */
+		STAGE5,
+		/** Velocity and position update of the bodies. */
+		STAGE6
+	}
+
+	/**
+	 * @return 'true' for {@link DWorld#quickStep(double)}, 'false' for 
+	 * {@link DWorld#step(double)}
+	 */
+	boolean isQuickStep();
+
+	/**
+	 * @return step size of the step
+	 */
+	double getStepSize();
+
+	/**
+	 * @return wall time of the whole step in nanoseconds
+	 */
+	long getStepNanos();
+
+	/**
+	 * @param stage stage
+	 * @return time spent in the stage in nanoseconds, summed over all islands
+	 */
+	long getStageNanos(Stage stage);
+
+	/**
+	 * @return number of islands that were stepped
+	 */
+	int getIslandCount();
+
+	/**
+	 * @return number of bodies in the stepped islands
+	 */
+	int getBodyCount();
+
+	/**
+	 * @return number of joints in the stepped islands
+	 */
+	int getJointCount();
+
+	/**
+	 * @return number of constraint rows of all islands
+	 */
+	int getConstraintRowCount();
+
+	/**
+	 * @return number of LCP iterations, summed over all islands with 
+	 * constraints, 0 for {@link DWorld#step(double)}
+	 */
+	int getLcpIterationCount();
+
+	/**
+	 * The residual of QuickStep is the largest change of a constraint force 
+	 * that another iteration would make, in the units of the force.
+	 * @return the largest residual of all islands, 0 for 
+	 * {@link DWorld#step(double)}
+	 */
+	double getResidual();
+}
@@ -24,7 +24,7 @@
  *************************************************************************/
 package org.ode4j.ode;
 
-
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 /**
  * TriMesh code by Erwin de Vries.
@@ -140,6 +140,25 @@ public interface DTriMeshData {
 //	/** Preprocess the trimesh data to remove mark unnecessary edges and vertices */
 //	//ODE_API 
 	void preprocess();
+
+	/**
+	 * Call this after the vertices that were passed to 
+	 * {@link #build(float[], int[])} have been changed in place, e.g. to 
+	 * animate a deformable mesh. The indices must not change.
+	 * <p>
+	 * The triangle bounds of all trimeshes that use this data are refitted 
+	 * in place the next time their AABB is computed. If the data has been 
+	 * preprocessed, the edge angles are recomputed from the triangle 
+	 * adjacency that was found by {@link #preprocess()}.
+	 */
+	void update();
+
+	/**
+	 * Like {@link #update()}, but recomputes the edge angles of large 
+	 * meshes on the given executor.
+	 * @param executor executor, or null to update on the calling thread
+	 */
+	void update(TaskExecutor executor);
 //	/** Get and set the internal preprocessed trimesh data buffer, for loading and saving */
 //	//ODE_API 
 //	//void dGeomTriMeshDataGetBuffer(dTriMeshData g, unsigned char** buf, int* bufLen) {
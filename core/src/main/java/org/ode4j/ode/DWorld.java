@@ -24,6 +24,8 @@
  *************************************************************************/
 package org.ode4j.ode;
 
+import java.nio.DoubleBuffer;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.threading.task.TaskExecutor;
@@ -220,6 +222,203 @@ public interface DWorld {
 	@Deprecated
 	int getStepIslandsProcessingMaxThreadCount();
 
+	/**
+	 * Get the high-water mark of the working memory used for stepping.
+	 * 
+	 * This is the sum of the peak usage of all memory arenas of this world 
+	 * (island building and one arena per island stepping thread). 
+	 * The arenas keep their memory between steps, so that a steady-state 
+	 * simulation does not allocate working memory once this value stops growing.
+	 * 
+	 * @return Peak working memory in bytes, or 0 if the world has not been stepped yet.
+	 * @see #getStepMemoryAllocationCount()
+	 */
+	long getStepMemoryHighWaterMark();
+
+	/**
+	 * Get the number of heap allocations performed by the stepping memory arenas 
+	 * of this world.
+	 * 
+	 * This counter only increases while the arenas grow. It does not change 
+	 * during steps that fit into the already reserved working memory.
+	 * 
+	 * @return Number of working memory allocations since the world was created.
+	 * @see #getStepMemoryHighWaterMark()
+	 */
+	long getStepMemoryAllocationCount();
+
+	/**
+	 * Number of doubles per body in {@link #readBodyStates(DoubleBuffer)}:
+	 * position (3), quaternion (4), linear velocity (3) and angular 
+	 * velocity (3).
+	 */
+	public static final int BODY_STATE_SIZE = 13;
+
+	/**
+	 * @return Number of enabled bodies in this world.
+	 */
+	int getNumEnabledBodies();
+
+	/**
+	 * Reads the state of all enabled bodies in one pass, e.g. for rendering
+	 * or network replication.
+	 * <p>
+	 * For each enabled body, {@link #BODY_STATE_SIZE} values are put at the
+	 * buffer's position. The bodies are in reverse order of creation, the 
+	 * order only changes when bodies are created or destroyed.
+	 * The buffer may be direct, to hand the states to native code without
+	 * copying.
+	 * 
+	 * @param states buffer with room for at least 
+	 * <code>getNumEnabledBodies() * BODY_STATE_SIZE</code> values
+	 * @return Number of bodies whose state was read.
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	int readBodyStates(DoubleBuffer states);
+
+	/**
+	 * Sets the state of all enabled bodies from a buffer in the format of 
+	 * {@link #readBodyStates(DoubleBuffer)}, the inverse of that method.
+	 * The quaternions are normalized and attached geoms are moved, as with
+	 * the setters of {@link DBody}.
+	 * <p>
+	 * The import leaves the bodies as they are otherwise: disabled bodies,
+	 * including the bodies of sleeping islands (see 
+	 * {@link #setAutoDisableIslands(boolean)}), are skipped and stay 
+	 * disabled, and the auto-disable counters of the enabled bodies are not
+	 * reset. Like a body moved with {@link DBody#setPosition(double, double, double)},
+	 * an enabled body that is moved into a sleeping island wakes it through
+	 * the contacts of the next step. To import the state of a disabled body,
+	 * enable it first.
+	 * 
+	 * @param states buffer with the states of the enabled bodies
+	 * @return Number of bodies whose state was set.
+	 * @throws java.nio.BufferUnderflowException if the buffer is too small
+	 */
+	int writeBodyStates(DoubleBuffer states);
+
+
+	/**
+	 * Saves the dynamic state of this world into a snapshot, see 
+	 * {@link DWorldSnapshot}. Equivalent to 
+	 * <code>saveSnapshot(snapshot, null)</code>.
+	 * @param snapshot snapshot to overwrite
+	 */
+	void saveSnapshot(DWorldSnapshot snapshot);
+
+	/**
+	 * Saves the dynamic state of this world and the contact joints of a
+	 * joint group into a snapshot, see {@link DWorldSnapshot}.
+	 * <p>
+	 * Stepping after a restore gives bit-identical results to stepping after 
+	 * the save, if the geoms of the bodies are in simple or hash spaces. The
+	 * geoms and joint groups in a snapshot are identified by ids that this 
+	 * world assigns on their first save. To restore a snapshot into another
+	 * world, build that world the same way and save a snapshot of it first.
+	 * 
+	 * @param snapshot snapshot to overwrite
+	 * @param contactGroup joint group that holds only contact joints, may be null
+	 */
+	void saveSnapshot(DWorldSnapshot snapshot, DJointGroup contactGroup);
+
+	/**
+	 * Restores the dynamic state of this world from a snapshot. If the 
+	 * snapshot holds a contact group, the group is emptied and its contact
+	 * joints are recreated.
+	 * @param snapshot snapshot of this world or of a world that was built the same way
+	 * @throws IllegalArgumentException if the snapshot does not fit this world, 
+	 * the state of the world is undefined then
+	 */
+	void restoreSnapshot(DWorldSnapshot snapshot);
+
+
+	/**
+	 * Receives the statistics of each step of a world.
+	 * @see DWorld#setStepListener(DStepListener)
+	 */
+	public interface DStepListener {
+		/**
+		 * Called by the stepping thread at the end of 
+		 * {@link DWorld#step(double)} and {@link DWorld#quickStep(double)}.
+		 * @param world the world that was stepped
+		 * @param statistics statistics of the step, only valid during this call
+		 */
+		void stepFinished(DWorld world, DStepStatistics statistics);
+	}
+
+	/**
+	 * Sets a listener that receives timings and sizes of each step, see
+	 * {@link DStepStatistics}. Without listener no statistics are collected.
+	 * <p>
+	 * While a listener is set, QuickStep computes the residual of the 
+	 * constraint forces after the iterations, which costs about one more
+	 * iteration. The results of the step do not change.
+	 * @param listener listener, or null to stop collecting statistics
+	 */
+	void setStepListener(DStepListener listener);
+
+	/**
+	 * @return listener of the steps, may be null
+	 * @see #setStepListener(DStepListener)
+	 */
+	DStepListener getStepListener();
+
+
+	/**
+	 * Sets whether {@link #step(double)} uses a sparse solver.
+	 * <p>
+	 * The default solver builds the full system of all constraint rows of an 
+	 * island and solves it with a pivoting method, which takes time cubic in 
+	 * the number of rows. The sparse solver factors the rows without bounds
+	 * (most joint rows) in the order of the joint graph, which takes linear 
+	 * time for chains and trees of bodies, and pivots only on the bounded 
+	 * rows, e.g. contacts and joint limits.
+	 * <p>
+	 * REMARK:
+	 * This pays off for long chains and ragdolls with few contacts. With 
+	 * many contacts per island the default solver is faster. Both solvers 
+	 * give the same results except for rounding. {@link #quickStep(double)} 
+	 * is not affected.
+	 * @param sparse default is false
+	 */
+	void setStepSparseSolver(boolean sparse);
+
+	/**
+	 * @return whether {@link #step(double)} uses the sparse solver
+	 * @see #setStepSparseSolver(boolean)
+	 */
+	boolean getStepSparseSolver();
+
+
+	/**
+	 * Lets each island choose its own number of substeps in 
+	 * {@link #step(double)} and {@link #quickStep(double)}.
+	 * <p>
+	 * An island is substepped if a body rotates more than 0.25 radians or 
+	 * moves more than half the size of its smallest geom in one step, or if
+	 * joints connect bodies of very different masses (one more substep per
+	 * factor of 10). Quiet islands are stepped once, so a single demanding 
+	 * island does not force a small step size on the whole world.
+	 * <p>
+	 * The stepper runs once per substep. Forces added by the user act during
+	 * all substeps, contacts move with their bodies, and joint feedback is 
+	 * that of the last substep. Position errors of the joints are corrected 
+	 * with the ERP over the whole step, as without substeps.
+	 * <p>
+	 * REMARK:
+	 * Islands are only substepped while the stepper runs in a single thread 
+	 * per island, see {@link org.ode4j.ode.threading.Threading}.
+	 * @param max_substeps maximum number of substeps per island, the default
+	 * is 1, which disables substepping
+	 */
+	void setAdaptiveSubsteps(int max_substeps);
+
+	/**
+	 * @return maximum number of substeps per island
+	 * @see #setAdaptiveSubsteps(int)
+	 */
+	int getAdaptiveSubsteps();
+
 
 	public static final double dWORLDSTEP_RESERVEFACTOR_DEFAULT = 1.2f;
 	public static final int dWORLDSTEP_RESERVESIZE_DEFAULT = 65536;
@@ -362,6 +561,31 @@ public interface DWorld {
 	 */
 	double getQuickStepW();
 
+
+	/**
+	 * Set the warm starting factor of the QuickStep method.
+	 * 
+	 * <p>With warm starting, the SOR iterations start from the constraint 
+	 * impulses of the previous step, scaled by this factor, instead of 
+	 * starting from zero. Contact joints are usually recreated every step; 
+	 * they are matched to the contacts of the previous step by geom pair, 
+	 * contact features (side1/side2) and contact position.
+	 * 
+	 * <p>REMARK:
+	 * Warm starting lets stacks and resting contacts converge with fewer 
+	 * iterations. Values slightly below 1 (e.g. 0.85) are usually best. 
+	 * 
+	 * @param factor The default is 0, which disables warm starting.
+	 */
+	void setQuickStepWarmStarting(double factor);
+
+
+	/**
+	 * Get the warm starting factor of the QuickStep method.
+	 * @return the warm starting factor, 0 if warm starting is disabled
+	 */
+	double getQuickStepWarmStarting();
+
 	
 	/**
 	 * Set auto disable linear threshold for newly created bodies.
@@ -533,6 +757,33 @@ public interface DWorld {
 	void setAutoDisableFlag (boolean do_auto_disable);
 
 
+	/**
+	 * Set whether auto-disabling puts whole islands to sleep.
+	 * <p>
+	 * In this mode an island of bodies connected by joints is only disabled
+	 * once all of its bodies are idle, see {@link #setAutoDisableFlag(boolean)}.
+	 * A sleeping island is not visited by the stepper and the geoms of its 
+	 * bodies are not paired with each other or with static geoms (geoms without 
+	 * body) by the spaces. When a joint, e.g. a contact with an awake body, 
+	 * connects it to an awake body, the whole island is enabled after the step. 
+	 * Enabling or destroying one of its bodies also wakes the island.
+	 * <p>
+	 * Snapshots do not record islands: after
+	 * {@link #restoreSnapshot(DWorldSnapshot)} the disabled bodies are 
+	 * enabled one by one again.
+	 * @param do_auto_disable_islands default is false.
+	 */
+	void setAutoDisableIslands (boolean do_auto_disable_islands);
+
+
+	/**
+	 * Get whether auto-disabling puts whole islands to sleep.
+	 * @return whether islands are put to sleep
+	 * @see #setAutoDisableIslands(boolean)
+	 */
+	boolean getAutoDisableIslands ();
+
+
 
 
 	/**
@@ -619,4 +870,11 @@ public interface DWorld {
 	void setMaxAngularSpeed (double max_speed);
 
 	void setTaskExecutor(TaskExecutor executor);
+
+	/**
+	 * @return The executor used for stepping this world.
+	 * @see #setTaskExecutor(TaskExecutor)
+	 * @see OdeHelper#spaceCollideParallel(DSpace, int, TaskExecutor, Object, DGeom.DNearContactsCallback)
+	 */
+	TaskExecutor getTaskExecutor();
 }
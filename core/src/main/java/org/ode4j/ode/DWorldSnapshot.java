@@ -0,0 +1,91 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dynamic state of a world, for rollback networking and replays.
+ * <p>
+ * A snapshot is taken with {@link DWorld#saveSnapshot(DWorldSnapshot)} and
+ * put back with {@link DWorld#restoreSnapshot(DWorldSnapshot)}. It holds
+ * the state of the bodies including their auto-disable counters, the 
+ * warm starting lambdas of the joints, the contact cache of QuickStep,
+ * the random seed of the world and optionally the contacts of a joint 
+ * group. It does not hold the configuration of the world, its bodies, 
+ * joints or geoms, nor does it add or remove any of them: a snapshot can 
+ * only be restored into the world it was taken from, or into a world that
+ * was built the same way, with the same bodies and joints in the same order.
+ * <p>
+ * Snapshots can be serialized, either fully or as a delta against another
+ * snapshot, e.g. the last snapshot acknowledged by a peer. A snapshot can be
+ * reused, saving into it does not allocate memory once it has grown to the 
+ * size of the world.
+ * <p>
+ * Create snapshots with {@link OdeHelper#createWorldSnapshot()}.
+ */
+public interface DWorldSnapshot {
+
+	/**
+	 * @return Number of bytes written by {@link #write(ByteBuffer)}.
+	 * {@link #writeDelta(DWorldSnapshot, ByteBuffer)} writes at most 8 bytes
+	 * more.
+	 */
+	int getSerializedSize();
+
+	/**
+	 * Writes this snapshot in the byte order of the buffer.
+	 * @param out receives <tt>getSerializedSize()</tt> bytes
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	void write(ByteBuffer out);
+
+	/**
+	 * Replaces the content of this snapshot with a snapshot written by
+	 * {@link #write(ByteBuffer)}.
+	 * @param in buffer in the byte order it was written with
+	 * @throws java.nio.BufferUnderflowException if the buffer is too small
+	 */
+	void read(ByteBuffer in);
+
+	/**
+	 * Writes the difference between this snapshot and <tt>base</tt>. 
+	 * Unchanged parts of the state, e.g. sleeping bodies, take almost no
+	 * space.
+	 * @param base snapshot that the reader has as well
+	 * @param out receives at most <tt>getSerializedSize() + 8</tt> bytes
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	void writeDelta(DWorldSnapshot base, ByteBuffer out);
+
+	/**
+	 * Replaces the content of this snapshot with <tt>base</tt> plus a 
+	 * difference written by {@link #writeDelta(DWorldSnapshot, ByteBuffer)}.
+	 * @param base snapshot the difference was written against, may be this snapshot
+	 * @param in buffer in the byte order it was written with
+	 * @throws java.nio.BufferUnderflowException if the buffer is too small
+	 */
+	void readDelta(DWorldSnapshot base, ByteBuffer in);
+}
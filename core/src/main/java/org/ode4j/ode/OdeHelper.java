@@ -25,11 +25,14 @@
 package org.ode4j.ode;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DGeom.DNearContactsCallback;
 import org.ode4j.ode.DTriMesh.DTriArrayCallback;
 import org.ode4j.ode.DTriMesh.DTriCallback;
 import org.ode4j.ode.DTriMesh.DTriRayCallback;
@@ -37,12 +40,14 @@ import org.ode4j.ode.internal.DxBVHSpace;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.DxBox;
 import org.ode4j.ode.internal.DxCapsule;
+import org.ode4j.ode.internal.DxContactManifold;
 import org.ode4j.ode.internal.DxConvex;
 import org.ode4j.ode.internal.DxCylinder;
 import org.ode4j.ode.internal.DxGeom;
 import org.ode4j.ode.internal.DxHashSpace;
 import org.ode4j.ode.internal.DxHeightfield;
 import org.ode4j.ode.internal.DxHeightfieldData;
+import org.ode4j.ode.internal.DxIncrementalSAPSpace;
 import org.ode4j.ode.internal.DxMass;
 import org.ode4j.ode.internal.DxPlane;
 import org.ode4j.ode.internal.DxQuadTreeSpace;
@@ -55,10 +60,12 @@ import org.ode4j.ode.internal.DxSphere;
 import org.ode4j.ode.internal.DxTriMesh;
 import org.ode4j.ode.internal.DxTriMeshData;
 import org.ode4j.ode.internal.DxWorld;
+import org.ode4j.ode.internal.DxWorldSnapshot;
 import org.ode4j.ode.internal.OdeFactoryImpl;
 import org.ode4j.ode.internal.OdeInit;
 import org.ode4j.ode.internal.joints.DxJointGroup;
 import org.ode4j.ode.internal.joints.OdeJointsFactoryImpl;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 /**
  * This is the general helper class for ode4j.
@@ -205,6 +212,34 @@ public abstract class OdeHelper {
 	public static DContactJoint createContactJoint (DWorld world, DContact c) {
 		return ODE.dJointCreateContact(world, null, c);
 	}
+	/**
+	 * Create contact joints between two bodies for several contacts, e.g.
+	 * for all contacts returned by
+	 * {@link #collide(DGeom, DGeom, int, DContactGeomBuffer)} for one pair.
+	 * <p>
+	 * The joints are taken from a pool of the joint group that is refilled
+	 * when the group is emptied, and the contact data is copied into them.
+	 * A simulation that creates about the same number of contacts every
+	 * step therefore does not allocate joints or contacts, and the contact
+	 * buffer can be reused by the caller immediately.
+	 * <p>
+	 * The joints are not returned, they are destroyed when the group is
+	 * emptied. <tt>dContactFDir1</tt> is not supported, because the
+	 * contact geoms do not provide a friction direction.
+	 *
+	 * @param world world
+	 * @param group joint group of the contact joints, must not be null
+	 * @param b1 first body, may be null
+	 * @param b2 second body, may be null
+	 * @param surface surface parameters of all contacts
+	 * @param contacts contact geoms, e.g. from collide(...)
+	 * @param numContacts number of contacts to create joints for
+	 */
+	public static void createContactJoints (DWorld world, DJointGroup group,
+			DBody b1, DBody b2, DContact.DSurfaceParameters surface,
+			DContactGeomBuffer contacts, int numContacts) {
+		ODE.dJointCreateContacts(world, group, b1, b2, surface, contacts, numContacts);
+	}
 
 	/**
 	 * Create a new joint of the double ball type.
@@ -508,6 +543,62 @@ public abstract class OdeHelper {
 		return DxWorld.dWorldCreate();
 	}
 
+	/**
+	 * Create an empty snapshot for {@link DWorld#saveSnapshot(DWorldSnapshot)}.
+	 * @return snapshot
+	 */
+	public static DWorldSnapshot createWorldSnapshot () {
+		return new DxWorldSnapshot();
+	}
+
+	/**
+	 * Create a contact manifold that reduces the contacts of each geom pair,
+	 * see {@link DContactManifold}.
+	 * @param maxContacts Maximum number of contacts kept per geom pair, 
+	 * usually 4.
+	 * @return contact manifold
+	 */
+	public static DContactManifold createContactManifold (int maxContacts) {
+		return new DxContactManifold(maxContacts);
+	}
+
+	/**
+	 * Quick-step several independent worlds in parallel.
+	 * 
+	 * The worlds are distributed over the threads of the executor. The result 
+	 * of each world is identical to calling {@link DWorld#quickStep(double)} 
+	 * on each world in turn. The worlds must not share bodies or joints and 
+	 * must not be accessed otherwise until this method returns.
+	 * 
+	 * @param worlds The worlds to step, each world may only appear once.
+	 * @param stepsize The number of seconds that the simulation has to advance.
+	 * @param executor The executor to use, or {@code null} to step the worlds
+	 * in the calling thread.
+	 * @return {@code false} if stepping failed for any world.
+	 * @see DWorld#quickStep(double)
+	 */
+	public static boolean quickStep (Collection<? extends DWorld> worlds, double stepsize, 
+			ExecutorService executor) {
+		return DxWorld.dWorldStepMultiple(worlds, stepsize, true, executor);
+	}
+
+	/**
+	 * Step several independent worlds in parallel.
+	 * 
+	 * See {@link #quickStep(Collection, double, ExecutorService)}.
+	 * 
+	 * @param worlds The worlds to step, each world may only appear once.
+	 * @param stepsize The number of seconds that the simulation has to advance.
+	 * @param executor The executor to use, or {@code null} to step the worlds
+	 * in the calling thread.
+	 * @return {@code false} if stepping failed for any world.
+	 * @see DWorld#step(double)
+	 */
+	public static boolean step (Collection<? extends DWorld> worlds, double stepsize, 
+			ExecutorService executor) {
+		return DxWorld.dWorldStepMultiple(worlds, stepsize, false, executor);
+	}
+
 	
 	public static DMass createMass() {
 		return new DxMass();
@@ -569,6 +660,28 @@ public abstract class OdeHelper {
 	public static DSapSpace createSapSpace2 (DSpace space, DSapSpace.AXES axes, long staticGeomCategoryMask) {
 		return DxSAPSpace2.dSweepAndPruneSpaceCreate((DxSpace) space, axes.getCode(), staticGeomCategoryMask);
 	}
+	/**
+	 * Create an incremental sweep and prune space. It keeps the geoms sorted 
+	 * between calls of collide() and maintains the set of overlapping pairs, 
+	 * so that collide() is fast when most geoms move only a little 
+	 * between calls.
+	 * @param staticGeomCategoryMask Geoms that are marked as static are not checked
+	 * for mutual collision. See SpacePerformanceTest for an example.
+	 * @return SAP Space
+	 */
+	public static DSapSpace createIncrementalSapSpace (long staticGeomCategoryMask) {
+		return DxIncrementalSAPSpace.dIncrementalSweepAndPruneSpaceCreate(null, staticGeomCategoryMask);
+	}
+	/**
+	 * @param space space
+	 * @param staticGeomCategoryMask Geoms that are marked as static are not checked
+	 * for mutual collision. See SpacePerformanceTest for an example.
+	 * @return SAP space
+	 * @see #createIncrementalSapSpace(long)
+	 */
+	public static DSapSpace createIncrementalSapSpace (DSpace space, long staticGeomCategoryMask) {
+		return DxIncrementalSAPSpace.dIncrementalSweepAndPruneSpaceCreate((DxSpace) space, staticGeomCategoryMask);
+	}
 	//ODE_API 
 	public static DHashSpace createHashSpace () {
 		return DxHashSpace.dHashSpaceCreate(null);
@@ -1084,6 +1197,41 @@ public abstract class OdeHelper {
 		((DxSpace)space).dSpaceCollide(data, callback);
 	}
 
+	/**
+	 * Determines which pairs of geoms in a space may potentially intersect,
+	 * computes the contacts of all these pairs on the given executor and
+	 * calls the callback function for each pair that has contacts.
+	 *
+	 * <p>The broadphase runs in the calling thread and its pairs are
+	 * collected first. Contained spaces are recursed into with
+	 * {@link #spaceCollide2(DGeom, DGeom, Object, DGeom.DNearCallback)}.
+	 * The narrowphase of the collected pairs is then spread over the
+	 * threads of the executor, each thread writing into its own contact
+	 * buffer. Pairs with a trimesh or heightfield, whose colliders modify
+	 * the geoms, are collided in pair order on a single thread per
+	 * geom. Finally the callback is called in the calling thread, in the
+	 * order in which the space reported the pairs, so the result is the
+	 * same as calling {@link #collide(DGeom, DGeom, int, DContactGeomBuffer)}
+	 * from a {@link DNearCallback}, independent of the number of threads.
+	 *
+	 * <p>The pairs can not be filtered before their contacts are computed,
+	 * the callback has to skip unwanted pairs, e.g. of connected bodies.
+	 *
+	 * @param space The space to test.
+	 * @param flags The flags for {@link #collide(DGeom, DGeom, int, DContactGeomBuffer)}.
+	 * The lower 16 bits specify the maximum number of contacts per pair.
+	 * @param executor The executor for the narrowphase, e.g. {@link DWorld#getTaskExecutor()}.
+	 * @param data Passed to the callback function.
+	 * @param callback A callback function is of type {@link DNearContactsCallback}.
+	 *
+	 * @see #spaceCollide(DSpace, Object, DGeom.DNearCallback)
+	 * @see DSpace#collideParallel(int, TaskExecutor, Object, DGeom.DNearContactsCallback)
+	 */
+	public static void spaceCollideParallel (DSpace space, int flags,
+			TaskExecutor executor, Object data, DNearContactsCallback callback) {
+		((DxSpace)space).dSpaceCollideParallel(flags, executor, data, callback);
+	}
+
 	/**
 	 * Determines which geoms from one space may potentially intersect with 
 	 * geoms from another space, and calls the callback function for each candidate 
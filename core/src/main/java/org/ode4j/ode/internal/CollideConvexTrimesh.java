@@ -29,7 +29,7 @@ public class CollideConvexTrimesh implements DColliderFn {
 		test_aabb.maxZ = (float) aabb.getMax2();
 
 		GimDynArrayInt collision_result = GimDynArrayInt.GIM_CREATE_BOXQUERY_LIST();
-		ptrimesh.getAabbSet().gim_aabbset_box_collision(test_aabb, collision_result);
+		ptrimesh.gim_trimesh_box_query(test_aabb, collision_result);
 		int contactcount = 0;
 		if (collision_result.size() != 0) {
 			int[] boxesresult = Arrays.copyOf(collision_result.GIM_DYNARRAY_POINTER(), collision_result.size());
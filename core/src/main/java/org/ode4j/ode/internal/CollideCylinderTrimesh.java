@@ -1268,7 +1268,7 @@ public class CollideCylinderTrimesh implements DColliderFn {
 
 		GimDynArrayInt collision_result = GimDynArrayInt.GIM_CREATE_BOXQUERY_LIST();
 
-		Trimesh.m_collision_trimesh.getAabbSet().gim_aabbset_box_collision(test_aabb, collision_result);
+		Trimesh.m_collision_trimesh.gim_trimesh_box_query(test_aabb, collision_result);
 
 		if (collision_result.size() != 0)
 		{
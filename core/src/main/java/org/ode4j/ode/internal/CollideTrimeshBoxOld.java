@@ -1482,7 +1482,7 @@ public class CollideTrimeshBoxOld implements DColliderFn {
 
 		GimDynArrayInt collision_result = GimDynArrayInt.GIM_CREATE_BOXQUERY_LIST();
 
-		ptrimesh.getAabbSet().gim_aabbset_box_collision(test_aabb, collision_result);
+		ptrimesh.gim_trimesh_box_query(test_aabb, collision_result);
 
 		if(collision_result.size()==0)
 		{
@@ -56,6 +56,8 @@ public class CollisionLibccd {
 	private static class ccd_obj_t {
 		final ccd_vec3_t pos = new ccd_vec3_t();
 		final ccd_quat_t rot = new ccd_quat_t(), rot_inv = new ccd_quat_t();
+		/** Scratch of the support functions. */
+		final ccd_vec3_t tmp = new ccd_vec3_t();
 	};
 	//typedef struct _ccd_obj_t ccd_obj_t;
 
@@ -92,6 +94,8 @@ public class CollisionLibccd {
 	private static class ccd_convex_t extends ccd_obj_t {
 		//ccd_obj_t o;
 		DxConvex convex;
+		/** Last support vertex, the start of the next search. */
+		int support;
 	};
 	//typedef struct _ccd_convex_t ccd_convex_t;
 
@@ -137,14 +141,11 @@ public class CollisionLibccd {
 
 	static void ccdGeomToBox(final DxBox g, ccd_box_t box)
 	{
-		DVector3 dim = new DVector3();
-
 		ccdGeomToObj(g, box);
 
-		g.getLengths(dim);
-		box.dim[0] = dim.get0() / 2.;
-		box.dim[1] = dim.get1() / 2.;
-		box.dim[2] = dim.get2() / 2.;
+		box.dim[0] = g.side.get0() / 2.;
+		box.dim[1] = g.side.get1() / 2.;
+		box.dim[2] = g.side.get2() / 2.;
 	}
 
 	static void ccdGeomToCap(final DxCapsule g, ccd_cap_t cap)
@@ -190,6 +191,7 @@ public class CollisionLibccd {
 	{
 		ccdGeomToObj(g, c);
 		c.convex = g;
+		c.support = g.supportHint;
 	}
 
 
@@ -197,7 +199,7 @@ public class CollisionLibccd {
 		@Override
 		public void run(Object obj, ccd_vec3_t _dir, ccd_vec3_t v) {
 			final ccd_box_t o = (ccd_box_t)obj;
-			final ccd_vec3_t dir = new ccd_vec3_t();
+			final ccd_vec3_t dir = o.tmp;
 
 			ccdVec3Copy(dir, _dir);
 			ccdQuatRotVec(dir, o.rot_inv);
@@ -230,7 +232,7 @@ public class CollisionLibccd {
 		@Override
 		public void run(Object obj, ccd_vec3_t _dir, ccd_vec3_t v) {
 			final ccd_cyl_t cyl = (ccd_cyl_t)obj;
-			final ccd_vec3_t dir = new ccd_vec3_t();
+			final ccd_vec3_t dir = cyl.tmp;
 
 			double dot = ccdVec3Dot(_dir, cyl.axis);
 			if (dot > 0.0){
@@ -264,25 +266,17 @@ public class CollisionLibccd {
 		@Override
 		public void run(Object obj, ccd_vec3_t _dir, ccd_vec3_t v) {
 			final ccd_convex_t c = (ccd_convex_t )obj;
-			final ccd_vec3_t dir = new ccd_vec3_t(), p = new ccd_vec3_t();
-			double maxdot, dot;
-			int i;
-			double []curp;
+			final ccd_vec3_t dir = c.tmp;
 
 			ccdVec3Copy(dir, _dir);
 			ccdQuatRotVec(dir, c.rot_inv);
 
-			maxdot = -CCD_REAL_MAX;
-			curp = c.convex.getPoints();
-			int curpI = 0;
-			for (i = 0; i < c.convex.getPointcount(); i++, curpI += 3){
-				ccdVec3Set(p, curp[curpI+0], curp[curpI+1], curp[curpI+2]);
-				dot = ccdVec3Dot(dir, p);
-				if (dot > maxdot){
-					ccdVec3Copy(v, p);
-					maxdot = dot;
-				}
-			}
+			// successive queries of MPR are in similar directions, so the
+			// last support vertex is a good start for hill climbing
+			c.support = c.convex.supportVertex(ccdVec3X(dir), ccdVec3Y(dir), ccdVec3Z(dir), c.support);
+			double[] curp = c.convex.getPoints();
+			int curpI = c.support * 3;
+			ccdVec3Set(v, curp[curpI+0], curp[curpI+1], curp[curpI+2]);
 
 
 			// transform support vertex
@@ -300,31 +294,78 @@ public class CollisionLibccd {
 	};
 
 
+	/**
+	 * Objects of the colliders and scratch memory of libccd, one set per 
+	 * thread so that colliding does not allocate.
+	 */
+	private static final class ccd_workspace_t {
+		final ccd_t ccd = new ccd_t();
+		final RefDouble depth = new RefDouble();
+		final ccd_vec3_t dir = new ccd_vec3_t(), pos = new ccd_vec3_t();
+		final ccd_box_t box = new ccd_box_t();
+		final ccd_cap_t cap = new ccd_cap_t();
+		final ccd_cyl_t cyl1 = new ccd_cyl_t(), cyl2 = new ccd_cyl_t();
+		final ccd_sphere_t sphere = new ccd_sphere_t();
+		final ccd_convex_t conv1 = new ccd_convex_t(), conv2 = new ccd_convex_t();
+		final ccd_triangle_t triangle = new ccd_triangle_t();
+		final DContactGeomBuffer tempContacts = new DContactGeomBuffer(1);
+
+		ccd_workspace_t() {
+			CCD_INIT(ccd);
+			ccd.max_iterations = 500;
+			ccd.mpr_tolerance = 1E-6;
+		}
+	}
+
+	private static final ThreadLocal<ccd_workspace_t> workspace = new ThreadLocal<ccd_workspace_t>() {
+		@Override
+		protected ccd_workspace_t initialValue() {
+			return new ccd_workspace_t();
+		}
+	};
+
+	/**
+	 * Releases the collision scratch memory of the calling thread.
+	 */
+	static void cleanupWorkspaceForThread() {
+		workspace.remove();
+	}
+
+	/** Keeps the last support vertex of a convex for its next collision. */
+	private static void ccdConvexDone(ccd_obj_t obj)
+	{
+		if (obj instanceof ccd_convex_t) {
+			ccd_convex_t c = (ccd_convex_t) obj;
+			c.convex.supportHint = c.support;
+		}
+	}
+
 	static int ccdCollide(DGeom o1, DGeom o2, int flags,
 			DContactGeomBuffer contacts,
 			ccd_obj_t obj1, ccd_support_fn supp1, ccd_center_fn cen1,
 			ccd_obj_t obj2, ccd_support_fn supp2, ccd_center_fn cen2)
 	{
-		ccd_t ccd = new ccd_t();
+		ccd_workspace_t ws = workspace.get();
+		ccd_t ccd = ws.ccd;
 		int res;
-		final RefDouble depth = new RefDouble();
-		final ccd_vec3_t dir = new ccd_vec3_t(), pos = new ccd_vec3_t();
+		final RefDouble depth = ws.depth;
+		final ccd_vec3_t dir = ws.dir, pos = ws.pos;
 		int max_contacts = (flags & 0xffff);
 
 		if (max_contacts < 1)
 			return 0;
 
-		CCD_INIT(ccd);
 		ccd.support1 = supp1;
 		ccd.support2 = supp2;
 		ccd.center1  = cen1;
 		ccd.center2  = cen2;
-		ccd.max_iterations = 500;
-		ccd.mpr_tolerance = 1E-6;
 
 
 		if ((flags & OdeConstants.CONTACTS_UNIMPORTANT)!=0){
-			if (ccdMPRIntersect(obj1, obj2, ccd)!=0){
+			res = ccdMPRIntersect(obj1, obj2, ccd);
+			ccdConvexDone(obj1);
+			ccdConvexDone(obj2);
+			if (res!=0){
 				return 1;
 			}else{
 				return 0;
@@ -332,6 +373,8 @@ public class CollisionLibccd {
 		}
 
 		res = ccdMPRPenetration(obj1, obj2, ccd, depth, dir, pos);
+		ccdConvexDone(obj1);
+		ccdConvexDone(obj2);
 		if (res == 0) {
 			DContactGeom contact = contacts.get();
 			contact.g1 = o1;
@@ -356,7 +399,8 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			final ccd_cyl_t cyl1 = new ccd_cyl_t(), cyl2 = new ccd_cyl_t();
+			ccd_workspace_t ws = workspace.get();
+			final ccd_cyl_t cyl1 = ws.cyl1, cyl2 = ws.cyl2;
 
 			ccdGeomToCyl((DxCylinder) o1, cyl1);
 			ccdGeomToCyl((DxCylinder) o2, cyl2);
@@ -375,8 +419,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_cyl_t cyl = new ccd_cyl_t();
-			ccd_box_t box = new ccd_box_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_cyl_t cyl = ws.cyl1;
+			ccd_box_t box = ws.box;
 			ccdGeomToBox((DxBox) o1, box);
 			ccdGeomToCyl((DxCylinder) o2, cyl);
 
@@ -390,8 +435,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_cap_t cap = new ccd_cap_t();
-			ccd_cyl_t cyl = new ccd_cyl_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_cap_t cap = ws.cap;
+			ccd_cyl_t cyl = ws.cyl1;
 
 			ccdGeomToCap((DxCapsule) o1, cap);
 			ccdGeomToCyl((DxCylinder) o2, cyl);
@@ -406,8 +452,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_box_t box = new ccd_box_t();
-			ccd_convex_t conv = new ccd_convex_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_box_t box = ws.box;
+			ccd_convex_t conv = ws.conv1;
 	
 			ccdGeomToConvex((DxConvex) o1, conv);
 			ccdGeomToBox((DxBox) o2, box);
@@ -422,8 +469,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_cap_t cap = new ccd_cap_t();
-			ccd_convex_t conv = new ccd_convex_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_cap_t cap = ws.cap;
+			ccd_convex_t conv = ws.conv1;
 
 			ccdGeomToConvex((DxConvex) o1, conv);
 			ccdGeomToCap((DxCapsule) o2, cap);
@@ -438,8 +486,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_sphere_t sphere = new ccd_sphere_t();
-			ccd_convex_t conv = new ccd_convex_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_sphere_t sphere = ws.sphere;
+			ccd_convex_t conv = ws.conv1;
 
 			ccdGeomToConvex((DxConvex) o1, conv);
 			ccdGeomToSphere((DxSphere) o2, sphere);
@@ -454,8 +503,9 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_cyl_t cyl = new ccd_cyl_t();
-			ccd_convex_t conv = new ccd_convex_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_cyl_t cyl = ws.cyl1;
+			ccd_convex_t conv = ws.conv1;
 
 			ccdGeomToConvex((DxConvex) o1, conv);
 			ccdGeomToCyl((DxCylinder) o2, cyl);
@@ -470,7 +520,8 @@ public class CollisionLibccd {
 		@Override
 		public int dColliderFn(DGeom o1, DGeom o2, int flags,
 				DContactGeomBuffer contacts) {
-			ccd_convex_t c1 = new ccd_convex_t(), c2 = new ccd_convex_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_convex_t c1 = ws.conv1, c2 = ws.conv2;
 
 			ccdGeomToConvex((DxConvex) o1, c1);
 			ccdGeomToConvex((DxConvex) o2, c2);
@@ -505,14 +556,15 @@ public class CollisionLibccd {
 
 	public static class CollideConvexTrimeshTrianglesCCD {
 		public int collide(DGeom o1, DGeom o2, int[] triindices, int flags, DContactGeomBuffer contacts) {
-			ccd_convex_t c1 = new ccd_convex_t();
-			ccd_triangle_t c2 = new ccd_triangle_t();
+			ccd_workspace_t ws = workspace.get();
+			ccd_convex_t c1 = ws.conv1;
+			ccd_triangle_t c2 = ws.triangle;
 			ccdGeomToConvex((DxConvex) o1, c1);
 			ccdGeomToObj(o2, c2);
 			int maxcontacts = (flags & 0xffff);
 			final DVector3[] triangle = new DVector3[] { new DVector3(), new DVector3(), new DVector3() };
 			int contactcount = 0;
-			DContactGeomBuffer tempContacts = new DContactGeomBuffer(1);
+			DContactGeomBuffer tempContacts = ws.tempContacts;
 			for (int i : triindices) {
 				((DxTriMesh) o2).FetchTransformedTriangle(i, triangle);
 				for (int j = 0; j < 3; j++) {
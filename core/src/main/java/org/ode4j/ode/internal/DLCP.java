@@ -1141,7 +1141,7 @@ public class DLCP {
 
         double total_time = 0;
         for (int count=0; count < 1000; count++) {
-            BlockPointer saveInner = arena.BEGIN_STATE_SAVE(); 
+            int saveInner = arena.BEGIN_STATE_SAVE(); 
             {
 
             // form (A,b) = a random positive definite LCP problem
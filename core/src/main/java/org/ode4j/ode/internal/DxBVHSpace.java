@@ -172,7 +172,9 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 		bvhTree.getOverlappingPairs(new AABBTreePairCallback<DxGeom>() {
 			@Override
 			public void overlap(DxGeom o1, DxGeom o2) {
-				collideGeomsNoAABBs(o1, o2, data, callback);
+				if (!isParkedPair(o1, o2)) {
+					collideGeomsNoAABBs(o1, o2, data, callback);
+				}
 			}
 		});
 
@@ -186,7 +188,7 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 			// collide infinite ones
 			for (int n = m + 1; n < infSize; ++n) {
 				DxGeom g2 = infGeomList.get(n);
-				if (GEOM_ENABLED(g2)) {
+				if (GEOM_ENABLED(g2) && !isParkedPair(g1, g2)) {
 					collideGeomsNoAABBs(g1, g2, data, callback);
 				}
 			}
@@ -195,7 +197,9 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 			bvhTree.getOverlappingNodes(getExtents(g1), new AABBTreeNodeCallback<DxGeom>() {
 				@Override
 				public void overlap(DxGeom o) {
-					collideGeomsNoAABBs(g1, o, data, callback);
+					if (!isParkedPair(g1, o)) {
+						collideGeomsNoAABBs(g1, o, data, callback);
+					}
 				}
 			});
 		}
@@ -254,4 +258,17 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 		lock_count--;
 	}
 
+	@Override
+	boolean rayCast(DxRayCaster.Ray ray) {
+		if (!bvhTree.getIntersectingNodes(ray)) {
+			return false;
+		}
+		for (int i = 0; i < infGeomList.size(); i++) {
+			if (!ray.visit(infGeomList.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
@@ -47,6 +47,8 @@ import static org.ode4j.ode.internal.Rotation.dQMultiply0;
 import static org.ode4j.ode.internal.Rotation.dQfromR;
 import static org.ode4j.ode.internal.Rotation.dRfromQ;
 
+import java.nio.DoubleBuffer;
+
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DMatrix3C;
 import org.ode4j.math.DQuaternion;
@@ -133,6 +135,8 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	BodyMoveCallBack moved_callback; // let the user know the body moved
 	private dxDampingParameters dampingp; // damping parameters, depends on flags
 	double max_angular_speed;      // limit the angular velocity to this magnitude
+	DxSleepingIslands.Island sleepingIsland; // island if the body sleeps with it, see DxSleepingIslands
+	double ccdRadius;             // radius of the swept sphere, 0=no continuous collision, see DxContinuousCollision
 
 	protected DxBody(DxWorld w)
 	{
@@ -182,6 +186,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		//addObjectToList (b,(dObject **) &w.firstbody);
 		addObjectToList(b, w.firstbody);
 		w.nb++;
+		w.sleepingIslands.invalidate();
 
 		// set auto-disable parameters
 		b.average_avel_buffer = b.average_lvel_buffer = null; // no buffer at beginning
@@ -210,6 +215,11 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	{
 		//dAASSERT (b);
 
+		// the other bodies of a sleeping island may lose their support
+		if (sleepingIsland != null) {
+			world.sleepingIslands.wake(sleepingIsland);
+		}
+
 		// all geoms that link to this body must be notified that the body is about
 		// to disappear. note that the call to dGeomSetBody(geom,0) will result in
 		// dGeomGetBodyNext() returning 0 for the body, so we must get the next body
@@ -234,6 +244,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		}
 		removeObjectFromList ();
 		world.nb--;
+		world.sleepingIslands.invalidate();
 
 		// delete the average buffers
 		//TZ nothing to do
@@ -719,6 +730,11 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	//	void dBodyEnable (dxBody b)
     public void dBodyEnable ()
     {
+        if (sleepingIsland != null) {
+            // wakes the whole island
+            world.sleepingIslands.wake(sleepingIsland);
+            return;
+        }
         flags &= ~dxBodyDisabled;
         adis_stepsleft = adis.idle_steps;
         adis_timeleft = adis.idle_time;
@@ -752,6 +768,39 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	}
 
 
+	/**
+	 * Puts position, quaternion, linear and angular velocity, see 
+	 * {@link org.ode4j.ode.DWorld#BODY_STATE_SIZE}.
+	 */
+	void readState (DoubleBuffer states)
+	{
+		DVector3 pos = _posr.pos;
+		states.put(pos.get0()).put(pos.get1()).put(pos.get2());
+		states.put(_q.get0()).put(_q.get1()).put(_q.get2()).put(_q.get3());
+		states.put(lvel.get0()).put(lvel.get1()).put(lvel.get2());
+		states.put(avel.get0()).put(avel.get1()).put(avel.get2());
+	}
+
+
+	/**
+	 * Inverse of {@link #readState(DoubleBuffer)}, the quaternion is 
+	 * normalized as by {@link #dBodySetQuaternion(DQuaternionC)}.
+	 */
+	void writeState (DoubleBuffer states)
+	{
+		_posr.pos.set(states.get(), states.get(), states.get());
+		_q.set(states.get(), states.get(), states.get(), states.get());
+		dNormalize4 (_q);
+		dRfromQ(_posr.Rw(), _q);
+		lvel.set(states.get(), states.get(), states.get());
+		avel.set(states.get(), states.get(), states.get());
+
+		// notify all attached geoms that this body has moved
+		for (DxGeom geom2 = geom; geom2 != null; geom2 = geom2.dGeomGetBodyNext ())
+			geom2.dGeomMoved ();
+	}
+
+
 	//	void dBodySetGravityMode (dxBody b, int mode)
 	void dBodySetGravityMode (boolean mode)
 	{
@@ -867,6 +916,9 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	{
 		if (!do_auto_disable)
 		{
+			if (sleepingIsland != null) {
+				world.sleepingIslands.wake(sleepingIsland);
+			}
 			flags &= ~dxBodyAutoDisable;
 			// (mg) we should also reset the IsDisabled state to correspond to the DoDisabling flag
 			flags &= ~dxBodyDisabled;
@@ -1006,6 +1058,15 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	                flags &= ~dxBodyGyroscopic;
 	}
 
+	void dBodySetContinuousCollisionRadius(double radius)
+	{
+		dUASSERT (radius >= 0, "radius must be >= 0");
+		ccdRadius = radius;
+		// the AABBs of the geoms change
+		for (DxGeom geom2 = geom; geom2 != null; geom2 = geom2.dGeomGetBodyNext ())
+			geom2.dGeomMoved ();
+	}
+
 
 	//****************************************************************************
 	// body rotation
@@ -1043,14 +1104,15 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		//for (j=0; j<3; j++) _posr.pos.v[j] += h * lvel.v[j];
 		_posr.pos.eqSum(_posr.pos(), lvel, h);
 
+		StepperScratch scratch = StepperScratch.get();
 		if ((flags & dxBodyFlagFiniteRotation) != 0) {
-			DVector3 irv = new DVector3();	// infitesimal rotation vector
-			DQuaternion q = new DQuaternion();	// quaternion for finite rotation
+			DVector3 irv = scratch.irv;	// infitesimal rotation vector
+			DQuaternion q = scratch.q;	// quaternion for finite rotation
 
 			if ((flags & dxBodyFlagFiniteRotationAxis) != 0) {
 				// split the angular velocity vector into a component along the finite
 				// rotation axis, and a component orthogonal to it.
-				DVector3 frv = new DVector3();		// finite rotation vector
+				DVector3 frv = scratch.frv;		// finite rotation vector
 				double k = dCalcVectorDot3 (finite_rot_axis,avel);
 				//				frv.v[0] = finite_rot_axis.v[0] * k;
 				//				frv.v[1] = finite_rot_axis.v[1] * k;
@@ -1087,14 +1149,14 @@ public class DxBody extends DObject implements DBody, Cloneable {
 			}
 
 			// do the finite rotation
-			DQuaternion q2 = new DQuaternion();
+			DQuaternion q2 = scratch.q2;
 			dQMultiply0 (q2,q,_q);
 			//for (j=0; j<4; j++) _q.v[j] = q2.v[j];
 			_q.set(q2);
 
 			// do the infitesimal rotation if required
 			if ((flags & dxBodyFlagFiniteRotationAxis) != 0) {
-				DQuaternion dq = new DQuaternion();
+				DQuaternion dq = scratch.dq;
 				dDQfromW (dq,irv,_q);
 				//for (j=0; j<4; j++) _q.v[j] += h * dq[j];
 				_q.sum( _q, dq, h);
@@ -1102,7 +1164,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		}
 		else {
 			// the normal way - do an infitesimal rotation
-			DQuaternion dq = new DQuaternion();
+			DQuaternion dq = scratch.dq;
 			dDQfromW (dq,avel,_q);
 			//for (j=0; j<4; j++) _q.v[j] += h * dq[j];
 			_q.sum( _q, dq, h);
@@ -1421,6 +1483,13 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	public boolean getGyroscopicMode() 
 	{ return dBodyGetGyroscopicMode (); }
 
+	@Override
+	public void setContinuousCollisionRadius (double radius)
+	{ dBodySetContinuousCollisionRadius(radius); }
+	@Override
+	public double getContinuousCollisionRadius() 
+	{ return ccdRadius; }
+
 	@Override
 	public boolean isConnectedTo (DBody body) //const
 	{ return OdeJointsFactoryImpl.areConnected (this, body); }
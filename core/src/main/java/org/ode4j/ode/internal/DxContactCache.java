@@ -0,0 +1,214 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointContact;
+
+/**
+ * Remembers the lambdas of the contact joints of the last step, so that
+ * QuickStep can warm start contacts even though contact joints are
+ * usually destroyed and recreated every step.
+ * <p>
+ * A contact is identified by its geom pair, its features (side1/side2)
+ * and its position: a new contact takes the lambdas of the nearest
+ * contact of the previous step with the same geoms and features, if that 
+ * contact is no further away than {@link #MATCH_DISTANCE}. Each contact 
+ * of the previous step is used at most once.
+ * <p>
+ * The cache reuses its entries, it does not allocate memory in a steady
+ * state simulation.
+ */
+final class DxContactCache {
+
+	/** Maximum distance between a contact and its match in the previous step. */
+	static final double MATCH_DISTANCE = 0.05;
+
+	private static final class Entry {
+		DGeom g1, g2;
+		int side1, side2;
+		final DVector3 pos = new DVector3();
+		final double[] lambda = new double[6];
+		/** next entry with the same g1 */
+		Entry next;
+		boolean used;
+	}
+
+	private static final class Buffer {
+		private final ArrayList<Entry> entries = new ArrayList<Entry>();
+		private int count;
+		/** first entry for each g1 */
+		private final IdentityHashMap<DGeom, Entry> heads = new IdentityHashMap<DGeom, Entry>();
+
+		void clear() {
+			count = 0;
+			heads.clear();
+		}
+
+		Entry add(DGeom g1) {
+			Entry e;
+			if (count < entries.size()) {
+				e = entries.get(count);
+			} else {
+				e = new Entry();
+				entries.add(e);
+			}
+			count++;
+			e.g1 = g1;
+			e.used = false;
+			e.next = heads.put(g1, e);
+			return e;
+		}
+
+		void add(DContactGeom cg, double[] lambda) {
+			Entry e = add(cg.g1);
+			e.g2 = cg.g2;
+			e.side1 = cg.side1;
+			e.side2 = cg.side2;
+			e.pos.set(cg.pos);
+			System.arraycopy(lambda, 0, e.lambda, 0, e.lambda.length);
+		}
+
+		Entry find(DContactGeom cg) {
+			Entry best = null;
+			double bestDist = MATCH_DISTANCE;
+			for (Entry e = heads.get(cg.g1); e != null; e = e.next) {
+				if (e.used || e.g2 != cg.g2 || e.side1 != cg.side1 || e.side2 != cg.side2) {
+					continue;
+				}
+				double dist = e.pos.distance(cg.pos);
+				if (dist <= bestDist) {
+					best = e;
+					bestDist = dist;
+				}
+			}
+			if (best != null) {
+				best.used = true;
+			}
+			return best;
+		}
+
+		boolean isEmpty() {
+			return count == 0;
+		}
+	}
+
+	private Buffer previous = new Buffer();
+	private Buffer current = new Buffer();
+
+	/**
+	 * Set the lambdas of all contact joints of the world from the contacts 
+	 * of the previous step. Unmatched contacts start with zero lambdas.
+	 * @param world world
+	 */
+	void loadLambdas(DxWorld world) {
+		for (DxJoint j = world.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (j instanceof DxJointContact) {
+				DContactGeom cg = ((DxJointContact) j).contact.geom;
+				Entry e = cg.g1 != null ? previous.find(cg) : null;
+				if (e != null) {
+					System.arraycopy(e.lambda, 0, j.lambda, 0, j.lambda.length);
+				} else {
+					Matrix.dSetZero(j.lambda);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remember the lambdas of all contact joints of the world for the next step.
+	 * @param world world
+	 */
+	void storeLambdas(DxWorld world) {
+		Buffer buffer = previous;
+		previous = current;
+		current = buffer;
+		previous.clear();
+		for (DxJoint j = world.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (j instanceof DxJointContact) {
+				DContactGeom cg = ((DxJointContact) j).contact.geom;
+				if (cg.g1 != null) {
+					previous.add(cg, j.lambda);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget all contacts.
+	 */
+	void clear() {
+		previous.clear();
+		current.clear();
+	}
+
+	boolean isEmpty() {
+		return previous.isEmpty();
+	}
+
+	/**
+	 * Write the contacts of the previous step to a snapshot, starting with 
+	 * their number.
+	 */
+	void save(DxWorldSnapshot s, DxSnapshotRegistry r) {
+		s.put(previous.count);
+		for (int i = 0; i < previous.count; i++) {
+			Entry e = previous.entries.get(i);
+			s.put(r.getId(e.g1));
+			s.put(r.getId(e.g2));
+			s.put(e.side1);
+			s.put(e.side2);
+			s.putVector(e.pos);
+			for (int k = 0; k < e.lambda.length; k++) {
+				s.putDouble(e.lambda[k]);
+			}
+			s.put(e.used ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Replace the contacts of the previous step with <tt>n</tt> contacts 
+	 * from a snapshot. They are added in the saved order, so that the 
+	 * matching of the next step is the same.
+	 */
+	void restore(DxWorldSnapshot s, DxSnapshotRegistry r, int n) {
+		clear();
+		for (int i = 0; i < n; i++) {
+			Entry e = previous.add(r.getGeom(s.getInt()));
+			e.g2 = r.getGeom(s.getInt());
+			e.side1 = s.getInt();
+			e.side2 = s.getInt();
+			s.getVector(e.pos);
+			for (int k = 0; k < e.lambda.length; k++) {
+				e.lambda[k] = s.getDouble();
+			}
+			e.used = s.getInt() != 0;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DContactManifold;
+import org.ode4j.ode.DGeom;
+
+/**
+ * Default contact manifold.
+ * <p>
+ * The first contact kept is the deepest one. The second one is the contact 
+ * furthest away from it, the third one spans the largest triangle with the 
+ * first two and the fourth one adds the largest area to that triangle. 
+ * Further contacts are the ones furthest away from all contacts kept so far.
+ * <p>
+ * The kept contacts are remembered in the frame of the body of the first 
+ * geom (or of the second geom if the first one has no body) of the first
+ * frame of the pair. A pair is found in either order of its geoms, and the
+ * contact positions do not depend on that order. In the next
+ * frame, for each remembered contact the nearest new contact within the
+ * match distance is kept before the remaining slots are filled. Such a 
+ * contact is also preferred as first contact if its depth is within
+ * {@link #DEPTH_TOLERANCE} (relative) of the depth of the deepest contact.
+ */
+public final class DxContactManifold implements DContactManifold {
+
+	private static final class Pair {
+		/** geoms in the order of the first frame of the pair */
+		DGeom g1;
+		DGeom g2;
+		/** next pair with the same g1 */
+		Pair next;
+		boolean touched;
+		/** contacts of the last frame, in the frame of the reference body */
+		int count;
+		final double[] points;
+		// scratch, a pair is only processed by one thread at a time
+		int[] selected = new int[0];
+		int[] matches;
+		boolean[] taken = new boolean[0];
+		DContactGeom[] copies = new DContactGeom[0];
+		final DVector3 tmp = new DVector3();
+
+		Pair(int maxContacts) {
+			points = new double[maxContacts * 3];
+			matches = new int[maxContacts];
+		}
+
+		void ensureCapacity(int count) {
+			if (taken.length < count) {
+				taken = new boolean[count];
+			}
+			if (selected.length < count) {
+				selected = new int[count];
+			}
+		}
+	}
+
+	/** Relative depth difference up to which contacts count as equally deep. */
+	private static final double DEPTH_TOLERANCE = 0.1;
+
+	private final int maxContacts;
+	private double matchDistance = DxContactCache.MATCH_DISTANCE;
+	/** first pair for each g1 */
+	private final IdentityHashMap<DGeom, Pair> heads = new IdentityHashMap<DGeom, Pair>();
+
+	public DxContactManifold(int maxContacts) {
+		dUASSERT(maxContacts >= 1, "a manifold keeps at least one contact");
+		this.maxContacts = maxContacts;
+	}
+
+	@Override
+	public int collide(DGeom o1, DGeom o2, int flags, DContactGeomBuffer contacts) {
+		int count = DxGeom.dCollide((DxGeom) o1, (DxGeom) o2, flags, contacts, 1);
+		return reduce(o1, o2, contacts, count);
+	}
+
+	@Override
+	public int reduce(DGeom o1, DGeom o2, DContactGeomBuffer contacts, int count) {
+		Pair pair = findPair(o1, o2, count > 0);
+		if (pair == null) {
+			return 0;
+		}
+		if (count == 0) {
+			pair.count = 0;
+			return 0;
+		}
+		// the reference body must not change when the geoms are swapped
+		DBody body = pair.g1.getBody() != null ? pair.g1.getBody() : pair.g2.getBody();
+		int n;
+		if (count <= maxContacts) {
+			n = count;
+		} else {
+			n = select(pair, body, contacts, count);
+			reorder(pair, contacts, n);
+		}
+		for (int i = 0; i < n; i++) {
+			DVector3C pos = contacts.get(i).pos;
+			if (body != null) {
+				body.getPosRelPoint(pos, pair.tmp);
+				pos = pair.tmp;
+			}
+			pair.points[i*3] = pos.get0();
+			pair.points[i*3 + 1] = pos.get1();
+			pair.points[i*3 + 2] = pos.get2();
+		}
+		pair.count = n;
+		return n;
+	}
+
+	private synchronized Pair findPair(DGeom o1, DGeom o2, boolean create) {
+		Pair head = heads.get(o1);
+		for (Pair p = head; p != null; p = p.next) {
+			if (p.g2 == o2) {
+				p.touched = true;
+				return p;
+			}
+		}
+		// spaces may report a pair in either order
+		for (Pair p = heads.get(o2); p != null; p = p.next) {
+			if (p.g2 == o1) {
+				p.touched = true;
+				return p;
+			}
+		}
+		if (!create) {
+			return null;
+		}
+		Pair p = new Pair(maxContacts);
+		p.g1 = o1;
+		p.g2 = o2;
+		p.touched = true;
+		p.next = head;
+		heads.put(o1, p);
+		return p;
+	}
+
+	/**
+	 * Selects <tt>maxContacts</tt> contacts.
+	 * @return number of selected contacts, their indices are in pair.selected
+	 */
+	private int select(Pair pair, DBody body, DContactGeomBuffer contacts, int count) {
+		pair.ensureCapacity(count);
+		boolean[] taken = pair.taken;
+		int[] selected = pair.selected;
+		int[] matches = pair.matches;
+		for (int i = 0; i < count; i++) {
+			taken[i] = false;
+		}
+
+		// contacts that continue the contacts of the last frame
+		int matched = 0;
+		double maxDist2 = matchDistance * matchDistance;
+		DVector3 prev = pair.tmp;
+		for (int k = 0; k < pair.count; k++) {
+			prev.set(pair.points[k*3], pair.points[k*3 + 1], pair.points[k*3 + 2]);
+			if (body != null) {
+				body.getRelPointPos(prev.get0(), prev.get1(), prev.get2(), prev);
+			}
+			int best = -1;
+			double bestDist2 = maxDist2;
+			for (int i = 0; i < count; i++) {
+				if (!taken[i]) {
+					double d2 = distanceSquared(contacts.get(i).pos, prev);
+					if (d2 <= bestDist2) {
+						bestDist2 = d2;
+						best = i;
+					}
+				}
+			}
+			if (best >= 0) {
+				taken[best] = true;
+				matches[matched++] = best;
+			}
+		}
+
+		// the deepest contact, or a matched contact that is almost as deep
+		int deepest = 0;
+		for (int i = 1; i < count; i++) {
+			if (contacts.get(i).depth > contacts.get(deepest).depth) {
+				deepest = i;
+			}
+		}
+		double minDepth = contacts.get(deepest).depth * (1 - DEPTH_TOLERANCE);
+		int first = deepest;
+		for (int k = 0; k < matched; k++) {
+			double depth = contacts.get(matches[k]).depth;
+			if (depth >= minDepth && (!taken[first] || depth > contacts.get(first).depth)) {
+				first = matches[k];
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			taken[i] = false;
+		}
+		int n = 0;
+		selected[n++] = first;
+		taken[first] = true;
+		for (int k = 0; k < matched && n < maxContacts; k++) {
+			if (!taken[matches[k]]) {
+				taken[matches[k]] = true;
+				selected[n++] = matches[k];
+			}
+		}
+
+		DVector3C normal = contacts.get(first).normal;
+		while (n < maxContacts) {
+			int best = -1;
+			double bestScore = 0;
+			for (int i = 0; i < count; i++) {
+				if (!taken[i]) {
+					double score = score(contacts, selected, n, contacts.get(i).pos, normal);
+					if (score > bestScore) {
+						bestScore = score;
+						best = i;
+					}
+				}
+			}
+			if (best < 0) {
+				// the remaining contacts coincide with kept ones
+				break;
+			}
+			taken[best] = true;
+			selected[n++] = best;
+		}
+		return n;
+	}
+
+	/**
+	 * @return how much a contact at <tt>p</tt> would add to the spread of the
+	 * <tt>n</tt> selected contacts
+	 */
+	private static double score(DContactGeomBuffer contacts, int[] selected, int n, 
+			DVector3C p, DVector3C normal) {
+		DVector3C a = contacts.get(selected[0]).pos;
+		if (n == 1) {
+			return distanceSquared(p, a);
+		}
+		DVector3C b = contacts.get(selected[1]).pos;
+		if (n == 2) {
+			return crossLengthSquared(a, b, p);
+		}
+		if (n == 3) {
+			// area that p adds to the triangle abc, seen along the normal
+			DVector3C c = contacts.get(selected[2]).pos;
+			double orientation = crossDot(a, b, c, normal) < 0 ? -1 : 1;
+			double gain = Math.max(0, -orientation * crossDot(a, b, p, normal))
+					+ Math.max(0, -orientation * crossDot(b, c, p, normal))
+					+ Math.max(0, -orientation * crossDot(c, a, p, normal));
+			if (gain > 0) {
+				return gain;
+			}
+			// degenerate triangle or p inside, fall through
+		}
+		double min = Double.MAX_VALUE;
+		for (int k = 0; k < n; k++) {
+			min = Math.min(min, distanceSquared(p, contacts.get(selected[k]).pos));
+		}
+		// below any area gain of a contact outside of the triangle
+		return n == 3 ? min * 1e-9 : min;
+	}
+
+	private static double distanceSquared(DVector3C a, DVector3C b) {
+		double dx = a.get0() - b.get0(), dy = a.get1() - b.get1(), dz = a.get2() - b.get2();
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	/** @return |(b - a) x (p - a)|^2 */
+	private static double crossLengthSquared(DVector3C a, DVector3C b, DVector3C p) {
+		double ux = b.get0() - a.get0(), uy = b.get1() - a.get1(), uz = b.get2() - a.get2();
+		double vx = p.get0() - a.get0(), vy = p.get1() - a.get1(), vz = p.get2() - a.get2();
+		double cx = uy*vz - uz*vy, cy = uz*vx - ux*vz, cz = ux*vy - uy*vx;
+		return cx*cx + cy*cy + cz*cz;
+	}
+
+	/** @return ((b - a) x (p - a)) . n */
+	private static double crossDot(DVector3C a, DVector3C b, DVector3C p, DVector3C n) {
+		double ux = b.get0() - a.get0(), uy = b.get1() - a.get1(), uz = b.get2() - a.get2();
+		double vx = p.get0() - a.get0(), vy = p.get1() - a.get1(), vz = p.get2() - a.get2();
+		return (uy*vz - uz*vy) * n.get0() + (uz*vx - ux*vz) * n.get1() + (ux*vy - uy*vx) * n.get2();
+	}
+
+	/**
+	 * Moves the selected contacts to the start of the buffer.
+	 */
+	private static void reorder(Pair pair, DContactGeomBuffer contacts, int n) {
+		if (pair.copies.length < n) {
+			DContactGeom[] copies = new DContactGeom[n];
+			for (int i = 0; i < n; i++) {
+				copies[i] = i < pair.copies.length ? pair.copies[i] : new DContactGeom();
+			}
+			pair.copies = copies;
+		}
+		for (int i = 0; i < n; i++) {
+			pair.copies[i].set(contacts.get(pair.selected[i]));
+		}
+		for (int i = 0; i < n; i++) {
+			contacts.get(i).set(pair.copies[i]);
+		}
+	}
+
+	@Override
+	public synchronized void purge() {
+		Iterator<Map.Entry<DGeom, Pair>> it = heads.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<DGeom, Pair> e = it.next();
+			Pair head = null, tail = null;
+			for (Pair p = e.getValue(); p != null; p = p.next) {
+				if (p.touched) {
+					p.touched = false;
+					if (tail == null) {
+						head = p;
+					} else {
+						tail.next = p;
+					}
+					tail = p;
+				}
+			}
+			if (head == null) {
+				it.remove();
+			} else {
+				tail.next = null;
+				e.setValue(head);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		heads.clear();
+	}
+
+	@Override
+	public int getMaxContacts() {
+		return maxContacts;
+	}
+
+	@Override
+	public void setMatchDistance(double distance) {
+		matchDistance = distance;
+	}
+
+	@Override
+	public double getMatchDistance() {
+		return matchDistance;
+	}
+}
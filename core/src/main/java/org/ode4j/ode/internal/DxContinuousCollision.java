@@ -0,0 +1,162 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+
+/**
+ * Speculative contacts of fast bodies, see 
+ * {@link DBody#setContinuousCollisionRadius(double)}.
+ * <p>
+ * The AABBs of the geoms of such a body are extended along the motion of
+ * the body over one step, so that the spaces report the geoms that the body
+ * may reach. When {@link DxGeom#dCollide} finds no contacts for such a pair,
+ * a ray is cast from the body position along the motion relative to the 
+ * other geom. If it hits the other geom, the distance of the swept sphere
+ * to the hit surface is returned as a contact with negative depth. The 
+ * contact joint lets the bodies close this gap in the next step, but not
+ * more, so the body cannot pass through thin geoms.
+ */
+final class DxContinuousCollision {
+
+	/** Ray of each thread, for the sweeps. */
+	private static final ThreadLocal<DxRay> RAY = new ThreadLocal<DxRay>() {
+		@Override
+		protected DxRay initialValue() {
+			DxRay ray = new DxRay(null, 1);
+			ray.setClosestHit(true);
+			return ray;
+		}
+	};
+
+	private DxContinuousCollision() {}
+
+	/**
+	 * Releases the ray of the current thread.
+	 */
+	static void cleanupRayForThread() {
+		RAY.remove();
+	}
+
+	/**
+	 * @return whether the body sweeps its geoms
+	 */
+	static boolean isSwept(DxBody b) {
+		return b != null && b.ccdRadius > 0;
+	}
+
+	/**
+	 * Extends the AABB of a geom of a swept body along the motion of the 
+	 * body over the last step size of its world, if it moves more than its 
+	 * radius.
+	 */
+	static void sweepAABB(DxBody b, DAABB aabb) {
+		double h = b.world.lastStepSize;
+		double dx = b.lvel.get0() * h, dy = b.lvel.get1() * h, dz = b.lvel.get2() * h;
+		double r = b.ccdRadius;
+		if (!(dx * dx + dy * dy + dz * dz > r * r)) {
+			return;
+		}
+		aabb.set(aabb.getMin0() + Math.min(dx, 0), aabb.getMax0() + Math.max(dx, 0),
+				aabb.getMin1() + Math.min(dy, 0), aabb.getMax1() + Math.max(dy, 0),
+				aabb.getMin2() + Math.min(dz, 0), aabb.getMax2() + Math.max(dz, 0));
+	}
+
+	/**
+	 * Creates the speculative contact of two geoms that do not touch, at 
+	 * least one of them belongs to a swept body.
+	 * @return 1 if a contact was created, otherwise 0
+	 */
+	static int collide(DxGeom o1, DxGeom o2, DContactGeomBuffer contacts) {
+		if (o1 instanceof DxRay || o2 instanceof DxRay) {
+			return 0;
+		}
+		final boolean first = isSwept(o1.body);
+		final DxBody b = first ? o1.body : o2.body;
+		final DxBody other = first ? o2.body : o1.body;
+		final double h = b.world.lastStepSize;
+
+		// motion relative to the other body over one step
+		double dx = b.lvel.get0(), dy = b.lvel.get1(), dz = b.lvel.get2();
+		if (other != null) {
+			dx -= other.lvel.get0();
+			dy -= other.lvel.get1();
+			dz -= other.lvel.get2();
+		}
+		dx *= h;
+		dy *= h;
+		dz *= h;
+		final double r = b.ccdRadius;
+		final double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (!(len > r)) {
+			// discrete collision is enough
+			return 0;
+		}
+		dx /= len;
+		dy /= len;
+		dz /= len;
+
+		DxRay ray = RAY.get();
+		DVector3 p = b._posr.pos;
+		ray.set(p.get0(), p.get1(), p.get2(), dx, dy, dz);
+		ray.setLength(len + r);
+		if (DxGeom.dCollide(ray, first ? o2 : o1, 1, contacts, 1) == 0) {
+			return 0;
+		}
+
+		DContactGeom c = contacts.get(0);
+		// normal of the hit surface, towards the swept body
+		double nx = c.normal.get0(), ny = c.normal.get1(), nz = c.normal.get2();
+		double cos = -(nx * dx + ny * dy + nz * dz);
+		if (cos < 0) {
+			nx = -nx;
+			ny = -ny;
+			nz = -nz;
+			cos = -cos;
+		}
+		final double gap = c.depth * cos - r;
+		final int side = c.side2;
+
+		// the point of the sphere closest to the surface, the normal points
+		// into o1
+		c.pos.set(p.get0() - nx * r, p.get1() - ny * r, p.get2() - nz * r);
+		if (first) {
+			c.normal.set(nx, ny, nz);
+			c.side1 = -1;
+			c.side2 = side;
+		} else {
+			c.normal.set(-nx, -ny, -nz);
+			c.side1 = side;
+			c.side2 = -1;
+		}
+		c.depth = -gap;
+		c.g1 = o1;
+		c.g2 = o2;
+		c.speculative = true;
+		return 1;
+	}
+}
@@ -41,6 +41,8 @@ import static org.ode4j.ode.internal.cpp4j.Cmath.fabs;
 import static org.ode4j.ode.internal.cpp4j.Cstdio.fprintf;
 import static org.ode4j.ode.internal.cpp4j.Cstdio.stdout;
 
+import java.util.Arrays;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DColliderFn;
@@ -113,6 +115,20 @@ public class DxConvex extends DxGeom implements DConvex {
 	//edge* edges;
 	private Edge[] edges;
 
+	/** Convexes with fewer points find their support vertex by testing all points. */
+	static final int SUPPORT_HILL_CLIMBING_MIN_POINTS = 32;
+	/** 
+	 * Neighbours of the points along the polygon edges, built on demand: the
+	 * neighbours of point i are at <tt>adjacency[i]</tt> to 
+	 * <tt>adjacency[i+1]-1</tt>. Empty if a point is on no polygon.
+	 */
+	private volatile int[] adjacency;
+	/** 
+	 * Support vertex of the last query, where the next hill climbing starts.
+	 * It is only a hint, colliders on several threads may overwrite it.
+	 */
+	int supportHint;
+
 	/** 
 	 * A Support mapping function for convex shapes.
 	 * @param dir [IN] direction to find the Support Point for
@@ -139,6 +155,111 @@ public class DxConvex extends DxGeom implements DConvex {
 		return index;
 	}
 
+	/**
+	 * Finds the support vertex in a direction given in the local frame.
+	 * <p>
+	 * Large convexes climb from <tt>start</tt> along the polygon edges to the
+	 * neighbour that is furthest in the direction, until no neighbour is 
+	 * further. On a convex polyhedron this is the support vertex. Small 
+	 * convexes, and convexes with points on no polygon, test all points.
+	 * @param start vertex to start from, e.g. the result of the last query
+	 * @return index of the support vertex
+	 */
+	int supportVertex(double dx, double dy, double dz, int start)
+	{
+		final double[] p = points;
+		final int n = pointcount;
+		int[] adj = n < SUPPORT_HILL_CLIMBING_MIN_POINTS ? null : getAdjacency();
+		if (adj == null || adj.length == 0) {
+			int index = 0;
+			double max = -Double.MAX_VALUE;
+			for (int i = 0, i3 = 0; i < n; i++, i3 += 3) {
+				double dot = dx * p[i3] + dy * p[i3 + 1] + dz * p[i3 + 2];
+				if (dot > max) {
+					index = i;
+					max = dot;
+				}
+			}
+			return index;
+		}
+		int v = (start >= 0 && start < n) ? start : 0;
+		double max = dx * p[v * 3] + dy * p[v * 3 + 1] + dz * p[v * 3 + 2];
+		while (true) {
+			int next = v;
+			for (int k = adj[v], end = adj[v + 1]; k < end; k++) {
+				int w = adj[k] * 3;
+				double dot = dx * p[w] + dy * p[w + 1] + dz * p[w + 2];
+				if (dot > max) {
+					next = adj[k];
+					max = dot;
+				}
+			}
+			if (next == v) {
+				return v;
+			}
+			v = next;
+		}
+	}
+
+	private int[] getAdjacency()
+	{
+		int[] adj = adjacency;
+		if (adj == null) {
+			// concurrent callers may build it twice, with the same result
+			adj = buildAdjacency();
+			adjacency = adj;
+		}
+		return adj;
+	}
+
+	private int[] buildAdjacency()
+	{
+		final int n = pointcount;
+		// every polygon adds the two polygon edges of each of its points
+		int[] offset = new int[n + 1];
+		int pos = 0;
+		for (int i = 0; i < planecount; i++) {
+			int m = polygons[pos];
+			for (int j = 1; j <= m; j++) {
+				offset[polygons[pos + j] + 1] += 2;
+			}
+			pos += m + 1;
+		}
+		for (int i = 0; i < n; i++) {
+			if (offset[i + 1] == 0) {
+				return new int[0];
+			}
+			offset[i + 1] += offset[i];
+		}
+		int[] fill = Arrays.copyOf(offset, n);
+		int[] neighbours = new int[offset[n]];
+		pos = 0;
+		for (int i = 0; i < planecount; i++) {
+			int m = polygons[pos];
+			for (int j = 0; j < m; j++) {
+				int a = polygons[pos + 1 + j];
+				int b = polygons[pos + 1 + (j + 1) % m];
+				neighbours[fill[a]++] = b;
+				neighbours[fill[b]++] = a;
+			}
+			pos += m + 1;
+		}
+		// each edge is on two polygons, keep its neighbour once
+		int[] adj = new int[n + 1 + offset[n]];
+		int out = n + 1;
+		for (int i = 0; i < n; i++) {
+			adj[i] = out;
+			Arrays.sort(neighbours, offset[i], offset[i + 1]);
+			for (int k = offset[i]; k < offset[i + 1]; k++) {
+				if (k == offset[i] || neighbours[k] != neighbours[k - 1]) {
+					adj[out++] = neighbours[k];
+				}
+			}
+		}
+		adj[n] = out;
+		return Arrays.copyOf(adj, out);
+	}
+
 	//private:
 	// For Internal Use Only
 	/*! \brief Fills the edges dynamic array based on points and polygons.
@@ -432,6 +553,8 @@ public class DxConvex extends DxGeom implements DConvex {
 		this.points = points;
 		this.pointcount = pointcount;
 		this.polygons=polygons;
+		this.adjacency = null;
+		this.supportHint = 0;
 	}
 
 	//****************************************************************************
@@ -171,6 +171,7 @@ public abstract class DxGeom extends DBase implements DGeom {
 	int _sapIdxDirtyEx; // TZ: Used by SAP-Space.
 	int _sapIdxGeomEx; // TZ: Used by SAP-Space.
 	Block _qtIdxEx; // TZ: Used by QuadTree-Space.
+	int parkedIndex = -1; // Used by Hash-Space for geoms of sleeping islands.
 	
 	//double[] aabb = new double[6];	// cached AABB for this space
 	DAABB _aabb = new DAABB();	// cached AABB for this space
@@ -180,6 +181,30 @@ public abstract class DxGeom extends DBase implements DGeom {
 	//	  dxGeom (dSpace _space, int is_placeable);
 	//	  virtual ~dxGeom();
 
+	/**
+	 * @return whether the body of this geom sleeps in an island, see 
+	 * {@link DxSleepingIslands}. Parked geoms are not paired with each
+	 * other or with static geoms.
+	 */
+	final boolean isParked() {
+		return body != null && body.sleepingIsland != null;
+	}
+
+	/**
+	 * @return whether this geom has no body and is not a space
+	 */
+	final boolean isStatic() {
+		return body == null && !(this instanceof DxSpace);
+	}
+
+	/**
+	 * @return whether the pair need not be tested because neither geom 
+	 * moves: both are parked, or one is parked and the other static
+	 */
+	static boolean isParkedPair(DxGeom g1, DxGeom g2) {
+		return g1.isParked() ? (g2.isParked() || g2.isStatic()) : (g2.isParked() && g1.isStatic());
+	}
+
 	// Set or clear GEOM_ZERO_SIZED flag
 	void updateZeroSizedFlag(boolean is_zero_sized) { 
 		_gflags = is_zero_sized ? (_gflags | GEOM_ZERO_SIZED) : (_gflags & ~GEOM_ZERO_SIZED); 
@@ -280,6 +305,9 @@ public abstract class DxGeom extends DBase implements DGeom {
 			// our aabb functions assume final_posr is up to date
 			recomputePosr(); 
 			computeAABB();
+			if (body != null && body.ccdRadius > 0) {
+				DxContinuousCollision.sweepAABB(body, _aabb);
+			}
 			_gflags &= ~GEOM_AABB_BAD;
 		}
 	}
@@ -1715,6 +1743,15 @@ public abstract class DxGeom extends DBase implements DGeom {
 			}
 		}
 		//else System.out.println("Collider not found: " + o1.getClass() + " / " + o2.getClass());//TODO
+		if (count == 0) {
+			if (DxContinuousCollision.isSwept(o1.body) || DxContinuousCollision.isSwept(o2.body)) {
+				count = DxContinuousCollision.collide(o1, o2, contacts);
+			}
+		} else {
+			for (int i=0; i<count; i++) {
+				contacts.get(i).speculative = false;
+			}
+		}
 		return count;
 	}
 
@@ -1736,6 +1773,19 @@ public abstract class DxGeom extends DBase implements DGeom {
 	// NOTE: this assumes that the geom AABBs are valid on entry
 	// and that both geoms are enabled.
 
+	/**
+	 * Like {@link #collideAABBs(DxGeom, DxGeom, Object, DNearCallback)}, but
+	 * also skips pairs that do not move (see {@link #isParkedPair(DxGeom, DxGeom)}).
+	 * This is for the pairs generated by a space's collide() only;
+	 * collide2() queries, e.g. rays and sensors, still see parked geoms.
+	 */
+	static void collideMovingAABBs (DxGeom g1, DxGeom g2,
+			Object data, DNearCallback callback)
+	{
+		if (isParkedPair(g1, g2)) return;
+		collideAABBs(g1, g2, data, callback);
+	}
+
 	static void collideAABBs (DxGeom g1, DxGeom g2,
 			Object data, DNearCallback callback)
 	{
@@ -52,6 +52,9 @@ public class DxGimpact extends DxTriMesh {
 
 	GimTrimesh m_collision_trimesh;
 
+	/** Version of _Data that the vertices of m_collision_trimesh are from. */
+	private int m_DataVersion;
+
 
 	//void dGeomTriMeshSetLastTransform( DMatrix4 last_trans ) { //stub
 	void dGeomTriMeshSetLastTransform( Object last_trans ) { //stub
@@ -128,6 +131,7 @@ public class DxGimpact extends DxTriMesh {
 
 		//Terminate Trimesh
 		m_collision_trimesh.gim_trimesh_destroy();
+		_Data.removeGeom(this);
 
 //		GimBufferArray.gim_terminate_buffer_managers(m_buffer_managers);
 		super.DESTRUCTOR();
@@ -157,6 +161,12 @@ public class DxGimpact extends DxTriMesh {
 		MakeMatrix(this, transform);
 		m_collision_trimesh.gim_trimesh_set_tranform(transform);
 
+		//Refit to deformed vertices, see DxGimpactData.UpdateData()
+		if (m_DataVersion != _Data.getVersion()) {
+			m_DataVersion = _Data.getVersion();
+			m_collision_trimesh.gim_trimesh_update_source_vertices(_Data.getDataRef());
+		}
+
 		//Update trimesh boxes
 		m_collision_trimesh.gim_trimesh_update();
 
@@ -243,7 +253,12 @@ public class DxGimpact extends DxTriMesh {
 	//void dGeomTriMeshSetData(dGeomID g, dTriMeshDataID Data)
 	void dGeomTriMeshSetData(DTriMeshData Data)
 	{
+		if (this._Data != null) {
+			this._Data.removeGeom(this);
+		}
 		this._Data = (DxGimpactData) Data;
+		this._Data.addGeom(this);
+		this.m_DataVersion = this._Data.getVersion();
 		// I changed my data -- I know nothing about my own AABB anymore.
 		//this._gflags |= (GEOM_DIRTY|GEOM_AABB_BAD);
 		setFlagDirtyAndBad();
@@ -276,6 +291,7 @@ public class DxGimpact extends DxTriMesh {
 					false,					// copy indices?
 					true				// transformed reply
 			);
+			this.m_collision_trimesh.gim_trimesh_set_bvh(_Data.getBVH());
 		}
 	}
 
@@ -31,6 +31,9 @@ import java.util.ArrayList;
 import org.ode4j.math.DVector4;
 import org.ode4j.ode.internal.cpp4j.java.Ref;
 import org.ode4j.ode.internal.cpp4j.java.RefInt;
+import org.ode4j.ode.internal.gimpact.GimBVH;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
 
 /**
  *
@@ -46,6 +49,17 @@ public class DxGimpactData extends DxTriMeshData {
 //	int m_TriStride;
 //	boolean m_single;
 	private float[] m_Angles;
+	/** Neighbour triangle of each edge, found by preprocess(). */
+	private int[] m_Neighbours;
+	/** Incremented by UpdateData(), trimeshes compare it to refit their boxes. */
+	private int m_Version;
+	/** Tree of the triangles, shared by the trimeshes and refitted by UpdateData(). */
+	private GimBVH m_BVH;
+	/** Trimeshes using this data, they are moved by UpdateData(). */
+	private final ArrayList<DxGimpact> m_Geoms = new ArrayList<DxGimpact>();
+
+	/** Minimum number of edges per task of a parallel update. */
+	private static final int MIN_EDGES_PER_TASK = 4096;
 
     DxGimpactData()//dxTriMeshData()
 	{
@@ -67,6 +81,10 @@ public class DxGimpactData extends DxTriMeshData {
     	return m_Indices;
     }
 
+    GimBVH getBVH() {
+    	return m_BVH;
+    }
+
 //    void Build(const void* Vertices, int VertexStride, int VertexCount,
 //	       const void* Indices, int IndexCount, int TriStride,
 //	       const void* Normals,
@@ -117,6 +135,7 @@ public class DxGimpactData extends DxTriMeshData {
  		dIASSERT(Indices!=null);
  		m_Vertices = Vertices;
  		m_Indices = Indices;
+ 		m_BVH = GimBVH.gim_bvh_build(Vertices, Indices);
  		//TODO remove?
  		//check();
   	}
@@ -157,15 +176,65 @@ public class DxGimpactData extends DxTriMeshData {
 
 	@Override
 	public void preprocess() {
-		m_Angles = new GimpactDataPreprocessor(this).buildAngles();
+		GimpactDataPreprocessor preprocessor = new GimpactDataPreprocessor(this);
+		m_Neighbours = preprocessor.buildNeighbours();
+		m_Angles = new float[m_Neighbours.length];
+		preprocessor.buildAngles(m_Neighbours, m_Angles, 0, m_Neighbours.length);
 	}
 
 	@Override
 	//void dxTriMeshData::UpdateData()
-	void UpdateData() {
+	void UpdateData(TaskExecutor executor) {
 		//  BVTree.Refit();
-		// TODO Auto-generated method stub
-		throw new UnsupportedOperationException();
+		// The trimeshes copy the vertices and refit their boxes in computeAABB()
+		m_Version++;
+		if (m_BVH != null) {
+			m_BVH.gim_bvh_refit(m_Vertices, m_Indices);
+		}
+		for (int i = 0; i < m_Geoms.size(); i++) {
+			m_Geoms.get(i).dGeomMoved();
+		}
+		if (m_Angles == null) {
+			return;
+		}
+		// The topology is unchanged, only the angles need to be recomputed
+		final GimpactDataPreprocessor preprocessor = new GimpactDataPreprocessor(this);
+		final int numEdges = m_Neighbours.length;
+		int numTasks = executor == null ? 1 : Math.min(executor.getThreadCount(),
+				numEdges / MIN_EDGES_PER_TASK);
+		if (numTasks <= 1) {
+			preprocessor.buildAngles(m_Neighbours, m_Angles, 0, numEdges);
+			return;
+		}
+		TaskGroup group = executor.group("Trimesh Data Update Group", new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		for (int t = 0; t < numTasks; t++) {
+			final int start = (int) ((long) numEdges * t / numTasks);
+			final int end = (int) ((long) numEdges * (t + 1) / numTasks);
+			group.subtask("Trimesh Data Update", new Runnable() {
+				@Override
+				public void run() {
+					preprocessor.buildAngles(m_Neighbours, m_Angles, start, end);
+				}
+			}).submit();
+		}
+		group.submit();
+		group.awaitCompletion();
+	}
+
+	int getVersion() {
+		return m_Version;
+	}
+
+	void addGeom(DxGimpact geom) {
+		m_Geoms.add(geom);
+	}
+
+	void removeGeom(DxGimpact geom) {
+		m_Geoms.remove(geom);
 	}
 
 	
@@ -302,7 +371,7 @@ public class DxGimpactData extends DxTriMeshData {
 	
 	
 	void dGeomTriMeshDataUpdate() {
-	    UpdateData();
+	    UpdateData(null);
 	}
 	
 
@@ -24,7 +24,7 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.ode4j.ode.DAABB;
 import org.ode4j.ode.DHashSpace;
@@ -47,36 +47,84 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	private static final int MAXINT = Integer.MAX_VALUE;
 
 
-	// prime[i] is the largest prime smaller than 2^i
-	//	#define NUM_PRIMES 31
-	//	static const long int prime[NUM_PRIMES] = {1L,2L,3L,7L,13L,31L,61L,127L,251L,509L,
-	//	  1021L,2039L,4093L,8191L,16381L,32749L,65521L,131071L,262139L,
-	//	  524287L,1048573L,2097143L,4194301L,8388593L,16777213L,33554393L,
-	//	  67108859L,134217689L,268435399L,536870909L,1073741789L};
-	private static final int NUM_PRIMES = 31;
-	private static final int[] prime =  {1,2,3,7,13,31,61,127,251,509,
-		1021,2039,4093,8191,16381,32749,65521,131071,262139,
-		524287,1048573,2097143,4194301,8388593,16777213,33554393,
-		67108859,134217689,268435399,536870909,1073741789};
-
-
-	// an axis aligned bounding box in the hash table
-	private static class dxAABB {
-		int level;		// the level this is stored in (cell size = 2^level)
-		//TODO do not initialise?
-		int[] dbounds = new int[6];	// AABB bounds, discretized to cell size
-		DxGeom geom;		// corresponding geometry object (AABB stored here)
-		int index;		// index of this AABB, starting from 0
-	}
-
-
-	// a hash table node that represents an AABB that intersects a particular cell
-	// at a particular level
-	private static class Node {
-		Node next;		// next node in hash table collision list, 0 if none
-		int x,y,z;		// cell position in space, discretized to cell size
-		dxAABB aabb;		// axis aligned bounding box that intersects this cell
-	};
+	// The hash table and all other working memory of collide() are kept 
+	// between calls, so that a steady state simulation does not allocate.
+	// AABBs are identified by their index, nodes and cells are stored in 
+	// primitive arrays:
+	// - a node represents an AABB that intersects a particular cell, the 
+	//   nodes of a cell form a linked list (nodeNext, -1 terminated).
+	// - the cells are stored in an open addressing hash table, keyed by 
+	//   (level, x, y, z). Slots with an old stamp are empty, this avoids 
+	//   clearing the table on every call.
+	// - pairs of AABBs that have already been tested are stored in a second 
+	//   open addressing table. Its size grows with the number of pairs found,
+	//   not with the square of the number of AABBs.
+
+	private static final int EMPTY = -1;
+
+	// AABBs in the hash table
+	private DxGeom[] boxGeom = new DxGeom[16];	// corresponding geometry object
+	private int[] boxLevel = new int[16];	// the level this is stored in (cell size = 2^level)
+	private int[] boxBounds = new int[16 * 6];	// AABB bounds, discretized to cell size
+	// AABBs too big for the hash table
+	private DxGeom[] bigGeom = new DxGeom[4];
+
+	// nodes
+	private int[] nodeBox = new int[64];
+	private int[] nodeNext = new int[64];
+
+	// cells
+	private int[] cellKey = new int[0];		// level, x, y, z
+	private int[] cellHead = new int[0];	// first node
+	private int[] cellStamp = new int[0];
+	private int cellMask = -1;
+
+	// tested pairs
+	private long[] pairKey = new long[0];
+	private int[] pairStamp = new int[0];
+	private int pairMask = -1;
+	private int pairCount;
+
+	private int stamp = 0;
+	private final RefInt levelTmp = new RefInt();
+	private final int[] db = new int[6];	// discrete bounds at current level
+
+	// result of buildTable()
+	private int n;			// number of AABBs in main list
+	private int nbig;		// number of AABBs too big for hash table
+	private int maxlevel;	// highest level of the AABBs in main list
+
+	// ray casts: the AABBs of each level, number and union of bounds, and
+	// for each task the ray that tested an AABB last (a ray crosses several
+	// cells of an AABB)
+	private int[] levelCount = new int[0];
+	private double[] levelBounds = new double[0];
+	private int[][] rayVisited = new int[0][];
+	private int[] rayStamp = new int[0];
+
+	// Parked geoms (of sleeping islands, see DxGeom.isParked()) are kept in 
+	// a second hash table between calls, it is only rebuilt when they change. 
+	// They are only tested against the active geoms that can move. A parked 
+	// AABB is put into the cells of its level and of all higher levels up to 
+	// parkTop, so that an active AABB finds the smaller parked AABBs in the 
+	// cells of its own level.
+	private DxGeom[] parkGeom = new DxGeom[0];	// indexed by DxGeom.parkedIndex
+	private int[] parkLevel = new int[0];	// level, MAXINT if too big for the hash table
+	private int[] parkBounds = new int[0];	// AABB bounds, discretized to cell size
+	private int[] parkVisited = new int[0];	// stamp of the last active AABB that tested it
+	private int parkVisitStamp;
+	private int parkCount;		// number of parked AABBs
+	private int[] parkBig = new int[0];	// parked AABBs too big for the hash table
+	private int parkBigCount;
+	private int parkMaxLevel;	// highest level of the parked AABBs in the hash table
+	private int parkTop;		// highest level the parked AABBs are stored in
+	private boolean parkStale = true;
+	private int[] parkNodeBox = new int[0];
+	private int[] parkNodeNext = new int[0];
+	private int[] parkCellKey = new int[0];
+	private int[] parkCellHead = new int[0];
+	private boolean[] parkCellUsed = new boolean[0];
+	private int parkCellMask = -1;
 
 
 	// return the `level' of an AABB. the AABB will be put into cells at this
@@ -86,7 +134,7 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	//		size/2 < q <= size
 	// where q is the maximum AABB dimension.
 
-	private static int findLevel (DAABB boundsV) //[6])
+	private static int findLevel (DAABB boundsV, RefInt level) //[6])
 	{
 		//double[] bounds = boundsV.v;
 		//	  if (bounds[0] <= -dInfinity || bounds[1] >= dInfinity ||
@@ -107,27 +155,140 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		if (q2 > q) q = q2;
 
 		// find level such that 0.5 * 2^level < q <= 2^level
-		RefInt level = new RefInt();
 		frexp (q,level);	// q = (0.5 .. 1.0) * 2^level (definition of frexp)
 		return level.i;
 	}
-	// find a virtual memory address for a cell at the given level and x,y,z
-	// position.
-	// @@@ currently this is not very sophisticated, e.g. the scaling
-	// factors could be better designed to avoid collisions, and they should
-	// probably depend on the hash table physical size.
-
-	//	static unsigned long getVirtualAddress (int level, int x, int y, int z)
-	private static int getVirtualAddress (int level, int x, int y, int z)
+
+	private static int cellHash (int level, int x, int y, int z)
+	{
+		int h = level * 0x9E3779B1 ^ x * 0x85EBCA6B ^ y * 0xC2B2AE35 ^ z * 0x27D4EB2F;
+		return h ^ (h >>> 15);
+	}
+
+	private static int pairHash (long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private static int tableSize (int entries)
+	{
+		// at most half full
+		int size = 16;
+		while (size < 2 * entries) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	private void nextStamp ()
+	{
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(cellStamp, 0);
+			Arrays.fill(pairStamp, 0);
+			stamp = 1;
+		}
+	}
+
+	private void ensureBoxCapacity (int n)
+	{
+		if (n > boxGeom.length) {
+			int size = Math.max(n, boxGeom.length * 2);
+			boxGeom = Arrays.copyOf(boxGeom, size);
+			boxLevel = Arrays.copyOf(boxLevel, size);
+			boxBounds = Arrays.copyOf(boxBounds, size * 6);
+		}
+	}
+
+	private void ensureNodeCapacity (int n)
+	{
+		if (n > nodeBox.length) {
+			int size = Math.max(n, nodeBox.length * 2);
+			nodeBox = new int[size];
+			nodeNext = new int[size];
+		}
+		if (2 * n > cellMask + 1) {
+			int size = tableSize(n);
+			cellKey = new int[size * 4];
+			cellHead = new int[size];
+			cellStamp = new int[size];
+			cellMask = size - 1;
+		}
+	}
+
+	// find the cell, return EMPTY if it is not in the table
+	private int findCell (int level, int x, int y, int z)
+	{
+		int slot = cellHash(level, x, y, z) & cellMask;
+		while (cellStamp[slot] == stamp) {
+			int k = slot * 4;
+			if (cellKey[k] == level && cellKey[k+1] == x && cellKey[k+2] == y && cellKey[k+3] == z) {
+				return slot;
+			}
+			slot = (slot + 1) & cellMask;
+		}
+		return EMPTY;
+	}
+
+	private int findOrAddCell (int level, int x, int y, int z)
 	{
-		int r = level*1000 + x*100 + y*10 + z;
-		//TODO remove check ?!?
-		if (r>=Integer.MAX_VALUE) {
-		    throw new IllegalArgumentException("level: " + level + " x=" + x + 
-		            " y=" + y + " z="+ z);
-		}
-		return Math.abs(r);
-		//return level*1000 + x*100 + y*10 + z;
+		int slot = cellHash(level, x, y, z) & cellMask;
+		while (cellStamp[slot] == stamp) {
+			int k = slot * 4;
+			if (cellKey[k] == level && cellKey[k+1] == x && cellKey[k+2] == y && cellKey[k+3] == z) {
+				return slot;
+			}
+			slot = (slot + 1) & cellMask;
+		}
+		int k = slot * 4;
+		cellKey[k] = level;
+		cellKey[k+1] = x;
+		cellKey[k+2] = y;
+		cellKey[k+3] = z;
+		cellHead[slot] = EMPTY;
+		cellStamp[slot] = stamp;
+		return slot;
+	}
+
+	// add the pair (i1, i2), return false if it was already there
+	private boolean addPair (int i1, int i2)
+	{
+		long key = i1 < i2 ? ((long)i1 << 32) | i2 : ((long)i2 << 32) | i1;
+		if (2 * (pairCount + 1) > pairMask + 1) {
+			growPairs();
+		}
+		int slot = pairHash(key) & pairMask;
+		while (pairStamp[slot] == stamp) {
+			if (pairKey[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & pairMask;
+		}
+		pairKey[slot] = key;
+		pairStamp[slot] = stamp;
+		pairCount++;
+		return true;
+	}
+
+	private void growPairs ()
+	{
+		long[] oldKey = pairKey;
+		int[] oldStamp = pairStamp;
+		int size = tableSize(pairCount + 1);
+		size = Math.max(size, (pairMask + 1) * 2);
+		pairKey = new long[size];
+		pairStamp = new int[size];
+		pairMask = size - 1;
+		for (int i = 0; i < oldKey.length; i++) {
+			if (oldStamp[i] == stamp) {
+				int slot = pairHash(oldKey[i]) & pairMask;
+				while (pairStamp[slot] == stamp) {
+					slot = (slot + 1) & pairMask;
+				}
+				pairKey[slot] = oldKey[i];
+				pairStamp[slot] = stamp;
+			}
+		}
 	}
 
 	//****************************************************************************
@@ -186,6 +347,10 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		for (DxGeom g : getGeoms()) {
 			//if ((g._gflags & GEOM_DIRTY)==0) break;
 			if (!g.hasFlagDirty()) break;
+			if (g.isParked()) {
+				// a parked geom has been moved
+				parkStale = true;
+			}
 			if (g instanceof DxSpace) {
 				((DxSpace)g).cleanGeoms();
 			}
@@ -196,147 +361,322 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		lock_count--;
 	}
 
-	@Override
-	public void collide (Object data, DNearCallback callback)
+	/**
+	 * Puts the AABBs of all enabled geoms into the hash table or the big
+	 * boxes list.
+	 * @param park whether parked geoms are left to the parked hash table
+	 */
+	private void buildTable (boolean park)
 	{
-		dAASSERT(callback);
-		//dxGeom geom; //*
-		int i,maxlevel;
-
-		// 0 or 1 geoms can't collide with anything
-		if (getNumGeoms() < 2) return;
-
-		lock_count++;
-		cleanGeoms();
+		nextStamp();
 
-		// create a list of auxiliary information for all geom axis aligned bounding
+		// collect auxiliary information for all geom axis aligned bounding
 		// boxes. set the level for all AABBs. put AABBs larger than the space's
-		// global_maxlevel in the big_boxes list, check everything else against
+		// global_maxlevel in the big boxes list, check everything else against
 		// that list at the end. for AABBs that are not too big, record the maximum
 		// level that we need.
 
-		ArrayList<dxAABB> hash_boxes = new ArrayList<dxAABB>();	// list of AABBs in hash table
-		ArrayList<dxAABB> big_boxes = new ArrayList<dxAABB>();	// list of AABBs too big for hash table
+		n = 0;
+		nbig = 0;
+		int nnodes = 0;	// number of (AABB, cell) nodes 
+		int parked = 0;
 		maxlevel = global_minlevel - 1;
-		for (DxGeom geom : getGeoms()) {
+		for (DxGeom geom = _first; geom != null; geom = geom.getNext()) {
 			if (!GEOM_ENABLED(geom)){
 				continue;
 			}
-			dxAABB aabb = new dxAABB(); //(dxAABB) ALLOCA (sizeof(dxAABB));
-			aabb.geom = geom;
-			// compute level, but prevent cells from getting too small
-			int level = findLevel (geom._aabb);
+			if (park && geom.isParked()) {
+				int pi = geom.parkedIndex;
+				if (pi < 0 || pi >= parkCount || parkGeom[pi] != geom) {
+					parkStale = true;
+				}
+				parked++;
+				continue;
+			}
+			int level = findLevel (geom._aabb, levelTmp);
 			if (level < global_minlevel) level = global_minlevel;
 			if (level <= global_maxlevel) {
-				aabb.level = level;
+				ensureBoxCapacity(n + 1);
+				boxGeom[n] = geom;
+				boxLevel[n] = level;
 				if (level > maxlevel) maxlevel = level;
 				// cellsize = 2^level
 				double cellsize = ldexp (1.0,level);
 				// discretize AABB position to cell size
-				for (i=0; i < 3; i++) {
-					aabb.dbounds[2*i] = (int)Math.floor (geom._aabb.getMin(i)/cellsize);
-					aabb.dbounds[2*i+1] = (int)Math.floor (geom._aabb.getMax(i)/cellsize);
+				int cells = 1;
+				for (int i=0; i < 3; i++) {
+					int lo = (int)Math.floor (geom._aabb.getMin(i)/cellsize);
+					int hi = (int)Math.floor (geom._aabb.getMax(i)/cellsize);
+					boxBounds[n*6 + 2*i] = lo;
+					boxBounds[n*6 + 2*i+1] = hi;
+					cells *= hi - lo + 1;
 				}
-				// set AABB index
-				aabb.index = hash_boxes.size();
-	            // aabb goes in main list
-	            hash_boxes.add(aabb);
+				nnodes += cells;
+				n++;
 			}
 			else {
-				// aabb is too big, put it in the big_boxes list. we don't care about
-				// setting level, dbounds, index, or the maxlevel
-				big_boxes.add(aabb);
+				// this AABB is too big, store it in the big boxes list. we don't
+				// care about other fields.
+				if (nbig == bigGeom.length) {
+					bigGeom = Arrays.copyOf(bigGeom, nbig * 2);
+				}
+				bigGeom[nbig++] = geom;
 			}
 		}
 
-	    int n = hash_boxes.size(); // number of AABBs in main list
+		if (park && (parkStale || parked != parkCount || (parked > 0 && maxlevel > parkTop))) {
+			buildParkedTable();
+		}
 
-		// for `n' objects, an n*n array of bits is used to record if those objects
-		// have been intersection-tested against each other yet. this array can
-		// grow large with high n, but oh well...
-		int tested_rowsize = (n+7) >> 3;	// number of bytes needed for n bits
-		//std::vector<unsigned char> tested(n * tested_rowsize);
-		int[] tested = new int[n * tested_rowsize];
+		ensureNodeCapacity(nnodes);
 
-		// create a hash table to store all AABBs. each AABB may take up to 8 cells.
-		// we use chaining to resolve collisions, but we use a relatively large table
-		// to reduce the chance of collisions.
+		// add each AABB to the hash table (may need to add it to up to 8 cells)
+		int node = 0;
+		for (int bi = 0; bi < n; bi++) {
+			int level = boxLevel[bi];
+			int b = bi * 6;
+			for (int xi = boxBounds[b]; xi <= boxBounds[b+1]; xi++) {
+				for (int yi = boxBounds[b+2]; yi <= boxBounds[b+3]; yi++) {
+					for (int zi = boxBounds[b+4]; zi <= boxBounds[b+5]; zi++) {
+						int cell = findOrAddCell (level,xi,yi,zi);
+						nodeBox[node] = bi;
+						nodeNext[node] = cellHead[cell];
+						cellHead[cell] = node;
+						node++;
+					}
+				}
+			}
+		}
+	}
 
-		// compute hash table size sz to be a prime > 8*n
-		for (i=0; i<NUM_PRIMES; i++) {
-			if (prime[i] >= (8*n)) break;
+	/**
+	 * Puts the AABBs of all enabled parked geoms into the parked hash table
+	 * or the parked big boxes list.
+	 */
+	private void buildParkedTable ()
+	{
+		parkStale = false;
+		int oldCount = parkCount;
+		parkCount = 0;
+		parkBigCount = 0;
+		parkMaxLevel = global_minlevel - 1;
+		for (DxGeom geom = _first; geom != null; geom = geom.getNext()) {
+			if (!GEOM_ENABLED(geom) || !geom.isParked()) {
+				continue;
+			}
+			if (parkCount == parkGeom.length) {
+				int size = Math.max(16, parkCount * 2);
+				parkGeom = Arrays.copyOf(parkGeom, size);
+				parkLevel = Arrays.copyOf(parkLevel, size);
+				parkBounds = Arrays.copyOf(parkBounds, size * 6);
+				parkVisited = Arrays.copyOf(parkVisited, size);
+				parkBig = Arrays.copyOf(parkBig, size);
+			}
+			int pi = parkCount++;
+			parkGeom[pi] = geom;
+			geom.parkedIndex = pi;
+			int level = findLevel (geom._aabb, levelTmp);
+			if (level < global_minlevel) level = global_minlevel;
+			if (level <= global_maxlevel) {
+				parkLevel[pi] = level;
+				if (level > parkMaxLevel) parkMaxLevel = level;
+				double cellsize = ldexp (1.0,level);
+				for (int i=0; i < 3; i++) {
+					parkBounds[pi*6 + 2*i] = (int)Math.floor (geom._aabb.getMin(i)/cellsize);
+					parkBounds[pi*6 + 2*i+1] = (int)Math.floor (geom._aabb.getMax(i)/cellsize);
+				}
+			}
+			else {
+				parkLevel[pi] = MAXINT;
+				parkBig[parkBigCount++] = pi;
+			}
 		}
-		if (i >= NUM_PRIMES) 
-			i = NUM_PRIMES-1;	// probably pointless
-		int sz = prime[i];
+		// do not keep geoms alive that are not parked anymore
+		if (oldCount > parkCount) {
+			Arrays.fill(parkGeom, parkCount, oldCount, null);
+		}
+		parkTop = Math.max(maxlevel, parkMaxLevel);
 
-		// allocate and initialize hash table node pointers
-		//std::vector<Node*> table(sz);
-		Node[] table = new Node[sz];
+		// count the nodes of all levels
+		int nnodes = 0;
+		for (int pi = 0; pi < parkCount; pi++) {
+			if (parkLevel[pi] == MAXINT) {
+				continue;
+			}
+			for (int i=0; i<6; i++) db[i] = parkBounds[pi*6 + i];
+			for (int level = parkLevel[pi]; level <= parkTop; level++) {
+				nnodes += (db[1] - db[0] + 1) * (db[3] - db[2] + 1) * (db[5] - db[4] + 1);
+				for (int i=0; i<6; i++) db[i] >>= 1;
+			}
+		}
+		if (nnodes > parkNodeBox.length) {
+			int size = Math.max(nnodes, parkNodeBox.length * 2);
+			parkNodeBox = new int[size];
+			parkNodeNext = new int[size];
+		}
+		if (2 * nnodes > parkCellMask + 1) {
+			int size = tableSize(nnodes);
+			parkCellKey = new int[size * 4];
+			parkCellHead = new int[size];
+			parkCellUsed = new boolean[size];
+			parkCellMask = size - 1;
+		}
+		else {
+			Arrays.fill(parkCellUsed, false);
+		}
 
-		// add each AABB to the hash table (may need to add it to up to 8 cells)
-		//TODO use proper List here!
-		//for (aabb=first_aabb; aabb != null; aabb=aabb.next) {
-		for (dxAABB aabb: hash_boxes) {
-			int[] dbounds = aabb.dbounds;
-			for (int xi = dbounds[0]; xi <= dbounds[1]; xi++) {
-				for (int yi = dbounds[2]; yi <= dbounds[3]; yi++) {
-					for (int zi = dbounds[4]; zi <= dbounds[5]; zi++) {
-						// get the hash index  TODO TZ: cast to int
-						int hi = getVirtualAddress (aabb.level,xi,yi,zi) % sz;
-						// add a new node to the hash table
-						Node node = new Node();//(Node) ALLOCA (sizeof (Node));
-						node.x = xi;
-						node.y = yi;
-						node.z = zi;
-						node.aabb = aabb;
-						node.next = table[hi];
-						table[hi] = node;
+		int node = 0;
+		for (int pi = 0; pi < parkCount; pi++) {
+			if (parkLevel[pi] == MAXINT) {
+				continue;
+			}
+			for (int i=0; i<6; i++) db[i] = parkBounds[pi*6 + i];
+			for (int level = parkLevel[pi]; level <= parkTop; level++) {
+				for (int xi = db[0]; xi <= db[1]; xi++) {
+					for (int yi = db[2]; yi <= db[3]; yi++) {
+						for (int zi = db[4]; zi <= db[5]; zi++) {
+							int cell = findOrAddParkedCell (level,xi,yi,zi);
+							parkNodeBox[node] = pi;
+							parkNodeNext[node] = parkCellHead[cell];
+							parkCellHead[cell] = node;
+							node++;
+						}
 					}
 				}
+				for (int i=0; i<6; i++) db[i] >>= 1;
+			}
+		}
+	}
+
+	private int findParkedCell (int level, int x, int y, int z)
+	{
+		int slot = cellHash(level, x, y, z) & parkCellMask;
+		while (parkCellUsed[slot]) {
+			int k = slot * 4;
+			if (parkCellKey[k] == level && parkCellKey[k+1] == x && parkCellKey[k+2] == y && parkCellKey[k+3] == z) {
+				return slot;
+			}
+			slot = (slot + 1) & parkCellMask;
+		}
+		return EMPTY;
+	}
+
+	private int findOrAddParkedCell (int level, int x, int y, int z)
+	{
+		int slot = cellHash(level, x, y, z) & parkCellMask;
+		while (parkCellUsed[slot]) {
+			int k = slot * 4;
+			if (parkCellKey[k] == level && parkCellKey[k+1] == x && parkCellKey[k+2] == y && parkCellKey[k+3] == z) {
+				return slot;
 			}
+			slot = (slot + 1) & parkCellMask;
 		}
+		int k = slot * 4;
+		parkCellKey[k] = level;
+		parkCellKey[k+1] = x;
+		parkCellKey[k+2] = y;
+		parkCellKey[k+3] = z;
+		parkCellHead[slot] = EMPTY;
+		parkCellUsed[slot] = true;
+		return slot;
+	}
+
+	private int nextParkVisitStamp ()
+	{
+		if (++parkVisitStamp == Integer.MAX_VALUE) {
+			Arrays.fill(parkVisited, 0);
+			parkVisitStamp = 1;
+		}
+		return parkVisitStamp;
+	}
+
+	/**
+	 * Tests the active geoms that can move against the parked geoms.
+	 */
+	private void collideParked (Object data, DNearCallback callback)
+	{
+		for (int bi = 0; bi < n; bi++) {
+			DxGeom g = boxGeom[bi];
+			if (g.isStatic()) {
+				continue;
+			}
+			int vs = nextParkVisitStamp();
+			for (int i=0; i<6; i++) db[i] = boxBounds[bi*6 + i];
+			int top = Math.max(boxLevel[bi], parkMaxLevel);
+			for (int level = boxLevel[bi]; level <= top; level++) {
+				for (int xi = db[0]; xi <= db[1]; xi++) {
+					for (int yi = db[2]; yi <= db[3]; yi++) {
+						for (int zi = db[4]; zi <= db[5]; zi++) {
+							int cell = findParkedCell (level,xi,yi,zi);
+							if (cell == EMPTY) {
+								continue;
+							}
+							for (int nd = parkCellHead[cell]; nd != EMPTY; nd = parkNodeNext[nd]) {
+								int pi = parkNodeBox[nd];
+								if (parkVisited[pi] != vs) {
+									parkVisited[pi] = vs;
+									collideMovingAABBs (g,parkGeom[pi],data,callback);
+								}
+							}
+						}
+					}
+				}
+				for (int i=0; i<6; i++) db[i] >>= 1;
+			}
+			for (int bj = 0; bj < parkBigCount; bj++) {
+				collideMovingAABBs (g,parkGeom[parkBig[bj]],data,callback);
+			}
+		}
+		for (int bi = 0; bi < nbig; bi++) {
+			DxGeom g = bigGeom[bi];
+			if (g.isStatic()) {
+				continue;
+			}
+			for (int pi = 0; pi < parkCount; pi++) {
+				collideMovingAABBs (g,parkGeom[pi],data,callback);
+			}
+		}
+	}
+
+	@Override
+	public void collide (Object data, DNearCallback callback)
+	{
+		dAASSERT(callback);
+		int i;
+
+		// 0 or 1 geoms can't collide with anything
+		if (getNumGeoms() < 2) return;
+
+		lock_count++;
+		cleanGeoms();
+		buildTable(true);
+		pairCount = 0;
 
 		// now that all AABBs are loaded into the hash table, we do the actual
 		// collision detection. for all AABBs, check for other AABBs in the
 		// same cells for collisions, and then check for other AABBs in all
 		// intersecting higher level cells.
 
-		int[] db = new int[6];			// discrete bounds at current level
-		for (dxAABB aabb: hash_boxes) {
+		for (int bi = 0; bi < n; bi++) {
 			// we are searching for collisions with aabb
-			for (i=0; i<6; i++) db[i] = aabb.dbounds[i];
-			for (int level = aabb.level; level <= maxlevel; level++) {
+			for (i=0; i<6; i++) db[i] = boxBounds[bi*6 + i];
+			for (int level = boxLevel[bi]; level <= maxlevel; level++) {
 				for (int xi = db[0]; xi <= db[1]; xi++) {
 					for (int yi = db[2]; yi <= db[3]; yi++) {
 						for (int zi = db[4]; zi <= db[5]; zi++) {
-							// get the hash index
-							//int TZ long 
-							int hi = getVirtualAddress (level,xi,yi,zi) % sz;
-							// search all nodes at this index
-							for (Node node = table[hi]; node != null; node=node.next) {
-								// node points to an AABB that may intersect aabb
-								if (node.aabb == aabb) 
+							int cell = findCell (level,xi,yi,zi);
+							if (cell == EMPTY) {
+								continue;
+							}
+							// search all nodes in this cell
+							for (int nd = cellHead[cell]; nd != EMPTY; nd = nodeNext[nd]) {
+								int other = nodeBox[nd];
+								if (other == bi) 
 									continue;
-								if (node.aabb.level == level &&
-										node.x == xi && node.y == yi && node.z == zi) {
-									// see if aabb and node->aabb have already been tested
-									// against each other
-									//TZ unsigned char mask;
-									int mask;
-									if (aabb.index <= node.aabb.index) {
-										i = (aabb.index * tested_rowsize)+(node.aabb.index >> 3);
-										mask = 1 << (node.aabb.index & 7);
-									}
-									else {
-										i = (node.aabb.index * tested_rowsize)+(aabb.index >> 3);
-										mask = 1 << (aabb.index & 7);
-									}
-									dIASSERT (i >= 0 && i < (tested_rowsize*n));
-									if ((tested[i] & mask)==0) {
-										collideAABBs (aabb.geom,node.aabb.geom,data,callback);
-									}
-									tested[i] |= mask;
+								// see if the pair has already been tested, 
+								// if not, test the two AABBs
+								if (addPair (bi, other)) {
+									collideMovingAABBs (boxGeom[bi],boxGeom[other],data,callback);
 								}
 							}
 						}
@@ -349,33 +689,161 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		}
 
 		// every AABB in the normal list must now be intersected against every
-		// AABB in the big_boxes list. so let's hope there are not too many objects
-		// in the big_boxes list.
-		for (dxAABB aabb: hash_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		// AABB in the big boxes list. so let's hope there are not too many objects
+		// in the big boxes list.
+		for (int bi = 0; bi < n; bi++) {
+			for (int bj = 0; bj < nbig; bj++) {
+				collideMovingAABBs (boxGeom[bi],bigGeom[bj],data,callback);
 			}
 		}
 
-		// intersected all AABBs in the big_boxes list together
-		for (dxAABB aabb: big_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		// intersected all AABBs in the big boxes list together
+		for (int bi = 0; bi < nbig; bi++) {
+			for (int bj = bi + 1; bj < nbig; bj++) {
+				collideMovingAABBs (bigGeom[bi],bigGeom[bj],data,callback);
 			}
 		}
 
-		//(TZ): Not necessary in Java
-//	    // deallocate table
-//	    for (int ii=0; ii<table.length; ++i)
-//	        for (Node node = table[ii]; node != null;) {
-//	            Node next = node.next;
-//	            delete node;
-//	            node = next;
-//	        }
+		// only the active geoms are tested against the parked ones
+		if (parkCount > 0) {
+			collideParked(data, callback);
+		}
+
+		// do not keep destroyed geoms alive
+		Arrays.fill(boxGeom, 0, n, null);
+		Arrays.fill(bigGeom, 0, nbig, null);
 
 		lock_count--;
 	}
 
+	@Override
+	void prepareRayCast (int numTasks)
+	{
+		cleanGeoms();
+		// rays are cast against the parked geoms as well
+		buildTable(false);
+
+		// number and union of the AABBs of each level, rays are only
+		// traced through the cells of a level inside that union
+		int levels = global_maxlevel - global_minlevel + 1;
+		if (levelCount.length < levels) {
+			levelCount = new int[levels];
+			levelBounds = new double[levels * 6];
+		}
+		Arrays.fill(levelCount, 0);
+		for (int bi = 0; bi < n; bi++) {
+			int l = boxLevel[bi] - global_minlevel;
+			DAABB aabb = boxGeom[bi]._aabb;
+			if (levelCount[l]++ == 0) {
+				for (int i = 0; i < 3; i++) {
+					levelBounds[l*6 + i] = aabb.getMin(i);
+					levelBounds[l*6 + 3 + i] = aabb.getMax(i);
+				}
+			} else {
+				for (int i = 0; i < 3; i++) {
+					levelBounds[l*6 + i] = Math.min(levelBounds[l*6 + i], aabb.getMin(i));
+					levelBounds[l*6 + 3 + i] = Math.max(levelBounds[l*6 + 3 + i], aabb.getMax(i));
+				}
+			}
+		}
+
+		if (rayVisited.length < numTasks) {
+			rayVisited = Arrays.copyOf(rayVisited, numTasks);
+			rayStamp = Arrays.copyOf(rayStamp, numTasks);
+		}
+		for (int t = 0; t < numTasks; t++) {
+			if (rayVisited[t] == null || rayVisited[t].length < n) {
+				rayVisited[t] = new int[boxGeom.length];
+				rayStamp[t] = 0;
+			}
+		}
+	}
+
+	@Override
+	void finishRayCast ()
+	{
+		// do not keep destroyed geoms alive
+		Arrays.fill(boxGeom, 0, n, null);
+		Arrays.fill(bigGeom, 0, nbig, null);
+	}
+
+	@Override
+	boolean rayCast (DxRayCaster.Ray ray)
+	{
+		for (int bi = 0; bi < nbig; bi++) {
+			if (!ray.visit(bigGeom[bi])) {
+				return false;
+			}
+		}
+		if (n == 0) {
+			return true;
+		}
+
+		int[] visited = rayVisited[ray.task];
+		int rs = ++rayStamp[ray.task];
+		if (rs == Integer.MAX_VALUE) {
+			Arrays.fill(visited, 0);
+			rs = rayStamp[ray.task] = 1;
+		}
+
+		// walk the cells of each level along the ray (3D DDA)
+		for (int level = global_minlevel; level <= maxlevel; level++) {
+			int l = level - global_minlevel;
+			if (levelCount[l] == 0 || !ray.clip(levelBounds[l*6], levelBounds[l*6+1], 
+					levelBounds[l*6+2], levelBounds[l*6+3], levelBounds[l*6+4], levelBounds[l*6+5])) {
+				continue;
+			}
+			double cellsize = ldexp (1.0,level);
+			double t = ray.enter;
+			double tEnd = ray.exit;
+			int xi = (int)Math.floor ((ray.px + ray.dx * t) / cellsize);
+			int yi = (int)Math.floor ((ray.py + ray.dy * t) / cellsize);
+			int zi = (int)Math.floor ((ray.pz + ray.dz * t) / cellsize);
+			int sx = ray.dx > 0 ? 1 : -1;
+			int sy = ray.dy > 0 ? 1 : -1;
+			int sz = ray.dz > 0 ? 1 : -1;
+			// ray distance to the next cell boundary, and between boundaries
+			double nx = ray.dx != 0 ? ((xi + (sx > 0 ? 1 : 0)) * cellsize - ray.px) / ray.dx : dInfinity;
+			double ny = ray.dy != 0 ? ((yi + (sy > 0 ? 1 : 0)) * cellsize - ray.py) / ray.dy : dInfinity;
+			double nz = ray.dz != 0 ? ((zi + (sz > 0 ? 1 : 0)) * cellsize - ray.pz) / ray.dz : dInfinity;
+			double ddx = ray.dx != 0 ? cellsize / Math.abs(ray.dx) : dInfinity;
+			double ddy = ray.dy != 0 ? cellsize / Math.abs(ray.dy) : dInfinity;
+			double ddz = ray.dz != 0 ? cellsize / Math.abs(ray.dz) : dInfinity;
+			for (;;) {
+				int cell = findCell (level,xi,yi,zi);
+				if (cell != EMPTY) {
+					for (int nd = cellHead[cell]; nd != EMPTY; nd = nodeNext[nd]) {
+						int bi = nodeBox[nd];
+						if (visited[bi] != rs) {
+							visited[bi] = rs;
+							if (!ray.visit(boxGeom[bi])) {
+								return false;
+							}
+						}
+					}
+				}
+				// the ray gets shorter with every closer hit
+				if (ray.length < tEnd) {
+					tEnd = ray.length;
+				}
+				if (nx <= ny && nx <= nz) {
+					if (nx > tEnd) break;
+					xi += sx;
+					nx += ddx;
+				} else if (ny <= nz) {
+					if (ny > tEnd) break;
+					yi += sy;
+					ny += ddy;
+				} else {
+					if (nz > tEnd) break;
+					zi += sz;
+					nz += ddz;
+				}
+			}
+		}
+		return true;
+	}
+
 	@Override
 	void collide2 (Object data, DxGeom geom,
 			DNearCallback callback)
@@ -34,6 +34,8 @@ import static org.ode4j.ode.internal.Common.dFabs;
 import static org.ode4j.ode.internal.Common.dFloor;
 import static org.ode4j.ode.internal.Common.dIASSERT;
 
+import java.util.Arrays;
+
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
@@ -173,19 +175,126 @@ public class DxHeightfield extends DxAbstractHeightfield {
 	//		HeightFieldVertex   *tempHeightInstances;
 	//	    size_t              tempHeightBufferSizeX;
 	//	    size_t              tempHeightBufferSizeZ;
-	//private HeightFieldPlane[]    tempPlaneBuffer;
-	private ObjArray<HeightFieldPlane>[]  tempPlaneBuffer;
-	private HeightFieldPlane[]    tempPlaneInstances;
-	private int              tempPlaneBufferSize;
+	/**
+	 * Scratch memory of the zone collider. The buffers are not kept in the 
+	 * geom but in one instance per thread that is shared by all heightfields, 
+	 * so that different geoms can be collided with the same heightfield from 
+	 * several threads at once. The buffers only grow and keep their elements 
+	 * when they do, a thread that collides zones of about the same size does 
+	 * not allocate memory.
+	 */
+	private static final class ZoneScratch {
+		//private HeightFieldPlane[]    tempPlaneBuffer;
+		ObjArray<HeightFieldPlane>[]  tempPlaneBuffer;
+		HeightFieldPlane[]    tempPlaneInstances = new HeightFieldPlane[0];
+
+		HeightFieldTriangle[] tempTriangleBuffer = new HeightFieldTriangle[0];
+
+		//private HeightFieldVertex[]  tempHeightBuffer;
+		ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
+		HeightFieldVertex[]   tempHeightInstances = new HeightFieldVertex[0];
+		int              tempHeightBufferSizeX;
+		int              tempHeightBufferSizeZ;
+
+		// used to be m_contacts of the heightfield data
+		final DContactGeomBuffer planeContacts = new DContactGeomBuffer(HEIGHTFIELDMAXCONTACTPERCELL);
+		final DxPlane plane = new DxPlane(null,0,0,0,0);
+		final DxRay ray = new DxRay(null, 1);
+		final DVector3 triplaneV = new DVector3();
+		final DVector3 edge1 = new DVector3(), edge2 = new DVector3();
+
+		// backup of o2 in dCollideHeightfield()
+		final DVector3 posbak = new DVector3();
+		final DMatrix3 Rbak = new DMatrix3();
+		final DAABB aabbbak = new DAABB();
+		final DVector3 pos0 = new DVector3(), pos1 = new DVector3();
+		final DMatrix3 R1 = new DMatrix3();
+
+		final DColliderFn rayPlane = new DxRay.CollideRayPlane();
+		final DColliderFn raySphere = new DxRay.CollideRaySphere();
+		final DColliderFn spherePlane = new DxSphere.CollideSpherePlane();
+		final DColliderFn rayBox = new DxRay.CollideRayBox();
+		final DColliderFn boxPlane = new CollideBoxPlane();
+		final DColliderFn rayCapsule = new DxRay.CollideRayCapsule();
+		final DColliderFn capsulePlane = new DxCapsule.CollideCapsulePlane();
+		final DColliderFn rayCylinder = new DxRay.CollideRayCylinder();
+		final DColliderFn cylinderPlane = new CollideCylinderPlane();
+		final DColliderFn rayConvex = new DxConvex.CollideRayConvex();
+		final DColliderFn convexPlane = new DxConvex.CollideConvexPlane();
+		final DColliderFn rayTrimesh = new CollideRayTrimesh();
+		final DColliderFn trimeshPlane = new CollideTrimeshPlane();
+
+		void allocateTriangleBuffer(int numTri)
+		{
+			if (tempTriangleBuffer.length >= numTri) {
+				return;
+			}
+			int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
+			int i = tempTriangleBuffer.length;
+			tempTriangleBuffer = Arrays.copyOf(tempTriangleBuffer, alignedNumTri);
+			for (; i < alignedNumTri; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
+		}
 
-	private HeightFieldTriangle[] tempTriangleBuffer;
-	private int              tempTriangleBufferSize;
+		@SuppressWarnings("unchecked")
+		void allocatePlaneBuffer(int numTri)
+		{
+			if (tempPlaneInstances.length >= numTri) {
+				return;
+			}
+			int alignedNumTri = AlignBufferSize(numTri, TEMP_PLANE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
+			int indexTri = tempPlaneInstances.length;
+			tempPlaneInstances = Arrays.copyOf(tempPlaneInstances, alignedNumTri);
+			for (; indexTri != alignedNumTri; indexTri++)
+				tempPlaneInstances[indexTri] = new HeightFieldPlane();
+
+			// the order of the old entries got lost by sortPlanes(), it does not matter
+			tempPlaneBuffer = new ObjArray[alignedNumTri];
+			for (indexTri = 0; indexTri != alignedNumTri; indexTri++)
+			{
+				tempPlaneBuffer[indexTri] = new ObjArray<HeightFieldPlane>(tempPlaneInstances, indexTri);
+			}
+		}
 
-	//private HeightFieldVertex[]  tempHeightBuffer;
-	private ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
-	private HeightFieldVertex[]   tempHeightInstances;
-	private int              tempHeightBufferSizeX;
-	private int              tempHeightBufferSizeZ;
+		@SuppressWarnings("unchecked")
+		void allocateHeightBuffer(int numX, int numZ)
+		{
+			if (tempHeightBufferSizeX >= numX && tempHeightBufferSizeZ >= numZ) {
+				return;
+			}
+			int alignedNumX = Math.max(tempHeightBufferSizeX,
+					AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X));
+			int alignedNumZ = Math.max(tempHeightBufferSizeZ,
+					AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z));
+			tempHeightBufferSizeX = alignedNumX;
+			tempHeightBufferSizeZ = alignedNumZ;
+			int numCells = alignedNumX * alignedNumZ;
+			int i = tempHeightInstances.length;
+			tempHeightInstances = Arrays.copyOf(tempHeightInstances, numCells);
+			for (; i < numCells; i++) {
+				tempHeightInstances[i] = new HeightFieldVertex();
+			}
+
+			tempHeightBuffer = new ObjArray[alignedNumX];
+			for (int indexX = 0; indexX != alignedNumX; indexX++)
+			{
+				tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
+			}
+		}
+	}
+
+	private static final ThreadLocal<ZoneScratch> zoneScratch = new ThreadLocal<ZoneScratch>() {
+		@Override
+		protected ZoneScratch initialValue() {
+			return new ZoneScratch();
+		}
+	};
+
+	/**
+	 * Releases the collision scratch memory of the calling thread.
+	 */
+	static void cleanupZoneScratchForThread() {
+		zoneScratch.remove();
+	}
 
 
 
@@ -202,15 +311,6 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		//	    tempHeightBufferSizeX(0),
 		//	    tempHeightBufferSizeZ(0)
 		super( space, bPlaceable );
-		tempPlaneBuffer = null;
-		tempPlaneInstances = null;
-		tempPlaneBufferSize = 0;
-		tempTriangleBuffer = null;
-		tempTriangleBufferSize = 0;
-		tempHeightBuffer = null;
-		tempHeightInstances = null;
-		tempHeightBufferSizeX = 0;
-		tempHeightBufferSizeZ = 0;
 
 		type = dHeightfieldClass;
 		m_p_data = data;
@@ -358,90 +458,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 	// dxHeightfield destructor
 	//dxHeightfield::~dxHeightfield()
-	@Override
-	public void DESTRUCTOR()
-	{
-		resetTriangleBuffer();
-		resetPlaneBuffer();
-		resetHeightBuffer();
-		super.DESTRUCTOR();
-	}
-
-	private void allocateTriangleBuffer(int numTri)
-	{
-		int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
-		tempTriangleBufferSize = alignedNumTri;
-		tempTriangleBuffer = new HeightFieldTriangle[alignedNumTri];
-		for (int i = 0; i < tempTriangleBuffer.length; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
-	}
-
-	private void resetTriangleBuffer()
-	{
-		//delete[] tempTriangleBuffer;
-		tempTriangleBuffer = null;
-		//TODO set size == 0? TZ
-	}
-
-	@SuppressWarnings("unchecked")
-    private void allocatePlaneBuffer(int numTri)
-	{
-		int alignedNumTri = AlignBufferSize(numTri, TEMP_PLANE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
-		tempPlaneBufferSize = alignedNumTri;
-		//tempPlaneBuffer = new HeightFieldPlane [alignedNumTri];
-		tempPlaneBuffer = new ObjArray[alignedNumTri];
-		tempPlaneInstances = new HeightFieldPlane[alignedNumTri];
-		for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
-			tempPlaneInstances[indexTri] = new HeightFieldPlane();
-
-		//HeightFieldPlane ptrPlaneMatrix = tempPlaneInstances;
-		for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
-		{
-			//tempPlaneBuffer[indexTri] = tempPlaneInstances[indexTri];//ptrPlaneMatrix;
-			//ptrPlaneMatrix += 1;
-			tempPlaneBuffer[indexTri] = new ObjArray<HeightFieldPlane>(tempPlaneInstances, indexTri);//ptrPlaneMatrix;
-		}
-	}
-
-	private void resetPlaneBuffer()
-	{
-		//		delete[] tempPlaneInstances;
-		//		delete[] tempPlaneBuffer;
-		tempPlaneInstances = null;
-		tempPlaneBuffer = null;
-	}
-
-	@SuppressWarnings("unchecked")
-    private void allocateHeightBuffer(int numX, int numZ)
-	{
-		int alignedNumX = AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X);
-		int alignedNumZ = AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z);
-		tempHeightBufferSizeX = alignedNumX;
-		tempHeightBufferSizeZ = alignedNumZ;
-		//tempHeightBuffer = new HeightFieldVertex *[alignedNumX];
-		tempHeightBuffer = new ObjArray[alignedNumX];
-		int numCells = alignedNumX * alignedNumZ;
-		tempHeightInstances = new HeightFieldVertex [numCells];
-		for (int i = 0; i < tempHeightInstances.length; i++) {
-			tempHeightInstances[i] = new HeightFieldVertex();
-		}
-
-		//HeightFieldVertex *ptrHeightMatrix = tempHeightInstances;
-		for (int indexX = 0; indexX != alignedNumX; indexX++)
-		{
-			//			tempHeightBuffer[indexX] = ptrHeightMatrix;
-			//			ptrHeightMatrix += alignedNumZ;
-			//tempHeightBuffer[indexX] = tempHeightInstances[indexX];
-			tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
-		}
-	}
-
-	void resetHeightBuffer()
-	{
-		//delete[] tempHeightInstances;
-		//delete[] tempHeightBuffer;
-		tempHeightInstances = null;
-		tempHeightBuffer = null;
-	}
+	// The temporary buffers are kept per thread, see ZoneScratch.
 
 	//////// Heightfield geom interface ////////////////////////////////////////////////////
 
@@ -481,7 +498,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 	//typedef int HeightFieldVertexCoords[2];
 
-	class HeightFieldVertex
+	static class HeightFieldVertex
 	{
 		//	public:
 		HeightFieldVertex(){};
@@ -503,7 +520,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 //		HeightFieldVertex[]   vertices = new HeightFieldVertex[2];  //TODO v1/v1 (TZ)
 //	};
 
-	private class HeightFieldTriangle
+	private static class HeightFieldTriangle
 	{
 		//public:
 		HeightFieldTriangle(){};
@@ -525,7 +542,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		boolean                state;
 	};
 
-	private class HeightFieldPlane
+	private static class HeightFieldPlane
 	{
 		void setMinMax()
 		{
@@ -587,6 +604,24 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		double get( DGeom g, double x, double y, double z );
 	}
 
+	private static final dGetDepthFn SPHERE_DEPTH = new dGetDepthFn() {
+		@Override
+		public double get(DGeom g, double x, double y, double z) {
+			return ((DxSphere)g).dGeomSpherePointDepth(x, y, z);
+		}};
+
+	private static final dGetDepthFn BOX_DEPTH = new dGetDepthFn() {
+		@Override
+		public double get(DGeom g, double x, double y, double z) {
+			return ((DxBox)g).dGeomBoxPointDepth(x, y, z);
+		}};
+
+	private static final dGetDepthFn CAPSULE_DEPTH = new dGetDepthFn() {
+		@Override
+		public double get(DGeom g, double x, double y, double z) {
+			return ((DxCapsule)g).dGeomCapsulePointDepth(x, y, z);
+		}};
+
 
 	//	#define DMESS(A)	\
 	//	    dMessage(0,"Contact Plane (%d %d %d) %.5e %.5e (%.5e %.5e %.5e)(%.5e %.5e %.5e)).",	\
@@ -608,12 +643,12 @@ public class DxHeightfield extends DxAbstractHeightfield {
 //		return ((A.maxAAAB - B.maxAAAB) > dEpsilon);
 //	}
 	//static inline boolean DescendingPlaneSort(final HeightFieldPlane * final A, final HeightFieldPlane * final B)
-	private boolean DescendingPlaneSort(final HeightFieldPlane A, final HeightFieldPlane B)
+	private static boolean DescendingPlaneSort(final HeightFieldPlane A, final HeightFieldPlane B)
 	{
 		return ((A.maxAAAB - B.maxAAAB) > dEpsilon);
 	}
 
-	void sortPlanes(final int numPlanes)
+	void sortPlanes(final ObjArray<HeightFieldPlane>[] tempPlaneBuffer, final int numPlanes)
 	{
 		boolean has_swapped = true;
 		do
@@ -696,6 +731,13 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		final int numZ = (maxZ - minZ) + 1;
 		final double minO2Height = o2._aabb.getMin1();
 		final double maxO2Height = o2._aabb.getMax1();
+		// skip the zone without reading its samples if its known bounds are 
+		// totally below o2, see the test below
+		if (minO2Height - m_p_data.GetMaxHeight(minX, maxX, minZ, maxZ) > -dEpsilon)
+		{
+			return 0;
+		}
+		final ZoneScratch scratch = zoneScratch.get();
 		//unsigned 
 		int x_local, z_local;
 		double maxY = - dInfinity;
@@ -703,13 +745,9 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		// localize and final for faster access
 		final double cfSampleWidth = m_p_data.m_fSampleWidth;
 		final double cfSampleDepth = m_p_data.m_fSampleDepth;
+		scratch.allocateHeightBuffer(numX, numZ);
+		final ObjArray<HeightFieldVertex>[] tempHeightBuffer = scratch.tempHeightBuffer;
 		{
-			if (tempHeightBufferSizeX < numX || tempHeightBufferSizeZ < numZ)
-			{
-				resetHeightBuffer();
-				allocateHeightBuffer(numX, numZ);
-			}
-
 			double Xpos, Ypos;
 
 			for ( x = minX, x_local = 0; x_local < numX; x++, x_local++)
@@ -775,57 +813,45 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		{
 		case dRayClass:
 			geomRayNCollider		= null;
-			geomNPlaneCollider	    = new DxRay.CollideRayPlane();//dCollideRayPlane;
+			geomNPlaneCollider	    = scratch.rayPlane;//dCollideRayPlane;
 			geomNDepthGetter		= null;
 			//max_collisionContact    = 1;
 			break;
 
 		case dSphereClass:
-			geomRayNCollider		= new DxRay.CollideRaySphere();//dCollideRaySphere;
-			geomNPlaneCollider  	= new DxSphere.CollideSpherePlane();//.dCollideSpherePlane;
+			geomRayNCollider		= scratch.raySphere;//dCollideRaySphere;
+			geomNPlaneCollider  	= scratch.spherePlane;//.dCollideSpherePlane;
 			geomNDepthGetter		= //dGeomSpherePointDepth;
-				new dGetDepthFn() {
-				@Override
-				public double get(DGeom g, double x, double y, double z) {
-					return ((DxSphere)g).dGeomSpherePointDepth(x, y, z);
-				}};
+				SPHERE_DEPTH;
 				//max_collisionContact    = 3;
 				break;
 
 		case dBoxClass:
-			geomRayNCollider		= new DxRay.CollideRayBox();//dCollideRayBox;
-			geomNPlaneCollider	    = new CollideBoxPlane();//dCollideBoxPlane;
+			geomRayNCollider		= scratch.rayBox;//dCollideRayBox;
+			geomNPlaneCollider	    = scratch.boxPlane;//dCollideBoxPlane;
 			geomNDepthGetter		= //dGeomBoxPointDepth;
-				new dGetDepthFn() {
-				@Override
-				public double get(DGeom g, double x, double y, double z) {
-					return ((DxBox)g).dGeomBoxPointDepth(x, y, z);
-				}};
+				BOX_DEPTH;
 				//max_collisionContact    = 8;
 				break;
 
 		case dCapsuleClass:
-			geomRayNCollider		= new DxRay.CollideRayCapsule();//dCollideRayCapsule;
-			geomNPlaneCollider  	= new DxCapsule.CollideCapsulePlane();//dCollideCapsulePlane;
+			geomRayNCollider		= scratch.rayCapsule;//dCollideRayCapsule;
+			geomNPlaneCollider  	= scratch.capsulePlane;//dCollideCapsulePlane;
 			geomNDepthGetter		= //dGeomCapsulePointDepth;
-				new dGetDepthFn() {
-				@Override
-				public double get(DGeom g, double x, double y, double z) {
-					return ((DxCapsule)g).dGeomCapsulePointDepth(x, y, z);
-				}};
+				CAPSULE_DEPTH;
 				// max_collisionContact    = 3;
 				break;
 
 		case dCylinderClass:
-			geomRayNCollider		= new DxRay.CollideRayCylinder();//dCollideRayCylinder;
-			geomNPlaneCollider	    = new CollideCylinderPlane();//dCollideCylinderPlane;
+			geomRayNCollider		= scratch.rayCylinder;//dCollideRayCylinder;
+			geomNPlaneCollider	    = scratch.cylinderPlane;//dCollideCylinderPlane;
 			geomNDepthGetter		= null;// TODO: dGeomCCylinderPointDepth
 			//max_collisionContact    = 3;
 			break;
 
 		case dConvexClass:
-			geomRayNCollider		= new DxConvex.CollideRayConvex();//dCollideRayConvex;
-			geomNPlaneCollider  	= new DxConvex.CollideConvexPlane();//dCollideConvexPlane;
+			geomRayNCollider		= scratch.rayConvex;//dCollideRayConvex;
+			geomNPlaneCollider  	= scratch.convexPlane;//dCollideConvexPlane;
 			geomNDepthGetter		= null;// TODO: dGeomConvexPointDepth;
 			//max_collisionContact    = 3;
 			break;
@@ -833,8 +859,8 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			//	#if dTRIMESH_ENABLED
 
 		case dTriMeshClass:
-			geomRayNCollider		= new CollideRayTrimesh();//dCollideRayTrimesh;
-			geomNPlaneCollider	    = new CollideTrimeshPlane();//dCollideTrimeshPlane;
+			geomRayNCollider		= scratch.rayTrimesh;//dCollideRayTrimesh;
+			geomNPlaneCollider	    = scratch.trimeshPlane;//dCollideTrimeshPlane;
 			geomNDepthGetter		= null;// TODO: dGeomTrimeshPointDepth;
 			//max_collisionContact    = 3;
 			break;
@@ -847,10 +873,10 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 		}
 
-		DxPlane myplane = new DxPlane(null,0,0,0,0);
+		DxPlane myplane = scratch.plane;
 		DxPlane sliding_plane = myplane;
 		//double[] triplane = new double[4];
-		DVector3 triplaneV = new DVector3();
+		DVector3 triplaneV = scratch.triplaneV;
 		double triplaneD = 0;
 		//int i;
 
@@ -959,15 +985,12 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 		int numTerrainContacts = 0;
 		//dContactGeom *PlaneContact = m_p_data.m_contacts;
-		DContactGeomBuffer PlaneContact = m_p_data.m_contacts;
+		DContactGeomBuffer PlaneContact = scratch.planeContacts;
 
 		//final unsigned 
 		final int numTriMax = (maxX - minX) * (maxZ - minZ) * 2;
-		if (tempTriangleBufferSize < numTriMax)
-		{
-			resetTriangleBuffer();
-			allocateTriangleBuffer(numTriMax);
-		}
+		scratch.allocateTriangleBuffer(numTriMax);
+		final HeightFieldTriangle[] tempTriangleBuffer = scratch.tempTriangleBuffer;
 
 		// Sorting triangle/plane  resulting from heightfield zone
 		// Perhaps that would be necessary in case of too much limited
@@ -1133,7 +1156,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		// then collide against that list of triangles.
 		{
 
-			DVector3 Edge1 = new DVector3(), Edge2 = new DVector3();
+			DVector3 Edge1 = scratch.edge1, Edge2 = scratch.edge2;
 			//compute all triangles normals.
 			for (int k = 0; k < numTri; k++)
 			{
@@ -1170,11 +1193,8 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			}
 
 			// group by Triangles by Planes sharing shame plane definition
-			if (tempPlaneBufferSize  < numTri)
-			{
-				resetPlaneBuffer();
-				allocatePlaneBuffer(numTri);
-			}
+			scratch.allocatePlaneBuffer(numTri);
+			final ObjArray<HeightFieldPlane>[] tempPlaneBuffer = scratch.tempPlaneBuffer;
 			//unsigned 
 			int numPlanes = 0;
 			for (int k = 0; k < numTri; k++)
@@ -1228,7 +1248,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 			// sort planes
 			if (isContactNumPointsLimited)
-				sortPlanes(numPlanes);
+				sortPlanes(tempPlaneBuffer, numPlanes);
 
 			int numMaxContactsPerPlane;
 			int planeTestFlags;
@@ -1328,7 +1348,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		// pass2: VS triangle vertices
 		if (needFurtherPasses)
 		{
-			DxRay tempRay = new DxRay(null, 1);
+			DxRay tempRay = scratch.ray;
 			double depth = 0;
 			boolean vertexCollided;
 
@@ -1488,12 +1508,13 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 			DxAbstractHeightfield terrain = o1;
 
-			DVector3 posbak = new DVector3();
-			DMatrix3 Rbak = new DMatrix3();
-			DAABB aabbbak = new DAABB();
+			final ZoneScratch scratch = zoneScratch.get();
+			DVector3 posbak = scratch.posbak;
+			DMatrix3 Rbak = scratch.Rbak;
+			DAABB aabbbak = scratch.aabbbak;
 			int gflagsbak = 0;
-			DVector3 pos0 = new DVector3(), pos1 = new DVector3();
-			DMatrix3 R1 = new DMatrix3();
+			DVector3 pos0 = scratch.pos0, pos1 = scratch.pos1;
+			DMatrix3 R1 = scratch.R1;
 
 			int numTerrainContacts = 0;
 			int numTerrainOrigContacts = 0;
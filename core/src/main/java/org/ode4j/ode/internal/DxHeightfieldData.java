@@ -24,10 +24,12 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import org.ode4j.math.DVector3C;
-import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.DHeightfieldData;
 import org.ode4j.ode.DHeightfield.DHeightfieldGetHeight;
 import org.ode4j.ode.internal.DxHeightfield.HeightFieldVertex;
@@ -69,7 +71,7 @@ public class DxHeightfieldData implements DHeightfieldData {
 	int m_nDepthSamples;       // Vertex count on Z axis edge (number of samples)
 	boolean m_bCopyHeightData;     // Do we own the sample data?
 	boolean m_bWrapMode;           // Heightfield wrapping mode (0=finite, 1=infinite)
-	int m_nGetHeightMode;      // GetHeight mode ( 0=callback, 1=byte, 2=short, 3=float )
+	int m_nGetHeightMode;      // GetHeight mode ( 0=callback, 1=byte, 2=short, 3=float, 4=double, 5=mapped tiles )
 
 	//    const void* m_pHeightData; // Sample data array
 	//    void* m_pUserData;         // Callback user data
@@ -77,7 +79,7 @@ public class DxHeightfieldData implements DHeightfieldData {
 	Object m_pUserData;         // Callback user data
 
 	//dContactGeom[]            m_contacts = new dContactGeom[HEIGHTFIELDMAXCONTACTPERCELL];
-	DContactGeomBuffer            m_contacts = new DContactGeomBuffer(DxHeightfield.HEIGHTFIELDMAXCONTACTPERCELL);
+	// The contacts are kept per thread by the collider, see DxHeightfield.ZoneScratch.
 
 	//dHeightfieldGetHeight* m_pGetHeightCallback;		// Callback pointer.
 	/** TODO uses CPP-API! */
@@ -266,6 +268,12 @@ public class DxHeightfieldData implements DHeightfieldData {
 
 			break;
 
+			// mapped tiles, the bounds are computed while mapping
+		case 5:
+			m_fMinHeight = ((DxHeightfieldTiles)m_pHeightData).getMinSample();
+			m_fMaxHeight = ((DxHeightfieldTiles)m_pHeightData).getMaxSample();
+			break;
+
 		}
 
 		// scale and offset
@@ -401,12 +409,33 @@ public class DxHeightfieldData implements DHeightfieldData {
 			data_double = (double[])m_pHeightData;
 			h = data_double[x+(z * m_nWidthSamples)];
 			break;
+
+			// mapped tiles
+		case 5:
+			h = ((DxHeightfieldTiles)m_pHeightData).get(x, z);
+			break;
 		}
 
 		return (h * m_fScale) + m_fOffset;
 	}
 
 
+	/**
+	 * Upper bound of the heights of the samples <tt>minX..maxX</tt> and 
+	 * <tt>minZ..maxZ</tt>, without reading them. Only mapped tiles know
+	 * the bounds of parts of the heightfield.
+	 * @return upper bound, or dInfinity if unknown
+	 */
+	double GetMaxHeight( int minX, int maxX, int minZ, int maxZ )
+	{
+		if ( m_nGetHeightMode != 5 )
+			return dInfinity;
+		double h = ((DxHeightfieldTiles)m_pHeightData).getBound(
+				minX, maxX, minZ, maxZ, m_bWrapMode, m_fScale >= 0);
+		return (h * m_fScale) + m_fOffset;
+	}
+
+
 	//returns height at given coordinates
 	//double dxHeightfieldData::GetHeight( double x, double z )
 	//TODO TZ report: this is never used.
@@ -698,6 +727,28 @@ public class DxHeightfieldData implements DHeightfieldData {
 
 
 
+	void dGeomHeightfieldDataBuildMapped( 
+			FileChannel file, long position, ByteOrder order,
+			int widthSamples, int depthSamples, int tileSize, int cachedTiles,
+			double width, double depth, double scale, double offset,
+			double thickness, boolean bWrap ) throws IOException
+	{
+		dIASSERT( file!=null );
+		dIASSERT( widthSamples >= 2 );	// Ensure we're making something with at least one cell.
+		dIASSERT( depthSamples >= 2 );
+
+		// set info
+		SetData( widthSamples, depthSamples, width, depth, scale, offset, thickness, bWrap );
+		m_nGetHeightMode = 5;
+		m_bCopyHeightData = false;
+		m_pHeightData = new DxHeightfieldTiles( file, position, order,
+				widthSamples, depthSamples, tileSize, cachedTiles );
+
+		// Find height bounds
+		ComputeHeightBounds();
+	}
+
+
 //	void dGeomHeightfieldDataSetBounds( dxHeightfieldData d, double minHeight, double maxHeight )
 	public void dGeomHeightfieldDataSetBounds( double minHeight, double maxHeight )
 	{
@@ -761,6 +812,15 @@ public class DxHeightfieldData implements DHeightfieldData {
 				width, depth, widthSamples, depthSamples, scale, offset, thickness, bWrap);
 	}
 
+	@Override
+	public void buildMapped(FileChannel file, long position, ByteOrder order,
+			int widthSamples, int depthSamples, int tileSize, int cachedTiles,
+			double width, double depth, double scale, double offset,
+			double thickness, boolean bWrap) throws IOException {
+		dGeomHeightfieldDataBuildMapped( file, position, order, widthSamples, depthSamples,
+				tileSize, cachedTiles, width, depth, scale, offset, thickness, bWrap);
+	}
+
 	@Override
 	public void build(double[] pHeightData, boolean bCopyHeightData, double width,
 			double depth, int widthSamples, int depthSamples, double scale,
@@ -0,0 +1,258 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dIASSERT;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 16 bit heightfield samples in a memory mapped file, read in square tiles.
+ * <p>
+ * The file is mapped in chunks of whole rows, each below 1 GB, so that it
+ * may be larger than a single mapping. Tiles are copied from the mapping 
+ * into a set associative cache that evicts the least recently used tile 
+ * of a set. Only the minimum and maximum sample of each tile are kept for
+ * all tiles.
+ * <p>
+ * Samples can be read from several threads: a cached tile is found 
+ * without locking, loading a tile is synchronized. A loaded tile reuses
+ * the sample array of the tile it evicts. Its index is invalidated while
+ * the samples are overwritten, so a reader that raced with the reload
+ * sees a changed index after reading and retries. The use counter is 
+ * only a hint for eviction.
+ */
+final class DxHeightfieldTiles {
+
+	private static final int WAYS = 4;
+	private static final long MAX_CHUNK_BYTES = 1 << 30;
+
+	private static final class Tile {
+		/** Index of the tile, -1 while the samples are being overwritten. */
+		volatile int index = -1;
+		final short[] samples;
+		long lastUse;
+
+		Tile(short[] samples) {
+			this.samples = samples;
+		}
+	}
+
+	private final int widthSamples;
+	private final int depthSamples;
+	private final int tileSize;
+	private final int tilesX;
+	private final int tilesZ;
+	private final MappedByteBuffer[] chunks;
+	private final int rowsPerChunk;
+	private final short[] tileMin;
+	private final short[] tileMax;
+	private final short minSample;
+	private final short maxSample;
+
+	private final Tile[] slots;
+	private final int setBits;
+	private long clock;
+	private long loadCount;
+
+	DxHeightfieldTiles(FileChannel file, long position, ByteOrder order,
+			int widthSamples, int depthSamples, int tileSize, int cachedTiles) throws IOException {
+		dIASSERT( tileSize > 0 );
+		this.widthSamples = widthSamples;
+		this.depthSamples = depthSamples;
+		this.tileSize = tileSize;
+		tilesX = (widthSamples + tileSize - 1) / tileSize;
+		tilesZ = (depthSamples + tileSize - 1) / tileSize;
+
+		long rowBytes = 2L * widthSamples;
+		rowsPerChunk = (int) Math.max(1, Math.min(depthSamples, MAX_CHUNK_BYTES / rowBytes));
+		chunks = new MappedByteBuffer[(depthSamples + rowsPerChunk - 1) / rowsPerChunk];
+		for (int i = 0; i < chunks.length; i++) {
+			int rows = Math.min(rowsPerChunk, depthSamples - i * rowsPerChunk);
+			chunks[i] = file.map(FileChannel.MapMode.READ_ONLY, 
+					position + i * rowsPerChunk * rowBytes, rows * rowBytes);
+			chunks[i].order(order);
+		}
+
+		// one pass over the file for the bounds of all tiles
+		tileMin = new short[tilesX * tilesZ];
+		tileMax = new short[tilesX * tilesZ];
+		Arrays.fill(tileMin, Short.MAX_VALUE);
+		Arrays.fill(tileMax, Short.MIN_VALUE);
+		for (int z = 0; z < depthSamples; z++) {
+			MappedByteBuffer chunk = chunks[z / rowsPerChunk];
+			int rowStart = (z % rowsPerChunk) * widthSamples;
+			int tileRow = (z / tileSize) * tilesX;
+			for (int x = 0; x < widthSamples; x++) {
+				short h = chunk.getShort((rowStart + x) * 2);
+				int t = tileRow + x / tileSize;
+				if (h < tileMin[t]) tileMin[t] = h;
+				if (h > tileMax[t]) tileMax[t] = h;
+			}
+		}
+		short min = Short.MAX_VALUE, max = Short.MIN_VALUE;
+		for (int t = 0; t < tileMin.length; t++) {
+			if (tileMin[t] < min) min = tileMin[t];
+			if (tileMax[t] > max) max = tileMax[t];
+		}
+		minSample = min;
+		maxSample = max;
+
+		int sets = Integer.highestOneBit(Math.max(1, cachedTiles / WAYS));
+		setBits = Integer.numberOfTrailingZeros(sets);
+		slots = new Tile[sets * WAYS];
+	}
+
+	short getMinSample() {
+		return minSample;
+	}
+
+	short getMaxSample() {
+		return maxSample;
+	}
+
+	/** @return number of tiles read from the file so far */
+	synchronized long getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * @param x sample x, 0 &lt;= x &lt; widthSamples
+	 * @param z sample z, 0 &lt;= z &lt; depthSamples
+	 * @return raw sample
+	 */
+	short get(int x, int z) {
+		int tx = x / tileSize;
+		int tz = z / tileSize;
+		int index = tz * tilesX + tx;
+		int offset = (z - tz * tileSize) * tileSize + x - tx * tileSize;
+		while (true) {
+			Tile t = getTile(index);
+			short sample = t.samples[offset];
+			// the tile may have been reloaded for another index meanwhile
+			if (t.index == index) {
+				return sample;
+			}
+		}
+	}
+
+	/**
+	 * Bound of the samples <tt>minX..maxX</tt> and <tt>minZ..maxZ</tt>, from
+	 * the bounds of the tiles. The indices are clamped or wrapped as by 
+	 * {@link DxHeightfieldData#GetHeight(int, int)}.
+	 * @param max whether to return the maximum or the minimum
+	 * @return maximum or minimum raw sample
+	 */
+	short getBound(int minX, int maxX, int minZ, int maxZ, boolean wrap, boolean max) {
+		short bound = max ? Short.MIN_VALUE : Short.MAX_VALUE;
+		int periodX = wrap ? widthSamples - 1 : widthSamples;
+		int periodZ = wrap ? depthSamples - 1 : depthSamples;
+		if (!wrap) {
+			minX = Math.max(0, Math.min(minX, periodX - 1));
+			maxX = Math.max(0, Math.min(maxX, periodX - 1));
+			minZ = Math.max(0, Math.min(minZ, periodZ - 1));
+			maxZ = Math.max(0, Math.min(maxZ, periodZ - 1));
+		}
+		// walk the range in runs that do not cross a tile or the wrap border
+		for (int x = minX; x <= maxX && x - minX < periodX; ) {
+			int wx = wrap(x, periodX);
+			int tx = wx / tileSize;
+			for (int z = minZ; z <= maxZ && z - minZ < periodZ; ) {
+				int wz = wrap(z, periodZ);
+				int tz = wz / tileSize;
+				int t = tz * tilesX + tx;
+				if (max) {
+					if (tileMax[t] > bound) bound = tileMax[t];
+				} else {
+					if (tileMin[t] < bound) bound = tileMin[t];
+				}
+				z += Math.min((tz + 1) * tileSize, periodZ) - wz;
+			}
+			x += Math.min((tx + 1) * tileSize, periodX) - wx;
+		}
+		return bound;
+	}
+
+	private static int wrap(int i, int period) {
+		i %= period;
+		return i < 0 ? i + period : i;
+	}
+
+	private Tile getTile(int index) {
+		int set = setBits == 0 ? 0 : ((index * 0x9E3779B9) >>> (32 - setBits)) * WAYS;
+		for (int i = set; i < set + WAYS; i++) {
+			Tile t = slots[i];
+			if (t != null && t.index == index) {
+				t.lastUse = ++clock;
+				return t;
+			}
+		}
+		return loadTile(index, set);
+	}
+
+	private synchronized Tile loadTile(int index, int set) {
+		// another thread may have loaded the tile meanwhile
+		int victim = set;
+		for (int i = set; i < set + WAYS; i++) {
+			Tile t = slots[i];
+			if (t != null && t.index == index) {
+				return t;
+			}
+			if (t == null) {
+				victim = i;
+				break;
+			}
+			if (t.lastUse < slots[victim].lastUse) {
+				victim = i;
+			}
+		}
+		int tx = index % tilesX;
+		int tz = index / tilesX;
+		int width = Math.min(tileSize, widthSamples - tx * tileSize);
+		int depth = Math.min(tileSize, depthSamples - tz * tileSize);
+		Tile t = slots[victim];
+		if (t == null) {
+			t = new Tile(new short[tileSize * tileSize]);
+		} else {
+			t.index = -1;
+		}
+		short[] samples = t.samples;
+		for (int lz = 0; lz < depth; lz++) {
+			int z = tz * tileSize + lz;
+			MappedByteBuffer chunk = chunks[z / rowsPerChunk];
+			int rowStart = (z % rowsPerChunk) * widthSamples + tx * tileSize;
+			for (int lx = 0; lx < width; lx++) {
+				samples[lz * tileSize + lx] = chunk.getShort((rowStart + lx) * 2);
+			}
+		}
+		t.lastUse = ++clock;
+		t.index = index;
+		slots[victim] = t;
+		loadCount++;
+		return t;
+	}
+}
@@ -0,0 +1,558 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dAASSERT;
+import static org.ode4j.ode.internal.Common.dIASSERT;
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+
+/**
+ * Incremental sweep and prune space.
+ * <p>
+ * In contrast to {@link DxSAPSpace} and {@link DxSAPSpace2}, which sort all
+ * geoms on every call of collide(), this space keeps the AABB endpoints of 
+ * all geoms sorted on all three axes between calls, together with the set 
+ * of pairs with overlapping AABBs. When a geom moves, its endpoints are 
+ * moved to their new place with insertion sort; each endpoint that is 
+ * passed on the way starts or ends an overlap on that axis, and the pair 
+ * set is updated accordingly. Between two frames most geoms move only a 
+ * little, so that the cost of collide() is roughly proportional to the 
+ * motion in the scene and the number of overlapping pairs, not to the 
+ * number of geoms.
+ * <p>
+ * Fast moving geoms, teleported geoms and large numbers of geoms that are 
+ * added or removed at once are handled correctly, but are more expensive 
+ * than in a sorting SAP space.
+ * <p>
+ * Geoms with infinite AABBs (e.g. planes) are kept in a separate list and 
+ * are tested against all other geoms.
+ */
+public class DxIncrementalSAPSpace extends DxSpace implements DSapSpace {
+
+	private static final int INVALID_IDX = -1;
+	private static final int MIN = 0;
+	private static final int MAX = 1;
+
+	// Proxies: each geom with a finite AABB in the space has a proxy. The 
+	// proxy id is stored in the geom's _sapIdxGeomEx.
+	private DxGeom[] proxyGeom = new DxGeom[0];
+	// AABB of the proxy as known to the endpoint arrays, min/max per axis
+	private double[] proxyBounds = new double[0];
+	// free proxy ids
+	private int[] freeProxies = new int[0];
+	private int freeCount;
+	private int proxyCapacity;
+
+	// Endpoints, one array per axis, sorted by value. An endpoint id is 
+	// (proxy << 1) | MIN/MAX. At equal values, min endpoints are sorted before 
+	// max endpoints, so that touching AABBs overlap.
+	private final double[][] epValue = new double[3][0];
+	private final int[][] epId = new int[3][0];
+	// position of each endpoint id in the array of each axis
+	private final int[][] epPos = new int[3][0];
+	private int epCount;
+
+	// Overlapping pairs, stored densely (a < b) and indexed by an open 
+	// addressing hash table that holds indices into the dense arrays.
+	private int[] pairA = new int[0];
+	private int[] pairB = new int[0];
+	private int pairCount;
+	private int[] pairSlots = new int[0];
+	private int pairMask = -1;
+
+	// geoms with infinite AABBs, the index is stored in the geom's _sapIdxDirtyEx
+	private DxGeom[] infGeoms = new DxGeom[4];
+	private int infCount;
+
+	private final long staticGeomCategoryMask;
+	private final double[] oldBounds = new double[6];
+
+	/**
+	 * Creation.
+	 * @param space space
+	 * @param staticGeomCategoryMask geoms with any of these category bits 
+	 * are not checked for mutual collision
+	 * @return incremental SAP space
+	 */
+	public static DxIncrementalSAPSpace dIncrementalSweepAndPruneSpaceCreate(DxSpace space, 
+			long staticGeomCategoryMask) {
+		return new DxIncrementalSAPSpace(space, staticGeomCategoryMask);
+	}
+
+	private DxIncrementalSAPSpace(DxSpace space, long staticGeomCategoryMask) {
+		super(space);
+		this.staticGeomCategoryMask = staticGeomCategoryMask;
+		type = dSweepAndPruneSpaceClass;
+		// Init AABB to infinity
+		_aabb.set(-dInfinity, dInfinity, -dInfinity, dInfinity, -dInfinity, dInfinity);
+	}
+
+	@Override
+	void add(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		dAASSERT(g);
+		dUASSERT(g.parent_space == null, "geom is already in a space");
+		// the geom is added to the endpoint arrays by cleanGeoms(), it is dirty
+		g._sapIdxGeomEx = INVALID_IDX;
+		g._sapIdxDirtyEx = INVALID_IDX;
+		super.add(g);
+	}
+
+	@Override
+	void remove(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		dAASSERT(g);
+		dUASSERT(g.parent_space == this, "object is not in this space");
+		if (g._sapIdxGeomEx != INVALID_IDX) {
+			removeProxy(g._sapIdxGeomEx);
+		} else if (g._sapIdxDirtyEx != INVALID_IDX) {
+			removeInfGeom(g);
+		}
+		super.remove(g);
+	}
+
+	@Override
+	public void cleanGeoms() {
+		// compute the AABBs of all dirty geoms, clear the dirty flags and
+		// move the geoms in the endpoint arrays.
+		// Dirty geoms are at the front of the list.
+		lock_count++;
+		for (DxGeom g = _first; g != null && g.hasFlagDirty(); g = g.getNext()) {
+			if (g instanceof DSpace) {
+				((DxSpace) g).cleanGeoms();
+			}
+			g.recomputeAABB();
+			g.unsetFlagDirtyAndBad();
+			updateGeom(g);
+		}
+		lock_count--;
+	}
+
+	@Override
+	public void collide(Object data, DNearCallback callback) {
+		dAASSERT(callback);
+
+		lock_count++;
+		cleanGeoms();
+
+		// report the persistent pairs
+		for (int i = 0; i < pairCount; i++) {
+			DxGeom g1 = proxyGeom[pairA[i]];
+			DxGeom g2 = proxyGeom[pairB[i]];
+			if (GEOM_ENABLED(g1) && GEOM_ENABLED(g2)) {
+				collideMovingAABBs(g1, g2, data, callback);
+			}
+		}
+
+		for (int m = 0; m < infCount; m++) {
+			DxGeom g1 = infGeoms[m];
+			if (!GEOM_ENABLED(g1)) {
+				continue;
+			}
+			// collide infinite ones
+			for (int n = m + 1; n < infCount; n++) {
+				DxGeom g2 = infGeoms[n];
+				if (GEOM_ENABLED(g2)) {
+					collideMovingAABBs(g1, g2, data, callback);
+				}
+			}
+			// collide infinite ones with normal ones
+			for (int p = 0; p < proxyCapacity; p++) {
+				DxGeom g2 = proxyGeom[p];
+				if (g2 != null && GEOM_ENABLED(g2)) {
+					collideMovingAABBs(g1, g2, data, callback);
+				}
+			}
+		}
+
+		lock_count--;
+	}
+
+	@Override
+	void collide2(Object data, DxGeom geom, DNearCallback callback) {
+		dAASSERT(geom != null && callback != null);
+
+		lock_count++;
+		cleanGeoms();
+		geom.recomputeAABB();
+
+		// walk the min endpoints of the first axis up to the geom's max
+		DAABBC aabb = geom.getAABB();
+		double max0 = aabb.getMax0();
+		double[] value = epValue[0];
+		int[] id = epId[0];
+		for (int i = 0; i < epCount && value[i] <= max0; i++) {
+			if ((id[i] & 1) == MIN) {
+				DxGeom g = proxyGeom[id[i] >> 1];
+				if (GEOM_ENABLED(g)) {
+					collideAABBs(g, geom, data, callback);
+				}
+			}
+		}
+		for (int i = 0; i < infCount; i++) {
+			DxGeom g = infGeoms[i];
+			if (GEOM_ENABLED(g)) {
+				collideAABBs(g, geom, data, callback);
+			}
+		}
+		lock_count--;
+	}
+
+	/**
+	 * @return Number of pairs of geoms with overlapping AABBs, not counting
+	 * geoms with infinite AABBs. 
+	 */
+	int getOverlappingPairCount() {
+		return pairCount;
+	}
+
+	private static boolean isFinite(DAABB aabb) {
+		for (int i = 0; i < 3; i++) {
+			// also false for NaN
+			if (!(Math.abs(aabb.getMin(i)) < dInfinity && Math.abs(aabb.getMax(i)) < dInfinity)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void updateGeom(DxGeom g) {
+		boolean finite = isFinite(g._aabb);
+		int p = g._sapIdxGeomEx;
+		if (p != INVALID_IDX) {
+			if (finite) {
+				moveProxy(p, g._aabb);
+				return;
+			}
+			removeProxy(p);
+		} else if (g._sapIdxDirtyEx != INVALID_IDX) {
+			if (!finite) {
+				return;
+			}
+			removeInfGeom(g);
+		}
+		if (finite) {
+			addProxy(g);
+		} else {
+			addInfGeom(g);
+		}
+	}
+
+	private void addInfGeom(DxGeom g) {
+		if (infCount == infGeoms.length) {
+			infGeoms = Arrays.copyOf(infGeoms, infCount * 2);
+		}
+		g._sapIdxDirtyEx = infCount;
+		infGeoms[infCount++] = g;
+	}
+
+	private void removeInfGeom(DxGeom g) {
+		int i = g._sapIdxDirtyEx;
+		dIASSERT(infGeoms[i] == g);
+		DxGeom last = infGeoms[--infCount];
+		infGeoms[i] = last;
+		last._sapIdxDirtyEx = i;
+		infGeoms[infCount] = null;
+		g._sapIdxDirtyEx = INVALID_IDX;
+	}
+
+	// ***********************************************
+	// proxies and endpoints
+	// ***********************************************
+
+	private void ensureProxyCapacity() {
+		if (freeCount > 0) {
+			return;
+		}
+		int oldCap = proxyCapacity;
+		int cap = Math.max(16, oldCap * 2);
+		proxyGeom = Arrays.copyOf(proxyGeom, cap);
+		proxyBounds = Arrays.copyOf(proxyBounds, cap * 6);
+		freeProxies = Arrays.copyOf(freeProxies, cap);
+		for (int k = 0; k < 3; k++) {
+			epValue[k] = Arrays.copyOf(epValue[k], cap * 2);
+			epId[k] = Arrays.copyOf(epId[k], cap * 2);
+			epPos[k] = Arrays.copyOf(epPos[k], cap * 2);
+		}
+		// hand out low ids first
+		for (int p = cap - 1; p >= oldCap; p--) {
+			freeProxies[freeCount++] = p;
+		}
+		proxyCapacity = cap;
+	}
+
+	private void addProxy(DxGeom g) {
+		ensureProxyCapacity();
+		int p = freeProxies[--freeCount];
+		proxyGeom[p] = g;
+		g._sapIdxGeomEx = p;
+		// append the endpoints at +infinity, then move them to their place
+		for (int k = 0; k < 3; k++) {
+			proxyBounds[p * 6 + k * 2 + MIN] = dInfinity;
+			proxyBounds[p * 6 + k * 2 + MAX] = dInfinity;
+			setEndpoint(k, epCount, (p << 1) | MIN, dInfinity);
+			setEndpoint(k, epCount + 1, (p << 1) | MAX, dInfinity);
+		}
+		epCount += 2;
+		moveProxy(p, g._aabb);
+	}
+
+	private void removeProxy(int p) {
+		// move the endpoints to +infinity, this ends all overlaps of the proxy
+		for (int k = 0; k < 3; k++) {
+			proxyBounds[p * 6 + k * 2 + MIN] = dInfinity;
+			proxyBounds[p * 6 + k * 2 + MAX] = dInfinity;
+		}
+		for (int k = 0; k < 3; k++) {
+			int[] pos = epPos[k];
+			epValue[k][pos[(p << 1) | MIN]] = dInfinity;
+			epValue[k][pos[(p << 1) | MAX]] = dInfinity;
+			siftUp(k, pos[(p << 1) | MAX]);
+			siftUp(k, pos[(p << 1) | MIN]);
+		}
+		epCount -= 2;
+		for (int k = 0; k < 3; k++) {
+			dIASSERT(epId[k][epCount] == ((p << 1) | MIN) && epId[k][epCount + 1] == ((p << 1) | MAX));
+		}
+		proxyGeom[p]._sapIdxGeomEx = INVALID_IDX;
+		proxyGeom[p] = null;
+		freeProxies[freeCount++] = p;
+	}
+
+	private void moveProxy(int p, DAABB aabb) {
+		// Update the bounds on all axes first, overlap tests always use the 
+		// new bounds.
+		double[] oldBounds = this.oldBounds;
+		int b = p * 6;
+		System.arraycopy(proxyBounds, b, oldBounds, 0, 6);
+		for (int k = 0; k < 3; k++) {
+			proxyBounds[b + k * 2 + MIN] = aabb.getMin(k);
+			proxyBounds[b + k * 2 + MAX] = aabb.getMax(k);
+		}
+		for (int k = 0; k < 3; k++) {
+			int[] pos = epPos[k];
+			double newMin = proxyBounds[b + k * 2 + MIN];
+			double newMax = proxyBounds[b + k * 2 + MAX];
+			double oldMin = oldBounds[k * 2 + MIN];
+			double oldMax = oldBounds[k * 2 + MAX];
+			int minId = (p << 1) | MIN;
+			int maxId = (p << 1) | MAX;
+			epValue[k][pos[minId]] = newMin;
+			epValue[k][pos[maxId]] = newMax;
+			// grow first, then shrink, so that min stays before max
+			if (newMin < oldMin) {
+				siftDown(k, pos[minId]);
+			}
+			if (newMax > oldMax) {
+				siftUp(k, pos[maxId]);
+			}
+			if (newMin > oldMin) {
+				siftUp(k, pos[minId]);
+			}
+			if (newMax < oldMax) {
+				siftDown(k, pos[maxId]);
+			}
+		}
+	}
+
+	private void setEndpoint(int k, int pos, int e, double value) {
+		epValue[k][pos] = value;
+		epId[k][pos] = e;
+		epPos[k][e] = pos;
+	}
+
+	// a comes before b
+	private static boolean isBefore(double va, int ea, double vb, int eb) {
+		return va < vb || (va == vb && (ea & 1) == MIN && (eb & 1) == MAX);
+	}
+
+	private void siftDown(int k, int pos) {
+		double[] value = epValue[k];
+		int[] id = epId[k];
+		int[] where = epPos[k];
+		double v = value[pos];
+		int e = id[pos];
+		while (pos > 0 && isBefore(v, e, value[pos - 1], id[pos - 1])) {
+			int prev = id[pos - 1];
+			if ((e & 1) == MIN && (prev & 1) == MAX) {
+				// min moves below a max: overlap starts on this axis
+				beginOverlap(e >> 1, prev >> 1);
+			} else if ((e & 1) == MAX && (prev & 1) == MIN) {
+				// max moves below a min: overlap ends
+				endOverlap(e >> 1, prev >> 1);
+			}
+			value[pos] = value[pos - 1];
+			id[pos] = prev;
+			where[prev] = pos;
+			pos--;
+		}
+		value[pos] = v;
+		id[pos] = e;
+		where[e] = pos;
+	}
+
+	private void siftUp(int k, int pos) {
+		double[] value = epValue[k];
+		int[] id = epId[k];
+		int[] where = epPos[k];
+		double v = value[pos];
+		int e = id[pos];
+		int last = epCount - 1;
+		while (pos < last && isBefore(value[pos + 1], id[pos + 1], v, e)) {
+			int next = id[pos + 1];
+			if ((e & 1) == MAX && (next & 1) == MIN) {
+				// max moves above a min: overlap starts on this axis
+				beginOverlap(e >> 1, next >> 1);
+			} else if ((e & 1) == MIN && (next & 1) == MAX) {
+				// min moves above a max: overlap ends
+				endOverlap(e >> 1, next >> 1);
+			}
+			value[pos] = value[pos + 1];
+			id[pos] = next;
+			where[next] = pos;
+			pos++;
+		}
+		value[pos] = v;
+		id[pos] = e;
+		where[e] = pos;
+	}
+
+	private void beginOverlap(int p1, int p2) {
+		if (p1 == p2) {
+			return;
+		}
+		if ((proxyGeom[p1].category_bits & staticGeomCategoryMask) != 0 &&
+				(proxyGeom[p2].category_bits & staticGeomCategoryMask) != 0) {
+			// Static geoms do not collide with each other
+			return;
+		}
+		int b1 = p1 * 6;
+		int b2 = p2 * 6;
+		for (int k = 0; k < 6; k += 2) {
+			if (proxyBounds[b1 + k + MIN] > proxyBounds[b2 + k + MAX] || 
+					proxyBounds[b2 + k + MIN] > proxyBounds[b1 + k + MAX]) {
+				return;
+			}
+		}
+		addPair(p1, p2);
+	}
+
+	private void endOverlap(int p1, int p2) {
+		if (p1 != p2) {
+			removePair(p1, p2);
+		}
+	}
+
+	// ***********************************************
+	// pair set
+	// ***********************************************
+
+	private static int pairHash(int a, int b) {
+		int h = a * 0x9E3779B1 ^ b * 0x85EBCA6B;
+		return h ^ (h >>> 16);
+	}
+
+	// slot of the pair or of the empty slot where it would be inserted
+	private int findSlot(int a, int b) {
+		int slot = pairHash(a, b) & pairMask;
+		int d;
+		while ((d = pairSlots[slot]) != INVALID_IDX) {
+			if (pairA[d] == a && pairB[d] == b) {
+				break;
+			}
+			slot = (slot + 1) & pairMask;
+		}
+		return slot;
+	}
+
+	private void addPair(int p1, int p2) {
+		int a = Math.min(p1, p2);
+		int b = Math.max(p1, p2);
+		if (2 * (pairCount + 1) > pairMask + 1) {
+			growPairs();
+		}
+		int slot = findSlot(a, b);
+		if (pairSlots[slot] != INVALID_IDX) {
+			return;
+		}
+		pairA[pairCount] = a;
+		pairB[pairCount] = b;
+		pairSlots[slot] = pairCount++;
+	}
+
+	private void removePair(int p1, int p2) {
+		if (pairCount == 0) {
+			return;
+		}
+		int a = Math.min(p1, p2);
+		int b = Math.max(p1, p2);
+		int slot = findSlot(a, b);
+		int d = pairSlots[slot];
+		if (d == INVALID_IDX) {
+			return;
+		}
+		// delete the slot, shift following entries of the cluster back
+		int hole = slot;
+		int s = (slot + 1) & pairMask;
+		int dd;
+		while ((dd = pairSlots[s]) != INVALID_IDX) {
+			int home = pairHash(pairA[dd], pairB[dd]) & pairMask;
+			// move the entry into the hole if its home is not in (hole, s]
+			if (((s - home) & pairMask) >= ((s - hole) & pairMask)) {
+				pairSlots[hole] = dd;
+				hole = s;
+			}
+			s = (s + 1) & pairMask;
+		}
+		pairSlots[hole] = INVALID_IDX;
+		// move the last pair into the gap of the dense arrays
+		int last = --pairCount;
+		if (d != last) {
+			int la = pairA[last];
+			int lb = pairB[last];
+			pairSlots[findSlot(la, lb)] = d;
+			pairA[d] = la;
+			pairB[d] = lb;
+		}
+	}
+
+	private void growPairs() {
+		int size = Math.max(16, (pairMask + 1) * 2);
+		pairA = Arrays.copyOf(pairA, size / 2);
+		pairB = Arrays.copyOf(pairB, size / 2);
+		pairSlots = new int[size];
+		Arrays.fill(pairSlots, INVALID_IDX);
+		pairMask = size - 1;
+		for (int d = 0; d < pairCount; d++) {
+			pairSlots[findSlot(pairA[d], pairB[d])] = d;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeMath.dMultiply0_331;
+import static org.ode4j.ode.OdeMath.dMultiply1_331;
+
+import java.util.Arrays;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointContact;
+import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext;
+
+/**
+ * Adaptive substepping of an island, see {@link DWorld#setAdaptiveSubsteps(int)}.
+ * <p>
+ * {@link #count(DxStepperProcessingCallContext)} chooses the number of 
+ * substeps from the velocities of the bodies and the mass ratios of the
+ * jointed bodies. The island is stepped by running the stepper once per
+ * substep with the same island selection and memory arena. Between the
+ * substeps an instance of this class restores the forces that the user 
+ * applied, which the stepper clears, and moves the contacts with their 
+ * bodies, so that the depth of a contact shrinks while its bodies separate.
+ * The steppers pass the frequency of the whole step to the joints, so 
+ * position errors are corrected over the whole step as without substeps,
+ * not once per substep.
+ * <p>
+ * Each stepping thread keeps one instance in its {@link StepperScratch}, 
+ * see {@link #record(DxStepperProcessingCallContext)}, so that substepping
+ * does not allocate once the buffers are large enough.
+ */
+public final class DxIslandSubsteps {
+
+	/** Rotation of a body per substep, in radians. */
+	static final double MAX_ROTATION = 0.25;
+	/** Distance that a body moves per substep, relative to the size of its geoms. */
+	static final double MAX_TRAVEL = 0.5;
+
+	private DxBody[] bodies;
+	private int bodyOfs;
+	private int bodyCount;
+	/** facc and tacc of the bodies before the first substep. */
+	private double[] forces = new double[0];
+	private DxJointContact[] contacts = new DxJointContact[0];
+	private int contactCount;
+	/** Depth of each contact before the first substep. */
+	private double[] depths = new double[0];
+	/** Contact positions in the frames of the two bodies. */
+	private double[] localPos = new double[0];
+	private final DVector3 tmp = new DVector3();
+	private final DVector3 tmp2 = new DVector3();
+
+	/**
+	 * @return number of substeps of the island that is selected by the 
+	 * context, 1 if it should be stepped once
+	 */
+	public static int count(DxStepperProcessingCallContext context) {
+		final int max = context.m_world().maxSubsteps;
+		if (max <= 1) {
+			return 1;
+		}
+		final double h = context.m_stepSize();
+		double n = 1;
+
+		DxBody[] bodyA = context.m_islandBodiesStartA();
+		int bodyP = context.m_islandBodiesStartOfs();
+		for (int i = 0; i < context.m_islandBodiesCount(); i++) {
+			DxBody b = bodyA[bodyP + i];
+			n = Math.max(n, b.avel.length() * h / MAX_ROTATION);
+			if (DxContinuousCollision.isSwept(b)) {
+				// the AABBs of the geoms include the sweep, and continuous
+				// collision keeps the body from tunneling anyway
+				continue;
+			}
+			double size = Double.POSITIVE_INFINITY;
+			for (DxGeom g = b.geom; g != null; g = g.dGeomGetBodyNext()) {
+				g.recomputeAABB();
+				size = Math.min(size, Math.min(g._aabb.len0(), Math.min(g._aabb.len1(), g._aabb.len2())));
+			}
+			if (size > 0 && size < Double.POSITIVE_INFINITY) {
+				n = Math.max(n, b.lvel.length() * h / (MAX_TRAVEL * size));
+			}
+		}
+
+		// PGS converges slowly for bodies of very different masses: one more
+		// substep per factor of 10
+		DxJoint[] jointA = context.m_islandJointsStartA();
+		int jointP = context.m_islandJointsStartOfs();
+		for (int i = 0; i < context.m_islandJointsCount(); i++) {
+			DxJoint j = jointA[jointP + i];
+			DxBody b0 = j.node[0].body, b1 = j.node[1].body;
+			if (b0 != null && b1 != null && b0.invMass > 0 && b1.invMass > 0) {
+				double ratio = b0.invMass > b1.invMass ? b0.invMass / b1.invMass : b1.invMass / b0.invMass;
+				n = Math.max(n, 1 + Math.log10(ratio));
+			}
+		}
+		return (int) Math.min(max, Math.ceil(n - 1e-9));
+	}
+
+	DxIslandSubsteps() {}
+
+	/**
+	 * Records the state of the island before the first substep in the 
+	 * instance of the calling thread.
+	 * @return the instance of the calling thread, valid until 
+	 * {@link #finish()}
+	 */
+	public static DxIslandSubsteps record(DxStepperProcessingCallContext context) {
+		DxIslandSubsteps island = StepperScratch.get().substeps;
+		island.init(context);
+		return island;
+	}
+
+	private void init(DxStepperProcessingCallContext context) {
+		bodies = context.m_islandBodiesStartA();
+		bodyOfs = context.m_islandBodiesStartOfs();
+		bodyCount = context.m_islandBodiesCount();
+		if (forces.length < bodyCount * 6) {
+			forces = new double[bodyCount * 6];
+		}
+		for (int i = 0; i < bodyCount; i++) {
+			DxBody b = bodies[bodyOfs + i];
+			forces[i * 6] = b.facc.get0();
+			forces[i * 6 + 1] = b.facc.get1();
+			forces[i * 6 + 2] = b.facc.get2();
+			forces[i * 6 + 3] = b.tacc.get0();
+			forces[i * 6 + 4] = b.tacc.get1();
+			forces[i * 6 + 5] = b.tacc.get2();
+		}
+
+		DxJoint[] jointA = context.m_islandJointsStartA();
+		int jointP = context.m_islandJointsStartOfs();
+		int jcount = context.m_islandJointsCount();
+		int n = 0;
+		for (int i = 0; i < jcount; i++) {
+			if (jointA[jointP + i] instanceof DxJointContact) {
+				n++;
+			}
+		}
+		if (contacts.length < n) {
+			contacts = new DxJointContact[n];
+			depths = new double[n];
+			localPos = new double[n * 6];
+		}
+		contactCount = n;
+		n = 0;
+		for (int i = 0; i < jcount; i++) {
+			if (jointA[jointP + i] instanceof DxJointContact) {
+				DxJointContact c = (DxJointContact) jointA[jointP + i];
+				contacts[n] = c;
+				depths[n] = c.contact.geom.depth;
+				for (int k = 0; k < 2; k++) {
+					DxBody b = c.node[k].body;
+					if (b != null) {
+						tmp.eqDiff(c.contact.geom.pos, b.posr().pos());
+						dMultiply1_331(tmp2, b.posr().R(), tmp);
+						int ofs = n * 6 + k * 3;
+						localPos[ofs] = tmp2.get0();
+						localPos[ofs + 1] = tmp2.get1();
+						localPos[ofs + 2] = tmp2.get2();
+					}
+				}
+				n++;
+			}
+		}
+	}
+
+	/**
+	 * Prepares the island for the next substep.
+	 */
+	public void prepareSubstep() {
+		for (int i = 0; i < bodyCount; i++) {
+			DxBody b = bodies[bodyOfs + i];
+			b.facc.set(forces[i * 6], forces[i * 6 + 1], forces[i * 6 + 2]);
+			b.tacc.set(forces[i * 6 + 3], forces[i * 6 + 4], forces[i * 6 + 5]);
+		}
+		for (int n = 0; n < contactCount; n++) {
+			DxJointContact c = contacts[n];
+			// motion of the contact point with each body along the normal,
+			// the normal points into body 1
+			double approach = 0;
+			for (int k = 0; k < 2; k++) {
+				DxBody b = c.node[k].body;
+				if (b != null) {
+					int ofs = n * 6 + k * 3;
+					tmp.set(localPos[ofs], localPos[ofs + 1], localPos[ofs + 2]);
+					dMultiply0_331(tmp2, b.posr().R(), tmp);
+					tmp2.add(b.posr().pos());
+					tmp2.sub(c.contact.geom.pos);
+					double d = tmp2.dot(c.contact.geom.normal);
+					approach += k == 0 ? d : -d;
+				}
+			}
+			c.contact.geom.depth = depths[n] - approach;
+		}
+	}
+
+	/**
+	 * Restores the depths of the contacts after the last substep.
+	 */
+	public void finish() {
+		for (int n = 0; n < contactCount; n++) {
+			contacts[n].contact.geom.depth = depths[n];
+		}
+		// do not keep the joints and bodies of the world alive
+		Arrays.fill(contacts, 0, contactCount, null);
+		bodies = null;
+	}
+}
@@ -0,0 +1,407 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DGeom.DNearContactsCallback;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Narrowphase of a space on a {@link TaskExecutor}, see
+ * {@link DxSpace#dSpaceCollideParallel(int, TaskExecutor, Object, DNearContactsCallback)}.
+ * <p>
+ * The candidate pairs of the space are collected first. They are then
+ * distributed over one task per executor thread, each task collides its
+ * pairs into its own contact buffer and records where the contacts of
+ * each pair went. The results are handed to the callback in pair order
+ * after all tasks have completed.
+ * <p>
+ * Some colliders modify their geoms: trimeshes keep collision state in
+ * the geom (temporal coherence caches) and the heightfield collider
+ * temporarily moves the other geom, and with it the other geoms of its
+ * body, into the frame of the heightfield. All pairs that use such a
+ * geom or body form a lane that is collided on one task, in pair order.
+ * A {@link DxHeightfield} keeps its scratch memory per thread and is not
+ * part of a lane itself, different geoms can collide with it concurrently.
+ * <p>
+ * All buffers are kept for the next call, a space that collides
+ * about the same number of pairs every step does not allocate memory.
+ */
+final class DxParallelCollider {
+
+	/** Minimum number of pairs per task, smaller tasks are not worth the overhead. */
+	static final int MIN_PAIRS_PER_TASK = 16;
+
+	private final class Worker implements Runnable {
+		DContactBuffer buffer = new DContactBuffer(0);
+		DContactGeomBuffer geomBuffer = buffer.getGeomBuffer();
+		int capacity = 0;
+		final int task;
+
+		Worker(int task) {
+			this.task = task;
+		}
+
+		/** Makes room for <tt>n</tt> more contacts after <tt>used</tt> contacts. */
+		void ensureCapacity(int used, int n) {
+			if (used + n <= capacity) {
+				return;
+			}
+			int newCapacity = Math.max(used + n, capacity * 2);
+			DContactBuffer newBuffer = new DContactBuffer(newCapacity);
+			// keep the existing contacts, they may already hold results
+			for (int i = 0; i < capacity; i++) {
+				newBuffer.set(i, buffer.get(i));
+			}
+			buffer = newBuffer;
+			geomBuffer = newBuffer.getGeomBuffer();
+			capacity = newCapacity;
+		}
+
+		@Override
+		public void run() {
+			int maxContacts = flags & DxGeom.NUMC_MASK;
+			int used = 0;
+			for (int i = taskStart[task], end = taskStart[task + 1]; i < end; i++) {
+				int p = taskPairs[i];
+				ensureCapacity(used, maxContacts);
+				int n = DxGeom.dCollide(g1s[p], g2s[p], flags, geomBuffer.createView(used), 1);
+				pairOffset[p] = used;
+				pairCount[p] = n;
+				used += n;
+			}
+		}
+	}
+
+	private final DNearCallback gatherCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			gather((DxGeom) o1, (DxGeom) o2);
+		}
+	};
+
+	private final Runnable noop = new Runnable() {
+		@Override
+		public void run() {}
+	};
+
+	// candidate pairs
+	private DxGeom[] g1s = new DxGeom[0];
+	private DxGeom[] g2s = new DxGeom[0];
+	private int numPairs;
+
+	// per pair results
+	private int[] pairTask = new int[0];
+	private int[] pairOffset = new int[0];
+	private int[] pairCount = new int[0];
+	// per pair lane, -1 if the pair can be collided on any task
+	private int[] pairLane = new int[0];
+
+	// pairs of each task, pairs of task t are taskPairs[taskStart[t]..taskStart[t+1]-1]
+	private int[] taskPairs = new int[0];
+	private int[] taskStart = new int[1];
+	private int[] taskLoad = new int[0];
+	private Worker[] workers = new Worker[0];
+
+	// union-find over the bodies and geoms that must not be used concurrently,
+	// lock ids by identity in an open addressing table of power of two size
+	private Object[] lockKeys = new Object[16];
+	private int[] lockValues = new int[16];
+	private int[] lockSlots = new int[0];
+	private int numLocks;
+	private int[] parent = new int[0];
+	private int[] laneOfRoot = new int[0];
+	private int[] laneSize = new int[0];
+	private int[] laneTask = new int[0];
+	// (Integer.MAX_VALUE - lane size) << 32 | lane, sorts the biggest lane first
+	private long[] laneOrder = new long[0];
+
+	private int flags;
+
+	void collide(DxSpace space, int flags, TaskExecutor executor, Object data,
+			DNearContactsCallback callback) {
+		this.flags = flags;
+		numPairs = 0;
+		space.collide(null, gatherCallback);
+		try {
+			if (numPairs == 0) {
+				return;
+			}
+			int numTasks = Math.min(executor.getThreadCount(),
+					(numPairs + MIN_PAIRS_PER_TASK - 1) / MIN_PAIRS_PER_TASK);
+			numTasks = Math.max(numTasks, 1);
+			distribute(numTasks);
+			if (numTasks == 1) {
+				workers[0].run();
+			} else {
+				TaskGroup group = executor.group("Space Narrowphase Group", noop);
+				for (int t = 0; t < numTasks; t++) {
+					group.subtask("Space Narrowphase", workers[t]).submit();
+				}
+				group.submit();
+				group.awaitCompletion();
+			}
+			for (int p = 0; p < numPairs; p++) {
+				int n = pairCount[p];
+				if (n > 0) {
+					DContactGeomBuffer contacts = workers[pairTask[p]].geomBuffer.createView(pairOffset[p]);
+					callback.call(data, g1s[p], g2s[p], contacts, n);
+				}
+			}
+		} finally {
+			// do not keep geoms alive
+			Arrays.fill(g1s, 0, numPairs, null);
+			Arrays.fill(g2s, 0, numPairs, null);
+			clearLockIds();
+		}
+	}
+
+	private void gather(DxGeom o1, DxGeom o2) {
+		if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+			DxSpace.dSpaceCollide2(o1, o2, null, gatherCallback);
+			return;
+		}
+		// done here, so that the tasks do not update shared geoms concurrently
+		o1.recomputePosr();
+		o2.recomputePosr();
+		if (numPairs == g1s.length) {
+			int n = Math.max(16, numPairs * 2);
+			g1s = Arrays.copyOf(g1s, n);
+			g2s = Arrays.copyOf(g2s, n);
+			pairTask = new int[n];
+			pairOffset = new int[n];
+			pairCount = new int[n];
+			pairLane = new int[n];
+			taskPairs = new int[n];
+		}
+		g1s[numPairs] = o1;
+		g2s[numPairs] = o2;
+		numPairs++;
+	}
+
+	/**
+	 * Geoms on the same body share the position of the body, so a geom
+	 * that is moved temporarily also moves the other geoms of its body.
+	 */
+	private static Object lockKey(DxGeom g) {
+		return g.body != null ? g.body : g;
+	}
+
+	private int lockSlot(Object key) {
+		int mask = lockKeys.length - 1;
+		int i = (System.identityHashCode(key) * 0x9E3779B9) & mask;
+		while (lockKeys[i] != null && lockKeys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int lockId(DxGeom g) {
+		Object key = lockKey(g);
+		int slot = lockSlot(key);
+		if (lockKeys[slot] != null) {
+			return lockValues[slot];
+		}
+		if (2 * (numLocks + 1) > lockKeys.length) {
+			growLockIds();
+			slot = lockSlot(key);
+		}
+		int id = numLocks++;
+		lockKeys[slot] = key;
+		lockValues[slot] = id;
+		if (id == lockSlots.length) {
+			lockSlots = Arrays.copyOf(lockSlots, Math.max(8, id * 2));
+			parent = Arrays.copyOf(parent, lockSlots.length);
+		}
+		lockSlots[id] = slot;
+		parent[id] = id;
+		return id;
+	}
+
+	private int existingLockId(DxGeom g) {
+		if (numLocks == 0) {
+			return -1;
+		}
+		int slot = lockSlot(lockKey(g));
+		return lockKeys[slot] != null ? lockValues[slot] : -1;
+	}
+
+	private void growLockIds() {
+		Object[] keys = lockKeys;
+		lockKeys = new Object[keys.length * 2];
+		lockValues = new int[keys.length * 2];
+		for (int id = 0; id < numLocks; id++) {
+			Object key = keys[lockSlots[id]];
+			int slot = lockSlot(key);
+			lockKeys[slot] = key;
+			lockValues[slot] = id;
+			lockSlots[id] = slot;
+		}
+	}
+
+	private void clearLockIds() {
+		for (int id = 0; id < numLocks; id++) {
+			lockKeys[lockSlots[id]] = null;
+		}
+		numLocks = 0;
+	}
+
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Assigns every pair to a task. Lanes are assigned whole, the biggest
+	 * first, to the least loaded task. The other pairs fill up the tasks
+	 * in pair order.
+	 */
+	private void distribute(int numTasks) {
+		// find the geoms that are modified by their colliders
+		for (int p = 0; p < numPairs; p++) {
+			DxGeom g1 = g1s[p], g2 = g2s[p];
+			if (g1 instanceof DxHeightfield || g2 instanceof DxHeightfield) {
+				// the heightfield collider moves the other geom into its frame,
+				// the heightfield itself is not modified
+				if (!(g1 instanceof DxHeightfield)) {
+					lockId(g1);
+				}
+				if (!(g2 instanceof DxHeightfield)) {
+					lockId(g2);
+				}
+			} else if (g1 instanceof DxAbstractHeightfield || g2 instanceof DxAbstractHeightfield) {
+				// the trimesh heightfield also keeps its buffers in the geom
+				lockId(g1);
+				lockId(g2);
+			} else {
+				if (g1 instanceof DxTriMesh) {
+					lockId(g1);
+				}
+				if (g2 instanceof DxTriMesh) {
+					lockId(g2);
+				}
+			}
+		}
+
+		// build lanes of the pairs that use these geoms
+		for (int p = 0; p < numPairs; p++) {
+			int a = existingLockId(g1s[p]);
+			int b = existingLockId(g2s[p]);
+			if (a >= 0 && b >= 0) {
+				int ra = find(a);
+				int rb = find(b);
+				if (ra != rb) {
+					parent[Math.max(ra, rb)] = Math.min(ra, rb);
+				}
+			}
+			pairLane[p] = a >= 0 ? a : b;
+		}
+		if (laneOfRoot.length < numLocks) {
+			laneOfRoot = new int[numLocks];
+			laneSize = new int[numLocks];
+			laneTask = new int[numLocks];
+			laneOrder = new long[numLocks];
+		}
+		Arrays.fill(laneOfRoot, 0, numLocks, -1);
+		int numLanes = 0;
+		for (int p = 0; p < numPairs; p++) {
+			if (pairLane[p] >= 0) {
+				int root = find(pairLane[p]);
+				if (laneOfRoot[root] < 0) {
+					laneOfRoot[root] = numLanes;
+					laneSize[numLanes] = 0;
+					numLanes++;
+				}
+				pairLane[p] = laneOfRoot[root];
+				laneSize[pairLane[p]]++;
+			}
+		}
+
+		// assign lanes, biggest first
+		if (taskLoad.length < numTasks) {
+			taskLoad = new int[numTasks];
+			taskStart = new int[numTasks + 1];
+			Worker[] w = Arrays.copyOf(workers, numTasks);
+			for (int t = workers.length; t < numTasks; t++) {
+				w[t] = new Worker(t);
+			}
+			workers = w;
+		}
+		Arrays.fill(taskLoad, 0, numTasks, 0);
+		for (int l = 0; l < numLanes; l++) {
+			laneOrder[l] = ((long) (Integer.MAX_VALUE - laneSize[l]) << 32) | l;
+		}
+		Arrays.sort(laneOrder, 0, numLanes);
+		for (int i = 0; i < numLanes; i++) {
+			int l = (int) laneOrder[i];
+			int best = 0;
+			for (int t = 1; t < numTasks; t++) {
+				if (taskLoad[t] < taskLoad[best]) {
+					best = t;
+				}
+			}
+			laneTask[l] = best;
+			taskLoad[best] += laneSize[l];
+		}
+
+		// fill up with the other pairs
+		int target = (numPairs + numTasks - 1) / numTasks;
+		int t = 0;
+		for (int p = 0; p < numPairs; p++) {
+			if (pairLane[p] >= 0) {
+				pairTask[p] = laneTask[pairLane[p]];
+			} else {
+				while (t < numTasks - 1 && taskLoad[t] >= target) {
+					t++;
+				}
+				pairTask[p] = t;
+				taskLoad[t]++;
+			}
+		}
+
+		// pairs of each task, in pair order
+		Arrays.fill(taskStart, 0, numTasks + 1, 0);
+		for (int p = 0; p < numPairs; p++) {
+			taskStart[pairTask[p] + 1]++;
+		}
+		for (int i = 0; i < numTasks; i++) {
+			taskStart[i + 1] += taskStart[i];
+		}
+		for (int p = 0; p < numPairs; p++) {
+			taskPairs[taskStart[pairTask[p]]++] = p;
+		}
+		for (int i = numTasks; i > 0; i--) {
+			taskStart[i] = taskStart[i - 1];
+		}
+		taskStart[0] = 0;
+	}
+}
@@ -199,7 +199,7 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 			DxGeom g = mFirst;
 			while (g != null){
 				if (GEOM_ENABLED(g)){
-					Collide(g, g.getNextEx(), UserData, Callback);
+					Collide(g, g.getNextEx(), UserData, Callback, true);
 				}
 				g = g.getNextEx();
 			}
@@ -217,17 +217,22 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 		}
 
 		// Note: g2 is assumed to be in this Block
+		// (TZ) skipParked is set for the pairs of collide(), not for collide2()
 		//void Block::Collide(dxGeom* g1, dxGeom* g2, void* UserData, 
 		//dNearCallback* Callback){
 		void Collide(DxGeom g1, DxGeom g2, Object UserData, 
-				DNearCallback Callback){
+				DNearCallback Callback, boolean skipParked){
 			if (DRAWBLOCKS) {//#ifdef DRAWBLOCKS
 				DrawBlock(this);
 			}//#endif
 			// Collide against local list
 			while (g2!=null){
 				if (GEOM_ENABLED(g2)){
-					collideAABBs (g1, g2, UserData, Callback);
+					if (skipParked) {
+						collideMovingAABBs (g1, g2, UserData, Callback);
+					} else {
+						collideAABBs (g1, g2, UserData, Callback);
+					}
 				}
 				g2 = g2.getNextEx();
 			}
@@ -256,13 +261,41 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 								g1._aabb.getMin(AXIS1) >= CurrentChild.mMaxZ ||
 								g1._aabb.getMax(AXIS1) < CurrentChild.mMinZ) continue;
 					}
-					CurrentChild.Collide(g1, CurrentChild.mFirst, UserData, Callback);
+					CurrentChild.Collide(g1, CurrentChild.mFirst, UserData, Callback, skipParked);
 				}
 			}
 		}
 
 		//void Block::CollideLocal(dxGeom* g2, void* UserData, 
 		//dNearCallback* Callback){
+		boolean RayCast(DxRayCaster.Ray ray){
+			DxGeom g = mFirst;
+			while (g != null){
+				if (!ray.visit(g)){
+					return false;
+				}
+				g = g.getNextEx();
+			}
+
+			if (mChildren != null){
+				for (int i = 0; i < SPLITS; i++){
+					Block CurrentChild = mChildren.at(i);
+					if (CurrentChild.mGeomCount == 0){
+						continue;
+					}
+					// the geoms of a child are inside its bounds
+					if (!ray.intersects(CurrentChild.mMinX, CurrentChild.mMinZ, -dInfinity,
+							CurrentChild.mMaxX, CurrentChild.mMaxZ, dInfinity)){
+						continue;
+					}
+					if (!CurrentChild.RayCast(ray)){
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
 		void CollideLocal(DxGeom g2, Object userData, 
 				DNearCallback callback){
 			// Collide against local list
@@ -616,7 +649,7 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 
 			// Collide against block and its children
 			DataCallback dc = new DataCallback(UserData, Callback);
-			CurrentBlock.Collide(g2, CurrentBlock.mFirst, dc, swap_callback);
+			CurrentBlock.Collide(g2, CurrentBlock.mFirst, dc, swap_callback, false);
 
 			// Collide against parents
 			while ((CurrentBlock = CurrentBlock.mParent) != null)
@@ -625,12 +658,17 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 		}
 		else {
 			DataCallback dc = new DataCallback(UserData, Callback);
-			Blocks[0].Collide(g2, Blocks[0].mFirst, dc, swap_callback);
+			Blocks[0].Collide(g2, Blocks[0].mFirst, dc, swap_callback, false);
 		}
 
 		lock_count--;
 	}
 
+	@Override
+	boolean rayCast(DxRayCaster.Ray ray){
+		return Blocks[0].RayCast(ray);
+	}
+
 	//dSpace dQuadTreeSpaceCreate(dxSpace* space, dVector3 Center, 
 	//dVector3 Extents, int Depth){
 	public static DxQuadTreeSpace dQuadTreeSpaceCreate(DxSpace space, DVector3C Center, 
@@ -46,19 +46,21 @@ import static org.ode4j.ode.internal.QuickStepEnums.*;
 
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DStepStatistics.Stage;
 import org.ode4j.ode.internal.Objects_H.dxQuickStepParameters;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.joints.Info2DescrQuickStep;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dmaxcallcountestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper_fn_t;
-import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
 import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo.dmemestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena.PooledArrayFactory;
 import org.ode4j.ode.threading.Atomics;
 import org.ode4j.ode.threading.task.Task;
 import org.ode4j.ode.threading.task.TaskGroup;
@@ -70,10 +72,12 @@ import org.ode4j.ode.threading.task.TaskGroup;
 public class DxQuickStep extends AbstractStepper implements dstepper_fn_t,
 dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
-	//TODO evaluate this
 	/**
-	 * Experimental improvement to reduce GC, see issue #36
+	 * Experimental improvement to reduce GC, see issue #36.
+	 * @deprecated Has no effect anymore. Scratch memory is always taken from the 
+	 * stepper memory arena, which keeps its arrays between steps.
 	 */
+	@Deprecated
 	public static boolean REUSE_OBJECTS = false;
     /**
      * Due to too many small tasks created for LCP iterations,
@@ -82,6 +86,18 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
      * as a simple loop rather than related tasks executed concurrently.
      */
     public static boolean ENABLE_LCP_ITERATIONS_MULTITHREADING = false;
+    /**
+     * Solve the LCP of an island with graph coloured constraint batches.
+     * <p>
+     * The constraint rows are split into colours so that no two rows of a colour
+     * share a body. The colours are swept one after another, the rows of a colour
+     * are independent and are processed in parallel, without locks, by as many
+     * threads as the world's task executor provides. This gives a speedup also for
+     * a single big island. The results do not depend on the number of threads,
+     * but they differ from the default solver because the rows are solved in a 
+     * different order. Random constraint reordering is not used in this mode.
+     */
+    public static boolean ENABLE_LCP_GRAPH_COLORING = false;
     
     public static int RANDOM_CONSTRAINTS_REORDERING_FREQUENCY = 8;
     public static int RRS_REORDERING = 0;
@@ -96,6 +112,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static final int dxQUICKSTEPISLAND_STAGE4LCP_AD_STEP = 8;
 	private static final int dxQUICKSTEPISLAND_STAGE4LCP_FC_STEP = dxQUICKSTEPISLAND_STAGE4A_STEP / 2;
 	private static final int dxQUICKSTEPISLAND_STAGE4B_STEP = 256;
+	private static final int dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP = 64;
 	private static final int dxQUICKSTEPISLAND_STAGE6A_STEP = 16;
 	private static final int dxQUICKSTEPISLAND_STAGE6B_STEP = 1;
 	
@@ -162,18 +179,21 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static class dxQuickStepperStage1CallContext
 	{
 		void Initialize(DxStepperProcessingCallContext stepperCallContext, 
-				BlockPointer stageMemArenaState, double[] invI, DJointWithInfo1[] jointinfos)
+				int stageMemArenaState, double[] invI, DJointWithInfo1[] jointinfos, 
+				dxQuickStepperContexts contexts)
 		{
 			m_stepperCallContext = stepperCallContext;
 			m_stageMemArenaState = stageMemArenaState; 
 			m_invI = invI;
 			m_jointinfos = jointinfos;
+			m_contexts = contexts;
 		}
 
 		DxStepperProcessingCallContext m_stepperCallContext;
-		BlockPointer                       m_stageMemArenaState;
+		int                       m_stageMemArenaState;
 		double[]                           m_invI;
 		DJointWithInfo1[]                 m_jointinfos;
+		dxQuickStepperContexts            m_contexts;
 		final dxQuickStepperStage0Outputs     m_stage0Outputs = new dxQuickStepperStage0Outputs();
 	}
 
@@ -215,7 +235,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	{
 		void Initialize(double[] invI, DJointWithInfo1[] jointinfos, int nj, 
 				int m, int mfb, final int[] mindex, int[] findex, 
-				double[] J, int[] jb, double[] Jcopy)
+				double[] J, int[] jb, double[] Jcopy, 
+				dxQuickStepperContexts contexts)
 		{
 			m_invI = invI;
 			m_jointinfos = jointinfos;
@@ -228,6 +249,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			m_J = J;
 			m_jb = jb;
 			m_Jcopy = Jcopy;
+			m_contexts = contexts;
 		}
 
 		double[]                        m_invI;
@@ -240,6 +262,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		int[]                            m_jb;
 		double[]                         m_J;
 		double[]                         m_Jcopy;
+		dxQuickStepperContexts           m_contexts;
 		final AtomicInteger m_valid_findices = new AtomicInteger();
 	};
 
@@ -247,7 +270,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	{
 		void Initialize(DxStepperProcessingCallContext callContext, 
 				dxQuickStepperLocalContext localContext, 
-				BlockPointer stage1MemArenaState)
+				int stage1MemArenaState)
 		{
 			m_stepperCallContext = callContext;
 			m_localContext = localContext;
@@ -256,7 +279,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 		DxStepperProcessingCallContext m_stepperCallContext;
 		dxQuickStepperLocalContext   m_localContext;
-		BlockPointer                            m_stage1MemArenaState;
+		int                            m_stage1MemArenaState;
 	};
 
 	private static class dxQuickStepperStage2CallContext
@@ -296,6 +319,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_last_lambda = last_lambda;
             m_bi_links_or_mi_levels = bi_links_or_mi_levels;
             m_mi_links = mi_links;
+            m_warm_starting = callContext.m_world().qs.warm_starting;
             m_LCP_IterationSyncReleasee = null;
             m_LCP_IterationAllowedThreads = 0;
             m_LCP_fcStartReleasee = null;
@@ -306,6 +330,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_LCP_iteration = 0;
             m_cf_4b.set(0);
             m_ji_4b.set(0);
+            m_color_ticket.set(0);
+            m_color_done.set(0);
         }
 
         void AssignLCP_IterationData(TaskGroup releaseeInstance, int iterationAllowedThreads) {
@@ -336,6 +362,16 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_SOR_reorderThreadsRemaining.set(reorderThreads);
         }
 
+        void AssignLCP_ColoringData(int[] colorRows, int[] colorRowStart, int[] colorChunkStart, 
+                int colorCount, int iterations) {
+            m_colorRows = colorRows;
+            m_colorRowStart = colorRowStart;
+            m_colorChunkStart = colorChunkStart;
+            m_colorCount = colorCount;
+            m_colorChunksPerIteration = colorChunkStart[colorCount];
+            m_colorTicketsTotal = m_colorChunksPerIteration * iterations;
+        }
+
         void RecordLCP_IterationStart(int totalThreads, TaskGroup nextReleasee) {
             m_LCP_iterationThreadsTotal = totalThreads;
             m_LCP_iterationThreadsRemaining.set(totalThreads);
@@ -351,6 +387,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         double[] m_last_lambda;
         AtomicInteger[] m_bi_links_or_mi_levels;
         AtomicInteger[] m_mi_links;
+        double m_warm_starting;
         TaskGroup m_LCP_IterationSyncReleasee;
         int m_LCP_IterationAllowedThreads;
         TaskGroup m_LCP_fcStartReleasee;
@@ -373,11 +410,21 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         final AtomicInteger m_SOR_reorderThreadsRemaining = new AtomicInteger();
         final AtomicInteger m_cf_4b = new AtomicInteger();
         final AtomicInteger m_ji_4b = new AtomicInteger();
+        // Graph coloring mode: the rows (indices into m_order) sorted by color, 
+        // and the first row and first chunk of each color
+        int[] m_colorRows;
+        int[] m_colorRowStart;
+        int[] m_colorChunkStart;
+        int m_colorCount;
+        int m_colorChunksPerIteration;
+        int m_colorTicketsTotal;
+        final AtomicInteger m_color_ticket = new AtomicInteger();
+        final AtomicInteger m_color_done = new AtomicInteger();
     };
 
     private static class dxQuickStepperStage5CallContext {
         void Initialize(DxStepperProcessingCallContext callContext, dxQuickStepperLocalContext localContext,
-                BlockPointer stage3MemArenaState) {
+                int stage3MemArenaState) {
             m_stepperCallContext = callContext;
             m_localContext = localContext;
             m_stage3MemArenaState = stage3MemArenaState;
@@ -385,7 +432,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
         DxStepperProcessingCallContext m_stepperCallContext;
         dxQuickStepperLocalContext m_localContext;
-        BlockPointer m_stage3MemArenaState;
+        int m_stage3MemArenaState;
     };
 
     private static class dxQuickStepperStage6CallContext {
@@ -402,6 +449,22 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         final AtomicInteger            m_bi_6b = new AtomicInteger();
     };
 
+    /**
+     * (TZ) The call contexts of one island step. They are kept in the stepper 
+     * arena, so the following steps reuse them instead of allocating new ones.
+     */
+    private static class dxQuickStepperContexts {
+        final dxQuickStepperStage1CallContext stage1 = new dxQuickStepperStage1CallContext();
+        final dxQuickStepperStage0BodiesCallContext stage0Bodies = new dxQuickStepperStage0BodiesCallContext();
+        final dxQuickStepperStage0JointsCallContext stage0Joints = new dxQuickStepperStage0JointsCallContext();
+        final dxQuickStepperLocalContext local = new dxQuickStepperLocalContext();
+        final dxQuickStepperStage2CallContext stage2 = new dxQuickStepperStage2CallContext();
+        final dxQuickStepperStage3CallContext stage3 = new dxQuickStepperStage3CallContext();
+        final dxQuickStepperStage4CallContext stage4 = new dxQuickStepperStage4CallContext();
+        final dxQuickStepperStage5CallContext stage5 = new dxQuickStepperStage5CallContext();
+        final dxQuickStepperStage6CallContext stage6 = new dxQuickStepperStage6CallContext();
+    }
+
     //***************************************************************************
 	// various common computations involving the matrix J
 
@@ -487,76 +550,98 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		int index;		// row index
 	}
 
-	private double[] buf_invI = new double[100];
+	private static final PooledArrayFactory<DJointWithInfo1> JOINTINFOS_FACTORY = 
+			new PooledArrayFactory<DJointWithInfo1>() {
+		@Override
+		public boolean isInstance(Object array) {
+			return array instanceof DJointWithInfo1[];
+		}
+		@Override
+		public DJointWithInfo1[] newArray(int size) {
+			return new DJointWithInfo1[size];
+		}
+		@Override
+		public DJointWithInfo1 newElement() {
+			return new DJointWithInfo1();
+		}
+		@Override
+		public void resetElement(DJointWithInfo1 element) {
+			element.joint = null;
+			element.info.m = 0;
+			element.info.nub = 0;
+		}
+	};
 
-	private double[] ensureSize_invI(int size) {
-		double[] a = buf_invI;
-		if (a.length < size || !REUSE_OBJECTS) {
-			a = new double[size];
-		} else {
-			Arrays.fill(a, 0);
+	private static final PooledArrayFactory<dxQuickStepperContexts> CONTEXTS_FACTORY = 
+			new PooledArrayFactory<dxQuickStepperContexts>() {
+		@Override
+		public boolean isInstance(Object array) {
+			return array instanceof dxQuickStepperContexts[];
 		}
-		return a;
-	}
-	private DJointWithInfo1[] buf_jointinfos = new DJointWithInfo1[0];
-
-	private DJointWithInfo1[] ensureSize_jointinfos(int size) {
-		DJointWithInfo1[] a = buf_jointinfos;
-		if (a.length < size || !REUSE_OBJECTS) {
-			//TODO we could partially copy the old array...
-			a = new DJointWithInfo1[size];
-			for (int i = 0; i < size; i++) {
-				a[i] = new DJointWithInfo1();
-			}
-		} else {
-			//Obviously this doesn't reset all objects, only the
-			//ones that are likely to be needed.
-			for (int i = 0; i < size; i++) {
-				DJointWithInfo1 j = a[i];
-				if (j != null) {
-					j.joint = null;
-					j.info.m = 0;
-					j.info.nub = 0;
-				}
-			}
+		@Override
+		public dxQuickStepperContexts[] newArray(int size) {
+			return new dxQuickStepperContexts[size];
 		}
-		return a;
-	}
+		@Override
+		public dxQuickStepperContexts newElement() {
+			return new dxQuickStepperContexts();
+		}
+		@Override
+		public void resetElement(dxQuickStepperContexts element) {
+			// the contexts are initialized by each stage
+		}
+	};
+
+	private static final PooledArrayFactory<IndexError> ORDER_FACTORY = 
+			new PooledArrayFactory<IndexError>() {
+		@Override
+		public boolean isInstance(Object array) {
+			return array instanceof IndexError[];
+		}
+		@Override
+		public IndexError[] newArray(int size) {
+			return new IndexError[size];
+		}
+		@Override
+		public IndexError newElement() {
+			return new IndexError();
+		}
+		@Override
+		public void resetElement(IndexError element) {
+			element.index = 0;
+		}
+	};
 	
 	/*extern */
 	private void dxQuickStepIsland(DxStepperProcessingCallContext callContext)
 	{
 		if (TIMING) dTimerStart("preprocessing");
+		callContext.StartStatisticsLap();
 
 	    DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 	    int nb = callContext.m_islandBodiesCount();
 	    int _nj = callContext.m_islandJointsCount();
 
-	    //double[] invI = memarena.AllocateArrayDReal(nb*3*4);//new double[3*4*nb];//dRealAllocaArray (invI,3*4*nb);
-	    double[] invI = ensureSize_invI(nb*3*4);
+	    final dxQuickStepperContexts contexts = memarena.AllocatePooled(CONTEXTS_FACTORY);
+	    double[] invI = memarena.AllocateArrayDReal(nb*3*4);//new double[3*4*nb];//dRealAllocaArray (invI,3*4*nb);
 	    
 	    //dJointWithInfo1[] const jointinfos = memarena.AllocateArray<dJointWithInfo1>(_nj);
-	    memarena.dummy();
-	    //DJointWithInfo1[] jointinfos = new DJointWithInfo1[_nj];
-	    DJointWithInfo1[] jointinfos = ensureSize_jointinfos(_nj);	    
+	    DJointWithInfo1[] jointinfos = memarena.AllocateArrayPooled(JOINTINFOS_FACTORY, _nj);
 	    
 	    final int allowedThreads = callContext.m_stepperAllowedThreads();
 	    dIASSERT(allowedThreads != 0);
 
-	    BlockPointer stagesMemArenaState = memarena.SaveState();
+	    int stagesMemArenaState = memarena.SaveState();
 
-	    memarena.dummy();
-	    final dxQuickStepperStage1CallContext stage1CallContext = new dxQuickStepperStage1CallContext(); 
+	    final dxQuickStepperStage1CallContext stage1CallContext = contexts.stage1; 
 	    		//(dxQuickStepperStage1CallContext )memarena.AllocateBlock(sizeof(dxQuickStepperStage1CallContext));
-	    stage1CallContext.Initialize(callContext, stagesMemArenaState, invI, jointinfos);
+	    stage1CallContext.Initialize(callContext, stagesMemArenaState, invI, jointinfos, contexts);
 
-	    memarena.dummy();
-	    final dxQuickStepperStage0BodiesCallContext stage0BodiesCallContext = new dxQuickStepperStage0BodiesCallContext(); 
+	    final dxQuickStepperStage0BodiesCallContext stage0BodiesCallContext = contexts.stage0Bodies; 
 	    		//(dxQuickStepperStage0BodiesCallContext)memarena.AllocateBlock(sizeof(dxQuickStepperStage0BodiesCallContext));
 	    stage0BodiesCallContext.Initialize(callContext, invI);
 
-	    memarena.dummy();
-	    final dxQuickStepperStage0JointsCallContext stage0JointsCallContext = new dxQuickStepperStage0JointsCallContext(); 
+	    final dxQuickStepperStage0JointsCallContext stage0JointsCallContext = contexts.stage0Joints; 
 	    		//(dxQuickStepperStage0JointsCallContext)memarena.AllocateBlock(sizeof(dxQuickStepperStage0JointsCallContext));
 	    stage0JointsCallContext.Initialize(callContext, jointinfos, stage1CallContext.m_stage0Outputs);
 
@@ -564,6 +649,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    {
 	        dxQuickStepIsland_Stage0_Bodies(stage0BodiesCallContext);
 	        dxQuickStepIsland_Stage0_Joints(stage0JointsCallContext);
+	        callContext.StatisticsLap(Stage.STAGE0);
 	        dxQuickStepIsland_Stage1(stage1CallContext);
 	    }
 	    else
@@ -648,10 +734,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    // frame, and compute the rotational force and add it to the torque
 	    // accumulator. I and invI are a vertical stack of 3x4 matrices, one per body.
         double[] invIrowA = callContext.m_invI;
+        StepperScratch scratch = StepperScratch.get();
         int bodyIndex ;
         while ((bodyIndex = Atomics.ThrsafeIncrementIntUpToLimit(callContext.m_inertiaBodyIndex, nb)) != nb) {
             int invIrowP = bodyIndex * IIE__MAX;
-            DMatrix3 tmp = new DMatrix3();
+            DMatrix3 tmp = scratch.tmp;
             DxBody b = bodyP[bodyIndex + bodyOfs];
 
             // compute inverse inertia tensor in global frame
@@ -661,7 +748,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             // Don't apply gyroscopic torques to bodies
             // if not flagged or the body is kinematic
             if (b.isFlagsGyroscopic() && (b.invMass>0)) {
-                DMatrix3 I = new DMatrix3();
+                DMatrix3 I = scratch.I;
                 // compute inertia tensor in global frame
                 dMultiply2_333 (tmp,b.mass._I,b.posr().R());
                 dMultiply0_333 (I,b.posr().R(),tmp);
@@ -675,7 +762,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                 //"Stabilizing Gyroscopic Forces in Rigid Multibody Simulations"
                 // (LacoursiÃ¨re 2006)
                 double h = callContext.m_stepperCallContext.m_stepSize(); // Step size
-                DVector3 L = new DVector3(); // Compute angular momentum
+                DVector3 L = scratch.L; // Compute angular momentum
                 dMultiply0_331(L,I,b.avel);
                 
                 // Compute a new effective 'inertia tensor'
@@ -685,7 +772,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                 // Itild may not be symmetric pos-definite, 
                 // but we can still use it to compute implicit
                 // gyroscopic torques.
-                DMatrix3 Itild= new DMatrix3();//{0};  
+                DMatrix3 Itild= scratch.Itild;//{0};  
+                Itild.setZero();
                 dSetCrossMatrixMinus(Itild,L);//,4);
 //	                    for (int ii=0;ii<12;++ii) {
 //	                      Itild[ii]=Itild[ii]*h+I[ii];
@@ -697,7 +785,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                 // a sort of "torque"
                 L.scale(dRecip(h));//dScaleVector3(L,dRecip(h)); 
                 // Invert the pseudo-tensor
-                DMatrix3 itInv = new DMatrix3();
+                DMatrix3 itInv = scratch.itInv;
                 // This is a closed-form inversion.
                 // It's probably not numerically stable
                 // when dealing with small masses with
@@ -719,7 +807,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                     // to the old inertia matrix as explicit
                     // torques with a semi-implicit update
                     // step.
-                    DVector3 tau0 = new DVector3();
+                    DVector3 tau0 = scratch.tau0;
                     dMultiply0_331(tau0,Itild,L);
                     
                     // Add the gyro torques to the torque 
@@ -782,6 +870,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		int nj = stage1CallContext.m_stage0Outputs.nj;
 		int m = stage1CallContext.m_stage0Outputs.m;
 		int mfb = stage1CallContext.m_stage0Outputs.mfb;
+		final dxQuickStepperContexts contexts = stage1CallContext.m_contexts;
 
 		DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 		memarena.RestoreState(stage1CallContext.m_stageMemArenaState);
@@ -802,9 +891,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 		// if there are constraints, compute the constraint force
 		if (m > 0) {
-			//mindex = memarena.AllocateArray<int int>(2 * (size_t)(nj + 1));
-			memarena.dummy();
-			mindex = new int[2 * (nj + 1)];
+			mindex = memarena.AllocateArrayInt(2 * (nj + 1));
 			{
 				int mcurrO = 0;//mindex;
 				int moffs = 0, mfboffs = 0;
@@ -833,14 +920,12 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			Jcopy = memarena.AllocateArrayDReal(m * JME__MAX);
 		}
 
-		memarena.dummy();
-		dxQuickStepperLocalContext localContext = new dxQuickStepperLocalContext(); 
+		dxQuickStepperLocalContext localContext = contexts.local; 
 		//(dxQuickStepperLocalContext *)memarena.AllocateBlock(sizeof(dxQuickStepperLocalContext));
-		localContext.Initialize(invI, jointinfos, nj, m, mfb, mindex, findex, J, jb, Jcopy);
+		localContext.Initialize(invI, jointinfos, nj, m, mfb, mindex, findex, J, jb, Jcopy, contexts);
 
-		BlockPointer stage1MemarenaState = memarena.SaveState();
-		memarena.dummy();
-		final dxQuickStepperStage3CallContext stage3CallContext = new dxQuickStepperStage3CallContext();
+		int stage1MemarenaState = memarena.SaveState();
+		final dxQuickStepperStage3CallContext stage3CallContext = contexts.stage3;
 		//(dxQuickStepperStage3CallContext*)memarena.AllocateBlock(sizeof(dxQuickStepperStage3CallContext));
 		stage3CallContext.Initialize(callContext, localContext, stage1MemarenaState);
 
@@ -849,11 +934,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			// force mixing vector `cfm', and LCP low and high bound vectors, and an
 			// 'findex' vector.
 			//dReal *rhs_tmp = memarena.AllocateArray<dReal>((size_t)nb*6);
-			memarena.dummy();
-			double[] rhs_tmp = new double[nb*6];
+			double[] rhs_tmp = memarena.AllocateArrayDReal(nb*6);
 
-			memarena.dummy();
-			final dxQuickStepperStage2CallContext stage2CallContext = new dxQuickStepperStage2CallContext(); 
+			final dxQuickStepperStage2CallContext stage2CallContext = contexts.stage2; 
 			//(dxQuickStepperStage2CallContext*)memarena.AllocateBlock(sizeof(dxQuickStepperStage2CallContext));
 			stage2CallContext.Initialize(callContext, localContext, rhs_tmp);
 
@@ -862,9 +945,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 			if (allowedThreads == 1)
 			{
+				callContext.StatisticsLap(Stage.STAGE1);
 				dxQuickStepIsland_Stage2a(stage2CallContext);
 				dxQuickStepIsland_Stage2b(stage2CallContext);
 				dxQuickStepIsland_Stage2c(stage2CallContext);
+				callContext.StatisticsLap(Stage.STAGE2);
 				dxQuickStepIsland_Stage3(stage3CallContext);
 			}
 			else
@@ -904,6 +989,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			}
 		}
 		else {
+			callContext.StatisticsLap(Stage.STAGE1);
 			dxQuickStepIsland_Stage3(stage3CallContext);
 		}
 	}
@@ -988,7 +1074,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 	        int validFIndices = 0;
 
-	        Info2DescrQuickStep Jinfo = new Info2DescrQuickStep();
+	        Info2DescrQuickStep Jinfo = StepperScratch.get().quickStepInfo;
 	        Jinfo.setRowskip(JME__MAX, JME__MAX);
 	        Jinfo.setArrays(J, findex);
 		            
@@ -1010,7 +1096,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            dSetValue(findex, ofsi, infom, -1);
 
 	            DxJoint joint = jointinfos[ji].joint;
-	            joint.getInfo2(stepsizeRecip, worldERP, Jinfo);
+	            // substeps correct the position errors over the whole step
+	            joint.getInfo2(stepsizeRecip / callContext.m_substeps(), worldERP, Jinfo);
 
 	            // findex iteration is compact and is not going to pollute caches - do it first
 	            // adjust returned findex values for global index numbering
@@ -1150,12 +1237,17 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         memarena.RestoreState(stage3CallContext.m_stage1MemArenaState);
         stage3CallContext = null; // WARNING! stage3CallContext is not valid after this point!
         dIVERIFY(stage3CallContext == null); // To suppress unused variable assignment warnings
-	    BlockPointer stage3MemarenaState = memarena.SaveState();
-	    final dxQuickStepperStage5CallContext stage5CallContext = new dxQuickStepperStage5CallContext();
+	    int stage3MemarenaState = memarena.SaveState();
+	    final dxQuickStepperStage5CallContext stage5CallContext = localContext.m_contexts.stage5;
 	    stage5CallContext.Initialize(callContext, localContext, stage3MemarenaState);
 	    
         int m = localContext.m_m;
 
+        DxStepStatistics statistics = callContext.m_world().getStepStatistics();
+        if (statistics != null && m > 0) {
+        	statistics.addConstraintRows(m, callContext.m_world().qs.num_iterations);
+        }
+
         if (m > 0) {
             // load lambda from the value saved on the previous iteration
 	        double[] lambda = memarena.AllocateArrayDReal(m);
@@ -1164,10 +1256,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             double[] cforce = memarena.AllocateArrayDReal(nb * CFE__MAX);
             double[] iMJ = memarena.AllocateArrayDReal(m * IMJ__MAX);//, INVMJ_ALIGNMENT);
 	        // order to solve constraint rows in
-	        IndexError[] order = new IndexError[m];
-	        for (int i = 0; i < m; i++) {
-	        	order[i] = new IndexError();
-	        }
+	        IndexError[] order = memarena.AllocateArrayPooled(ORDER_FACTORY, m);
 	        double[] last_lambda = null;
 	        if (CONSTRAINTS_REORDERING_METHOD == ReorderingMethod.REORDERING_METHOD__BY_ERROR) {
 		        // the lambda computed at the previous iteration.
@@ -1186,26 +1275,45 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        	mi_links = new AtomicInteger[2 * (m + 1)];// memarena->AllocateArray<atomicord32>(2 * (m + 1));
 	        }
 
-	        final dxQuickStepperStage4CallContext stage4CallContext = new dxQuickStepperStage4CallContext();
+	        final dxQuickStepperStage4CallContext stage4CallContext = localContext.m_contexts.stage4;
 	        stage4CallContext.Initialize(callContext, localContext, lambda, cforce, iMJ, order, last_lambda, bi_links_or_mi_levels, mi_links);
         
 	        if (singleThreadedExecution) {
+	            callContext.StatisticsLap(Stage.STAGE3);
 	            dxQuickStepIsland_Stage4a(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_iMJComputation(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_STfcComputation(stage4CallContext);
+	            if (IsStage4LCP_WarmStartRequired(stage4CallContext)) {
+	            	dxQuickStepIsland_Stage4LCP_WarmStartfc(stage4CallContext);
+	            }
 	            dxQuickStepIsland_Stage4LCP_AdComputation(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_ReorderPrep(stage4CallContext);
+	            callContext.StatisticsLap(Stage.STAGE4);
 	            
 	            DxWorld world = callContext.m_world();
-	            int num_iterations = world.qs.num_iterations;
-				for (int iteration = 0; iteration < num_iterations; iteration++) {
-					if (IsSORConstraintsReorderRequiredForIteration(iteration)) {
-						stage4CallContext.ResetSOR_ConstraintsReorderVariables(0);
-						dxQuickStepIsland_Stage4LCP_ConstraintsShuffling(stage4CallContext, iteration);
-					}
-					dxQuickStepIsland_Stage4LCP_STIteration(stage4CallContext);
+	            if (ENABLE_LCP_GRAPH_COLORING) {
+	            	// The stepper itself is single threaded here, the helpers for the colored 
+	            	// iterations are attached to the island's task group instead.
+	            	dxQuickStepIsland_Stage4LCP_ColoredIterationStart(stage4CallContext, callContext.m_taskGroup(), 
+	            			world.GetThreadingIslandsMaxThreadsCount(null));
+	            } else {
+	            	int num_iterations = world.qs.num_iterations;
+	            	for (int iteration = 0; iteration < num_iterations; iteration++) {
+	            		if (IsSORConstraintsReorderRequiredForIteration(iteration)) {
+	            			stage4CallContext.ResetSOR_ConstraintsReorderVariables(0);
+	            			dxQuickStepIsland_Stage4LCP_ConstraintsShuffling(stage4CallContext, iteration);
+	            		}
+	            		dxQuickStepIsland_Stage4LCP_STIteration(stage4CallContext);
+	            	}
+	            }
+	            callContext.StatisticsLap(Stage.LCP);
+	            if (statistics != null) {
+	            	// not part of any stage
+	            	statistics.addResidual(dxQuickStepIsland_Stage4LCP_Residual(stage4CallContext));
+	            	callContext.StartStatisticsLap();
 	            }
 	            dxQuickStepIsland_Stage4b(stage4CallContext);
+	            callContext.StatisticsLap(Stage.STAGE4);
 	            dxQuickStepIsland_Stage5(stage5CallContext);
 	        } else {
 	            final TaskGroup stage5 = callContext.m_taskGroup().subgroup("QuickStepIsland Stage5", new Runnable() {
@@ -1226,7 +1334,13 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            final TaskGroup stage4LCP_IterationStart = stage4LCP_IterationSync.subgroup("QuickStepIsland Stage4LCP_Iteration Start", new Runnable() {
                     @Override
                     public void run() {
-                    	if (ENABLE_LCP_ITERATIONS_MULTITHREADING) {
+                    	if (IsStage4LCP_WarmStartRequired(stage4CallContext)) {
+                    		dxQuickStepIsland_Stage4LCP_WarmStartfc(stage4CallContext);
+                    	}
+                    	if (ENABLE_LCP_GRAPH_COLORING) {
+                    		dxQuickStepIsland_Stage4LCP_ColoredIterationStart(stage4CallContext, 
+                    				stage4CallContext.m_LCP_IterationSyncReleasee, stage4CallContext.m_LCP_IterationAllowedThreads);
+                    	} else if (ENABLE_LCP_ITERATIONS_MULTITHREADING) {
                     		dxQuickStepIsland_Stage4LCP_IterationStart(stage4CallContext);
                     	} else {
                     		dxQuickStepIsland_Stage4LCP_IterationStartSingleThread(stage4CallContext);
@@ -1281,6 +1395,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                 stage5.submit();
 	        }
         } else {
+        	callContext.StatisticsLap(Stage.STAGE3);
         	dxQuickStepIsland_Stage5(stage5CallContext);
         }
     }
@@ -1291,6 +1406,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
         double[] lambda = stage4CallContext.m_lambda;
         int[] mindex = localContext.m_mindex;
+        double warm_starting = stage4CallContext.m_warm_starting;
+        DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
 
         int nj = localContext.m_nj;
         int step_size = dxQUICKSTEPISLAND_STAGE4A_STEP;
@@ -1301,7 +1418,60 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             int ji = ji_step * step_size;
             int lambdacurr = mindex[ji * 2];
             int lambdsnext = mindex[2 * (ji + Math.min(step_size, nj - ji))];
-            dSetZero(lambda, lambdacurr, lambdsnext - lambdacurr);
+            if (warm_starting > 0) {
+            	// start from the lambdas of the previous step (see DxContactCache for contacts)
+            	int jiend = ji + Math.min(step_size, nj - ji);
+            	for (int jicurr = ji; jicurr != jiend; jicurr++) {
+            		double[] jointlambda = jointinfos[jicurr].joint.lambda;
+            		int infom = jointinfos[jicurr].info.m;
+            		for (int j = 0; j != infom; j++) {
+            			lambda[lambdacurr + j] = warm_starting * jointlambda[j];
+            		}
+            		lambdacurr += infom;
+            	}
+            	dIASSERT(lambdacurr == lambdsnext);
+            } else {
+            	dSetZero(lambda, lambdacurr, lambdsnext - lambdacurr);
+            }
+        }
+    }
+
+    private static boolean IsStage4LCP_WarmStartRequired(dxQuickStepperStage4CallContext stage4CallContext) {
+    	return stage4CallContext.m_warm_starting > 0;
+    }
+
+    /**
+     * Apply the initial (warm started) lambdas to the constraint forces:
+     * fc += inv(M)*J'*lambda. Must run after iMJ and fc are computed and 
+     * before the first LCP iteration.
+     */
+    private static
+    void dxQuickStepIsland_Stage4LCP_WarmStartfc(dxQuickStepperStage4CallContext stage4CallContext)
+    {
+        dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
+        double[] lambda = stage4CallContext.m_lambda;
+        double[] fc = stage4CallContext.m_cforce;
+        double[] iMJ = stage4CallContext.m_iMJ;
+        int[] jb = localContext.m_jb;
+        int m = localContext.m_m;
+
+        for (int i = 0; i != m; i++) {
+            double lambda_i = lambda[i];
+            if (lambda_i == 0) {
+                continue;
+            }
+            int iMJ_ptr = i * IMJ__MAX;
+            int fc_ptr1 = jb[i * 2] * CFE__MAX;
+            for (int k = 0; k != 6; k++) {
+                fc[fc_ptr1 + k] += lambda_i * iMJ[iMJ_ptr + k];
+            }
+            int b2 = jb[i * 2 + 1];
+            if (b2 != -1) {
+                int fc_ptr2 = b2 * CFE__MAX;
+                for (int k = 0; k != 6; k++) {
+                    fc[fc_ptr2 + k] += lambda_i * iMJ[iMJ_ptr + 6 + k];
+                }
+            }
         }
     }
 
@@ -1312,7 +1482,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
         
         int stage4b_allowedThreads = 1;
-        if (IsStage4bJointInfosIterationRequired(localContext)) {
+        if (IsStage4bJointInfosIterationRequired(stage4CallContext)) {
             int allowedThreads = callContext.m_stepperAllowedThreads();
             stage4b_allowedThreads += CalculateOptimalThreadsCount(localContext.m_nj, allowedThreads - stage4b_allowedThreads, dxQUICKSTEPISLAND_STAGE4B_STEP);
         }
@@ -1747,8 +1917,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static void ConstraintsReorderingHelper(dxQuickStepperStage4CallContext stage4CallContext, int startIndex,
 			int indicesCount) {
 		IndexError[] order = stage4CallContext.m_order;
+		AtomicLong seed = stage4CallContext.m_stepperCallContext.m_world().randomSeed;
 		for (int index = 1; index < indicesCount; ++index) {
-			int swapIndex = dRandInt(index + 1);
+			int swapIndex = dRandInt(seed, index + 1);
 			IndexError tmp = order[startIndex + index];
 			order[startIndex + index] = order[startIndex + swapIndex];
 			order[startIndex + swapIndex] = tmp;
@@ -1991,6 +2162,148 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         Atomics.ThrsafeAdd(stage4CallContext.m_LCP_iterationThreadsRemaining, -1);
     }
 
+    private static
+    void dxQuickStepIsland_Stage4LCP_ColoredIterationStart(final dxQuickStepperStage4CallContext stage4CallContext, 
+    		TaskGroup helperGroup, int maxThreads)
+    {
+        DxStepperProcessingCallContext callContext = stage4CallContext.m_stepperCallContext;
+        int num_iterations = callContext.m_world().qs.num_iterations;
+        int maxColorRows = dxQuickStepIsland_Stage4LCP_ConstraintsColoring(stage4CallContext, num_iterations);
+
+        // The calling thread takes part as well and finishes alone if the helpers 
+        // do not get a thread in time. Late helpers find no work and exit.
+        int stage4LCP_Colored_allowedThreads = CalculateOptimalThreadsCount(maxColorRows, maxThreads, dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP);
+        for (int i = 1; i < stage4LCP_Colored_allowedThreads; i++) {
+            Task task = helperGroup.subtask("QuickStepIsland Stage4LCP_ColoredIteration", new Runnable() {
+                @Override
+                public void run() {
+                    dxQuickStepIsland_Stage4LCP_ColoredIteration(stage4CallContext);
+                }
+            });
+            task.submit();
+        }
+        dxQuickStepIsland_Stage4LCP_ColoredIteration(stage4CallContext);
+
+        // Wait for the chunks still being processed by the helpers
+        int ticketsTotal = stage4CallContext.m_colorTicketsTotal;
+        while (stage4CallContext.m_color_done.get() != ticketsTotal) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Greedy coloring of the constraint rows in solving order. A row gets the
+     * first color in which none of its bodies is used yet and, for rows with
+     * findex, which comes after the color of the findex row.
+     * @return the maximum number of rows in one color
+     */
+    private static
+    int dxQuickStepIsland_Stage4LCP_ConstraintsColoring(dxQuickStepperStage4CallContext stage4CallContext, int num_iterations)
+    {
+        DxStepperProcessingCallContext callContext = stage4CallContext.m_stepperCallContext;
+        dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
+        DxWorldProcessMemArena memarena = callContext.m_stepperArena();
+
+        int m = localContext.m_m;
+        int nb = callContext.m_islandBodiesCount();
+        IndexError[] order = stage4CallContext.m_order;
+        int[] jb = localContext.m_jb;
+        int[] findex = localContext.m_findex;
+
+        int[] rowColor = memarena.AllocateArrayInt(m);
+        int[] bodyColor = memarena.AllocateArrayInt(nb);
+        int[] pending = memarena.AllocateArrayInt(m);
+        int[] colorRows = memarena.AllocateArrayInt(m);
+        int[] colorRowStart = memarena.AllocateArrayInt(m + 1);
+        int[] colorChunkStart = memarena.AllocateArrayInt(m + 1);
+        Arrays.fill(rowColor, 0, m, -1);
+        Arrays.fill(bodyColor, 0, nb, -1);
+        for (int i = 0; i != m; ++i) {
+            pending[i] = i;
+        }
+
+        int pendingCount = m;
+        int colorCount = 0;
+        int filled = 0;
+        int maxColorRows = 0;
+        while (pendingCount != 0) {
+            int color = colorCount++;
+            colorRowStart[color] = filled;
+            int kept = 0;
+            for (int p = 0; p != pendingCount; ++p) {
+                int i = pending[p];
+                int index = order[i].index;
+                int b1 = jb[index * 2];
+                int b2 = jb[index * 2 + 1];
+                int fi = findex[index];
+                if (bodyColor[b1] != color && (b2 == -1 || bodyColor[b2] != color)
+                        && (fi == -1 || (rowColor[fi] != -1 && rowColor[fi] != color))) {
+                    rowColor[index] = color;
+                    bodyColor[b1] = color;
+                    if (b2 != -1) {
+                        bodyColor[b2] = color;
+                    }
+                    colorRows[filled++] = i;
+                } else {
+                    pending[kept++] = i;
+                }
+            }
+            // Rows with findex == -1 come first in the order, so every color takes at least one row
+            dIASSERT(kept < pendingCount);
+            pendingCount = kept;
+            maxColorRows = Math.max(maxColorRows, filled - colorRowStart[color]);
+        }
+        colorRowStart[colorCount] = filled;
+
+        final int step_size = dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP;
+        colorChunkStart[0] = 0;
+        for (int color = 0; color != colorCount; ++color) {
+            int rows = colorRowStart[color + 1] - colorRowStart[color];
+            colorChunkStart[color + 1] = colorChunkStart[color] + (rows + step_size - 1) / step_size;
+        }
+        stage4CallContext.AssignLCP_ColoringData(colorRows, colorRowStart, colorChunkStart, colorCount, num_iterations);
+        return maxColorRows;
+    }
+
+    private static
+    void dxQuickStepIsland_Stage4LCP_ColoredIteration(dxQuickStepperStage4CallContext stage4CallContext)
+    {
+        final int step_size = dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP;
+        int[] colorRows = stage4CallContext.m_colorRows;
+        int[] colorRowStart = stage4CallContext.m_colorRowStart;
+        int[] colorChunkStart = stage4CallContext.m_colorChunkStart;
+        int chunksPerIteration = stage4CallContext.m_colorChunksPerIteration;
+        int ticketsTotal = stage4CallContext.m_colorTicketsTotal;
+
+        // Chunks are handed out in order: iteration by iteration, color by color.
+        // A chunk may only start when all chunks of the previous colors are done.
+        // Those are already taken by running threads, so waiting for them is safe.
+        int color = 0;
+        int ticket;
+        while ((ticket = Atomics.ThrsafeIncrementIntUpToLimit(stage4CallContext.m_color_ticket, ticketsTotal)) != ticketsTotal) {
+            int iteration = ticket / chunksPerIteration;
+            int chunk = ticket - iteration * chunksPerIteration;
+            if (colorChunkStart[color] > chunk) {
+                color = 0;
+            }
+            while (colorChunkStart[color + 1] <= chunk) {
+                ++color;
+            }
+
+            int colorStartTicket = iteration * chunksPerIteration + colorChunkStart[color];
+            while (stage4CallContext.m_color_done.get() < colorStartTicket) {
+                Thread.yield();
+            }
+
+            int start = colorRowStart[color] + (chunk - colorChunkStart[color]) * step_size;
+            int end = Math.min(start + step_size, colorRowStart[color + 1]);
+            for (int r = start; r != end; ++r) {
+                dxQuickStepIsland_Stage4LCP_IterationStep(stage4CallContext, colorRows[r]);
+            }
+            Atomics.ThrsafeAdd(stage4CallContext.m_color_done, 1);
+        }
+    }
+
 	private static
     void dxQuickStepIsland_Stage4LCP_STIteration(dxQuickStepperStage4CallContext stage4CallContext)
     {
@@ -2099,8 +2412,61 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		}
     }  
 
-	private static boolean IsStage4bJointInfosIterationRequired(dxQuickStepperLocalContext localContext) {
-		return localContext.m_mfb > 0;
+    /**
+     * Computes the changes of lambda that another iteration would make, 
+     * without applying them.
+     * @return the largest absolute change of all rows
+     */
+    private static 
+    double dxQuickStepIsland_Stage4LCP_Residual(dxQuickStepperStage4CallContext stage4CallContext)
+    {
+	    dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
+	    int m = localContext.m_m;
+        double[] lambda = stage4CallContext.m_lambda;
+        double[] fc = stage4CallContext.m_cforce;
+		double[] J = localContext.m_J;
+        int[] jb = localContext.m_jb;
+        int[] findex = localContext.m_findex;
+
+        double residual = 0;
+        for (int index = 0; index != m; ++index) {
+        	int J_ptr = index * JME__MAX;
+        	double delta = J[J_ptr + JME_RHS] - lambda[index] * J[J_ptr + JME_CFM];
+        	int fc_ptr1 = jb[index * 2] * CFE__MAX;
+        	delta -= fc[fc_ptr1 + CFE_LX] * J[J_ptr + JME_J1LX] + fc[fc_ptr1 + CFE_LY] * J[J_ptr + JME_J1LY] +
+        			fc[fc_ptr1 + CFE_LZ] * J[J_ptr + JME_J1LZ] + fc[fc_ptr1 + CFE_AX] * J[J_ptr + JME_J1AX] +
+        			fc[fc_ptr1 + CFE_AY] * J[J_ptr + JME_J1AY] + fc[fc_ptr1 + CFE_AZ] * J[J_ptr + JME_J1AZ];
+        	int b2 = jb[index * 2 + 1];
+        	if (b2 != -1) {
+        		int fc_ptr2 = b2 * CFE__MAX;
+        		delta -= fc[fc_ptr2 + CFE_LX] * J[J_ptr + JME_J2LX] + fc[fc_ptr2 + CFE_LY] * J[J_ptr + JME_J2LY] +
+        				fc[fc_ptr2 + CFE_LZ] * J[J_ptr + JME_J2LZ] + fc[fc_ptr2 + CFE_AX] * J[J_ptr + JME_J2AX] +
+        				fc[fc_ptr2 + CFE_AY] * J[J_ptr + JME_J2AY] + fc[fc_ptr2 + CFE_AZ] * J[J_ptr + JME_J2AZ];
+        	}
+        	double hi_act, lo_act;
+        	if (findex[index] != -1) {
+        		hi_act = dFabs (J[J_ptr + JME_HI] * lambda[findex[index]]);
+        		lo_act = -hi_act;
+        	} else {
+        		hi_act = J[J_ptr + JME_HI];
+        		lo_act = J[J_ptr + JME_LO];
+        	}
+        	double new_lambda = lambda[index] + delta;
+        	if (new_lambda < lo_act) {
+        		new_lambda = lo_act;
+        	} else if (new_lambda > hi_act) {
+        		new_lambda = hi_act;
+        	}
+        	double change = dFabs (new_lambda - lambda[index]);
+        	if (change > residual) {
+        		residual = change;
+        	}
+        }
+        return residual;
+    }
+
+	private static boolean IsStage4bJointInfosIterationRequired(dxQuickStepperStage4CallContext stage4CallContext) {
+		return stage4CallContext.m_localContext.m_mfb > 0 || IsStage4LCP_WarmStartRequired(stage4CallContext);
 	}
     
 	private static
@@ -2130,7 +2496,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         // note that the SOR method overwrites rhs and J at this point, so
         // they should not be used again.
 
-        if (IsStage4bJointInfosIterationRequired(localContext)) {
+        if (IsStage4bJointInfosIterationRequired(stage4CallContext)) {
+            boolean saveLambdas = IsStage4LCP_WarmStartRequired(stage4CallContext);
             double[] Jcopy = localContext.m_Jcopy;
             double[] lambda = stage4CallContext.m_lambda;
             int[] mindex = localContext.m_mindex;
@@ -2163,6 +2530,10 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                         }
                         Jcopycurr += infom * JCE__MAX;
                     }
+                    // keep the lambdas for warm starting the next step
+                    if (saveLambdas) {
+                        System.arraycopy(lambda, lambdacurr, joint.lambda, 0, infom);
+                    }
 
                     if (++jicurr == jiend) {
                         break;
@@ -2182,15 +2553,17 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 	    memarena.RestoreState(stage5CallContext.m_stage3MemArenaState);
 
-	    final dxQuickStepperStage6CallContext stage6CallContext = new dxQuickStepperStage6CallContext();
+	    final dxQuickStepperStage6CallContext stage6CallContext = localContext.m_contexts.stage6;
 	    stage6CallContext.Initialize(callContext, localContext);
 
 	    int allowedThreads = callContext.m_stepperAllowedThreads();
 
 	    if (allowedThreads == 1) {
+	        callContext.StatisticsLap(Stage.STAGE5);
 	        dxQuickStepIsland_Stage6a(stage6CallContext);
 	        dxQuickStepIsland_Stage6_VelocityCheck(stage6CallContext);
 	        dxQuickStepIsland_Stage6b(stage6CallContext);
+	        callContext.StatisticsLap(Stage.STAGE6);
 	    } else {
 	        int nb = callContext.m_islandBodiesCount();
 	        int stage6a_allowedThreads = CalculateOptimalThreadsCount(nb, allowedThreads, dxQUICKSTEPISLAND_STAGE6A_STEP);
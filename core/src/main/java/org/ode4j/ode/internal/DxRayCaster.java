@@ -0,0 +1,288 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DRayCastResults;
+import org.ode4j.ode.internal.aabbtree.AABBTreeQueryCallback;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Batched ray casts into a space, see 
+ * {@link DxSpace#dSpaceRayCastBatch(double[], double[], double, boolean, TaskExecutor, DRayCastResults)}.
+ * <p>
+ * The rays are split into one range per executor thread. Each task has
+ * one ray geom that is moved to every ray of its range, the spaces pass
+ * the geoms that the ray may hit to {@link Ray#visit(DxGeom)} (see 
+ * {@link DxSpace#rayCast(Ray)}), which collides the ray geom with them
+ * and keeps the closest hit. The ray is shortened to the closest hit so
+ * far, so that the spaces can skip geoms further away.
+ * <p>
+ * The spaces are cleaned before the rays are cast and are not modified
+ * while the rays are cast. Trimeshes and heightfields keep collision 
+ * state in the geom, rays are collided with them one at a time.
+ */
+final class DxRayCaster {
+
+	/** Minimum number of rays per task, smaller tasks are not worth the overhead. */
+	static final int MIN_RAYS_PER_TASK = 64;
+
+	/**
+	 * The ray that is cast by one task.
+	 */
+	final class Ray implements Runnable, AABBTreeQueryCallback<DxGeom> {
+		/** Index of the task, for spaces that keep per task data. */
+		final int task;
+		private final DxRay ray = new DxRay(null, 1);
+		private final DContactGeomBuffer contact = new DContactGeomBuffer(1);
+		private int start, end;
+
+		// current ray, the direction is normalized
+		private int index;
+		double px, py, pz;
+		double dx, dy, dz;
+		/** Length of the ray, the distance to the closest hit so far. */
+		double length;
+		private boolean hit;
+
+		/** Result of {@link #clip(double, double, double, double, double, double)}. */
+		double enter, exit;
+
+		Ray(int task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			for (int i = start; i < end; i++) {
+				cast(i);
+			}
+		}
+
+		private void cast(int i) {
+			double x = directions[i * 3], y = directions[i * 3 + 1], z = directions[i * 3 + 2];
+			double l = Math.sqrt(x * x + y * y + z * z);
+			if (!(l > 0)) {
+				return;
+			}
+			index = i;
+			px = origins[i * 3];
+			py = origins[i * 3 + 1];
+			pz = origins[i * 3 + 2];
+			dx = x / l;
+			dy = y / l;
+			dz = z / l;
+			length = maxDist;
+			hit = false;
+			ray.set(px, py, pz, dx, dy, dz);
+			ray.setLength(length);
+			space.rayCast(this);
+		}
+
+		/**
+		 * Clips the ray to a box, sets {@link #enter} and {@link #exit}.
+		 * @return false if the ray misses the box
+		 */
+		boolean clip(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			double t0 = 0, t1 = length;
+			if (dx != 0) {
+				double a = (minX - px) / dx, b = (maxX - px) / dx;
+				if (a > b) { double t = a; a = b; b = t; }
+				if (a > t0) t0 = a;
+				if (b < t1) t1 = b;
+			} else if (px < minX || px > maxX) {
+				return false;
+			}
+			if (dy != 0) {
+				double a = (minY - py) / dy, b = (maxY - py) / dy;
+				if (a > b) { double t = a; a = b; b = t; }
+				if (a > t0) t0 = a;
+				if (b < t1) t1 = b;
+			} else if (py < minY || py > maxY) {
+				return false;
+			}
+			if (dz != 0) {
+				double a = (minZ - pz) / dz, b = (maxZ - pz) / dz;
+				if (a > b) { double t = a; a = b; b = t; }
+				if (a > t0) t0 = a;
+				if (b < t1) t1 = b;
+			} else if (pz < minZ || pz > maxZ) {
+				return false;
+			}
+			enter = t0;
+			exit = t1;
+			return t0 <= t1;
+		}
+
+		@Override
+		public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			return clip(minX, minY, minZ, maxX, maxY, maxZ);
+		}
+
+		boolean intersects(DAABBC aabb) {
+			return clip(aabb.getMin0(), aabb.getMin1(), aabb.getMin2(), 
+					aabb.getMax0(), aabb.getMax1(), aabb.getMax2());
+		}
+
+		@Override
+		public boolean overlap(DxGeom g) {
+			return visit(g);
+		}
+
+		/**
+		 * Collides the ray with a geom, or casts it into a space.
+		 * @return false if the ray cast is done, i.e. in any hit mode after
+		 * the first hit
+		 */
+		boolean visit(DxGeom g) {
+			if (!g.GEOM_ENABLED(g) || !intersects(g._aabb)) {
+				return true;
+			}
+			if (g instanceof DxSpace) {
+				return ((DxSpace) g).rayCast(this);
+			}
+			int n;
+			if (g instanceof DxTriMesh || g instanceof DxAbstractHeightfield) {
+				synchronized (g) {
+					n = DxGeom.dCollide(ray, g, 1, contact, 1);
+				}
+			} else {
+				n = DxGeom.dCollide(ray, g, 1, contact, 1);
+			}
+			if (n == 0) {
+				return true;
+			}
+			DContactGeom c = contact.get(0);
+			if (hit && c.depth >= length) {
+				return true;
+			}
+			results.set(index, c);
+			hit = true;
+			if (anyHit) {
+				return false;
+			}
+			length = c.depth;
+			ray.setLength(length);
+			return true;
+		}
+	}
+
+	private final Runnable noop = new Runnable() {
+		@Override
+		public void run() {}
+	};
+
+	private Ray[] rays = new Ray[0];
+
+	// current batch
+	private DxSpace space;
+	private double[] origins;
+	private double[] directions;
+	private double maxDist;
+	private boolean anyHit;
+	private DRayCastResults results;
+
+	/**
+	 * @param executor executor, or null to cast the rays on the calling thread
+	 */
+	void cast(DxSpace space, double[] origins, double[] directions, double maxDist,
+			boolean anyHit, TaskExecutor executor, DRayCastResults results) {
+		int numRays = origins.length / 3;
+		dUASSERT(directions.length >= numRays * 3, "fewer directions than origins");
+		results.clear(numRays);
+		if (numRays == 0) {
+			return;
+		}
+		int numTasks = executor == null ? 1 : Math.min(executor.getThreadCount(),
+				(numRays + MIN_RAYS_PER_TASK - 1) / MIN_RAYS_PER_TASK);
+		numTasks = Math.max(numTasks, 1);
+		if (rays.length < numTasks) {
+			Ray[] r = Arrays.copyOf(rays, numTasks);
+			for (int t = rays.length; t < numTasks; t++) {
+				r[t] = new Ray(t);
+			}
+			rays = r;
+		}
+		this.space = space;
+		this.origins = origins;
+		this.directions = directions;
+		this.maxDist = maxDist;
+		this.anyHit = anyHit;
+		this.results = results;
+		for (int t = 0; t < numTasks; t++) {
+			rays[t].ray.setClosestHit(!anyHit);
+			rays[t].ray.setFirstContact(anyHit);
+		}
+		prepare(space, numTasks);
+		try {
+			for (int t = 0; t < numTasks; t++) {
+				rays[t].start = (int) ((long) numRays * t / numTasks);
+				rays[t].end = (int) ((long) numRays * (t + 1) / numTasks);
+			}
+			if (numTasks == 1) {
+				rays[0].run();
+			} else {
+				TaskGroup group = executor.group("Space Ray Cast Group", noop);
+				for (int t = 0; t < numTasks; t++) {
+					group.subtask("Space Ray Cast", rays[t]).submit();
+				}
+				group.submit();
+				group.awaitCompletion();
+			}
+		} finally {
+			finish(space);
+			this.space = null;
+			this.origins = null;
+			this.directions = null;
+			this.results = null;
+		}
+	}
+
+	/** Prepares the space and all its child spaces and locks them. */
+	private static void prepare(DxSpace space, int numTasks) {
+		space.prepareRayCast(numTasks);
+		space.lock_count++;
+		for (DxGeom g = space._first; g != null; g = g.getNext()) {
+			if (g instanceof DxSpace) {
+				prepare((DxSpace) g, numTasks);
+			}
+		}
+	}
+
+	private static void finish(DxSpace space) {
+		for (DxGeom g = space._first; g != null; g = g.getNext()) {
+			if (g instanceof DxSpace) {
+				finish((DxSpace) g);
+			}
+		}
+		space.lock_count--;
+		space.finishRayCast();
+	}
+}
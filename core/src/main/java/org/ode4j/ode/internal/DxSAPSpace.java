@@ -143,6 +143,9 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		// no contacts if both geoms on the same body, and the body is not 0
 		if (g1.body == g2.body && g1.body!=null) return;
 
+		// no contacts between geoms that do not move
+		if (isParkedPair(g1, g2)) return;
+
 		// test if the category and collide bitfields match
 		if ( ((g1.category_bits & g2.collide_bits)!=0 ||
 				(g2.category_bits & g1.collide_bits)!=0) == false) {
@@ -103,6 +103,10 @@ public class DxSAPSpace2 extends DxSpace implements DSapSpace {
         if (g1.body == g2.body && g1.body != null)
             return;
 
+        // no contacts between geoms that do not move
+        if (isParkedPair(g1, g2))
+            return;
+
         // test if the category and collide bitfields match
         if (((g1.category_bits & g2.collide_bits) != 0 || (g2.category_bits & g1.collide_bits) != 0) == false) {
             return;
@@ -0,0 +1,229 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.ode4j.ode.internal.joints.DxJoint;
+
+/**
+ * Island sleeping of a world, see {@link DxWorld#setAutoDisableIslands(boolean)}.
+ * <p>
+ * An island goes to sleep when all of its bodies have been idle for long 
+ * enough. Its bodies are disabled together and remember their island, so 
+ * that the island is woken as a whole when one of them is touched. 
+ * <p>
+ * The bodies that are not in a sleeping island are kept in an array in 
+ * world order. The per-step walks over the bodies of a world use it, a 
+ * sleeping island costs nothing until it is woken. The array is rebuilt 
+ * after an island slept or woke, or bodies were created or destroyed.
+ * <p>
+ * Geoms of sleeping islands are 'parked', see {@link DxGeom#isParked()}.
+ */
+public final class DxSleepingIslands {
+
+	/**
+	 * The bodies of a sleeping island.
+	 */
+	static final class Island {
+		private final DxBody[] bodies;
+		private boolean wakeRequested;
+
+		private Island(DxBody[] bodies) {
+			this.bodies = bodies;
+		}
+	}
+
+	private final DxWorld world;
+	private boolean enabled;
+
+	private DxBody[] awakeBodies = new DxBody[0];
+	private int awakeCount;
+	private boolean awakeValid;
+
+	private int islandCount;
+	private final ArrayList<Island> wakeRequests = new ArrayList<Island>();
+
+	DxSleepingIslands(DxWorld world) {
+		this.world = world;
+	}
+
+	/**
+	 * @return whether islands are put to sleep instead of single bodies
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Switches island sleeping on or off. When it is switched off, the 
+	 * bodies of sleeping islands stay disabled, like bodies that were 
+	 * disabled one by one.
+	 */
+	void setEnabled(boolean enabled) {
+		if (!enabled) {
+			clear();
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Marks the awake bodies as outdated, e.g. after a body was created.
+	 */
+	void invalidate() {
+		awakeValid = false;
+	}
+
+	/**
+	 * @return the bodies that are not in a sleeping island, in world order,
+	 * see {@link #getAwakeCount()}
+	 */
+	public DxBody[] getAwakeBodies() {
+		if (!awakeValid) {
+			if (awakeBodies.length < world.nb) {
+				awakeBodies = new DxBody[Math.max(world.nb, awakeBodies.length * 2)];
+			}
+			int n = 0;
+			for (DxBody b = world.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+				if (b.sleepingIsland == null) {
+					awakeBodies[n++] = b;
+				}
+			}
+			// do not keep destroyed bodies alive
+			Arrays.fill(awakeBodies, n, awakeCount > n ? awakeCount : n, null);
+			awakeCount = n;
+			awakeValid = true;
+		}
+		return awakeBodies;
+	}
+
+	/**
+	 * @return number of bodies in {@link #getAwakeBodies()}
+	 */
+	public int getAwakeCount() {
+		getAwakeBodies();
+		return awakeCount;
+	}
+
+	int getIslandCount() {
+		return islandCount;
+	}
+
+	/**
+	 * @return whether all bodies of the island have been idle for long
+	 * enough, see {@link DxWorld#dInternalHandleAutoDisabling(double)}
+	 */
+	public static boolean isIdle(DxBody[] body, int start, int count) {
+		for (int i = start; i < start + count; i++) {
+			DxBody b = body[i];
+			// don't freeze objects mid-air (patch 1586738)
+			if (b.firstjoint.get() == null 
+					|| (b.flags & (DxBody.dxBodyAutoDisable|DxBody.dxBodyDisabled)) != DxBody.dxBodyAutoDisable
+					|| b.adis.average_samples == 0
+					|| b.adis_stepsleft > 0 || b.adis_timeleft > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Puts an island to sleep. Its bodies and joints are tagged as not 
+	 * processed in this step.
+	 */
+	public void sleep(DxBody[] body, int bodyStart, int bodyCount, 
+			DxJoint[] joint, int jointStart, int jointCount) {
+		Island island = new Island(Arrays.copyOfRange(body, bodyStart, bodyStart + bodyCount));
+		for (DxBody b : island.bodies) {
+			b.flags |= DxBody.dxBodyDisabled;
+			// as for single bodies, should prevent jittering
+			b.lvel.setZero();
+			b.avel.setZero();
+			b.sleepingIsland = island;
+			b.tag = -1;
+		}
+		for (int i = jointStart; i < jointStart + jointCount; i++) {
+			joint[i].tag = -1;
+		}
+		islandCount++;
+		awakeValid = false;
+	}
+
+	/**
+	 * @return whether the body is in a sleeping island
+	 */
+	public static boolean isSleeping(DxBody b) {
+		return b.sleepingIsland != null;
+	}
+
+	/**
+	 * Wakes the island of a sleeping body at the end of this step, after a 
+	 * joint connected it to an awake body. The island does not take part in 
+	 * this step, e.g. the contacts of its geoms have not been created.
+	 */
+	public void requestWake(DxBody b) {
+		Island island = b.sleepingIsland;
+		if (!island.wakeRequested) {
+			island.wakeRequested = true;
+			wakeRequests.add(island);
+		}
+	}
+
+	/**
+	 * Wakes the islands of {@link #requestWake(DxBody)}.
+	 */
+	public void wakeRequested() {
+		for (int i = 0; i < wakeRequests.size(); i++) {
+			wake(wakeRequests.get(i));
+		}
+		wakeRequests.clear();
+	}
+
+	/**
+	 * Enables all bodies of an island.
+	 */
+	void wake(Island island) {
+		if (island.bodies[0].sleepingIsland != island) {
+			return;
+		}
+		for (DxBody b : island.bodies) {
+			b.sleepingIsland = null;
+			b.dBodyEnable();
+		}
+		islandCount--;
+		awakeValid = false;
+	}
+
+	/**
+	 * Forgets all sleeping islands, their bodies stay disabled. 
+	 */
+	void clear() {
+		for (DxBody b = world.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			b.sleepingIsland = null;
+		}
+		wakeRequests.clear();
+		islandCount = 0;
+		awakeValid = false;
+	}
+}
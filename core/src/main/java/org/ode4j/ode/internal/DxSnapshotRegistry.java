@@ -0,0 +1,103 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+import org.ode4j.ode.internal.joints.DxJointGroup;
+
+/**
+ * Ids of the geoms and joint groups in the snapshots of a world, and
+ * scratch memory for saving and restoring.
+ * <p>
+ * Ids are assigned on the first save, in the order in which the objects 
+ * are found, they start at 1. The registry does not keep its objects alive.
+ */
+final class DxSnapshotRegistry {
+
+	private final WeakHashMap<Object, Integer> ids = new WeakHashMap<Object, Integer>();
+	private final ArrayList<WeakReference<Object>> objects = new ArrayList<WeakReference<Object>>();
+
+	/** bodies of the world in list order */
+	final ArrayList<DxBody> bodies = new ArrayList<DxBody>();
+	/** simple and hash spaces in a snapshot, deepest first */
+	final ArrayList<DxSpace> spaces = new ArrayList<DxSpace>();
+
+	/**
+	 * @param o geom or joint group, may be null
+	 * @return id of the object, 0 for null
+	 */
+	int getId(Object o) {
+		if (o == null) {
+			return 0;
+		}
+		Integer id = ids.get(o);
+		if (id == null) {
+			objects.add(new WeakReference<Object>(o));
+			id = objects.size();
+			ids.put(o, id);
+		}
+		return id;
+	}
+
+	private Object getObject(int id) {
+		Object o = id > 0 && id <= objects.size() ? objects.get(id - 1).get() : null;
+		if (o == null) {
+			throw new IllegalArgumentException("Unknown object in snapshot: " + id);
+		}
+		return o;
+	}
+
+	/**
+	 * @param id id from {@link #getId(Object)}
+	 * @return geom, null for 0
+	 */
+	DxGeom getGeom(int id) {
+		if (id == 0) {
+			return null;
+		}
+		Object o = getObject(id);
+		if (!(o instanceof DxGeom)) {
+			throw new IllegalArgumentException("Snapshot object is not a geom: " + id);
+		}
+		return (DxGeom) o;
+	}
+
+	DxSpace getSpace(int id) {
+		DxGeom g = getGeom(id);
+		if (!(g instanceof DxSpace)) {
+			throw new IllegalArgumentException("Snapshot object is not a space: " + id);
+		}
+		return (DxSpace) g;
+	}
+
+	DxJointGroup getJointGroup(int id) {
+		Object o = getObject(id);
+		if (!(o instanceof DxJointGroup)) {
+			throw new IllegalArgumentException("Snapshot object is not a joint group: " + id);
+		}
+		return (DxJointGroup) o;
+	}
+}
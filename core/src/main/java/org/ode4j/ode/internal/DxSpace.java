@@ -28,7 +28,9 @@ import java.util.Iterator;
 
 import org.ode4j.ode.DAABB;
 import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DRayCastResults;
 import org.ode4j.ode.DSpace;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 import static org.ode4j.ode.internal.Common.*;
 
@@ -86,6 +88,10 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	// is locked.
 	int lock_count;
 
+	// pair and contact buffers of dSpaceCollideParallel(), created on first use
+	private DxParallelCollider parallelCollider;
+	private DxRayCaster rayCaster;
+
 	/**
 	 * Turn all dirty geoms into clean geoms by computing their AABBs and any
 	 * other space data structures that are required. this should clear the
@@ -195,6 +201,59 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 		collide (data,callback);
 	}
 
+	public void dSpaceCollideParallel (int flags, TaskExecutor executor,
+			Object data, DNearContactsCallback callback)
+	{
+		dAASSERT (executor, callback);
+		if (parallelCollider == null) {
+			parallelCollider = new DxParallelCollider();
+		}
+		parallelCollider.collide(this, flags, executor, data, callback);
+	}
+
+	public void dSpaceRayCastBatch (double[] origins, double[] directions, 
+			double maxDist, boolean anyHit, TaskExecutor executor, 
+			DRayCastResults results)
+	{
+		dAASSERT (origins, directions, results);
+		if (rayCaster == null) {
+			rayCaster = new DxRayCaster();
+		}
+		rayCaster.cast(this, origins, directions, maxDist, anyHit, executor, results);
+	}
+
+	/**
+	 * Called before the rays of a batch are cast into this space.
+	 * @param numTasks number of tasks that cast rays concurrently
+	 */
+	void prepareRayCast (int numTasks)
+	{
+		cleanGeoms();
+	}
+
+	/**
+	 * Called after all rays of a batch have been cast into this space.
+	 */
+	void finishRayCast ()
+	{
+	}
+
+	/**
+	 * Passes the geoms of this space that the ray may hit to 
+	 * <tt>ray.visit()</tt>. This is called concurrently for different rays
+	 * and must not modify the space.
+	 * @return false if <tt>ray.visit()</tt> returned false
+	 */
+	boolean rayCast (DxRayCaster.Ray ray)
+	{
+		for (DxGeom g = _first; g != null; g = g.getNext()) {
+			if (!ray.visit(g)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 
 	private static class DataCallback {
 		Object data;
@@ -531,6 +590,18 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	@Override
 	public boolean query (DGeom x)
 	{ return dSpaceQuery ((DxGeom) x); }
+	@Override
+	public void collideParallel (int flags, TaskExecutor executor, Object data,
+			DNearContactsCallback callback)
+	{ dSpaceCollideParallel (flags, executor, data, callback); }
+	@Override
+	public void rayCastBatch (double[] origins, double[] directions, double maxDist,
+			boolean anyHit, DRayCastResults results)
+	{ dSpaceRayCastBatch (origins, directions, maxDist, anyHit, null, results); }
+	@Override
+	public void rayCastBatch (double[] origins, double[] directions, double maxDist,
+			boolean anyHit, TaskExecutor executor, DRayCastResults results)
+	{ dSpaceRayCastBatch (origins, directions, maxDist, anyHit, executor, results); }
 
 //	public int getNumGeoms()
 //	{ return dSpaceGetNumGeoms (id()); }
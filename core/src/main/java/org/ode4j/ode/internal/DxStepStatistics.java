@@ -0,0 +1,146 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ode4j.ode.DStepStatistics;
+
+/**
+ * Statistics of the current step of a world. The stage times and counters
+ * are updated by the island threads, the listener reads them after the step.
+ */
+public final class DxStepStatistics implements DStepStatistics {
+
+	private static final Stage[] STAGES = Stage.values();
+
+	private final AtomicLongArray stageNanos = new AtomicLongArray(STAGES.length);
+	private final AtomicInteger constraintRows = new AtomicInteger();
+	private final AtomicInteger lcpIterations = new AtomicInteger();
+	private boolean quickStep;
+	private double stepSize;
+	private long stepStart;
+	private long stepNanos;
+	private int islandCount;
+	private int bodyCount;
+	private int jointCount;
+	private double residual;
+
+	void begin(boolean quickStep, double stepSize) {
+		this.quickStep = quickStep;
+		this.stepSize = stepSize;
+		for (int i = 0; i < STAGES.length; i++) {
+			stageNanos.set(i, 0);
+		}
+		constraintRows.set(0);
+		lcpIterations.set(0);
+		islandCount = 0;
+		bodyCount = 0;
+		jointCount = 0;
+		residual = 0;
+		stepNanos = 0;
+		stepStart = System.nanoTime();
+	}
+
+	void end() {
+		stepNanos = System.nanoTime() - stepStart;
+	}
+
+	/**
+	 * Adds the time since <tt>start</tt> to a stage.
+	 * @return the current time, the start of the next stage
+	 */
+	public long lap(long start, Stage stage) {
+		long now = System.nanoTime();
+		stageNanos.addAndGet(stage.ordinal(), now - start);
+		return now;
+	}
+
+	public void setIslands(int islandCount, int bodyCount, int jointCount) {
+		this.islandCount = islandCount;
+		this.bodyCount = bodyCount;
+		this.jointCount = jointCount;
+	}
+
+	public void addConstraintRows(int m, int iterations) {
+		constraintRows.addAndGet(m);
+		lcpIterations.addAndGet(iterations);
+	}
+
+	public synchronized void addResidual(double islandResidual) {
+		if (islandResidual > residual) {
+			residual = islandResidual;
+		}
+	}
+
+	@Override
+	public boolean isQuickStep() {
+		return quickStep;
+	}
+
+	@Override
+	public double getStepSize() {
+		return stepSize;
+	}
+
+	@Override
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+	@Override
+	public long getStageNanos(Stage stage) {
+		return stageNanos.get(stage.ordinal());
+	}
+
+	@Override
+	public int getIslandCount() {
+		return islandCount;
+	}
+
+	@Override
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	@Override
+	public int getJointCount() {
+		return jointCount;
+	}
+
+	@Override
+	public int getConstraintRowCount() {
+		return constraintRows.get();
+	}
+
+	@Override
+	public int getLcpIterationCount() {
+		return lcpIterations.get();
+	}
+
+	@Override
+	public synchronized double getResidual() {
+		return residual;
+	}
+}
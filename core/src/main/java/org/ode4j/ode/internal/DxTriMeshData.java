@@ -26,6 +26,7 @@ package org.ode4j.ode.internal;
 
 import org.ode4j.ode.OdeConfig;
 import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 public abstract class DxTriMeshData implements DTriMeshData {
 	//TZ from "collision_trimesh_internal.h"
@@ -46,7 +47,17 @@ public abstract class DxTriMeshData implements DTriMeshData {
     /* Setup the UseFlags array */
     public abstract void preprocess();
     /* For when app changes the vertices */
-    abstract void UpdateData();
+    abstract void UpdateData(TaskExecutor executor);
+
+    @Override
+    public void update() {
+    	UpdateData(null);
+    }
+
+    @Override
+    public void update(TaskExecutor executor) {
+    	UpdateData(executor);
+    }
 
     public static DTriMeshData dGeomTriMeshDataCreate() {
 		switch (OdeConfig.dTRIMESH_TYPE) {
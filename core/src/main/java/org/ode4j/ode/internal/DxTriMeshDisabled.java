@@ -28,6 +28,7 @@ import org.ode4j.math.DVector3;
 import org.ode4j.ode.DGeom;
 import org.ode4j.ode.DTriMesh;
 import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 class DxTriMeshDisabled extends DxTriMesh {
 
@@ -38,7 +39,7 @@ class DxTriMeshDisabled extends DxTriMesh {
 		}
 
 		@Override
-		void UpdateData() {
+		void UpdateData(TaskExecutor executor) {
 			throw new UnsupportedOperationException();
 		}
 
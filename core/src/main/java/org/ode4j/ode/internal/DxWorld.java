@@ -33,9 +33,21 @@ import static org.ode4j.ode.internal.Common.dSqrt;
 import static org.ode4j.ode.internal.Common.dUASSERT;
 import static org.ode4j.ode.internal.ErrorHandler.dMessage;
 
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DJointGroup;
 import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorldSnapshot;
 import org.ode4j.ode.internal.Objects_H.dxAutoDisable;
 import org.ode4j.ode.internal.Objects_H.dxContactParameters;
 import org.ode4j.ode.internal.Objects_H.dxDampingParameters;
@@ -43,6 +55,7 @@ import org.ode4j.ode.internal.Objects_H.dxQuickStepParameters;
 import org.ode4j.ode.internal.cpp4j.java.Ref;
 import org.ode4j.ode.internal.cpp4j.java.RefInt;
 import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointGroup;
 import org.ode4j.ode.internal.processmem.DxIslandsProcessingCallContext;
 import org.ode4j.ode.internal.processmem.DxStepWorkingMemory;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dmaxcallcountestimate_fn_t;
@@ -90,6 +103,25 @@ public class DxWorld extends DBase implements DWorld {
 	double max_angular_speed;      // limit the angular velocity to this magnitude
 
 	private Object userdata;
+	/** Seed for random numbers used while stepping this world, e.g. for 
+	 * constraint reordering. Being per world, the results of a world do not 
+	 * depend on other worlds stepped before or concurrently. */
+	final AtomicLong randomSeed = new AtomicLong(0);
+	/** Contact lambdas of the last step for QuickStep warm starting, created on demand. */
+	DxContactCache contactCache;
+	/** Ids and scratch memory of snapshots, created on demand. */
+	private DxSnapshotRegistry snapshotRegistry;
+	/** Sleeping islands and the bodies that are awake. */
+	public final DxSleepingIslands sleepingIslands = new DxSleepingIslands(this);
+	/** Listener of the steps and the statistics it receives, both null when not set. */
+	private DStepListener stepListener;
+	private DxStepStatistics stepStatistics;
+	/** Whether dWorldStep uses the {@link SparseLCP} solver. */
+	boolean stepSparseSolver;
+	/** Size of the last step, the time that {@link DxContinuousCollision} sweeps. */
+	volatile double lastStepSize;
+	/** Maximum number of substeps of an island, see {@link DxIslandSubsteps}. */
+	int maxSubsteps = 1;
 
     //dxWorld();
     //virtual ~dxWorld(); // Compilers emit warnings if a class with virtual methods does not have a virtual destructor :(
@@ -332,6 +364,12 @@ public class DxWorld extends DBase implements DWorld {
 	    dUASSERT (stepsize > 0,"stepsize must be > 0");
 
 	    boolean result = false;
+	    lastStepSize = stepsize;
+
+	    DxStepStatistics statistics = stepStatistics;
+	    if (statistics != null) {
+	    	statistics.begin(false, stepsize);
+	    }
 
 	    DxWorldProcessIslandsInfo islandsinfo = new DxWorldProcessIslandsInfo();
         if (DxWorldProcessContext.dxReallocateWorldProcessContext (this, islandsinfo, stepsize, 
@@ -343,6 +381,11 @@ public class DxWorld extends DBase implements DWorld {
                 result = true;
             }
 	    }
+
+	    if (statistics != null) {
+	    	statistics.end();
+	    	stepListener.stepFinished(this, statistics);
+	    }
 	    return result;
 	}
 
@@ -351,6 +394,22 @@ public class DxWorld extends DBase implements DWorld {
 	    dUASSERT (stepsize > 0,"stepsize must be > 0");
 
 	    boolean result = false;
+	    lastStepSize = stepsize;
+
+	    DxStepStatistics statistics = stepStatistics;
+	    if (statistics != null) {
+	    	statistics.begin(true, stepsize);
+	    }
+
+	    boolean warmStarting = qs.warm_starting > 0;
+	    if (warmStarting) {
+	    	if (contactCache == null) {
+	    		contactCache = new DxContactCache();
+	    	}
+	    	contactCache.loadLambdas(this);
+	    } else if (contactCache != null && !contactCache.isEmpty()) {
+	    	contactCache.clear();
+	    }
 
 	    DxWorldProcessIslandsInfo islandsinfo = new DxWorldProcessIslandsInfo();
 	    if (DxWorldProcessContext.dxReallocateWorldProcessContext (this, islandsinfo, stepsize, 
@@ -362,9 +421,74 @@ public class DxWorld extends DBase implements DWorld {
 	        	result = true;
 	        }
 	    }
+	    if (warmStarting) {
+	    	contactCache.storeLambdas(this);
+	    }
+
+	    if (statistics != null) {
+	    	statistics.end();
+	    	stepListener.stepFinished(this, statistics);
+	    }
 	    return result;
 	}
 
+	/**
+	 * Step several independent worlds. The worlds are distributed over the 
+	 * threads of the executor, each world is stepped with its own task executor.
+	 * The result of each world is the same as when stepping the worlds one 
+	 * after another.
+	 * 
+	 * @param worlds the worlds, each world must appear only once
+	 * @param stepsize step size
+	 * @param quickStep 'true' for quickStep(), 'false' for step()
+	 * @param executor executor to use, or 'null' to step in the calling thread
+	 * @return 'false' if stepping of any world failed or if the calling thread 
+	 * was interrupted
+	 */
+	public static boolean dWorldStepMultiple(Collection<? extends DWorld> worlds, final double stepsize, 
+			final boolean quickStep, ExecutorService executor)
+	{
+		dUASSERT (stepsize > 0,"stepsize must be > 0");
+
+		boolean result = true;
+		if (executor == null || worlds.size() <= 1) {
+			for (DWorld w: worlds) {
+				DxWorld world = (DxWorld) w;
+				result &= quickStep ? world.dWorldQuickStep(stepsize) : world.dWorldStep(stepsize);
+			}
+			return result;
+		}
+
+		List<Callable<Boolean>> jobs = new ArrayList<Callable<Boolean>>(worlds.size());
+		for (DWorld w: worlds) {
+			final DxWorld world = (DxWorld) w;
+			jobs.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return quickStep ? world.dWorldQuickStep(stepsize) : world.dWorldStep(stepsize);
+				}
+			});
+		}
+		try {
+			for (Future<Boolean> f: executor.invokeAll(jobs)) {
+				result &= f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result = false;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		return result;
+	}
+
 	
 	private void dWorldImpulseToForce (double stepsize,
 			double ix, double iy, double iz,
@@ -566,6 +690,19 @@ public class DxWorld extends DBase implements DWorld {
 	}
 
 
+	private void dWorldSetQuickStepWarmStarting (double factor)
+	{
+		dUASSERT (factor >= 0 && factor <= 1, "warm starting factor must be in [0,1]");
+		qs.warm_starting = factor;
+	}
+
+
+	private double dWorldGetQuickStepWarmStarting ()
+	{
+		return qs.warm_starting;
+	}
+
+
 //	void dWorldSetContactMaxCorrectingVel (dxWorld w, double vel)
 	public void dWorldSetContactMaxCorrectingVel (double vel)
 	{
@@ -600,10 +737,13 @@ public class DxWorld extends DBase implements DWorld {
 //	      void dxFreeTemporaryWorldProcessMemArena(dxWorldProcessMemArena *arena);
 	public static DxWorldProcessMemArena dxAllocateTemporaryWorldProcessMemArena(
 	        int memreq, final DxWorldProcessMemoryManager memmgr/*=NULL*/, 
-	        final DxWorldProcessMemoryReserveInfo reserveinfo/*=NULL*/) {       throw new UnsupportedOperationException();
+	        final DxWorldProcessMemoryReserveInfo reserveinfo/*=NULL*/) {
+		return DxWorldProcessMemArena.allocateTemporary(memreq, memmgr, reserveinfo);
 	}
 	public static void dxFreeTemporaryWorldProcessMemArena(
-	        DxWorldProcessMemArena arena) {}
+	        DxWorldProcessMemArena arena) {
+		DxWorldProcessMemArena.freeTemporary(arena);
+	}
 
 
 
@@ -730,9 +870,13 @@ public class DxWorld extends DBase implements DWorld {
 
 	public void dInternalHandleAutoDisabling (double stepsize)
 	{
-		DxBody bb;
-		for ( bb=firstbody.get(); bb!=null; bb=(DxBody)bb.getNext() )
+		// bodies of sleeping islands are disabled, no need to visit them
+		final boolean islands = sleepingIslands.isEnabled();
+		final DxBody[] awake = sleepingIslands.getAwakeBodies();
+		final int awakeCount = sleepingIslands.getAwakeCount();
+		for ( int ii = 0; ii < awakeCount; ii++ )
 		{
+			DxBody bb = awake[ii];
 			// don't freeze objects mid-air (patch 1586738)
 			if ( bb.firstjoint.get() == null ) continue;
 
@@ -859,6 +1003,14 @@ public class DxWorld extends DBase implements DWorld {
 			// disable the body if it's idle for a long enough time
 			if ( bb.adis_stepsleft <= 0 && bb.adis_timeleft <= 0 )
 			{
+				if (islands) {
+					// the island is put to sleep as a whole once all its bodies
+					// are idle, see DxSleepingIslands.isIdle(). Until then
+					// keep the countdowns from running away.
+					bb.adis_stepsleft = 0;
+					bb.adis_timeleft = 0;
+					continue;
+				}
 				bb.flags |= DxBody.dxBodyDisabled; // set the disable flag
 
 				// disabling bodies should also include resetting the velocity
@@ -922,6 +1074,11 @@ public class DxWorld extends DBase implements DWorld {
 	public void setTaskExecutor(TaskExecutor executor) {
 		this.taskExecutor = executor;
 	}
+
+	@Override
+	public TaskExecutor getTaskExecutor() {
+		return taskExecutor;
+	}
 	@Override
 	public void setGravity (double x, double y, double z)
 	{ dWorldSetGravity (x,y,z); }
@@ -965,6 +1122,12 @@ public class DxWorld extends DBase implements DWorld {
 	@Override
 	public double getQuickStepW() 
 	{ return dWorldGetQuickStepW (); }
+	@Override
+	public void setQuickStepWarmStarting(double factor)
+	{ dWorldSetQuickStepWarmStarting (factor); }
+	@Override
+	public double getQuickStepWarmStarting() 
+	{ return dWorldGetQuickStepWarmStarting (); }
 
 	@Override
 	public void  setAutoDisableLinearThreshold (double threshold) 
@@ -996,6 +1159,12 @@ public class DxWorld extends DBase implements DWorld {
 	@Override
 	public boolean getAutoDisableFlag() 
 	{ return dWorldGetAutoDisableFlag (); }
+	@Override
+	public void setAutoDisableIslands (boolean do_auto_disable_islands)
+	{ sleepingIslands.setEnabled(do_auto_disable_islands); }
+	@Override
+	public boolean getAutoDisableIslands() 
+	{ return sleepingIslands.isEnabled(); }
 
 	@Override
 	public double getLinearDampingThreshold() 
@@ -1127,6 +1296,132 @@ public class DxWorld extends DBase implements DWorld {
 	}
 
 
+	@Override
+	public long getStepMemoryHighWaterMark() {
+		DxWorldProcessContext context = wmem != null ? wmem.GetWorldProcessingContext() : null;
+		return context != null ? context.GetArenasHighWaterBytes() : 0;
+	}
+
+
+	@Override
+	public long getStepMemoryAllocationCount() {
+		DxWorldProcessContext context = wmem != null ? wmem.GetWorldProcessingContext() : null;
+		return context != null ? context.GetArenasSlabAllocationCount() : 0;
+	}
+
+
+	@Override
+	public int getNumEnabledBodies() {
+		int n = 0;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((b.flags & DxBody.dxBodyDisabled) == 0) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+
+	@Override
+	public int readBodyStates(DoubleBuffer states) {
+		int n = 0;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((b.flags & DxBody.dxBodyDisabled) == 0) {
+				b.readState(states);
+				n++;
+			}
+		}
+		return n;
+	}
+
+
+	@Override
+	public int writeBodyStates(DoubleBuffer states) {
+		int n = 0;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((b.flags & DxBody.dxBodyDisabled) == 0) {
+				b.writeState(states);
+				n++;
+			}
+		}
+		return n;
+	}
+
+
+	DxSnapshotRegistry getSnapshotRegistry() {
+		if (snapshotRegistry == null) {
+			snapshotRegistry = new DxSnapshotRegistry();
+		}
+		return snapshotRegistry;
+	}
+
+
+	@Override
+	public void saveSnapshot(DWorldSnapshot snapshot) {
+		saveSnapshot(snapshot, null);
+	}
+
+
+	@Override
+	public void saveSnapshot(DWorldSnapshot snapshot, DJointGroup contactGroup) {
+		((DxWorldSnapshot) snapshot).save(this, (DxJointGroup) contactGroup);
+	}
+
+
+	@Override
+	public void restoreSnapshot(DWorldSnapshot snapshot) {
+		// the restored bodies are disabled one by one, not as islands
+		sleepingIslands.clear();
+		((DxWorldSnapshot) snapshot).restore(this);
+	}
+
+
+	@Override
+	public void setStepListener(DStepListener listener) {
+		stepListener = listener;
+		if (listener == null) {
+			stepStatistics = null;
+		} else if (stepStatistics == null) {
+			stepStatistics = new DxStepStatistics();
+		}
+	}
+
+
+	@Override
+	public DStepListener getStepListener() {
+		return stepListener;
+	}
+
+	@Override
+	public void setStepSparseSolver(boolean sparse) {
+		stepSparseSolver = sparse;
+	}
+
+	@Override
+	public boolean getStepSparseSolver() {
+		return stepSparseSolver;
+	}
+
+	@Override
+	public void setAdaptiveSubsteps(int max_substeps) {
+		dUASSERT(max_substeps >= 1, "max_substeps must be >= 1");
+		maxSubsteps = max_substeps;
+	}
+
+	@Override
+	public int getAdaptiveSubsteps() {
+		return maxSubsteps;
+	}
+
+
+	/**
+	 * @return statistics of the current step, or null if they are not collected
+	 */
+	public DxStepStatistics getStepStatistics() {
+		return stepStatistics;
+	}
+
+
 //	@Override
 //	public void dWorldSetStepThreadingImplementation(
 //			DThreadingFunctionsInfo functions_info,
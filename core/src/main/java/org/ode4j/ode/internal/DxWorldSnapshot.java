@@ -0,0 +1,559 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContact.DSurfaceParameters;
+import org.ode4j.ode.DWorldSnapshot;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointContact;
+import org.ode4j.ode.internal.joints.DxJointGroup;
+
+/**
+ * A world snapshot is a sequence of 64 bit words: doubles are stored with
+ * their raw bits, so that a restore is bit-exact.
+ * <p>
+ * Bodies and joints other than contact joints are stored in the order of 
+ * the lists of the world, geoms and joint groups by their id in the 
+ * {@link DxSnapshotRegistry} of the world.
+ * <p>
+ * The order of the geoms in simple and hash spaces determines the order 
+ * in which they are collided, and thereby the order of the contact joints.
+ * It changes whenever a geom is moved, so the snapshot stores it together 
+ * with the dirty flags of the geoms, for all simple and hash spaces that 
+ * contain the geoms of bodies and their parents.
+ */
+public final class DxWorldSnapshot implements DWorldSnapshot {
+
+	private static final long MAGIC = 0x4f4445345353L; // "ODE4SS"
+	private static final int VERSION = 2;
+
+	private long[] words = new long[256];
+	private int size;
+	/** read position while restoring */
+	private int pos;
+
+	// ********************************************
+	// Words
+	// ********************************************
+
+	private void ensureCapacity(int n) {
+		if (n > words.length) {
+			words = Arrays.copyOf(words, Math.max(n, words.length * 2));
+		}
+	}
+
+	void put(long w) {
+		if (size == words.length) {
+			ensureCapacity(size + 1);
+		}
+		words[size++] = w;
+	}
+
+	void putDouble(double d) {
+		put(Double.doubleToRawLongBits(d));
+	}
+
+	void putVector(DVector3C v) {
+		putDouble(v.get0());
+		putDouble(v.get1());
+		putDouble(v.get2());
+	}
+
+	long get() {
+		if (pos >= size) {
+			throw new IllegalArgumentException("Snapshot is too short");
+		}
+		return words[pos++];
+	}
+
+	int getInt() {
+		return (int) get();
+	}
+
+	double getDouble() {
+		return Double.longBitsToDouble(get());
+	}
+
+	void getVector(DVector3 v) {
+		v.set(getDouble(), getDouble(), getDouble());
+	}
+
+	private static void check(boolean fits, String what) {
+		if (!fits) {
+			throw new IllegalArgumentException("Snapshot does not fit the " + what + " of the world");
+		}
+	}
+
+	// ********************************************
+	// Save
+	// ********************************************
+
+	void save(DxWorld w, DxJointGroup contactGroup) {
+		DxSnapshotRegistry r = w.getSnapshotRegistry();
+		size = 0;
+		put(MAGIC);
+		put(VERSION);
+		put(w.randomSeed.get());
+
+		put(w.nb);
+		int i = 0;
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			// the index identifies the bodies of contact joints
+			b.tag = i++;
+			saveBody(b);
+		}
+
+		int nj = 0;
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (!(j instanceof DxJointContact)) {
+				nj++;
+			}
+		}
+		put(nj);
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (!(j instanceof DxJointContact)) {
+				put(j.isEnabled() ? 1 : 0);
+				for (int k = 0; k < j.lambda.length; k++) {
+					putDouble(j.lambda[k]);
+				}
+			}
+		}
+
+		saveSpaces(w, r);
+
+		if (w.contactCache != null) {
+			w.contactCache.save(this, r);
+		} else {
+			put(0);
+		}
+
+		saveContacts(contactGroup, r);
+	}
+
+	private void saveBody(DxBody b) {
+		put(b.flags & DxBody.dxBodyDisabled);
+		putVector(b._posr.pos);
+		DMatrix3C R = b._posr.R();
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				putDouble(R.get(i, j));
+			}
+		}
+		for (int i = 0; i < 4; i++) {
+			putDouble(b._q.get(i));
+		}
+		putVector(b.lvel);
+		putVector(b.avel);
+		putVector(b.facc);
+		putVector(b.tacc);
+		putDouble(b.adis_timeleft);
+		put(b.adis_stepsleft);
+		put(b.average_counter);
+		put(b.average_ready);
+		int n = b.average_lvel_buffer == null ? 0 : b.average_lvel_buffer.length;
+		put(n);
+		for (int i = 0; i < n; i++) {
+			putVector(b.average_lvel_buffer[i]);
+			putVector(b.average_avel_buffer[i]);
+		}
+	}
+
+	private static boolean isOrdered(DxSpace s) {
+		return s.getClass() == DxSimpleSpace.class || s.getClass() == DxHashSpace.class;
+	}
+
+	private static int getDepth(DxSpace s) {
+		int depth = 0;
+		for (DxSpace p = s.parent_space; p != null; p = p.parent_space) {
+			depth++;
+		}
+		return depth;
+	}
+
+	private void saveSpaces(DxWorld w, DxSnapshotRegistry r) {
+		ArrayList<DxSpace> spaces = r.spaces;
+		spaces.clear();
+		// The ids are assigned in the order of the bodies first, the geoms of 
+		// bodies and their spaces change their position in the spaces. The
+		// other geoms keep their relative order.
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			for (DxGeom g = b.geom; g != null; g = g.dGeomGetBodyNext()) {
+				r.getId(g);
+				for (DxSpace s = g.parent_space; s != null; s = s.parent_space) {
+					r.getId(s);
+					if (isOrdered(s) && !spaces.contains(s)) {
+						// deepest first, so that child spaces are cleaned before their parents
+						int depth = getDepth(s);
+						int i = 0;
+						while (i < spaces.size() && getDepth(spaces.get(i)) >= depth) {
+							i++;
+						}
+						spaces.add(i, s);
+					}
+				}
+			}
+		}
+		put(spaces.size());
+		for (int i = 0; i < spaces.size(); i++) {
+			DxSpace s = spaces.get(i);
+			put(r.getId(s));
+			put(s.count);
+			for (DxGeom g = s._first; g != null; g = g.getNext()) {
+				put(((long) r.getId(g) << 1) | (g.hasFlagDirty() ? 1 : 0));
+			}
+		}
+	}
+
+	private void saveContacts(DxJointGroup group, DxSnapshotRegistry r) {
+		if (group == null) {
+			put(0);
+			return;
+		}
+		put(r.getId(group));
+		int n = group.getJointCount();
+		put(n);
+		for (int i = 0; i < n; i++) {
+			DxJoint j = group.getJoint(i);
+			if (!(j instanceof DxJointContact)) {
+				throw new IllegalArgumentException("The contact group holds other joints than contact joints");
+			}
+			DxBody b1 = j.dJointGetBody(0);
+			DxBody b2 = j.dJointGetBody(1);
+			put(b1 == null ? -1 : b1.tag);
+			put(b2 == null ? -1 : b2.tag);
+			put(j.isEnabled() ? 1 : 0);
+			DContact c = ((DxJointContact) j).contact;
+			DSurfaceParameters s = c.surface;
+			put(s.mode);
+			putDouble(s.mu);
+			putDouble(s.mu2);
+			putDouble(s.rho);
+			putDouble(s.rho2);
+			putDouble(s.rhoN);
+			putDouble(s.bounce);
+			putDouble(s.bounce_vel);
+			putDouble(s.soft_erp);
+			putDouble(s.soft_cfm);
+			putDouble(s.motion1);
+			putDouble(s.motion2);
+			putDouble(s.motionN);
+			putDouble(s.slip1);
+			putDouble(s.slip2);
+			putVector(c.geom.pos);
+			putVector(c.geom.normal);
+			putDouble(c.geom.depth);
+			put(r.getId(c.geom.g1));
+			put(r.getId(c.geom.g2));
+			put(c.geom.side1);
+			put(c.geom.side2);
+			put(c.geom.speculative ? 1 : 0);
+			putVector(c.fdir1);
+			for (int k = 0; k < j.lambda.length; k++) {
+				putDouble(j.lambda[k]);
+			}
+		}
+	}
+
+	// ********************************************
+	// Restore
+	// ********************************************
+
+	void restore(DxWorld w) {
+		DxSnapshotRegistry r = w.getSnapshotRegistry();
+		pos = 0;
+		check(get() == MAGIC && get() == VERSION, "version");
+		w.randomSeed.set(get());
+
+		check(getInt() == w.nb, "bodies");
+		ArrayList<DxBody> bodies = r.bodies;
+		bodies.clear();
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			bodies.add(b);
+			restoreBody(b);
+		}
+
+		int nj = 0;
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (!(j instanceof DxJointContact)) {
+				nj++;
+			}
+		}
+		check(getInt() == nj, "joints");
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			if (!(j instanceof DxJointContact)) {
+				if (getInt() != 0) {
+					j.enable();
+				} else {
+					j.disable();
+				}
+				for (int k = 0; k < j.lambda.length; k++) {
+					j.lambda[k] = getDouble();
+				}
+			}
+		}
+
+		restoreSpaces(r);
+
+		int n = getInt();
+		if (n > 0 && w.contactCache == null) {
+			w.contactCache = new DxContactCache();
+		}
+		if (w.contactCache != null) {
+			w.contactCache.restore(this, r, n);
+		}
+
+		restoreContacts(w, r);
+		bodies.clear();
+	}
+
+	private void restoreBody(DxBody b) {
+		b.flags = (b.flags & ~DxBody.dxBodyDisabled) | (getInt() & DxBody.dxBodyDisabled);
+		getVector(b._posr.pos);
+		DMatrix3 R = b._posr.Rw();
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				R.set(i, j, getDouble());
+			}
+		}
+		b._q.set(getDouble(), getDouble(), getDouble(), getDouble());
+		getVector(b.lvel);
+		getVector(b.avel);
+		getVector(b.facc);
+		getVector(b.tacc);
+		b.adis_timeleft = getDouble();
+		b.adis_stepsleft = getInt();
+		b.average_counter = getInt();
+		b.average_ready = getInt();
+		int n = getInt();
+		check(n == (b.average_lvel_buffer == null ? 0 : b.average_lvel_buffer.length), 
+				"auto-disable average samples");
+		for (int i = 0; i < n; i++) {
+			getVector(b.average_lvel_buffer[i]);
+			getVector(b.average_avel_buffer[i]);
+		}
+
+		// notify all attached geoms that this body has moved
+		for (DxGeom geom2 = b.geom; geom2 != null; geom2 = geom2.dGeomGetBodyNext ())
+			geom2.dGeomMoved ();
+	}
+
+	private void restoreSpaces(DxSnapshotRegistry r) {
+		int ns = getInt();
+		for (int i = 0; i < ns; i++) {
+			DxSpace s = r.getSpace(getInt());
+			int n = getInt();
+			check(n == s.count && n <= size - pos, "spaces");
+			int start = pos;
+			pos += n;
+			// adding at the front in reverse order gives the saved order
+			for (int k = n - 1; k >= 0; k--) {
+				long id = words[start + k];
+				DxGeom g = r.getGeom((int) (id >>> 1));
+				check(g != null && g.parent_space == s, "spaces");
+				g.spaceRemove(s);
+				g.spaceAdd(s._first, s);
+				if ((id & 1) != 0) {
+					g.setFlagDirtyAndBad();
+				} else if (g.hasFlagDirty()) {
+					// clean geoms did not move since their AABB was computed
+					g.recomputeAABB();
+					g.unsetFlagDirtyAndBad();
+				}
+			}
+		}
+	}
+
+	private void restoreContacts(DxWorld w, DxSnapshotRegistry r) {
+		int id = getInt();
+		if (id == 0) {
+			return;
+		}
+		DxJointGroup group = r.getJointGroup(id);
+		group.empty();
+		int n = getInt();
+		ArrayList<DxBody> bodies = r.bodies;
+		for (int i = 0; i < n; i++) {
+			int i1 = getInt();
+			int i2 = getInt();
+			check(i1 < bodies.size() && i2 < bodies.size(), "bodies");
+			DxBody b1 = i1 < 0 ? null : bodies.get(i1);
+			DxBody b2 = i2 < 0 ? null : bodies.get(i2);
+			boolean enabled = getInt() != 0;
+			DxJointContact j = group.dJointGroupCreatePooledContact(w);
+			DContact c = j.contact;
+			DSurfaceParameters s = c.surface;
+			s.mode = getInt();
+			s.mu = getDouble();
+			s.mu2 = getDouble();
+			s.rho = getDouble();
+			s.rho2 = getDouble();
+			s.rhoN = getDouble();
+			s.bounce = getDouble();
+			s.bounce_vel = getDouble();
+			s.soft_erp = getDouble();
+			s.soft_cfm = getDouble();
+			s.motion1 = getDouble();
+			s.motion2 = getDouble();
+			s.motionN = getDouble();
+			s.slip1 = getDouble();
+			s.slip2 = getDouble();
+			getVector(c.geom.pos);
+			getVector(c.geom.normal);
+			c.geom.depth = getDouble();
+			c.geom.g1 = r.getGeom(getInt());
+			c.geom.g2 = r.getGeom(getInt());
+			c.geom.side1 = getInt();
+			c.geom.side2 = getInt();
+			c.geom.speculative = getInt() != 0;
+			getVector(c.fdir1);
+			j.dJointAttach(b1, b2);
+			if (!enabled) {
+				j.disable();
+			}
+			for (int k = 0; k < j.lambda.length; k++) {
+				j.lambda[k] = getDouble();
+			}
+		}
+	}
+
+	// ********************************************
+	// Serialization
+	// ********************************************
+
+	/** @return word <tt>i</tt>, 0 beyond the end */
+	private long word(int i) {
+		return i < size ? words[i] : 0;
+	}
+
+	private static void putVarInt(ByteBuffer out, int v) {
+		while ((v & ~0x7f) != 0) {
+			out.put((byte) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		out.put((byte) v);
+	}
+
+	private static int getVarInt(ByteBuffer in) {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			v |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException("Corrupt snapshot delta");
+	}
+
+	@Override
+	public int getSerializedSize() {
+		return 4 + size * 8;
+	}
+
+	@Override
+	public void write(ByteBuffer out) {
+		if (out.remaining() < getSerializedSize()) {
+			throw new BufferOverflowException();
+		}
+		out.putInt(size);
+		out.asLongBuffer().put(words, 0, size);
+		out.position(out.position() + size * 8);
+	}
+
+	@Override
+	public void read(ByteBuffer in) {
+		int n = in.getInt();
+		if (n < 0) {
+			throw new IllegalArgumentException("Corrupt snapshot");
+		}
+		ensureCapacity(n);
+		in.asLongBuffer().get(words, 0, n);
+		in.position(in.position() + n * 8);
+		size = n;
+	}
+
+	/**
+	 * The delta is a sequence of runs: the number of words that are equal
+	 * to the base, the number of words that differ, and the XOR of each 
+	 * differing word with the base. Words beyond the end of the base are
+	 * compared against 0.
+	 */
+	@Override
+	public void writeDelta(DWorldSnapshot base, ByteBuffer out) {
+		DxWorldSnapshot b = (DxWorldSnapshot) base;
+		out.putInt(size);
+		int i = 0;
+		while (i < size) {
+			int start = i;
+			while (i < size && words[i] == b.word(i)) {
+				i++;
+			}
+			putVarInt(out, i - start);
+			start = i;
+			while (i < size && words[i] != b.word(i)) {
+				i++;
+			}
+			putVarInt(out, i - start);
+			for (int k = start; k < i; k++) {
+				out.putLong(words[k] ^ b.word(k));
+			}
+		}
+	}
+
+	@Override
+	public void readDelta(DWorldSnapshot base, ByteBuffer in) {
+		DxWorldSnapshot b = (DxWorldSnapshot) base;
+		int n = in.getInt();
+		if (n < 0) {
+			throw new IllegalArgumentException("Corrupt snapshot delta");
+		}
+		int common = Math.min(n, b.size);
+		ensureCapacity(n);
+		if (b != this) {
+			System.arraycopy(b.words, 0, words, 0, common);
+		}
+		Arrays.fill(words, common, n, 0);
+		size = n;
+		int i = 0;
+		while (i < n) {
+			i += getVarInt(in);
+			int count = getVarInt(in);
+			if (i < 0 || count < 0 || count > n - i) {
+				throw new IllegalArgumentException("Corrupt snapshot delta");
+			}
+			for (int end = i + count; i < end; i++) {
+				words[i] ^= in.getLong();
+			}
+		}
+	}
+}
@@ -2,8 +2,6 @@ package org.ode4j.ode.internal;
 
 import java.util.Arrays;
 
-import org.ode4j.math.DVector3;
-
 public class GimpactDataPreprocessor {
 
 	private final DxGimpactData data;
@@ -13,6 +11,18 @@ public class GimpactDataPreprocessor {
 	}
 
 	float[] buildAngles() {
+		int[] neighbours = buildNeighbours();
+		float[] angles = new float[neighbours.length];
+		buildAngles(neighbours, angles, 0, neighbours.length);
+		return angles;
+	}
+
+	/**
+	 * Finds the neighbour triangle of each edge. The result depends only on
+	 * the indices, so it can be reused when the vertices move.
+	 * @return the neighbour triangle for each index, -1 for open edges
+	 */
+	int[] buildNeighbours() {
 		int numVertices = data.getDataRef().length / 3;
 		int numIndices = data.getIndexRef().length;
 		// Distribute triangles to buckets based on indices of their vertices to
@@ -37,9 +47,9 @@ public class GimpactDataPreprocessor {
 			int index = getVertexIndex(i);
 			triangleLists[triangleListInfo[1][index] + triangleListInfo[0][index]++] = triangle;
 		}
-		// 4. Search for neighbours and find the angles
-		float[] angles = new float[numIndices];
-		Arrays.fill(angles, (float)Math.PI * 2);
+		// 4. Search for neighbours
+		int[] neighbours = new int[numIndices];
+		Arrays.fill(neighbours, -1);
 		for (int i = 0; i < numIndices; i++) {
 			int triangle = i / 3;
 			int startIndex = getVertexIndex(i);
@@ -49,12 +59,22 @@ public class GimpactDataPreprocessor {
 			for (int j = 0; j < count; j++) {
 				int t = triangleLists[offset + j];
 				if (t != triangle && hasEdge(t, endIndex, startIndex)) {
-					angles[i] = getAngle(triangle, i % 3, t);
+					neighbours[i] = t;
 					break;
 				}
 			}
 		}
-		return angles;
+		return neighbours;
+	}
+
+	/**
+	 * Computes the angles of the edges <tt>start</tt> to <tt>end - 1</tt>
+	 * from the current vertices.
+	 */
+	void buildAngles(int[] neighbours, float[] angles, int start, int end) {
+		for (int i = start; i < end; i++) {
+			angles[i] = neighbours[i] < 0 ? (float) Math.PI * 2 : getAngle(i / 3, i % 3, neighbours[i]);
+		}
 	}
 
 	private boolean hasEdge(int triangle, int startIndex, int endIndex) {
@@ -73,27 +93,29 @@ public class GimpactDataPreprocessor {
 	}
 
 	private float getAngle(int triangle, int vertexIndex, int neighbourTriangle) {
-		DVector3 startVertex = getVertex(data.getIndexRef()[triangle * 3 + vertexIndex]);
-		DVector3 endVertex = getVertex(data.getIndexRef()[triangle * 3 + (vertexIndex + 1) % 3]);
-		DVector3 oppositeVertex = getVertex(data.getIndexRef()[triangle * 3 + (vertexIndex + 2) % 3]);
-		DVector3 edgeAxis = new DVector3(endVertex).sub(startVertex);
-		DVector3 secondEdge = new DVector3(oppositeVertex).sub(endVertex);
-		DVector3 normal = new DVector3();
-		normal.eqCross(edgeAxis, secondEdge);
-		DVector3 tangent = new DVector3();
-		tangent.eqCross(edgeAxis, normal);
+		float[] v = data.getDataRef();
+		int[] idx = data.getIndexRef();
+		int s = idx[triangle * 3 + vertexIndex] * 3;
+		int e = idx[triangle * 3 + (vertexIndex + 1) % 3] * 3;
+		int o = idx[triangle * 3 + (vertexIndex + 2) % 3] * 3;
+		// edgeAxis = end - start, secondEdge = opposite - end
+		double ax = (double) v[e] - v[s], ay = (double) v[e + 1] - v[s + 1], az = (double) v[e + 2] - v[s + 2];
+		double bx = (double) v[o] - v[e], by = (double) v[o + 1] - v[e + 1], bz = (double) v[o + 2] - v[e + 2];
+		// normal = edgeAxis x secondEdge
+		double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+		// tangent = edgeAxis x normal
+		double tx = ay * nz - az * ny, ty = az * nx - ax * nz, tz = ax * ny - ay * nx;
+
+		int n1 = idx[neighbourTriangle * 3] * 3;
+		int n2 = idx[neighbourTriangle * 3 + 1] * 3;
+		int n3 = idx[neighbourTriangle * 3 + 2] * 3;
+		double cx = (double) v[n2] - v[n1], cy = (double) v[n2 + 1] - v[n1 + 1], cz = (double) v[n2 + 2] - v[n1 + 2];
+		double dx = (double) v[n3] - v[n2], dy = (double) v[n3 + 1] - v[n2 + 1], dz = (double) v[n3 + 2] - v[n2 + 2];
+		double mx = cy * dz - cz * dy, my = cz * dx - cx * dz, mz = cx * dy - cy * dx;
 
-		DVector3 neighbourVertex1 = getVertex(data.getIndexRef()[neighbourTriangle * 3]);
-		DVector3 neighbourVertex2 = getVertex(data.getIndexRef()[neighbourTriangle * 3 + 1]);
-		DVector3 neighbourVertex3 = getVertex(data.getIndexRef()[neighbourTriangle * 3 + 2]);
-		DVector3 neighbourEdge1 = new DVector3(neighbourVertex2).sub(neighbourVertex1);
-		DVector3 neighbourEdge2 = new DVector3(neighbourVertex3).sub(neighbourVertex2);
-		DVector3 neighbourNormal = new DVector3();
-		neighbourNormal.eqCross(neighbourEdge1, neighbourEdge2);
-		
-		float angle = (float) Math.signum(tangent.dot(neighbourNormal));
-		double angleCos = normal.dot(neighbourNormal); 
-		double length = Math.sqrt(normal.lengthSquared() * neighbourNormal.lengthSquared());
+		float angle = (float) Math.signum(tx * mx + ty * my + tz * mz);
+		double angleCos = nx * mx + ny * my + nz * mz;
+		double length = Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz));
 		if (length > Double.MIN_VALUE) {
 			angleCos /= length;
 		}
@@ -102,9 +124,4 @@ public class GimpactDataPreprocessor {
 		return angle;
 	}
 
-	private DVector3 getVertex(int index) {
-		return new DVector3(data.getDataRef()[index * 3], data.getDataRef()[index * 3 + 1],
-				data.getDataRef()[index * 3 + 2]);
-	}
-
 }
@@ -59,6 +59,20 @@ public class Misc extends Common {
 	//unsigned long dRand()
 	public static long
 	dRand()
+	{
+		return dRand(seed);
+	}
+
+
+	/** 
+	 * Like {@link #dRand()}, but uses the given seed instead of the global seed.
+	 * This allows independent (e.g. per-world) and reproducible random sequences 
+	 * when several sequences are used concurrently. 
+	 * @param seed seed
+	 * @return ramdom number
+	 */
+	public static long
+	dRand(AtomicLong seed)
 	{
 	    long origSeed, newSeed;
         do {
@@ -121,11 +135,23 @@ public class Misc extends Common {
 	 * @return random value
 	 */
 	public static int dRandInt (long n)
+	{
+		return dRandInt(seed, n);
+	}
+
+
+	/** 
+	 * Like {@link #dRandInt(long)}, but uses the given seed instead of the global seed.
+	 * @param seed seed
+	 * @param n max value
+	 * @return random value
+	 */
+	public static int dRandInt (AtomicLong seed, long n)
 	{
 	    long result;
 	    // Since there is no memory barrier macro in ODE assign via volatile variable 
 	    // to prevent compiler reusing seed as value of `r'
-	    long raw_r = dRand();
+	    long raw_r = dRand(seed);
 	    long r = raw_r;
 	    
 	    long un = n;
@@ -103,6 +103,7 @@ public class Objects_H {
 	public static class dxQuickStepParameters extends CloneableParameter {
 		public int num_iterations;		// number of SOR iterations to perform
 		public double w;			// the SOR over-relaxation parameter
+		public double warm_starting;	// scale of the previous step's lambdas, 0 to disable
 		@Override
 		protected dxQuickStepParameters clone() {
 			return cloneThis();
@@ -112,6 +113,7 @@ public class Objects_H {
 	    dxQuickStepParameters() {
 	    	num_iterations = 20;
 	    	w = 1.3;
+	    	warm_starting = 0;
 	    }
 	}
 
@@ -490,6 +490,10 @@ public class OdeInit {
 //    #if dTLS_ENABLED
 //        COdeTls::CleanupForThread();
 //    #endif
+        DxHeightfield.cleanupZoneScratchForThread();
+        CollisionLibccd.cleanupWorkspaceForThread();
+        DxContinuousCollision.cleanupRayForThread();
+        StepperScratch.cleanupForThread();
     }
 
     //****************************************************************************
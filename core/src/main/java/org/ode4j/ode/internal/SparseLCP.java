@@ -0,0 +1,447 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dPAD;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+
+/**
+ * LCP solver of {@link Step} that exploits the sparsity of the joint graph,
+ * see {@link DWorld#setStepSparseSolver(boolean)}.
+ * <p>
+ * The rows without bounds, i.e. most rows of the joints, are eliminated with
+ * a sparse LDL<sup>T</sup> factorization of their block of A. The rows are 
+ * ordered by minimum degree, which causes no fill-in for chains and trees, so
+ * factoring and solving take linear time. The remaining bounded rows (contacts, 
+ * limits, motors and friction) are solved by the pivoting {@link DLCP} on the 
+ * Schur complement of the unbounded block. Only these rows are pivoted.
+ * <p>
+ * A is only read, so the dense solver can take over when the factorization 
+ * fails, e.g. for redundant constraints without CFM.
+ */
+final class SparseLCP {
+
+	private SparseLCP() {}
+
+	/**
+	 * Solves the same problem as {@link DLCP#dSolveLCP}, but only uses the 
+	 * lower triangle of A and keeps A unless it has to fall back to 
+	 * {@link DLCP}.
+	 */
+	static void dSolveLCP(DxWorldProcessMemArena memarena, int n, double[] A, double[] x, 
+			double[] b, int nub, double[] lo, double[] hi, int[] findex) {
+		final int nskip = dPAD(n);
+
+		// a row is bounded if it has limits, a friction index or if it is the
+		// normal row of a friction row
+		boolean[] bounded = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			if (lo[i] != -dInfinity || hi[i] != dInfinity) {
+				bounded[i] = true;
+			}
+			if (findex != null && findex[i] >= 0) {
+				bounded[i] = true;
+				bounded[findex[i]] = true;
+			}
+		}
+		int[] local = new int[n];
+		int nu = 0, nc = 0;
+		for (int i = 0; i < n; i++) {
+			local[i] = bounded[i] ? nc++ : nu++;
+		}
+		if (nu == 0) {
+			DLCP.dSolveLCP(memarena, n, A, x, b, null, nub, lo, hi, findex);
+			return;
+		}
+		int[] urows = new int[nu];
+		int[] crows = new int[nc];
+		for (int i = 0; i < n; i++) {
+			if (bounded[i]) {
+				crows[local[i]] = i;
+			} else {
+				urows[local[i]] = i;
+			}
+		}
+
+		Factor factor = Factor.create(A, nskip, urows);
+		if (factor == null) {
+			DLCP.dSolveLCP(memarena, n, A, x, b, null, nub, lo, hi, findex);
+			return;
+		}
+
+		// y = Auu^-1 * bu
+		double[] y = new double[nu];
+		for (int u = 0; u < nu; u++) {
+			y[u] = b[urows[u]];
+		}
+		factor.solve(y);
+
+		if (nc > 0) {
+			// couplings Auc of the bounded rows, as sparse columns
+			int[][] cIdx = new int[nc][];
+			double[][] cVal = new double[nc][];
+			int[] idx = new int[nu];
+			double[] val = new double[nu];
+			for (int c = 0; c < nc; c++) {
+				final int rc = crows[c];
+				int cnt = 0;
+				for (int u = 0; u < nu; u++) {
+					final int ru = urows[u];
+					double a = rc > ru ? A[rc*nskip + ru] : A[ru*nskip + rc];
+					if (a != 0) {
+						idx[cnt] = u;
+						val[cnt] = a;
+						cnt++;
+					}
+				}
+				cIdx[c] = Arrays.copyOf(idx, cnt);
+				cVal[c] = Arrays.copyOf(val, cnt);
+			}
+
+			// X = Auu^-1 * Auc
+			double[] X = new double[nc*nu];
+			double[] col = new double[nu];
+			for (int c = 0; c < nc; c++) {
+				Arrays.fill(col, 0);
+				int[] ci = cIdx[c];
+				double[] cv = cVal[c];
+				for (int k = 0; k < ci.length; k++) {
+					col[ci[k]] = cv[k];
+				}
+				factor.solve(col);
+				System.arraycopy(col, 0, X, c*nu, nu);
+			}
+
+			// reduced problem S = Acc - Acu * X, bc' = bc - Acu * y
+			final int sskip = dPAD(nc);
+			double[] S = new double[nc*sskip];
+			double[] bc = new double[nc];
+			double[] loc = new double[nc];
+			double[] hic = new double[nc];
+			int[] findexc = findex != null ? new int[nc] : null;
+			for (int i = 0; i < nc; i++) {
+				final int ri = crows[i];
+				int[] ci = cIdx[i];
+				double[] cv = cVal[i];
+				for (int j = 0; j <= i; j++) {
+					double s = A[ri*nskip + crows[j]];
+					final int Xj = j*nu;
+					for (int k = 0; k < ci.length; k++) {
+						s -= cv[k] * X[Xj + ci[k]];
+					}
+					S[i*sskip + j] = s;
+				}
+				double s = b[ri];
+				for (int k = 0; k < ci.length; k++) {
+					s -= cv[k] * y[ci[k]];
+				}
+				bc[i] = s;
+				loc[i] = lo[ri];
+				hic[i] = hi[ri];
+				if (findexc != null) {
+					findexc[i] = findex[ri] >= 0 ? local[findex[ri]] : -1;
+				}
+			}
+
+			double[] xc = new double[nc];
+			DLCP.dSolveLCP(memarena, nc, S, xc, bc, null, 0, loc, hic, findexc);
+
+			// xu = Auu^-1 * (bu - Auc * xc)
+			for (int u = 0; u < nu; u++) {
+				y[u] = b[urows[u]];
+			}
+			for (int c = 0; c < nc; c++) {
+				final double xcc = xc[c];
+				int[] ci = cIdx[c];
+				double[] cv = cVal[c];
+				for (int k = 0; k < ci.length; k++) {
+					y[ci[k]] -= cv[k] * xcc;
+				}
+				x[crows[c]] = xcc;
+			}
+			factor.solve(y);
+		}
+
+		for (int u = 0; u < nu; u++) {
+			x[urows[u]] = y[u];
+		}
+	}
+
+
+	/**
+	 * Sparse LDL<sup>T</sup> factorization of the symmetric block of A given
+	 * by a set of rows, with the rows in minimum degree order. L is stored by
+	 * columns without its unit diagonal.
+	 */
+	static final class Factor {
+		/** Block row of each position of the elimination order. */
+		private final int[] order;
+		private final int[] Lp;
+		private final int[] Li;
+		private final double[] Lx;
+		private final double[] D;
+		private final double[] work;
+
+		private Factor(int[] order, int[] Lp, int[] Li, double[] Lx, double[] D) {
+			this.order = order;
+			this.Lp = Lp;
+			this.Li = Li;
+			this.Lx = Lx;
+			this.D = D;
+			this.work = new double[order.length];
+		}
+
+		/**
+		 * Factors the block of A (lower triangle, row skip nskip) given by 
+		 * the ascending rows.
+		 * @return the factorization, or null if the block is not positive 
+		 * definite
+		 */
+		static Factor create(double[] A, int nskip, int[] rows) {
+			final int n = rows.length;
+
+			// adjacency of the rows by the nonzero elements
+			int[] deg = new int[n];
+			for (int i = 0; i < n; i++) {
+				final int Ai = rows[i]*nskip;
+				for (int j = 0; j < i; j++) {
+					if (A[Ai + rows[j]] != 0) {
+						deg[i]++;
+						deg[j]++;
+					}
+				}
+			}
+			int[] Ap = new int[n + 1];
+			for (int i = 0; i < n; i++) {
+				Ap[i + 1] = Ap[i] + deg[i];
+			}
+			int[] Ai = new int[Ap[n]];
+			int[] fill = Arrays.copyOf(Ap, n);
+			for (int i = 0; i < n; i++) {
+				final int Arow = rows[i]*nskip;
+				for (int j = 0; j < i; j++) {
+					if (A[Arow + rows[j]] != 0) {
+						Ai[fill[i]++] = j;
+						Ai[fill[j]++] = i;
+					}
+				}
+			}
+
+			int[] order = minimumDegreeOrder(n, Ap, Ai);
+			int[] pinv = new int[n];
+			for (int k = 0; k < n; k++) {
+				pinv[order[k]] = k;
+			}
+
+			// symbolic factorization: elimination tree and column counts of L
+			int[] parent = new int[n];
+			int[] flag = new int[n];
+			int[] Lnz = new int[n];
+			for (int k = 0; k < n; k++) {
+				parent[k] = -1;
+				flag[k] = k;
+				final int p = order[k];
+				for (int a = Ap[p]; a < Ap[p + 1]; a++) {
+					int i = pinv[Ai[a]];
+					if (i < k) {
+						for (; flag[i] != k; i = parent[i]) {
+							if (parent[i] == -1) {
+								parent[i] = k;
+							}
+							Lnz[i]++;
+							flag[i] = k;
+						}
+					}
+				}
+			}
+			int[] Lp = new int[n + 1];
+			for (int k = 0; k < n; k++) {
+				Lp[k + 1] = Lp[k] + Lnz[k];
+			}
+
+			// numeric factorization, row by row of L
+			int[] Li = new int[Lp[n]];
+			double[] Lx = new double[Lp[n]];
+			double[] D = new double[n];
+			double[] Y = new double[n];
+			int[] pattern = new int[n];
+			for (int k = 0; k < n; k++) {
+				final int p = order[k];
+				final int rp = rows[p];
+				Y[k] = A[rp*nskip + rp];
+				int top = n;
+				flag[k] = k;
+				Lnz[k] = 0;
+				for (int a = Ap[p]; a < Ap[p + 1]; a++) {
+					final int q = Ai[a];
+					int i = pinv[q];
+					if (i < k) {
+						final int rq = rows[q];
+						Y[i] += rp > rq ? A[rp*nskip + rq] : A[rq*nskip + rp];
+						int len = 0;
+						for (; flag[i] != k; i = parent[i]) {
+							pattern[len++] = i;
+							flag[i] = k;
+						}
+						while (len > 0) {
+							pattern[--top] = pattern[--len];
+						}
+					}
+				}
+				double dk = Y[k];
+				Y[k] = 0;
+				for (; top < n; top++) {
+					final int i = pattern[top];
+					final double yi = Y[i];
+					Y[i] = 0;
+					final int p2 = Lp[i] + Lnz[i];
+					for (int pp = Lp[i]; pp < p2; pp++) {
+						Y[Li[pp]] -= Lx[pp] * yi;
+					}
+					final double lki = yi / D[i];
+					dk -= lki * yi;
+					Li[p2] = k;
+					Lx[p2] = lki;
+					Lnz[i]++;
+				}
+				if (!(dk > 0)) {
+					return null;
+				}
+				D[k] = dk;
+			}
+			return new Factor(order, Lp, Li, Lx, D);
+		}
+
+		/**
+		 * Solves the block system in place.
+		 * @param b right hand side in block row order, overwritten with the 
+		 * solution
+		 */
+		void solve(double[] b) {
+			final int n = order.length;
+			final double[] y = work;
+			for (int k = 0; k < n; k++) {
+				y[k] = b[order[k]];
+			}
+			for (int j = 0; j < n; j++) {
+				final double yj = y[j];
+				if (yj != 0) {
+					for (int p = Lp[j]; p < Lp[j + 1]; p++) {
+						y[Li[p]] -= Lx[p] * yj;
+					}
+				}
+			}
+			for (int j = 0; j < n; j++) {
+				y[j] /= D[j];
+			}
+			for (int j = n - 1; j >= 0; j--) {
+				double yj = y[j];
+				for (int p = Lp[j]; p < Lp[j + 1]; p++) {
+					yj -= Lx[p] * y[Li[p]];
+				}
+				y[j] = yj;
+			}
+			for (int k = 0; k < n; k++) {
+				b[order[k]] = y[k];
+			}
+		}
+
+		/** @return number of off-diagonal elements of L */
+		int getNonZeroCount() {
+			return Lp[order.length];
+		}
+	}
+
+
+	/**
+	 * Greedy minimum degree ordering on the elimination graph: eliminating a 
+	 * row connects all its remaining neighbours.
+	 * @param Ap start of the neighbours of each row in Ai
+	 * @param Ai neighbours
+	 * @return the rows in elimination order
+	 */
+	static int[] minimumDegreeOrder(int n, int[] Ap, int[] Ai) {
+		int[][] adj = new int[n][];
+		int[] deg = new int[n];
+		for (int i = 0; i < n; i++) {
+			deg[i] = Ap[i + 1] - Ap[i];
+			adj[i] = Arrays.copyOfRange(Ai, Ap[i], Ap[i + 1]);
+		}
+		boolean[] done = new boolean[n];
+		int[] mark = new int[n];
+		int stamp = 0;
+		int[] nbrs = new int[n];
+		int[] order = new int[n];
+		for (int k = 0; k < n; k++) {
+			int p = -1;
+			for (int i = 0; i < n; i++) {
+				if (!done[i] && (p < 0 || deg[i] < deg[p])) {
+					p = i;
+				}
+			}
+			order[k] = p;
+			done[p] = true;
+
+			int cnt = 0;
+			int[] ap = adj[p];
+			for (int j = 0; j < deg[p]; j++) {
+				if (!done[ap[j]]) {
+					nbrs[cnt++] = ap[j];
+				}
+			}
+			// the remaining neighbours of p become a clique
+			for (int a = 0; a < cnt; a++) {
+				final int u = nbrs[a];
+				stamp++;
+				int[] au = adj[u];
+				int d = 0;
+				for (int j = 0; j < deg[u]; j++) {
+					final int v = au[j];
+					if (!done[v]) {
+						au[d++] = v;
+						mark[v] = stamp;
+					}
+				}
+				for (int b = 0; b < cnt; b++) {
+					final int v = nbrs[b];
+					if (v != u && mark[v] != stamp) {
+						if (d == au.length) {
+							au = Arrays.copyOf(au, Math.max(4, 2*d));
+						}
+						au[d++] = v;
+						mark[v] = stamp;
+					}
+				}
+				adj[u] = au;
+				deg[u] = d;
+			}
+			adj[p] = null;
+		}
+		return order;
+	}
+}
@@ -52,6 +52,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.ode.DJoint.DJointFeedback;
+import org.ode4j.ode.DStepStatistics.Stage;
 import org.ode4j.ode.internal.cpp4j.FILE;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.joints.DxJointNode;
@@ -59,9 +60,9 @@ import org.ode4j.ode.internal.joints.Info2DescrStep;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dmaxcallcountestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper_fn_t;
-import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
 import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo.dmemestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena.PooledArrayFactory;
 
 class Step extends AbstractStepper implements dstepper_fn_t, dmemestimate_fn_t, 
 dmaxcallcountestimate_fn_t {
@@ -120,47 +121,50 @@ dmaxcallcountestimate_fn_t {
 
 	private static class dxStepperStage1CallContext
 	{
-		dxStepperStage1CallContext(final DxStepperProcessingCallContext stepperCallContext, 
-				BlockPointer stageMemArenaState, double[] invI, 
-				dJointWithInfo1[] jointinfosA, int jointinfosOfs)    {
+		void Initialize(final DxStepperProcessingCallContext stepperCallContext, 
+				int stageMemArenaState, double[] invI, 
+				dJointWithInfo1[] jointinfosA, int jointinfosOfs,
+				dxStepperContexts contexts)    {
 			m_stepperCallContext = stepperCallContext;
 			m_stageMemArenaState = stageMemArenaState; 
 			m_invI = invI;
 			m_jointinfosA = jointinfosA;
 			m_jointinfosOfs = jointinfosOfs;
+			m_contexts = contexts;
 		}
 
-		final DxStepperProcessingCallContext m_stepperCallContext;
-		BlockPointer                    m_stageMemArenaState;
+		DxStepperProcessingCallContext m_stepperCallContext;
+		int                    m_stageMemArenaState;
 		double[]                        m_invI;
 		dJointWithInfo1[]               m_jointinfosA;
 		int				                m_jointinfosOfs;
+		dxStepperContexts               m_contexts;
 		final dxStepperStage0Outputs          m_stage0Outputs = new dxStepperStage0Outputs();
 	}
 
 	private static class dxStepperStage0BodiesCallContext
 	{
-		dxStepperStage0BodiesCallContext(final DxStepperProcessingCallContext stepperCallContext, 
+		void Initialize(final DxStepperProcessingCallContext stepperCallContext, 
 				double[] invI)
 				{
 			m_stepperCallContext = stepperCallContext;
 			m_invI = invI; 
-			m_tagsTaken = new AtomicInteger(0);
-			m_gravityTaken = new AtomicInteger(0);
-			//m_inertiaBodyIndex = 0;
+			m_tagsTaken.set(0);
+			m_gravityTaken.set(0);
+			m_inertiaBodyIndex.set(0);
 				}
 
-		final DxStepperProcessingCallContext m_stepperCallContext;
+		DxStepperProcessingCallContext m_stepperCallContext;
 		double[]                        m_invI;
-		final AtomicInteger                   m_tagsTaken;
-		final AtomicInteger                   m_gravityTaken;
+		final AtomicInteger                   m_tagsTaken = new AtomicInteger();
+		final AtomicInteger                   m_gravityTaken = new AtomicInteger();
 		//volatile int                    m_inertiaBodyIndex;
 		final AtomicInteger                     m_inertiaBodyIndex = new AtomicInteger();
 	}
 
 	private static class dxStepperStage0JointsCallContext
 	{
-		dxStepperStage0JointsCallContext(final DxStepperProcessingCallContext stepperCallContext, 
+		void Initialize(final DxStepperProcessingCallContext stepperCallContext, 
 				dJointWithInfo1[] jointinfosA, int jointinfosOfs, 
 				dxStepperStage0Outputs stage0Outputs) {
 			m_stepperCallContext = stepperCallContext;
@@ -169,7 +173,7 @@ dmaxcallcountestimate_fn_t {
 			m_stage0Outputs = stage0Outputs;
 		}
 
-		final DxStepperProcessingCallContext m_stepperCallContext;
+		DxStepperProcessingCallContext m_stepperCallContext;
 		dJointWithInfo1[]                 m_jointinfosA;
 		int				                  m_jointinfosOfs;
 		dxStepperStage0Outputs            m_stage0Outputs;
@@ -221,13 +225,15 @@ dmaxcallcountestimate_fn_t {
 		double[]                           m_J;
 		double[]                           m_A;
 		double[]                           m_rhs;
+		/** (TZ) Row scratch of stage 3 for the joint feedback and the velocity update. */
+		final double[]                     m_data = new double[8];
 	}
 
 	private static class dxStepperStage3CallContext
 	{
 		void Initialize(final DxStepperProcessingCallContext callContext, 
 				final dxStepperLocalContext localContext, 
-				BlockPointer stage1MemArenaState)
+				int stage1MemArenaState)
 		{
 			m_stepperCallContext = callContext;
 			m_localContext = localContext;
@@ -236,7 +242,7 @@ dmaxcallcountestimate_fn_t {
 
 		DxStepperProcessingCallContext m_stepperCallContext;
 		dxStepperLocalContext     m_localContext;
-		BlockPointer                           m_stage1MemArenaState;
+		int                           m_stage1MemArenaState;
 	}
 
 	private static class dxStepperStage2CallContext
@@ -249,12 +255,12 @@ dmaxcallcountestimate_fn_t {
 			m_localContext = localContext;
 			m_JinvM = JinvM;
 			m_rhs_tmp_or_cfm = rhs_tmp_or_cfm;
-			//m_ji_J = 0;
-			//m_ji_Ainit = 0;
-			//m_ji_JinvM = 0;
-			//m_ji_Aaddjb = 0;
-			//m_bi_rhs_tmp = 0;
-			//m_ji_rhs.set(0);
+			m_ji_J.set(0);
+			m_ji_Ainit.set(0);
+			m_ji_JinvM.set(0);
+			m_ji_Aaddjb.set(0);
+			m_bi_rhs_tmp.set(0);
+			m_ji_rhs.set(0);
 		}
 
 		DxStepperProcessingCallContext m_stepperCallContext;
@@ -275,6 +281,63 @@ dmaxcallcountestimate_fn_t {
 		final AtomicInteger              m_ji_rhs = new AtomicInteger();
 	}
 
+	/**
+	 * (TZ) The call contexts of one island step. They are kept in the
+	 * stepper arena and re-initialized by each stage instead of being
+	 * allocated on every step.
+	 */
+	private static class dxStepperContexts
+	{
+		final dxStepperStage1CallContext stage1 = new dxStepperStage1CallContext();
+		final dxStepperStage0BodiesCallContext stage0Bodies = new dxStepperStage0BodiesCallContext();
+		final dxStepperStage0JointsCallContext stage0Joints = new dxStepperStage0JointsCallContext();
+		final dxStepperLocalContext local = new dxStepperLocalContext();
+		final dxStepperStage3CallContext stage3 = new dxStepperStage3CallContext();
+		final dxStepperStage2CallContext stage2 = new dxStepperStage2CallContext();
+	}
+
+	private static final PooledArrayFactory<dxStepperContexts> CONTEXTS_FACTORY = 
+			new PooledArrayFactory<dxStepperContexts>() {
+		@Override
+		public boolean isInstance(Object array) {
+			return array instanceof dxStepperContexts[];
+		}
+		@Override
+		public dxStepperContexts[] newArray(int size) {
+			return new dxStepperContexts[size];
+		}
+		@Override
+		public dxStepperContexts newElement() {
+			return new dxStepperContexts();
+		}
+		@Override
+		public void resetElement(dxStepperContexts element) {
+			// the contexts are initialized by each stage
+		}
+	};
+
+	private static final PooledArrayFactory<dJointWithInfo1> JOINTINFOS_FACTORY = 
+			new PooledArrayFactory<dJointWithInfo1>() {
+		@Override
+		public boolean isInstance(Object array) {
+			return array instanceof dJointWithInfo1[];
+		}
+		@Override
+		public dJointWithInfo1[] newArray(int size) {
+			return new dJointWithInfo1[size];
+		}
+		@Override
+		public dJointWithInfo1 newElement() {
+			return new dJointWithInfo1();
+		}
+		@Override
+		public void resetElement(dJointWithInfo1 element) {
+			element.joint = null;
+			element.info.m = 0;
+			element.info.nub = 0;
+		}
+	};
+
 	//static int dxStepIsland_Stage2a_Callback(Object[] callContext, int/*dcallindex_t*/ callInstanceIndex, DCallReleasee callThisReleasee) {/*TZ*/};
 	//static int dxStepIsland_Stage2aSync_Callback(Object[] callContext, int/*dcallindex_t*/ callInstanceIndex, DCallReleasee callThisReleasee) {/*TZ*/};
 	//static int dxStepIsland_Stage2b_Callback(Object[] callContext, int/*dcallindex_t*/ callInstanceIndex, DCallReleasee callThisReleasee) {/*TZ*/};
@@ -437,53 +500,48 @@ dmaxcallcountestimate_fn_t {
 	private void dxStepIsland(final DxStepperProcessingCallContext callContext)
 	{
 		IFTIMING_dTimerStart("preprocessing");
+		callContext.StartStatisticsLap();
 
 		DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 		DxWorld world = callContext.m_world();
 		int nb = callContext.m_islandBodiesCount();
 		int _nj = callContext.m_islandJointsCount();
 
-		memarena.dummy();
-		double[] invI = new double[3*4*nb];//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
+		final dxStepperContexts contexts = memarena.AllocatePooled(CONTEXTS_FACTORY);
+		double[] invI = memarena.AllocateArrayDReal(3*4*nb);//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
 		// Reserve twice as much memory and start from the middle so that regardless of 
 		// what direction the array grows to there would be sufficient room available.
 		final int ji_reserve_count = 2 * _nj;
-		memarena.dummy();
-		dJointWithInfo1[] jointinfosA = new dJointWithInfo1[ji_reserve_count];//memarena.AllocateArray<dJointWithInfo1>(ji_reserve_count);
-		//TZ: init
-		for (int i = 0; i < jointinfosA.length; i++) {
-			jointinfosA[i] = new dJointWithInfo1();
-		}
+		dJointWithInfo1[] jointinfosA = memarena.AllocateArrayPooled(JOINTINFOS_FACTORY, ji_reserve_count);//memarena.AllocateArray<dJointWithInfo1>(ji_reserve_count);
 		int jointinfosOfs = 0;
 
 		final int allowedThreads = callContext.m_stepperAllowedThreads();
 		dIASSERT(allowedThreads != 0);
 
-		BlockPointer stagesMemArenaState = memarena.SaveState();
+		int stagesMemArenaState = memarena.SaveState();
 
 		//dxStepperStage1CallContext stage1CallContext = (dxStepperStage1CallContext *)memarena->AllocateBlock(sizeof(dxStepperStage1CallContext));
 		//new(stage1CallContext) dxStepperStage1CallContext(callContext, stagesMemArenaState, invI, jointinfos);
-		memarena.dummy();
-		final dxStepperStage1CallContext stage1CallContext = new dxStepperStage1CallContext(callContext, 
-				stagesMemArenaState, invI, jointinfosA, jointinfosOfs);
+		final dxStepperStage1CallContext stage1CallContext = contexts.stage1;
+		stage1CallContext.Initialize(callContext, 
+				stagesMemArenaState, invI, jointinfosA, jointinfosOfs, contexts);
 
 		//dxStepperStage0BodiesCallContext *stage0BodiesCallContext = (dxStepperStage0BodiesCallContext *)memarena->AllocateBlock(sizeof(dxStepperStage0BodiesCallContext));
 		//new(stage0BodiesCallContext) dxStepperStage0BodiesCallContext(callContext, invI);
-		memarena.dummy();
-		final dxStepperStage0BodiesCallContext stage0BodiesCallContext = 
-				new dxStepperStage0BodiesCallContext(callContext, invI);
+		final dxStepperStage0BodiesCallContext stage0BodiesCallContext = contexts.stage0Bodies;
+		stage0BodiesCallContext.Initialize(callContext, invI);
 
 		//dxStepperStage0JointsCallContext *stage0JointsCallContext = (dxStepperStage0JointsCallContext *)memarena->AllocateBlock(sizeof(dxStepperStage0JointsCallContext));
 		//new(stage0JointsCallContext) dxStepperStage0JointsCallContext(callContext, jointinfos, &stage1CallContext->m_stage0Outputs);
-		memarena.dummy();
-		final dxStepperStage0JointsCallContext stage0JointsCallContext = 
-				new dxStepperStage0JointsCallContext(callContext, jointinfosA, jointinfosOfs, 
+		final dxStepperStage0JointsCallContext stage0JointsCallContext = contexts.stage0Joints;
+		stage0JointsCallContext.Initialize(callContext, jointinfosA, jointinfosOfs, 
 						stage1CallContext.m_stage0Outputs);
 
 		if (allowedThreads == 1)
 		{
 			dxStepIsland_Stage0_Bodies(stage0BodiesCallContext);
 			dxStepIsland_Stage0_Joints(stage0JointsCallContext);
+			callContext.StatisticsLap(Stage.STAGE0);
 			dxStepIsland_Stage1(stage1CallContext);
 		}
 		else
@@ -582,7 +640,8 @@ dmaxcallcountestimate_fn_t {
 
 			for (int i = 0; i != nb; invIrowO += 12, ++i) {
 				if (i == bodyIndex) {
-					DMatrix3 tmp = new DMatrix3();
+					StepperScratch scratch = StepperScratch.get();
+					DMatrix3 tmp = scratch.tmp;
 					DxBody b = bodyA[i+bOfs];
 
 					// compute inverse inertia tensor in global frame
@@ -593,7 +652,7 @@ dmaxcallcountestimate_fn_t {
 					// if not flagged or the body is kinematic
 					//if ((b.flags & DxBody.dxBodyGyroscopic)&& (b.invMass>0)) {
 					if (b.isFlagsGyroscopic() && (b.invMass>0)) {
-						DMatrix3 I = new DMatrix3();
+						DMatrix3 I = scratch.I;
 						// compute inertia tensor in global frame
 						dMultiply2_333 (tmp,b.mass._I,b.posr().R());
 						dMultiply0_333 (I,b.posr().R(),tmp);
@@ -607,7 +666,7 @@ dmaxcallcountestimate_fn_t {
 						//"Stabilizing Gyroscopic Forces in Rigid Multibody Simulations"
 						// (LacoursiÃ¨re 2006)
 						double h = callContext.m_stepperCallContext.m_stepSize(); // Step size
-						DVector3 L = new DVector3(); // Compute angular momentum
+						DVector3 L = scratch.L; // Compute angular momentum
 						dMultiply0_331(L,I,b.avel);
 
 						// Compute a new effective 'inertia tensor'
@@ -617,7 +676,8 @@ dmaxcallcountestimate_fn_t {
 						// Itild may not be symmetric pos-definite, 
 						// but we can still use it to compute implicit
 						// gyroscopic torques.
-						DMatrix3 Itild=new DMatrix3();//{0};  
+						DMatrix3 Itild=scratch.Itild;//{0};  
+						Itild.setZero();
 						dSetCrossMatrixMinus(Itild,L);//,4);
 						//for (int ii=0;ii<12;++ii) {
 						//	Itild[ii]=Itild[ii]*h+I[ii];
@@ -629,7 +689,7 @@ dmaxcallcountestimate_fn_t {
 						// a sort of "torque"
 						L.scale(dRecip(h));//dScaleVector3(L,dRecip(h));
 						// Invert the pseudo-tensor
-						DMatrix3 itInv = new DMatrix3();
+						DMatrix3 itInv = scratch.itInv;
 						// This is a closed-form inversion.
 						// It's probably not numerically stable
 						// when dealing with small masses with
@@ -651,7 +711,7 @@ dmaxcallcountestimate_fn_t {
 							// to the old inertia matrix as explicit
 							// torques with a semi-implicit update
 							// step.
-							DVector3 tau0 = new DVector3();
+							DVector3 tau0 = scratch.tau0;
 							dMultiply0_331(tau0,Itild,L);
 
 							// Add the gyro torques to the torque 
@@ -886,6 +946,7 @@ dmaxcallcountestimate_fn_t {
 		int ji_end = stage1CallContext.m_stage0Outputs.ji_end;
 		int m = stage1CallContext.m_stage0Outputs.m;
 		int nub = stage1CallContext.m_stage0Outputs.nub;
+		final dxStepperContexts contexts = stage1CallContext.m_contexts;
 
 		DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 		{
@@ -896,7 +957,6 @@ dmaxcallcountestimate_fn_t {
 			//int _nj = callContext.m_islandJointsCount();
 			//final int ji_reserve_count = 2 * _nj;
 			//memarena.ShrinkArray<dJointWithInfo1>(jointiinfos, ji_reserve_count, ji_end);
-			memarena.dummy();
 		}
 
 		DxWorld world = callContext.m_world();
@@ -912,8 +972,7 @@ dmaxcallcountestimate_fn_t {
 		// if there are constraints, compute cforce
 		if (m > 0) {
 			//mindex = memarena->AllocateArray<unsigned int>((size_t)(nj + 1));
-			memarena.dummy();
-			mindex = new int[nj + 1];
+			mindex = memarena.AllocateArrayInt(nj + 1);
 			{
 				//unsigned int *mcurr = mindex;
 				int[] mcurrA = mindex;
@@ -945,29 +1004,21 @@ dmaxcallcountestimate_fn_t {
 			//	        J = memarena->AllocateArray<dReal>(2 * 8 * (size_t)m);
 			//	        A = memarena->AllocateArray<dReal>(m * (size_t)dPAD(m));
 			//	        rhs = memarena->AllocateArray<dReal>(m);
-			memarena.dummy();
-			memarena.dummy();
-			memarena.dummy();
-			memarena.dummy();
-			memarena.dummy();
-			memarena.dummy();
-			findex = new int[m];
-			lo = new double[m];
-			hi = new double[m];
-			J = new double[2 * 8 * m];
-			A = new double[m * dPAD(m)];
-			rhs = new double[m];
+			findex = memarena.AllocateArrayInt(m);
+			lo = memarena.AllocateArrayDReal(m);
+			hi = memarena.AllocateArrayDReal(m);
+			J = memarena.AllocateArrayDReal(2 * 8 * m);
+			A = memarena.AllocateArrayDReal(m * dPAD(m));
+			rhs = memarena.AllocateArrayDReal(m);
 		}
 
 		//dxStepperLocalContext *localContext = (dxStepperLocalContext *)memarena->AllocateBlock(sizeof(dxStepperLocalContext));
-		memarena.dummy();
-		dxStepperLocalContext localContext = new dxStepperLocalContext();
+		dxStepperLocalContext localContext = contexts.local;
 		localContext.Initialize(invI, jointinfosA, jiP, nj, m, nub, mindex, findex, lo, hi, J, A, rhs);
 
-		BlockPointer stage1MemarenaState = memarena.SaveState();
+		int stage1MemarenaState = memarena.SaveState();
 		//dxStepperStage3CallContext *stage3CallContext = (dxStepperStage3CallContext*)memarena->AllocateBlock(sizeof(dxStepperStage3CallContext));
-		memarena.dummy();
-		dxStepperStage3CallContext stage3CallContext = new dxStepperStage3CallContext();
+		dxStepperStage3CallContext stage3CallContext = contexts.stage3;
 		stage3CallContext.Initialize(callContext, localContext, stage1MemarenaState);
 
 		if (m > 0) {
@@ -975,18 +1026,15 @@ dmaxcallcountestimate_fn_t {
 			// force mixing vector `cfm', and LCP low and high bound vectors, and an
 			// 'findex' vector.
 			//double[] JinvM = memarena->AllocateArray<dReal>(2 * 8 * (size_t)m);
-			memarena.dummy();
-			double[] JinvM = new double[2 * 8 * m];
+			double[] JinvM = memarena.AllocateArrayDReal(2 * 8 * m);
 			final int nb = callContext.m_islandBodiesCount();
 			int cfm_elem = m, rhs_tmp_elem = nb*8;
 			//dReal *cfm = memarena->AllocateArray<dReal>(dMAX(cfm_elem, rhs_tmp_elem));
-			memarena.dummy();
-			double[] cfm = new double[dMAX(cfm_elem, rhs_tmp_elem)];
+			double[] cfm = memarena.AllocateArrayDReal(dMAX(cfm_elem, rhs_tmp_elem));
 			// dReal *rhs_tmp = cfm; // Reuse the same memory since rhs calculations start after cfm is not needed anymore
 
 			//dxStepperStage2CallContext *stage2CallContext = (dxStepperStage2CallContext *)memarena->AllocateBlock(sizeof(dxStepperStage2CallContext));
-			memarena.dummy();
-			dxStepperStage2CallContext stage2CallContext = new dxStepperStage2CallContext();
+			dxStepperStage2CallContext stage2CallContext = contexts.stage2;
 			stage2CallContext.Initialize(callContext, localContext, JinvM, cfm);
 
 			int allowedThreads = callContext.m_stepperAllowedThreads();
@@ -994,9 +1042,11 @@ dmaxcallcountestimate_fn_t {
 
 			if (allowedThreads == 1)
 			{
+				callContext.StatisticsLap(Stage.STAGE1);
 				dxStepIsland_Stage2a(stage2CallContext);
 				dxStepIsland_Stage2b(stage2CallContext);
 				dxStepIsland_Stage2c(stage2CallContext);
+				callContext.StatisticsLap(Stage.STAGE2);
 				dxStepIsland_Stage3(stage3CallContext);
 			}
 			else
@@ -1004,6 +1054,7 @@ dmaxcallcountestimate_fn_t {
 			}
 		}
 		else {
+			callContext.StatisticsLap(Stage.STAGE1);
 			dxStepIsland_Stage3(stage3CallContext);
 		}
 	}
@@ -1051,7 +1102,7 @@ dmaxcallcountestimate_fn_t {
 
 			final double worldERP = world.getERP();
 
-			Info2DescrStep Jinfo = new Info2DescrStep();
+			Info2DescrStep Jinfo = StepperScratch.get().stepInfo;
 			Jinfo.setRowskip(8);
 			Jinfo.setArrays(J, rhs, cfm, lo, hi, findex); //TZ
 
@@ -1089,7 +1140,8 @@ dmaxcallcountestimate_fn_t {
 				
 				
 				DxJoint joint = jointinfosA[jointinfosOfs+ji].joint;
-				joint.getInfo2(stepsizeRecip, worldERP, Jinfo);
+				// substeps correct the position errors over the whole step
+				joint.getInfo2(stepsizeRecip / callContext.m_substeps(), worldERP, Jinfo);
 
 				//double[] rhs_row = Jinfo.c;
 				for (int i = 0; i != infom; ++i) {
@@ -1399,28 +1451,37 @@ dmaxcallcountestimate_fn_t {
 
 		double[] lambda = null;
 
+		DxStepStatistics statistics = callContext.m_world().getStepStatistics();
+		if (statistics != null && m > 0) {
+			statistics.addConstraintRows(m, 0);
+		}
+
 		if (m > 0) {
 			//lambda = memarena->AllocateArray<dReal>(m);
-			memarena.dummy();
-			lambda = new double[m];
+			lambda = memarena.AllocateArrayDReal(m);
 
 
-			BlockPointer lcpstate = memarena.BEGIN_STATE_SAVE();
+			int lcpstate = memarena.BEGIN_STATE_SAVE();
 			{
 				IFTIMING_dTimerNow ("solving LCP problem");
+				callContext.StatisticsLap(Stage.STAGE3);
 
 				// solve the LCP problem and get lambda.
 				// this will destroy A but that's OK
-				DLCP.dSolveLCP (memarena, m, A, lambda, rhs, null, nub, lo, hi, findex);
+				if (callContext.m_world().stepSparseSolver) {
+					SparseLCP.dSolveLCP (memarena, m, A, lambda, rhs, nub, lo, hi, findex);
+				} else {
+					DLCP.dSolveLCP (memarena, m, A, lambda, rhs, null, nub, lo, hi, findex);
+				}
 
+				callContext.StatisticsLap(Stage.LCP);
 			} 
 			memarena.END_STATE_SAVE(lcpstate);
 		}
 
 		// this will be set to the force due to the constraints
 		//dReal *cforce = memarena->AllocateArray<dReal>((size_t)nb * 8);
-		memarena.dummy();
-		double[] cforce = new double[nb * 8];
+		double[] cforce = memarena.AllocateArrayDReal(nb * 8);
 		//dSetZero (cforce,(size_t)nb*8);
 
 		if (m > 0) {
@@ -1448,7 +1509,7 @@ dmaxcallcountestimate_fn_t {
 						// joint is applying to the bodies. we use a slightly slower
 						// computation that splits out the force components and puts them
 						// in the feedback structure.
-						double[] data=new double[8];
+						double[] data=localContext.m_data;
 						Multiply1_8q1 (data, 0, J,JJ, lambda,lambdarow, infom);
 
 						DxBody b1 = joint.node[0].body;
@@ -1502,7 +1563,7 @@ dmaxcallcountestimate_fn_t {
 			double stepsize = callContext.m_stepSize();
 
 			// add fe to cforce and multiply cforce by stepsize
-			double[] data = new double[4];
+			double[] data = localContext.m_data;
 			int invIrowP = 0;//invI;
 			int cforcecurrP = 0;//cforce;
 			//        dxBody *const *const bodyend = body + nb;
@@ -1565,7 +1626,7 @@ dmaxcallcountestimate_fn_t {
 
 		IFTIMING_dTimerEnd();
 		if (m > 0) IFTIMING_dTimerReport (stdout,1);
-
+		callContext.StatisticsLap(Stage.STAGE3);
 	}
 
 	//****************************************************************************
@@ -0,0 +1,83 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DQuaternion;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.internal.joints.Info2DescrQuickStep;
+import org.ode4j.ode.internal.joints.Info2DescrStep;
+
+/**
+ * Temporaries of {@link Step}, {@link DxQuickStep} and 
+ * {@link DxBody#dxStepBody(double)} and the {@link DxIslandSubsteps} that are used by one thread at a time. The body and joint stages may run on several threads 
+ * for the same island, so these are kept per thread and not in the stepper
+ * arena.
+ */
+final class StepperScratch {
+
+	private static final ThreadLocal<StepperScratch> SCRATCH = new ThreadLocal<StepperScratch>() {
+		@Override
+		protected StepperScratch initialValue() {
+			return new StepperScratch();
+		}
+	};
+
+	// inertia and gyroscopic torque of a body
+	final DMatrix3 tmp = new DMatrix3();
+	final DMatrix3 I = new DMatrix3();
+	final DMatrix3 Itild = new DMatrix3();
+	final DMatrix3 itInv = new DMatrix3();
+	final DVector3 L = new DVector3();
+	final DVector3 tau0 = new DVector3();
+
+	// integration of a body
+	final DVector3 irv = new DVector3();
+	final DVector3 frv = new DVector3();
+	final DQuaternion q = new DQuaternion();
+	final DQuaternion q2 = new DQuaternion();
+	final DQuaternion dq = new DQuaternion();
+
+	// joint rows
+	final Info2DescrQuickStep quickStepInfo = new Info2DescrQuickStep();
+	final Info2DescrStep stepInfo = new Info2DescrStep();
+
+	// substeps of an island
+	final DxIslandSubsteps substeps = new DxIslandSubsteps();
+
+	private StepperScratch() {}
+
+	/**
+	 * @return the scratch of the calling thread
+	 */
+	static StepperScratch get() {
+		return SCRATCH.get();
+	}
+
+	/**
+	 * Releases the scratch of the calling thread.
+	 */
+	static void cleanupForThread() {
+		SCRATCH.remove();
+	}
+}
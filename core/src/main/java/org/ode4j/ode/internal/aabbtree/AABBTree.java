@@ -570,4 +570,29 @@ public class AABBTree<T> {
         }
     }
 
+    /**
+     * Passes the objects whose nodes intersect the query to the callback, 
+     * the query is not modified by the tree and may be run concurrently.
+     * @return false if the callback stopped the query
+     */
+    public boolean getIntersectingNodes(AABBTreeQueryCallback<T> callback) {
+        if (numExternalNodes > 0) {
+            int endNodeIndex = endNode;
+            int nodeIndex = 0;
+            while (nodeIndex < endNodeIndex) {
+                AABBTreeNode<T> node = nodes[nodeIndex];
+                if (callback.intersects(node.minX, node.minY, node.minZ, node.maxX, node.maxY, node.maxZ)) {
+                    if (node.isLeaf() && externalObjectHandler.isEnabled(node.externalObject)
+                            && !callback.overlap(node.externalObject)) {
+                        return false;
+                    }
+                    nodeIndex++;
+                } else {
+                    nodeIndex += node.escapeNodeOffset;
+                }
+            }
+        }
+        return true;
+    }
+
 }
@@ -85,9 +85,10 @@ public class GimAABBSet { //Formerly GimBoxPruning
 	//	    char m_shared;//!< if m_shared == 0 then the memory is allocated and the set must be destroyed, else the pointers are shared and the set should't be destroyed
 	int m_count;
 	aabb3f m_global_bound = new aabb3f();//!< Global calculated bound of all boxes
-	private final aabb3f[] m_boxes;// = new aabb3f[0];  //TZ Why init
+	final aabb3f[] m_boxes;// = new aabb3f[0];  //TZ Why init
 	long[] m_maxcoords;//!<Upper corners of the boxes, in integer representation
 	GIM_RSORT_TOKEN[] m_sorted_mincoords;//!< sorted min coords (lower corners), with their coord value as the m_key and m_value as the box index
+	private GIM_RSORT_TOKEN[] m_unsorted_mincoords;//!< radix sort input, kept for the next sort
 	char m_shared;//!< if m_shared == 0 then the memory is allocated and the set must be destroyed, else the pointers are shared and the set should't be destroyed
 	//	};
 	//typedef  struct _GIM_AABB_SET GIM_AABB_SET;
@@ -298,6 +299,7 @@ public class GimAABBSet { //Formerly GimBoxPruning
 		//	    }
 		//m_boxes = null;
 		m_sorted_mincoords = null;
+		m_unsorted_mincoords = null;
 		m_maxcoords = null;
 	}
 
@@ -371,11 +373,16 @@ public class GimAABBSet { //Formerly GimBoxPruning
 		{
 			//Sort by radix sort
 			//GIM_RSORT_TOKEN[] unsorted = gim_alloc(count, GIM_RSORT_TOKEN.class);//(GIM_RSORT_TOKEN *)gim_alloc(sizeof(GIM_RSORT_TOKEN )*count);
-			GIM_RSORT_TOKEN[] unsorted = new GIM_RSORT_TOKEN[count]; //TZ TODO clean up
+			//The tokens are kept, the set is sorted again whenever the boxes change
+			if(m_unsorted_mincoords == null)
+			{
+				m_unsorted_mincoords = new GIM_RSORT_TOKEN[count];
+				for(i=0;i<count;i++) m_unsorted_mincoords[i] = new GIM_RSORT_TOKEN();
+			}
+			GIM_RSORT_TOKEN[] unsorted = m_unsorted_mincoords;
 			//Calculate keys
 			for(i=0;i<count;i++)
 			{
-				unsorted[i] = new GIM_RSORT_TOKEN(); //TODO optimize! E.g. use two arrays?
 				maxcoords[i] = GIM_CONVERT_VEC3F_GUINT_XZ_UPPER(paabb[i].maxX,paabb[i].maxZ);
 				unsorted[i].m_key = GIM_CONVERT_VEC3F_GUINT_XZ(paabb[i].minX,paabb[i].minZ);
 				unsorted[i].m_value = i;
@@ -0,0 +1,424 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.gimpact;
+
+import static org.ode4j.ode.internal.gimpact.GimGeometry.AABBCOLLISION;
+import static org.ode4j.ode.internal.gimpact.GimGeometry.BOX_INTERSECTS_RAY;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.internal.cpp4j.java.RefBoolean;
+import org.ode4j.ode.internal.cpp4j.java.RefFloat;
+import org.ode4j.ode.internal.gimpact.GimAABBSet.GIM_PAIR;
+import org.ode4j.ode.internal.gimpact.GimGeometry.aabb3f;
+import org.ode4j.ode.internal.gimpact.GimGeometry.mat4f;
+import org.ode4j.ode.internal.gimpact.GimGeometry.vec3f;
+
+/**
+ * Bounding volume hierarchy of the triangles of a trimesh, used as midphase
+ * instead of the box pruning of {@link GimAABBSet}.
+ * <p>
+ * The tree is built once from the untransformed vertices and can be shared
+ * by all trimeshes with the same data. It is stored flat in depth first 
+ * order with one triangle per leaf: the first child of a node follows the 
+ * node, and a node that is not a leaf stores the size of its subtree, so 
+ * that a query can skip it. The node bounds are quantized to 16 bits 
+ * relative to the bounds of the mesh.
+ * <p>
+ * Queries are done in world space, the bounds of each visited node are 
+ * transformed with the transformation of the trimesh. The leaves are tested 
+ * with the transformed boxes of the {@link GimAABBSet}, so a query returns 
+ * the same triangles in the same order as the brute force tests of the set.
+ */
+public class GimBVH {
+
+	private static final int QUANT_MAX = 0xFFFF;
+	/** Relative enlargement of transformed node bounds, against rounding. */
+	private static final float BOUND_EPSILON = 1e-5f;
+
+	private int m_node_count;
+	private char[] m_node_bounds;//!< quantized min x, y, z and max x, y, z of each node
+	private int[] m_node_data;//!< triangle index of a leaf, else -(node count of the subtree)
+	private final float[] m_bound = new float[6];//!< min x, y, z and max x, y, z of the mesh
+	private final float[] m_dequant = new float[3];//!< length of a quantization step
+	private final float[] m_quant = new float[3];//!< quantization steps per unit length
+	private float m_scale;//!< largest absolute coordinate of the mesh
+	private float[] m_refit_bounds;//!< float node bounds for refitting, allocated on first refit
+	private float[] m_refit_tri_bounds;//!< triangle bounds for refitting, allocated on first refit
+
+	private GimBVH() {
+	}
+
+	/**
+	 * Builds the tree by splitting the triangles at the median of their 
+	 * centers along the longest axis.
+	 * @param vertices vertices as (x, y, z) triples
+	 * @param indices vertex indices, three per triangle
+	 * @return the tree
+	 */
+	public static GimBVH gim_bvh_build(float[] vertices, int[] indices)
+	{
+		GimBVH bvh = new GimBVH();
+		int count = indices.length / 3;
+		bvh.m_node_count = count == 0 ? 0 : 2 * count - 1;
+		bvh.m_node_bounds = new char[bvh.m_node_count * 6];
+		bvh.m_node_data = new int[bvh.m_node_count];
+		if (count == 0) {
+			return bvh;
+		}
+		float[] triBounds = new float[count * 6];
+		computeTriangleBounds(vertices, indices, triBounds);
+		float[] centers = new float[count * 3];
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+			for (int k = 0; k < 3; k++) {
+				centers[i*3 + k] = (triBounds[i*6 + k] + triBounds[i*6 + 3 + k]) * 0.5f;
+			}
+		}
+		float[] nodeBounds = new float[bvh.m_node_count * 6];
+		bvh.buildNode(order, 0, count, triBounds, centers, nodeBounds, 0);
+		bvh.quantize(nodeBounds);
+		return bvh;
+	}
+
+	/**
+	 * Refits the bounds of the nodes to moved vertices. The tree itself is
+	 * kept, the triangles must not change.
+	 * @param vertices vertices as (x, y, z) triples
+	 * @param indices vertex indices, three per triangle
+	 */
+	public void gim_bvh_refit(float[] vertices, int[] indices)
+	{
+		if (m_node_count == 0) {
+			return;
+		}
+		if (m_refit_bounds == null) {
+			m_refit_bounds = new float[m_node_count * 6];
+			m_refit_tri_bounds = new float[indices.length / 3 * 6];
+		}
+		float[] triBounds = m_refit_tri_bounds;
+		computeTriangleBounds(vertices, indices, triBounds);
+		float[] nodeBounds = m_refit_bounds;
+		// children follow their parent
+		for (int i = m_node_count - 1; i >= 0; i--) {
+			int data = m_node_data[i];
+			if (data >= 0) {
+				System.arraycopy(triBounds, data * 6, nodeBounds, i * 6, 6);
+			} else {
+				int left = i + 1;
+				int right = left + subtreeSize(left);
+				for (int k = 0; k < 3; k++) {
+					nodeBounds[i*6 + k] = Math.min(nodeBounds[left*6 + k], nodeBounds[right*6 + k]);
+					nodeBounds[i*6 + 3 + k] = Math.max(nodeBounds[left*6 + 3 + k], nodeBounds[right*6 + 3 + k]);
+				}
+			}
+		}
+		quantize(nodeBounds);
+	}
+
+	public int gim_bvh_get_node_count()
+	{
+		return m_node_count;
+	}
+
+	private static void computeTriangleBounds(float[] vertices, int[] indices, float[] triBounds)
+	{
+		int count = indices.length / 3;
+		for (int i = 0; i < count; i++) {
+			int v0 = indices[i*3] * 3;
+			int v1 = indices[i*3 + 1] * 3;
+			int v2 = indices[i*3 + 2] * 3;
+			for (int k = 0; k < 3; k++) {
+				float a = vertices[v0 + k], b = vertices[v1 + k], c = vertices[v2 + k];
+				triBounds[i*6 + k] = Math.min(a, Math.min(b, c));
+				triBounds[i*6 + 3 + k] = Math.max(a, Math.max(b, c));
+			}
+		}
+	}
+
+	private int subtreeSize(int node)
+	{
+		int data = m_node_data[node];
+		return data >= 0 ? 1 : -data;
+	}
+
+	/**
+	 * @return index of the node after the subtree
+	 */
+	private int buildNode(int[] order, int start, int end, float[] triBounds, 
+			float[] centers, float[] nodeBounds, int node)
+	{
+		int b = node * 6;
+		for (int k = 0; k < 3; k++) {
+			nodeBounds[b + k] = Float.POSITIVE_INFINITY;
+			nodeBounds[b + 3 + k] = Float.NEGATIVE_INFINITY;
+		}
+		float[] cmin = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+		float[] cmax = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int i = start; i < end; i++) {
+			int t = order[i];
+			for (int k = 0; k < 3; k++) {
+				nodeBounds[b + k] = Math.min(nodeBounds[b + k], triBounds[t*6 + k]);
+				nodeBounds[b + 3 + k] = Math.max(nodeBounds[b + 3 + k], triBounds[t*6 + 3 + k]);
+				cmin[k] = Math.min(cmin[k], centers[t*3 + k]);
+				cmax[k] = Math.max(cmax[k], centers[t*3 + k]);
+			}
+		}
+		if (end - start == 1) {
+			m_node_data[node] = order[start];
+			return node + 1;
+		}
+		int axis = 0;
+		for (int k = 1; k < 3; k++) {
+			if (cmax[k] - cmin[k] > cmax[axis] - cmin[axis]) {
+				axis = k;
+			}
+		}
+		int mid = (start + end) >>> 1;
+		select(order, start, end - 1, mid, centers, axis);
+		int next = buildNode(order, start, mid, triBounds, centers, nodeBounds, node + 1);
+		next = buildNode(order, mid, end, triBounds, centers, nodeBounds, next);
+		m_node_data[node] = -(next - node);
+		return next;
+	}
+
+	/**
+	 * Partially sorts order[lo..hi] so that the element at k has its final
+	 * position.
+	 */
+	private static void select(int[] order, int lo, int hi, int k, float[] centers, int axis)
+	{
+		while (hi > lo) {
+			float pivot = centers[order[(lo + hi) >>> 1]*3 + axis];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (centers[order[i]*3 + axis] < pivot) i++;
+				while (centers[order[j]*3 + axis] > pivot) j--;
+				if (i <= j) {
+					int x = order[i]; order[i] = order[j]; order[j] = x;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void quantize(float[] nodeBounds)
+	{
+		System.arraycopy(nodeBounds, 0, m_bound, 0, 6);
+		m_scale = 0;
+		float[] quant = m_quant;
+		for (int k = 0; k < 3; k++) {
+			float extent = m_bound[3 + k] - m_bound[k];
+			quant[k] = extent > 0 ? QUANT_MAX / extent : 0;
+			m_dequant[k] = extent / QUANT_MAX;
+			m_scale = Math.max(m_scale, Math.max(Math.abs(m_bound[k]), Math.abs(m_bound[3 + k])));
+		}
+		for (int i = 0; i < m_node_count; i++) {
+			for (int k = 0; k < 3; k++) {
+				float lo = (float) Math.floor((nodeBounds[i*6 + k] - m_bound[k]) * quant[k]);
+				float hi = (float) Math.ceil((nodeBounds[i*6 + 3 + k] - m_bound[k]) * quant[k]);
+				m_node_bounds[i*6 + k] = (char) Math.max(0, Math.min(QUANT_MAX, lo));
+				m_node_bounds[i*6 + 3 + k] = (char) Math.max(0, Math.min(QUANT_MAX, hi));
+			}
+		}
+	}
+
+	/**
+	 * Computes the world space box of a node.
+	 * @param m transformation of the trimesh
+	 */
+	private void nodeBox(int node, float[] m, aabb3f out)
+	{
+		int b = node * 6;
+		float minx = m_bound[0] + m_node_bounds[b] * m_dequant[0];
+		float miny = m_bound[1] + m_node_bounds[b + 1] * m_dequant[1];
+		float minz = m_bound[2] + m_node_bounds[b + 2] * m_dequant[2];
+		float maxx = m_bound[0] + m_node_bounds[b + 3] * m_dequant[0];
+		float maxy = m_bound[1] + m_node_bounds[b + 4] * m_dequant[1];
+		float maxz = m_bound[2] + m_node_bounds[b + 5] * m_dequant[2];
+		float cx = (minx + maxx) * 0.5f, cy = (miny + maxy) * 0.5f, cz = (minz + maxz) * 0.5f;
+		float ex = (maxx - minx) * 0.5f, ey = (maxy - miny) * 0.5f, ez = (maxz - minz) * 0.5f;
+		float wcx = m[0]*cx + m[1]*cy + m[2]*cz + m[3];
+		float wcy = m[4]*cx + m[5]*cy + m[6]*cz + m[7];
+		float wcz = m[8]*cx + m[9]*cy + m[10]*cz + m[11];
+		float wex = Math.abs(m[0])*ex + Math.abs(m[1])*ey + Math.abs(m[2])*ez;
+		float wey = Math.abs(m[4])*ex + Math.abs(m[5])*ey + Math.abs(m[6])*ez;
+		float wez = Math.abs(m[8])*ex + Math.abs(m[9])*ey + Math.abs(m[10])*ez;
+		wex += BOUND_EPSILON * (Math.abs(wcx) + wex + m_scale);
+		wey += BOUND_EPSILON * (Math.abs(wcy) + wey + m_scale);
+		wez += BOUND_EPSILON * (Math.abs(wcz) + wez + m_scale);
+		out.minX = wcx - wex;
+		out.maxX = wcx + wex;
+		out.minY = wcy - wey;
+		out.maxY = wcy + wey;
+		out.minZ = wcz - wez;
+		out.maxZ = wcz + wez;
+	}
+
+	/**
+	 * Finds the triangles whose box intersects a box, see 
+	 * {@link GimAABBSet#gim_aabbset_box_collision(aabb3f, GimDynArrayInt)}.
+	 * @param transform transformation of the trimesh
+	 * @param aabbset transformed boxes of the triangles
+	 * @param test_aabb box in world space
+	 * @param collided receives the indices of the triangles, in ascending order
+	 */
+	void gim_bvh_box_collision(mat4f transform, GimAABBSet aabbset, 
+			aabb3f test_aabb, GimDynArrayInt collided)
+	{
+		collided.m_size = 0;
+		float[] m = transform.f;
+		aabb3f[] boxes = aabbset.m_boxes;
+		aabb3f box = new aabb3f();
+		int i = 0;
+		while (i < m_node_count) {
+			int data = m_node_data[i];
+			if (data >= 0) {
+				if (AABBCOLLISION(boxes[data], test_aabb)) {
+					collided.GIM_DYNARRAY_PUSH_ITEM(data);
+				}
+				i++;
+			} else {
+				nodeBox(i, m, box);
+				i += AABBCOLLISION(box, test_aabb) ? 1 : -data;
+			}
+		}
+		Arrays.sort(collided.m_pdata, 0, collided.m_size);
+	}
+
+	/**
+	 * Finds the triangles whose box is hit by a ray, see 
+	 * {@link GimAABBSet#gim_aabbset_ray_collision(vec3f, vec3f, float, GimDynArrayInt)}.
+	 * @param transform transformation of the trimesh
+	 * @param aabbset transformed boxes of the triangles
+	 * @param collided receives the indices of the triangles, in ascending order
+	 */
+	void gim_bvh_ray_collision(mat4f transform, GimAABBSet aabbset, 
+			vec3f vorigin, vec3f vdir, float tmax, GimDynArrayInt collided)
+	{
+		collided.m_size = 0;
+		float[] m = transform.f;
+		aabb3f[] boxes = aabbset.m_boxes;
+		aabb3f box = new aabb3f();
+		RefBoolean intersected = new RefBoolean(false);
+		RefFloat tparam = new RefFloat();
+		int i = 0;
+		while (i < m_node_count) {
+			int data = m_node_data[i];
+			if (data >= 0) {
+				BOX_INTERSECTS_RAY(boxes[data], vorigin, vdir, tparam, tmax, intersected);
+				if (intersected.b) {
+					collided.GIM_DYNARRAY_PUSH_ITEM(data);
+				}
+				i++;
+			} else {
+				nodeBox(i, m, box);
+				BOX_INTERSECTS_RAY(box, vorigin, vdir, tparam, tmax, intersected);
+				i += intersected.b ? 1 : -data;
+			}
+		}
+		Arrays.sort(collided.m_pdata, 0, collided.m_size);
+	}
+
+	/**
+	 * Finds the pairs of triangles of two trimeshes whose boxes intersect, 
+	 * by traversing both trees, see {@link GimAABBSet#gim_aabbset_bipartite_intersections(GimAABBSet, GimAABBSet, GimDynArray)}.
+	 * The pairs are ordered by the triangle of the second trimesh, then by 
+	 * the triangle of the first one.
+	 */
+	static void gim_bvh_bipartite_intersections(
+			GimBVH bvh1, mat4f transform1, GimAABBSet aabbset1,
+			GimBVH bvh2, mat4f transform2, GimAABBSet aabbset2,
+			GimDynArray<GIM_PAIR> collision_pairs)
+	{
+		collision_pairs.m_size = 0;
+		if (bvh1.m_node_count == 0 || bvh2.m_node_count == 0) {
+			return;
+		}
+		float[] m1 = transform1.f;
+		float[] m2 = transform2.f;
+		aabb3f[] boxes1 = aabbset1.m_boxes;
+		aabb3f[] boxes2 = aabbset2.m_boxes;
+		aabb3f box1 = new aabb3f(), box2 = new aabb3f();
+
+		long[] found = new long[16];
+		int foundCount = 0;
+		int[] stack = new int[64];
+		int sp = 0;
+		stack[sp++] = 0;
+		stack[sp++] = 0;
+		while (sp > 0) {
+			int n2 = stack[--sp];
+			int n1 = stack[--sp];
+			int d1 = bvh1.m_node_data[n1];
+			int d2 = bvh2.m_node_data[n2];
+			aabb3f b1 = d1 >= 0 ? boxes1[d1] : box1;
+			aabb3f b2 = d2 >= 0 ? boxes2[d2] : box2;
+			if (d1 < 0) bvh1.nodeBox(n1, m1, box1);
+			if (d2 < 0) bvh2.nodeBox(n2, m2, box2);
+			if (!AABBCOLLISION(b1, b2)) {
+				continue;
+			}
+			if (d1 >= 0 && d2 >= 0) {
+				if (foundCount == found.length) {
+					found = Arrays.copyOf(found, foundCount * 2);
+				}
+				found[foundCount++] = ((long) d2 << 32) | d1;
+				continue;
+			}
+			if (sp + 4 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			// descend into the bigger subtree
+			if (d2 >= 0 || (d1 < 0 && -d1 >= -d2)) {
+				int left = n1 + 1;
+				int right = left + bvh1.subtreeSize(left);
+				stack[sp++] = right;
+				stack[sp++] = n2;
+				stack[sp++] = left;
+				stack[sp++] = n2;
+			} else {
+				int left = n2 + 1;
+				int right = left + bvh2.subtreeSize(left);
+				stack[sp++] = n1;
+				stack[sp++] = right;
+				stack[sp++] = n1;
+				stack[sp++] = left;
+			}
+		}
+
+		Arrays.sort(found, 0, foundCount);
+		for (int i = 0; i < foundCount; i++) {
+			GimAABBSet.PUSH_PAIR((int) found[i], (int) (found[i] >>> 32), collision_pairs);
+		}
+	}
+}
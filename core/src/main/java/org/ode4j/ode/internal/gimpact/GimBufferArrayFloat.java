@@ -275,6 +275,21 @@ public class GimBufferArrayFloat implements GimConstants { //formerly GBUFFER_AR
 	}
 
 
+	/**
+	 * Copies new values into the existing elements, the number of
+	 * elements must not change.
+	 */
+	public void updateValues(float[] array) {
+		assert(array.length/3 == m_element_count);
+		for (int i = 0; i < m_element_count; i++) {
+			float[] f = m_buffer_data[i].f;
+			f[0] = array[i*3];
+			f[1] = array[i*3+1];
+			f[2] = array[i*3+2];
+		}
+	}
+
+
 	public int size() {
 		return m_element_count;
 	}
@@ -163,6 +163,7 @@ public class GimTrimesh implements GimConstants {
 	GimBitSet m_planes_cache_bitset;
 	gim_update_trimesh_function m_update_callback;//! If null, then m_transform is applied.
 	mat4f m_transform = new mat4f();
+	GimBVH m_bvh;//!< Optional tree of the source triangles, shared with other trimeshes
 
 
 
@@ -740,6 +741,18 @@ public class GimTrimesh implements GimConstants {
 	    m_mask |= GIM_TRIMESH_NEED_UPDATE;
 	}
 
+	//! Copies deformed source vertices into the trimesh and forces it to update
+	/*!
+	The vertex and triangle counts must not change. The boxes are refitted in
+	place by the next gim_trimesh_update().
+	\post gim_trimesh_need_update(trimesh) will return 1
+	*/
+	public void gim_trimesh_update_source_vertices(float[] vertex_array)
+	{
+	    m_source_vertex_buffer.updateValues(vertex_array);
+	    gim_trimesh_post_update();
+	}
+
 	//kernel
 	//#define MULT_MAT_VEC4_KERNEL(_mat,_src,_dst) MAT_DOT_VEC_3X4((_dst),(_mat),(_src))
 	private final GIM_PROCESS_BUFFER_ARRAY_FN MULT_MAT_VEC4_KERNEL = 
@@ -923,4 +936,39 @@ public class GimTrimesh implements GimConstants {
 	public GimAABBSet getAabbSet() {
 		return m_aabbset;
 	}
+
+	/**
+	 * Sets the tree of the triangles that is used by the midphase instead of
+	 * the box pruning of the aabbset. The tree is only used with a 
+	 * transformed reply and must be refitted by the caller when the source 
+	 * vertices are changed.
+	 * @param bvh tree built from the source vertices, or null
+	 */
+	public void gim_trimesh_set_bvh(GimBVH bvh) {
+		m_bvh = bvh;
+	}
+
+	//! Finds the triangles whose boxes intersect a box
+	/*!
+	\pre gim_trimesh_update must be called before
+	*/
+	public void gim_trimesh_box_query(aabb3f test_aabb, GimDynArrayInt collided) {
+		if (m_bvh != null && gim_trimesh_has_tranformed_reply()) {
+			m_bvh.gim_bvh_box_collision(m_transform, m_aabbset, test_aabb, collided);
+		} else {
+			m_aabbset.gim_aabbset_box_collision(test_aabb, collided);
+		}
+	}
+
+	//! Finds the triangles whose boxes are hit by a ray
+	/*!
+	\pre gim_trimesh_update must be called before
+	*/
+	void gim_trimesh_ray_query(vec3f vorigin, vec3f vdir, float tmax, GimDynArrayInt collided) {
+		if (m_bvh != null && gim_trimesh_has_tranformed_reply()) {
+			m_bvh.gim_bvh_ray_collision(m_transform, m_aabbset, vorigin, vdir, tmax, collided);
+		} else {
+			m_aabbset.gim_aabbset_ray_collision(vorigin, vdir, tmax, collided);
+		}
+	}
 }
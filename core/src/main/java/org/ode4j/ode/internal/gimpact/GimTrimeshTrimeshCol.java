@@ -332,7 +332,14 @@ public class GimTrimeshTrimeshCol {
 	    contacts.m_size = 0;
 	    GimDynArray<GIM_PAIR> collision_pairs = GimAABBSet.GIM_CREATE_PAIR_SET();
 
-	    GimAABBSet.gim_aabbset_bipartite_intersections(trimesh1.m_aabbset,trimesh2.m_aabbset,collision_pairs);
+	    if (trimesh1.m_bvh != null && trimesh1.gim_trimesh_has_tranformed_reply()
+	    		&& trimesh2.m_bvh != null && trimesh2.gim_trimesh_has_tranformed_reply()) {
+	    	GimBVH.gim_bvh_bipartite_intersections(
+	    			trimesh1.m_bvh, trimesh1.m_transform, trimesh1.m_aabbset,
+	    			trimesh2.m_bvh, trimesh2.m_transform, trimesh2.m_aabbset, collision_pairs);
+	    } else {
+	    	GimAABBSet.gim_aabbset_bipartite_intersections(trimesh1.m_aabbset,trimesh2.m_aabbset,collision_pairs);
+	    }
 
 	    if(collision_pairs.size()==0)
 	    {
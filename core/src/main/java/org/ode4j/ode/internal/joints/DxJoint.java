@@ -77,6 +77,10 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 
 	private static final int dJOINT_DISABLED = 8;
 
+	/** if this flag is set, the joint belongs to the contact pool of its
+	 * joint group and is reused after the group has been emptied. */
+	static final int dJOINT_POOLED = 16;
+
 	//	};
 
 
@@ -231,6 +235,31 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 		feedback = null;
 	}
 
+	/**
+	 * Puts a joint that has been removed from its world with
+	 * <tt>FinalizeAndDestroyJointInstance(true)</tt> back into a world, in
+	 * the state of a newly constructed joint.
+	 * @param w world
+	 */
+	void reinitialize( DxWorld w )
+	{
+		dIASSERT( w!= null );
+		world = w;
+		tag = 0;
+		userdata = null;
+		flags = 0;
+		for (int i = 0; i < 2; i++) {
+			node[i].body = null;
+			node[i].next = null;
+		}
+		for (int i = 0; i < lambda.length; i++) {
+			lambda[i] = 0;
+		}
+		addObjectToList( this, w.firstjoint );
+		w.nj++;
+		feedback = null;
+	}
+
 	//dxJoint::~dxJoint()
 	@Override
 	public void DESTRUCTOR() {
@@ -264,6 +293,10 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 		flags |= DxJoint.dJOINT_INGROUP;
 	}
 	
+	boolean isFlagsPooled() {
+		return (flags & dJOINT_POOLED) != 0;
+	}
+
 	void setFlagsTwoBodies() {
 		flags |= DxJoint.dJOINT_TWOBODIES;
 	}
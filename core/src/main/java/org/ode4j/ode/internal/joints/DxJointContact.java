@@ -201,13 +201,19 @@ public class DxJointContact extends DxJoint implements DContactJoint
 		final double pushout = k * depth + motionN;
 		info.setC(rowNormal, pushout);
 
+		// a speculative contact lets the geoms close their gap in this step,
+		// but not more
+		final boolean speculative = contact.geom.speculative && contact.geom.depth < 0;
+		if ( speculative )
+			info.setC(rowNormal, contact.geom.depth * worldFPS + motionN);
+
 		// note: this cap should not limit bounce velocity
 		final double maxvel = world.contactp.max_vel;
 		if ( info.getC(rowNormal) > maxvel )
 			info.setC(rowNormal, maxvel);
 
 		// deal with bounce
-		if (( contact.surface.mode & dContactBounce) != 0)
+		if (( contact.surface.mode & dContactBounce) != 0 && !speculative)
 		{
 			// calculate outgoing velocity (-ve for incoming contact)
 			double outgoing = 
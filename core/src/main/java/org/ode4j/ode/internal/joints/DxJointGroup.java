@@ -26,8 +26,15 @@ package org.ode4j.ode.internal.joints;
 
 import java.util.ArrayList;
 
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContact.DSurfaceParameters;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.DJointGroup;
 import org.ode4j.ode.internal.DBase;
+import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxWorld;
 
 /** 
  * joint group. NOTE: any joints in the group that have their world destroyed
@@ -42,6 +49,15 @@ public class DxJointGroup extends DBase implements DJointGroup
 	//TODO use LinkedList?
 	private final ArrayList<DxJoint> _stack = new ArrayList<DxJoint>(); 
 
+	// contact joints created by dJointGroupCreateContacts(), the first
+	// _contactPoolUsed are in use, the others wait for reuse.
+	private final ArrayList<DxJointContact> _contactPool = new ArrayList<DxJointContact>();
+	private int _contactPoolUsed = 0;
+	// contacts for new pool joints, allocated in blocks
+	private DContactBuffer _spareContacts = null;
+	private int _spareContactsUsed = 0;
+	private static final int SPARE_CONTACTS_BLOCK = 64;
+
 	
 //    template<class T>
 //    T *alloc(dWorldID w)
@@ -55,8 +71,14 @@ public class DxJointGroup extends DBase implements DJointGroup
 //        return j;
 //    }
 //
-	//TODO
-	int getJointCount() { return _stack.size(); }
+	/** @return number of joints in this group */
+	public int getJointCount() { return _stack.size(); }
+
+	/** @return joint <tt>i</tt> of this group, in the order of creation */
+	public DxJoint getJoint(int i) { return _stack.get(i); }
+
+	/** @return number of pooled contact joints, in use or not */
+	int getContactPoolSize() { return _contactPool.size(); }
 //
 	//TODO
 //    void *beginEnum() { return m_stack.rewind(); }
@@ -104,6 +126,8 @@ public class DxJointGroup extends DBase implements DJointGroup
     {
 //        COM.dAASSERT (group);
         dJointGroupEmpty ();
+        _contactPool.clear();
+        _spareContacts = null;
 //TZ        delete group;
 //        stack = null;
         DESTRUCTOR();
@@ -152,9 +176,70 @@ public class DxJointGroup extends DBase implements DJointGroup
 //        }
         for (int i = _stack.size()-1; i >= 0; i--) {
         	DxJoint j = _stack.get(i);
-        	j.FinalizeAndDestroyJointInstance(false);
+        	// pooled joints are not destructed, they are reused
+        	j.FinalizeAndDestroyJointInstance(j.isFlagsPooled());
         }
         _stack.clear();
+        for (int i = 0; i < _contactPoolUsed; i++) {
+        	// do not keep geoms alive
+        	DContactGeom g = _contactPool.get(i).contact.geom;
+        	g.g1 = null;
+        	g.g2 = null;
+        }
+        _contactPoolUsed = 0;
+    }
+
+
+    /**
+     * Creates contact joints for <tt>numContacts</tt> contacts between two
+     * bodies. The joints and their DContacts are taken from a pool that is
+     * refilled by dJointGroupEmpty(), so that a simulation that creates
+     * about the same number of contacts every step does not allocate.
+     * The contact data is copied, the caller can reuse its buffer.
+     */
+    void dJointGroupCreateContacts (DxWorld w, DxBody b1, DxBody b2,
+    		DSurfaceParameters surface, DContactGeomBuffer contacts, int numContacts)
+    {
+    	for (int i = 0; i < numContacts; i++) {
+    		DxJointContact j = dJointGroupCreatePooledContact(w);
+    		DContact c = j.contact;
+    		c.surface.set(surface);
+    		c.geom.set(contacts.get(i));
+    		c.fdir1.setZero();
+    		j.dJointAttach(b1, b2);
+    	}
+    }
+
+
+    /**
+     * Creates a contact joint from the pool of dJointGroupCreateContacts(). 
+     * The joint is not attached and its contact still holds old data, the 
+     * caller has to set all of it.
+     */
+    public DxJointContact dJointGroupCreatePooledContact (DxWorld w)
+    {
+    	DxJointContact j;
+    	if (_contactPoolUsed < _contactPool.size()) {
+    		j = _contactPool.get(_contactPoolUsed);
+    		j.reinitialize(w);
+    	} else {
+    		j = new DxJointContact(w);
+    		j.contact = allocContact();
+    		_contactPool.add(j);
+    	}
+    	_contactPoolUsed++;
+    	addJoint(j);
+    	j.flags |= DxJoint.dJOINT_POOLED;
+    	return j;
+    }
+
+
+    private DContact allocContact() {
+    	if (_spareContacts == null || _spareContactsUsed == SPARE_CONTACTS_BLOCK) {
+    		_spareContacts = new DContactBuffer(SPARE_CONTACTS_BLOCK);
+    		_spareContactsUsed = 0;
+    	}
+    	return _spareContacts.get(_spareContactsUsed++);
     }
 
 
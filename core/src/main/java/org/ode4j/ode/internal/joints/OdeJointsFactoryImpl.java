@@ -32,9 +32,11 @@ import java.util.List;
 import org.ode4j.ode.OdeHelper;
 import org.ode4j.ode.DBody;
 import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.DJoint;
 import org.ode4j.ode.DJointGroup;
 import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.DxWorld;
 
@@ -104,6 +106,18 @@ public class OdeJointsFactoryImpl extends OdeHelper {
 	}
 
 
+	public void dJointCreateContacts (DWorld w, DJointGroup group,
+			DBody b1, DBody b2, DContact.DSurfaceParameters surface,
+			DContactGeomBuffer contacts, int numContacts)
+	{
+		dAASSERT (w, group, surface, contacts);
+		dUASSERT ((surface.mode & OdeConstants.dContactFDir1) == 0,
+				"dContactFDir1 is not supported for pooled contact joints");
+		((DxJointGroup)group).dJointGroupCreateContacts((DxWorld) w,
+				(DxBody) b1, (DxBody) b2, surface, contacts, numContacts);
+	}
+
+
 	public DxJointHinge2 dJointCreateHinge2 (DWorld w, DJointGroup group)
 	{
 		dAASSERT (w);
@@ -78,18 +78,34 @@ public class CCD {
 		public long max_iterations; //!< Maximal number of iterations
 		double epa_tolerance;
 		public double mpr_tolerance; //!< Boundary tolerance for MPR algorithm
+
+		// Scratch memory of MPR and of __ccdSupport(), so that they do not 
+		// allocate. A ccd_t must not be used by several threads at once. (TZ)
+		final ccd_simplex_t mpr_portal = new ccd_simplex_t();
+		final ccd_support_t mpr_v4 = new ccd_support_t();
+		final ccd_vec3_t mpr_dir = new ccd_vec3_t();
+		final ccd_vec3_t mpr_va = new ccd_vec3_t();
+		final ccd_vec3_t mpr_vb = new ccd_vec3_t();
+		final ccd_vec3_t mpr_pos_dir = new ccd_vec3_t();
+		final ccd_vec3_t mpr_pos_vec = new ccd_vec3_t();
+		final ccd_vec3_t mpr_pos_p1 = new ccd_vec3_t();
+		final ccd_vec3_t mpr_pos_p2 = new ccd_vec3_t();
+		final ccd_vec3_t mpr_portal_v2v1 = new ccd_vec3_t();
+		final ccd_vec3_t mpr_portal_v3v1 = new ccd_vec3_t();
+		final ccd_vec3_t support_dir = new ccd_vec3_t();
 	};
 	//	typedef struct _ccd_t ccd_t;
 
 	//	#define CCD_INIT(ccd) \
+	private static final ccd_first_dir_fn ccdFirstDirDefaultFn = new ccd_first_dir_fn() {
+		@Override
+		public void run(Object obj1, Object obj2, ccd_vec3_t dir) {
+			ccdFirstDirDefault(obj1, obj2, dir);
+		}
+	};
+
 	public static final void CCD_INIT(ccd_t ccd) {
-		(ccd).first_dir = new ccd_first_dir_fn() {
-			
-			@Override
-			public void run(Object obj1, Object obj2, ccd_vec3_t dir) {
-				ccdFirstDirDefault(obj1, obj2, dir);
-			}
-		}; 
+		(ccd).first_dir = ccdFirstDirDefaultFn; 
 		(ccd).support1 = null; 
 		(ccd).support2 = null; 
 		(ccd).center1  = null; 
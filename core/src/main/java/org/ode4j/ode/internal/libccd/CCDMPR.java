@@ -39,7 +39,7 @@ public class CCDMPR {
 	 */
 	public static int ccdMPRIntersect(final Object obj1, final Object obj2, final ccd_t ccd)
 	{
-	    ccd_simplex_t portal = new ccd_simplex_t();
+	    ccd_simplex_t portal = ccd.mpr_portal;
 	    int res;
 
 	    // Phase 1: Portal discovery - find portal that intersects with origin
@@ -77,7 +77,7 @@ public class CCDMPR {
 	public static int ccdMPRPenetration(final Object obj1, final Object obj2, final ccd_t ccd,
 	                      RefDouble depth, ccd_vec3_t dir, ccd_vec3_t pos)
 	{
-	    ccd_simplex_t portal = new ccd_simplex_t();
+	    ccd_simplex_t portal = ccd.mpr_portal;
 	    int res;
 
 	    // Phase 1: Portal discovery
@@ -132,7 +132,7 @@ public class CCDMPR {
 	private static int discoverPortal(final Object obj1, final Object obj2,
 	                          final ccd_t ccd, ccd_simplex_t portal)
 	{
-	    final ccd_vec3_t dir = new ccd_vec3_t(), va = new ccd_vec3_t(), vb = new ccd_vec3_t();
+	    final ccd_vec3_t dir = ccd.mpr_dir, va = ccd.mpr_va, vb = ccd.mpr_vb;
 	    double dot;
 	    int cont;
 
@@ -249,13 +249,13 @@ public class CCDMPR {
 	private static int refinePortal(final Object obj1, final Object obj2,
 	                        final ccd_t ccd, ccd_simplex_t portal)
 	{
-	    final ccd_vec3_t dir = new ccd_vec3_t();
-	    final ccd_support_t v4 = new ccd_support_t();
+	    final ccd_vec3_t dir = ccd.mpr_dir;
+	    final ccd_support_t v4 = ccd.mpr_v4;
 
 	    while (true){
 	        // compute direction outside the portal (from v0 throught v1,v2,v3
 	        // face)
-	        portalDir(portal, dir);
+	        portalDir(portal, dir, ccd);
 
 	        // test if origin is inside the portal
 	        if (portalEncapsulesOrigin(portal, dir))
@@ -273,7 +273,7 @@ public class CCDMPR {
 
 	        // v1-v2-v3 triangle must be rearranged to face outside Minkowski
 	        // difference (direction from v0).
-	        expandPortal(portal, v4);
+	        expandPortal(portal, v4, ccd);
 	    }
 
 	    //return -1;
@@ -286,14 +286,14 @@ public class CCDMPR {
 	                       ccd_simplex_t portal,
 	                       RefDouble depth, ccd_vec3_t pdir, ccd_vec3_t pos)
 	{
-	    final ccd_vec3_t dir = new ccd_vec3_t();
-	    final ccd_support_t v4 = new ccd_support_t();
+	    final ccd_vec3_t dir = ccd.mpr_dir;
+	    final ccd_support_t v4 = ccd.mpr_v4;
 	    long iterations;
 
 	    iterations = 0L;
 	    while (true){
 	        // compute portal direction and obtain next support point
-	        portalDir(portal, dir);
+	        portalDir(portal, dir, ccd);
 	        __ccdSupport(obj1, obj2, dir, ccd, v4);
 
 	        // reached tolerance . find penetration info
@@ -313,7 +313,7 @@ public class CCDMPR {
 	            return;
 	        }
 
-	        expandPortal(portal, v4);
+	        expandPortal(portal, v4, ccd);
 
 	        iterations++;
 	    }
@@ -373,13 +373,13 @@ public class CCDMPR {
 	private static void findPos(final Object obj1, final Object obj2, final ccd_t ccd,
 			final ccd_simplex_t portal, ccd_vec3_t pos)
 	{
-	    final ccd_vec3_t dir = new ccd_vec3_t();
+	    final ccd_vec3_t dir = ccd.mpr_pos_dir;
 	    //int i;
 	    double b0, b1, b2, b3;//=new double[4];
 	    double sum, inv;
-	    final ccd_vec3_t vec = new ccd_vec3_t(), p1 = new ccd_vec3_t(), p2 = new ccd_vec3_t();
+	    final ccd_vec3_t vec = ccd.mpr_pos_vec, p1 = ccd.mpr_pos_p1, p2 = ccd.mpr_pos_p2;
 
-	    portalDir(portal, dir);
+	    portalDir(portal, dir, ccd);
 
 	    // use barycentric coordinates of tetrahedron to find origin
 	    ccdVec3Cross(vec, ccdSimplexPoint1(portal).v,
@@ -464,10 +464,10 @@ public class CCDMPR {
 	/** Extends portal with new support point.
 	 *  Portal must have face v1-v2-v3 arranged to face outside portal. */
 	private static final void expandPortal(ccd_simplex_t portal,
-	                              final ccd_support_t v4)
+	                              final ccd_support_t v4, final ccd_t ccd)
 	{
 	    double dot;
-	    final ccd_vec3_t v4v0 = new ccd_vec3_t();
+	    final ccd_vec3_t v4v0 = ccd.mpr_va;
 
 	    ccdVec3Cross(v4v0, v4.v, ccdSimplexPoint0(portal).v);
 	    dot = ccdVec3Dot(ccdSimplexPoint1(portal).v, v4v0);
@@ -491,9 +491,9 @@ public class CCDMPR {
 
 	/** Fill dir with direction outside portal. Portal's v1-v2-v3 face must be
 	 *  arranged in correct order! */
-	private static final void portalDir(final ccd_simplex_t portal, ccd_vec3_t dir)
+	private static final void portalDir(final ccd_simplex_t portal, ccd_vec3_t dir, final ccd_t ccd)
 	{
-	    final ccd_vec3_t v2v1 = new ccd_vec3_t(), v3v1 = new ccd_vec3_t();
+	    final ccd_vec3_t v2v1 = ccd.mpr_portal_v2v1, v3v1 = ccd.mpr_portal_v3v1;
 
 	    ccdVec3Sub2(v2v1, ccdSimplexPoint2(portal).v,
 	                       ccdSimplexPoint1(portal).v);
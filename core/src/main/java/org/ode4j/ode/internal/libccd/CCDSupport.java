@@ -53,7 +53,7 @@ public class CCDSupport {
 			final ccd_vec3_t _dir, final ccd_t ccd,
 			final ccd_support_t supp)
 	{
-		ccd_vec3_t dir = new ccd_vec3_t();
+		ccd_vec3_t dir = ccd.support_dir;
 
 		ccdVec3Copy(dir, _dir);
 
@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ode4j.ode.internal.Common;
 import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxIslandSubsteps;
 import org.ode4j.ode.internal.DxWorld;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper_fn_t;
@@ -71,7 +72,7 @@ public class DxIslandsProcessingCallContext {
         DxJoint[] islandJointsStart = islandsInfo.GetJointsArray();
         
         // Save area state after context allocation to be restored for the stepper
-        BlockPointer arenaState = stepperArena.SaveState();
+        int arenaState = stepperArena.SaveState();
         //new(stepperCallContext) DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
         //stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
         final DxSingleIslandCallContext stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, 
@@ -96,7 +97,20 @@ public class DxIslandsProcessingCallContext {
         final int islandsCount = islandsInfo.GetIslandsCount();
         int islandToProcess = ObtainNextIslandToBeProcessed(islandsCount);
 
-        if (islandToProcess != islandsCount) {
+        int[] islandSchedule = islandsInfo.GetIslandSchedule();
+        if (islandToProcess != islandsCount && islandSchedule != null) {
+            // Islands are handed out by descending cost, the schedule has their positions
+            int entry = islandToProcess * DxWorldProcessIslandsInfo.dxISS__MAX;
+            int islandIndex = islandSchedule[entry + DxWorldProcessIslandsInfo.dxISS_ISLAND_INDEX];
+            int bcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
+            int jcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
+            stepperCallContext.AssignIslandSelection(
+                    islandsInfo.GetBodiesArray(), islandSchedule[entry + DxWorldProcessIslandsInfo.dxISS_BODIES_START], 
+                    islandsInfo.GetJointsArray(), islandSchedule[entry + DxWorldProcessIslandsInfo.dxISS_JOINTS_START], 
+                    bcount, jcount);
+            SubmitIslandStepper(stepperCallContext, parent);
+        }
+        else if (islandToProcess != islandsCount) {
             // First time, the counts are zeros and on next passes, adding counts will skip island that has just been processed by stepper
             DxBody[] islandBodiesStartA = stepperCallContext.GetSelectedIslandBodiesA();
             int islandBodiesStartP = stepperCallContext.GetSelectedIslandBodiesEndP();
@@ -118,23 +132,7 @@ public class DxIslandsProcessingCallContext {
                     ++islandIndex;
                     stepperCallContext.AssignIslandSearchProgress(islandIndex);
 
-                    // Restore saved stepper memory arena position
-                    stepperCallContext.RestoreSavedMemArenaStateForStepper();
-                    TaskGroup searchTask = parent.subgroup("World Islands Stepping Selection", new Runnable() {
-						@Override
-						public void run() {
-							stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandSearch(stepperCallContext, parent);
-						}
-                    });
-                    stepperCallContext.m_stepperCallContext.AssignStepperTaskGroup(searchTask);
-                    Task stepperTask = searchTask.subtask("Island Stepping Job Start", new Runnable() {
-						@Override
-						public void run() {
-							stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandStepper(stepperCallContext);
-						}
-					});
-                    stepperTask.submit();
-                    searchTask.submit();
+                    SubmitIslandStepper(stepperCallContext, parent);
                     break;
                 }
 
@@ -153,9 +151,48 @@ public class DxIslandsProcessingCallContext {
         }
     }
 
+    private void SubmitIslandStepper(final DxSingleIslandCallContext stepperCallContext, final TaskGroup parent)
+    {
+        // Restore saved stepper memory arena position
+        stepperCallContext.RestoreSavedMemArenaStateForStepper();
+        TaskGroup searchTask = parent.subgroup("World Islands Stepping Selection", new Runnable() {
+            @Override
+            public void run() {
+                stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandSearch(stepperCallContext, parent);
+            }
+        });
+        stepperCallContext.m_stepperCallContext.AssignStepperTaskGroup(searchTask);
+        Task stepperTask = searchTask.subtask("Island Stepping Job Start", new Runnable() {
+            @Override
+            public void run() {
+                stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandStepper(stepperCallContext);
+            }
+        });
+        stepperTask.submit();
+        searchTask.submit();
+    }
+
     private void ThreadedProcessIslandStepper(DxSingleIslandCallContext stepperCallContext)
     {
-        m_stepper.run(stepperCallContext.m_stepperCallContext);
+        DxStepperProcessingCallContext context = stepperCallContext.m_stepperCallContext;
+        // Substeps run one after the other, which needs a stepper that 
+        // returns after the island has been stepped
+        int substeps = m_stepperAllowedThreads == 1 ? DxIslandSubsteps.count(context) : 1;
+        if (substeps == 1) {
+            m_stepper.run(context);
+            return;
+        }
+        DxIslandSubsteps island = DxIslandSubsteps.record(context);
+        context.AssignSubsteps(m_stepSize, substeps);
+        for (int i = 0; i < substeps; i++) {
+            if (i > 0) {
+                stepperCallContext.RestoreSavedMemArenaStateForStepper();
+                island.prepareSubstep();
+            }
+            m_stepper.run(context);
+        }
+        island.finish();
+        context.AssignSubsteps(m_stepSize, 1);
     }
 
     int ObtainNextIslandToBeProcessed(int islandsCount)
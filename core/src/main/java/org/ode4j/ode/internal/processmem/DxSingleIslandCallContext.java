@@ -29,7 +29,7 @@ import org.ode4j.ode.internal.joints.DxJoint;
 
 public class DxSingleIslandCallContext {
 	DxSingleIslandCallContext(DxIslandsProcessingCallContext islandsProcessingContext, 
-			DxWorldProcessMemArena stepperArena, DxUtil.BlockPointer arenaInitialState, 
+			DxWorldProcessMemArena stepperArena, int arenaInitialState, 
 			DxBody[] islandBodiesStart, 
 			DxJoint[] islandJointsStart) {
 		m_islandsProcessingContext = islandsProcessingContext;
@@ -78,7 +78,7 @@ public class DxSingleIslandCallContext {
 	DxIslandsProcessingCallContext  m_islandsProcessingContext;
 	int                          	m_islandIndex;
 	DxWorldProcessMemArena          m_stepperArena;
-	DxUtil.BlockPointer            	m_arenaInitialState;
+	int            	m_arenaInitialState;
 	DxStepperProcessingCallContext  m_stepperCallContext;
 
 
@@ -24,7 +24,9 @@
  *************************************************************************/
 package org.ode4j.ode.internal.processmem;
 
+import org.ode4j.ode.DStepStatistics.Stage;
 import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxStepStatistics;
 import org.ode4j.ode.internal.DxWorld;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.threading.task.TaskGroup;
@@ -81,7 +83,9 @@ public final class DxStepperProcessingCallContext {
 	private int                m_islandBodiesCount;
 	private int                m_islandJointsCount;
 	private int                m_stepperAllowedThreads;
+	private int                m_substeps = 1;
 	private TaskGroup          m_taskGroup;
+	private long               m_statisticsLap;
 	
     public DxWorldProcessMemArena m_stepperArena() {
 		return m_stepperArena;
@@ -123,6 +127,20 @@ public final class DxStepperProcessingCallContext {
 		return m_stepSize;
 	}
 
+	/** 
+	 * @return number of substeps of the island, the step size is that of
+	 * one substep
+	 */
+	public int m_substeps() {
+		return m_substeps;
+	}
+
+	/** Divides a step of the island into substeps. */
+	void AssignSubsteps(double stepSize, int substeps) {
+		m_stepSize = stepSize / substeps;
+		m_substeps = substeps;
+	}
+
     public TaskGroup m_taskGroup() {
         return m_taskGroup;
     }
@@ -131,4 +149,26 @@ public final class DxStepperProcessingCallContext {
         m_taskGroup = group;
     }
 
+    /**
+     * Starts timing the stages of the island, if the world collects 
+     * statistics. Only islands stepped by a single thread are timed, the 
+     * stages of the other islands overlap.
+     */
+    public void StartStatisticsLap() {
+        if (m_stepperAllowedThreads == 1 && m_world.getStepStatistics() != null) {
+            m_statisticsLap = System.nanoTime();
+        }
+    }
+
+    /**
+     * Adds the time since the last lap to a stage, if the world collects 
+     * statistics.
+     */
+    public void StatisticsLap(Stage stage) {
+        DxStepStatistics statistics = m_world.getStepStatistics();
+        if (statistics != null && m_stepperAllowedThreads == 1) {
+            m_statisticsLap = statistics.lap(m_statisticsLap, stage);
+        }
+    }
+
 }
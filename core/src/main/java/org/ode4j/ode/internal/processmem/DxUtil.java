@@ -147,6 +147,10 @@ public class DxUtil {
         void setTo(DxWorldProcessMemArena x) {
         	o = x;
         }
+        /** Like asDxWorldProcessMemArena(), but never creates an arena. */
+        DxWorldProcessMemArena peekDxWorldProcessMemArena() {
+        	return (DxWorldProcessMemArena) o;
+        }
     }
 
     
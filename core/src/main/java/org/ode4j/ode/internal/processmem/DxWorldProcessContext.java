@@ -325,6 +325,40 @@ public class DxWorldProcessContext {
     }
 
 
+    /**
+     * Sums up the arena statistics of the islands arena and all stepper arenas.
+     * This is not synchronized with stepping and should be called between steps.
+     * @param highWater if 'true' the high-water marks are returned, otherwise 
+     * the number of slab allocations.
+     */
+    long SumArenaCounters(boolean highWater)
+    {
+    	long result = 0;
+    	DxWorldProcessMemArena islandsArena = GetIslandsMemArena();
+    	if (islandsArena != null) {
+    		result += highWater ? islandsArena.GetHighWaterBytes() : islandsArena.GetSlabAllocationCount();
+    	}
+    	int remaining = MAX_ARENAS_TO_VISIT;
+    	for (DxWorldProcessMemArena arena = GetStepperArenasList(); arena != null && remaining > 0; 
+    			arena = arena.PeekNextMemArena(), remaining--) {
+    		result += highWater ? arena.GetHighWaterBytes() : arena.GetSlabAllocationCount();
+    	}
+    	return result;
+    }
+
+    public long GetArenasHighWaterBytes() 
+    {
+    	return SumArenaCounters(true);
+    }
+
+    public long GetArenasSlabAllocationCount() 
+    {
+    	return SumArenaCounters(false);
+    }
+
+    private static final int MAX_ARENAS_TO_VISIT = 1024;
+
+
     public void LockForAddLimotSerialization()
     {
     	m_pmgStepperMutexGroup.lock(dxProcessContextMutex.dxPCM_STEPPER_ADDLIMOT_SERIALIZE);
@@ -24,8 +24,11 @@
  *************************************************************************/
 package org.ode4j.ode.internal.processmem;
 
+import org.ode4j.ode.DStepStatistics.Stage;
 import org.ode4j.ode.internal.Common;
 import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxSleepingIslands;
+import org.ode4j.ode.internal.DxStepStatistics;
 import org.ode4j.ode.internal.DxWorld;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.joints.DxJointNode;
@@ -42,6 +45,7 @@ public class DxWorldProcessIslandsInfo {
         m_pBodiesP = 0;
         m_pJoints = joints;
         m_pJointsP = 0;
+        m_pIslandSchedule = null;
     }
 
     public int GetIslandsCount() { return m_IslandCount; }
@@ -50,6 +54,12 @@ public class DxWorldProcessIslandsInfo {
     public int GetBodiesArrayP() { return m_pBodiesP; }
     public DxJoint[] GetJointsArray() { return m_pJoints; }
     public int GetJointsArrayP() { return m_pJointsP; }
+    /**
+     * @return Islands in the order they should be handed out to the stepping
+     * threads, {@link #dxISS__MAX} entries per island, or <tt>null</tt> if
+     * the islands are to be processed in discovery order.
+     */
+    public int[] GetIslandSchedule() { return m_pIslandSchedule; }
 
     //private:
     private int m_IslandCount;
@@ -58,6 +68,7 @@ public class DxWorldProcessIslandsInfo {
     private int m_pBodiesP;
     private DxJoint[] m_pJoints;
     private int m_pJointsP;
+    private int[] m_pIslandSchedule;
 
     // *******************************
     // from util.cpp (TZ)
@@ -77,6 +88,12 @@ public class DxWorldProcessIslandsInfo {
 	static final int dxISE_JOINTS_COUNT = 1;
 	static final int dxISE__MAX = 2;
 	//};
+
+	// Island schedule entries (TZ)
+	static final int dxISS_BODIES_START = 0;
+	static final int dxISS_JOINTS_START = 1;
+	static final int dxISS_ISLAND_INDEX = 2;
+	static final int dxISS__MAX = 3;
 	
     static int BuildIslandsAndEstimateStepperMemoryRequirements(
             DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
@@ -84,9 +101,21 @@ public class DxWorldProcessIslandsInfo {
     {
         int maxreq = 0;
 
+        DxStepStatistics statistics = world.getStepStatistics();
+        long lap = statistics != null ? System.nanoTime() : 0;
+
         // handle auto-disabling of bodies
         world.dInternalHandleAutoDisabling (stepsize);
 
+        if (statistics != null) {
+            lap = statistics.lap(lap, Stage.AUTO_DISABLE);
+        }
+
+        // bodies of sleeping islands are not visited, they keep their tag -1
+        DxSleepingIslands sleeping = world.sleepingIslands;
+        DxBody[] awake = sleeping.getAwakeBodies();
+        int awakeCount = sleeping.getAwakeCount();
+
         int nb = world.nb, nj = world.nj;
         // Make array for island body/joint counts
         int[] islandsizes = memarena.AllocateArrayInt(2 * nb);
@@ -96,7 +125,7 @@ public class DxWorldProcessIslandsInfo {
         DxBody[] body = memarena.AllocateArrayDxBody(nb);
         DxJoint[] joint = memarena.AllocateArrayDxJoint(nj);
 
-        BlockPointer stackstate = memarena.BEGIN_STATE_SAVE();
+        int stackstate = memarena.BEGIN_STATE_SAVE();
         {
             // allocate a stack of unvisited bodies in the island. the maximum size of
             // the stack can be the lesser of the number of bodies or joints, because
@@ -107,14 +136,15 @@ public class DxWorldProcessIslandsInfo {
 
             {
                 // set all body/joint tags to 0
-                for (DxBody b=world.firstbody.get(); b!=null; b=(DxBody)b.getNext()) b.tag = 0;
+                for (int i=0; i<awakeCount; i++) awake[i].tag = 0;
                 for (DxJoint j=world.firstjoint.get(); j!=null; j=(DxJoint)j.getNext()) j.tag = 0;
             }
 
             sizescurrP = 0;//islandsizes;
             int bodystart = 0;//body;
             int jointstart = 0;//joint;
-            for (DxBody bb=world.firstbody.get(); bb!=null; bb=(DxBody) bb.getNext()) {
+            for (int ii=0; ii<awakeCount; ii++) {
+                DxBody bb = awake[ii];
                 // get bb = the next enabled, untagged body, and tag it
                 if (bb.tag==0) {
                     if (bb.dBodyIsEnabled()) {
@@ -136,7 +166,11 @@ public class DxWorldProcessIslandsInfo {
                             for (DxJointNode n=b.firstjoint.get(); n!=null; n=n.next) {
                                 DxJoint njoint = n.joint;
                                 if (njoint.tag==0) {
-                                    if (njoint.isEnabled()) {
+                                    if (njoint.isEnabled() && n.body!=null && DxSleepingIslands.isSleeping(n.body)) {
+                                        // The island wakes after this step, its contacts have not been generated yet
+                                        sleeping.requestWake(n.body);
+                                        njoint.tag = -1;
+                                    } else if (njoint.isEnabled()) {
                                         njoint.tag = 1;
                                         //*jointcurr++ = njoint;
                                         joint[jointcurr++] = njoint;
@@ -171,6 +205,12 @@ public class DxWorldProcessIslandsInfo {
                         Common.dIASSERT((bodycurr - bodystart) <= Integer.MAX_VALUE);//UINT_MAX);
                         Common.dIASSERT((jointcurr - jointstart) <= Integer.MAX_VALUE);//UINT_MAX);
 
+                        if (sleeping.isEnabled() && DxSleepingIslands.isIdle(body, bodystart, bcount)) {
+                            // put the island to sleep instead of stepping it
+                            sleeping.sleep(body, bodystart, bcount, joint, jointstart, jcount);
+                            continue;
+                        }
+
                         islandsizes[sizescurrP+dxISE_BODIES_COUNT] = bcount;
                         islandsizes[sizescurrP+dxISE_JOINTS_COUNT] = jcount;
                         sizescurrP += dxISE__MAX;
@@ -206,7 +246,10 @@ public class DxWorldProcessIslandsInfo {
                     if ( (( j.node[0].body!=null && j.node[0].body.isEnabled() ) ||
                             (j.node[1].body!=null && j.node[1].body.isEnabled() ))
                             && 
-                            j.isEnabled() ) {
+                            j.isEnabled() 
+                            && // joints to sleeping islands are not tagged, the island wakes
+                            !( j.node[0].body!=null && DxSleepingIslands.isSleeping(j.node[0].body) ) &&
+                            !( j.node[1].body!=null && DxSleepingIslands.isSleeping(j.node[1].body) ) ) {
                         if (j.tag <= 0) dDebug (0,"attached enabled joint not tagged");
                     }
                     else {
@@ -216,12 +259,108 @@ public class DxWorldProcessIslandsInfo {
             }
         }//# endif
 
+        sleeping.wakeRequested();
+
         //int islandcount = ((size_t)(sizescurr - islandsizes) / sizeelements);
         int islandcount = sizescurrP / dxISE__MAX;
         islandsinfo.AssignInfo(islandcount, islandsizes, body, joint);
 
+        if (statistics != null) {
+            int bodycount = 0, jointcount = 0;
+            for (int i = 0; i < sizescurrP; i += dxISE__MAX) {
+                bodycount += islandsizes[i+dxISE_BODIES_COUNT];
+                jointcount += islandsizes[i+dxISE_JOINTS_COUNT];
+            }
+            statistics.setIslands(islandcount, bodycount, jointcount);
+            statistics.lap(lap, Stage.ISLAND_SEARCH);
+        }
+
+        // With several threads, hand out the most expensive islands first so that
+        // a big island does not start last and keep one thread busy while the
+        // others are idle. With one thread the order is kept as it is, which
+        // keeps results reproducible (constraint reordering uses the world seed).
+        if (islandcount > 1 && world.GetThreadingIslandsMaxThreadsCount(null) > 1) {
+            int[] schedule = memarena.AllocateArrayInt(islandcount * dxISS__MAX);
+            BuildCostOrderedSchedule(islandcount, islandsizes, schedule);
+            islandsinfo.m_pIslandSchedule = schedule;
+        }
+
         return maxreq;
     }
 
+    /**
+     * Rough relative cost of stepping an island: bodies x joints x constraint rows,
+     * with the rows taken as proportional to the joint count.
+     */
+    static long EstimateIslandCost(int bcount, int jcount)
+    {
+        long j = jcount + 1;
+        return bcount * j * j;
+    }
+
+    /**
+     * Fill <tt>schedule</tt> with all islands, ordered by descending estimated cost.
+     * Islands of equal cost keep their discovery order.
+     */
+    static void BuildCostOrderedSchedule(int islandcount, int[] islandsizes, int[] schedule)
+    {
+        int bodystart = 0, jointstart = 0;
+        for (int i = 0; i < islandcount; i++) {
+            int p = i * dxISS__MAX;
+            schedule[p+dxISS_BODIES_START] = bodystart;
+            schedule[p+dxISS_JOINTS_START] = jointstart;
+            schedule[p+dxISS_ISLAND_INDEX] = i;
+            bodystart += islandsizes[i*dxISE__MAX+dxISE_BODIES_COUNT];
+            jointstart += islandsizes[i*dxISE__MAX+dxISE_JOINTS_COUNT];
+        }
+        // heap sort, so that no memory is needed
+        for (int i = islandcount / 2 - 1; i >= 0; i--) {
+            siftDown(schedule, islandsizes, i, islandcount);
+        }
+        for (int end = islandcount - 1; end > 0; end--) {
+            swapEntries(schedule, 0, end);
+            siftDown(schedule, islandsizes, 0, end);
+        }
+    }
+
+    // true if entry a must be scheduled after entry b
+    private static boolean isScheduledAfter(int[] schedule, int[] islandsizes, int a, int b)
+    {
+        int ia = schedule[a*dxISS__MAX+dxISS_ISLAND_INDEX];
+        int ib = schedule[b*dxISS__MAX+dxISS_ISLAND_INDEX];
+        long ca = EstimateIslandCost(islandsizes[ia*dxISE__MAX+dxISE_BODIES_COUNT], 
+                islandsizes[ia*dxISE__MAX+dxISE_JOINTS_COUNT]);
+        long cb = EstimateIslandCost(islandsizes[ib*dxISE__MAX+dxISE_BODIES_COUNT], 
+                islandsizes[ib*dxISE__MAX+dxISE_JOINTS_COUNT]);
+        return ca != cb ? ca < cb : ia > ib;
+    }
+
+    private static void siftDown(int[] schedule, int[] islandsizes, int root, int count)
+    {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= count) {
+                return;
+            }
+            if (child + 1 < count && isScheduledAfter(schedule, islandsizes, child + 1, child)) {
+                child++;
+            }
+            if (!isScheduledAfter(schedule, islandsizes, child, root)) {
+                return;
+            }
+            swapEntries(schedule, root, child);
+            root = child;
+        }
+    }
+
+    private static void swapEntries(int[] schedule, int a, int b)
+    {
+        for (int k = 0; k < dxISS__MAX; k++) {
+            int t = schedule[a*dxISS__MAX+k];
+            schedule[a*dxISS__MAX+k] = schedule[b*dxISS__MAX+k];
+            schedule[b*dxISS__MAX+k] = t;
+        }
+    }
+
 
 }
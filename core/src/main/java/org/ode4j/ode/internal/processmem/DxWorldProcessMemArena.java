@@ -24,11 +24,28 @@
  *************************************************************************/
 package org.ode4j.ode.internal.processmem;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
 import org.ode4j.ode.internal.Common;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
 
+/**
+ * Memory arena for world stepping.
+ * <p>
+ * In C/C++ the arena is a single memory block that is handed out in 
+ * stack-like fashion. In Java (TZ) the arena keeps a stack of typed 
+ * 'slots', one per allocation. Each slot keeps its array between steps, so 
+ * that once the arena has warmed up, a step with the same (or smaller) 
+ * allocation pattern does not allocate anything on the heap.
+ * <p>
+ * The arena state (see {@link #SaveState()}) is the index of the next slot
+ * to be handed out. Restoring a state releases all slots above that index
+ * for reuse. Arrays returned by the arena are at least as large as requested 
+ * and have the requested range zeroed, just like a freshly allocated array.
+ */
 public final class DxWorldProcessMemArena {
 	
     //   public:
@@ -54,29 +71,31 @@ public final class DxWorldProcessMemArena {
         return m_pAllocBegin!=null 
         && m_pAllocEnd!=null 
         && m_pAllocBegin.toInt() <= m_pAllocEnd.toInt() 
-        && (m_pAllocCurrentOrNextArena == null || m_pAllocCurrentOrNextArena == m_pAllocBegin) 
+        && m_nAllocCurrent >= 0 && m_nAllocCurrent <= m_nSlotsUsed
         && m_pArenaBegin!=null  
         && m_pArenaBegin.toInt() <= m_pAllocBegin.toInt(); 
     }
 
     int GetMemorySize() //const
     {
-        return m_pAllocEnd.toInt() - m_pAllocBegin.toInt();
+        //TZ The block pointers carry no size in Java, see m_nMemorySize.
+        return m_nMemorySize;
     }
 
-    public BlockPointer SaveState() //const
+    public int SaveState() //const
     {
-        return m_pAllocCurrentOrNextArena;
+        return m_nAllocCurrent;
     }
 
-    public void RestoreState(BlockPointer state)
+    public void RestoreState(int state)
     {
-    	m_pAllocCurrentOrNextArena = state;
+    	Common.dIASSERT(state >= 0 && state <= m_nAllocCurrent);
+    	m_nAllocCurrent = state;
     }
 
     void ResetState()
     {
-    	m_pAllocCurrentOrNextArena = m_pAllocBegin;
+    	m_nAllocCurrent = 0;
     }
 
     public BlockPointer PeekBufferRemainder() //const
@@ -85,17 +104,40 @@ public final class DxWorldProcessMemArena {
     }
 
     //dxWorldProcessMemArena *GetNextMemArena() const { return (dxWorldProcessMemArena *)m_pAllocCurrentOrNextArena; }
-    DxWorldProcessMemArena GetNextMemArena() { return m_pAllocCurrentOrNextArena.asDxWorldProcessMemArena(); }
+    //TZ Returns 'null' at the end of the list, like the C++ pointer. Creating an 
+    // arena here would put an empty arena into the free list on every step.
+    DxWorldProcessMemArena GetNextMemArena() { return PeekNextMemArena(); }
     //void SetNextMemArena(dxWorldProcessMemArena *pArenaInstance) { m_pAllocCurrentOrNextArena = pArenaInstance; }
     void SetNextMemArena(DxWorldProcessMemArena pArenaInstance) { m_pAllocCurrentOrNextArena.setTo( pArenaInstance ); }
+    //TZ Never creates an arena, returns 'null' at the end of the list.
+    DxWorldProcessMemArena PeekNextMemArena() {
+    	DxWorldProcessMemArena next = m_pAllocCurrentOrNextArena.peekDxWorldProcessMemArena();
+    	return next != this ? next : null; 
+    }
 
     
+    //TZ In Java this is only used to link the arenas in the free list. 
     private BlockPointer m_pAllocCurrentOrNextArena = new BlockPointer(this, 0);
     private BlockPointer m_pAllocBegin = new BlockPointer(this, 0);
     private BlockPointer m_pAllocEnd = new BlockPointer(this, 0);
     private BlockPointer m_pArenaBegin;
 
     DxWorldProcessMemoryManager m_pArenaMemMgr;
+    //TZ Size of the (virtual) buffer, so that an arena is only reallocated
+    // when the memory requirement grows beyond the reserve.
+    private int m_nMemorySize;
+
+    //TZ Java slot stack (see class comment)
+    private static final int SLOTS_INITIAL = 16;
+    private Object[] m_aSlots = new Object[SLOTS_INITIAL];
+    /** m_anSlotBytes[i] = bytes requested by slots [0..i), used for high-water tracking. */
+    private long[] m_anSlotBytes = new long[SLOTS_INITIAL + 1];
+    private int m_nSlotsUsed = 0;
+    private int m_nAllocCurrent = 0;
+    private double m_fReserveFactor = 1.0;
+    private long m_nHighWaterBytes = 0;
+    private long m_nRetainedBytes = 0;
+    private long m_nSlabAllocations = 0;
 
 
     //****************************************************************************
@@ -111,6 +153,7 @@ public final class DxWorldProcessMemArena {
 
         int nOldArenaSize = 0; 
         BlockPointer pOldArenaBuffer = null;
+        DxWorldProcessMemArena slotsDonor = null;
 
         do {
             int oldmemsize = oldarena!=null ? oldarena.GetMemorySize() : 0;
@@ -128,6 +171,8 @@ public final class DxWorldProcessMemArena {
 
                 if (oldarena != null) {
                     oldarena.m_pArenaMemMgr.m_fnFree.run(pOldArenaBuffer, nOldArenaSize);
+                    // TZ The slots of the old arena are still valid Java arrays, keep them.
+                    slotsDonor = oldarena;
                     oldarena = null;
 
                     // Zero variables to avoid another freeing on exit
@@ -151,7 +196,12 @@ public final class DxWorldProcessMemArena {
                 arena.m_pArenaBegin = pNewArenaBuffer;
                 arena.m_pAllocCurrentOrNextArena.setTo(null);
                 arena.m_pArenaMemMgr = memmgr;
+                arena.m_nMemorySize = memreq_with_reserve;
+                if (slotsDonor != null && slotsDonor != arena) {
+                	arena.TakeOverSlots(slotsDonor);
+                }
             }
+            arena.m_fReserveFactor = rsrvfactor;
 
             allocsuccess = true;
         } 
@@ -180,6 +230,7 @@ public final class DxWorldProcessMemArena {
         if (false) {
         	arena.m_pArenaMemMgr.m_fnFree.run(pArenaBegin, arenasize);
         }
+        arena.ReleaseSlots();
     }
 
 
@@ -196,12 +247,109 @@ public final class DxWorldProcessMemArena {
     // Java methods to simulate the C++ manager (TZ)
     // ***********************************************
 
+    private void TakeOverSlots(DxWorldProcessMemArena donor) {
+    	m_aSlots = donor.m_aSlots;
+    	m_anSlotBytes = donor.m_anSlotBytes;
+    	m_nSlotsUsed = donor.m_nSlotsUsed;
+    	m_nHighWaterBytes = donor.m_nHighWaterBytes;
+    	m_nRetainedBytes = donor.m_nRetainedBytes;
+    	m_nSlabAllocations = donor.m_nSlabAllocations;
+    	donor.ReleaseSlots();
+    }
+
+    private void ReleaseSlots() {
+    	m_aSlots = new Object[SLOTS_INITIAL];
+    	m_anSlotBytes = new long[SLOTS_INITIAL + 1];
+    	m_nSlotsUsed = 0;
+    	m_nAllocCurrent = 0;
+    	m_nRetainedBytes = 0;
+    }
+
+    /**
+     * @return The slot that is handed out next, or {@code null} if the slot 
+     * has not been used before.
+     */
+    private Object PeekSlot() {
+    	int slot = m_nAllocCurrent;
+    	if (slot == m_aSlots.length) {
+    		m_aSlots = Arrays.copyOf(m_aSlots, slot * 2);
+    		m_anSlotBytes = Arrays.copyOf(m_anSlotBytes, slot * 2 + 1);
+    	}
+    	return m_aSlots[slot];
+    }
+
+    private void CommitSlot(Object array, int requestedBytes, boolean replaced) {
+    	int slot = m_nAllocCurrent++;
+    	m_aSlots[slot] = array;
+    	if (slot == m_nSlotsUsed) {
+    		m_nSlotsUsed++;
+    	}
+    	long liveBytes = m_anSlotBytes[slot] + requestedBytes;
+    	m_anSlotBytes[slot + 1] = liveBytes;
+    	if (liveBytes > m_nHighWaterBytes) {
+    		m_nHighWaterBytes = liveBytes;
+    	}
+    	if (replaced) {
+    		m_nSlabAllocations++;
+    	}
+    }
+
+    private int ReserveCapacity(int size) {
+    	double scaled = size * m_fReserveFactor;
+    	return scaled < Integer.MAX_VALUE - 8 ? Math.max(size, (int) scaled) : size;
+    }
+
+    private void AccountRetained(Object oldArray, Object newArray) {
+    	m_nRetainedBytes += SlotBytes(newArray) - SlotBytes(oldArray);
+    }
+
+    private static long SlotBytes(Object a) {
+    	if (a instanceof double[]) return 8L * ((double[])a).length;
+    	if (a instanceof int[]) return 4L * ((int[])a).length;
+    	if (a instanceof boolean[]) return ((boolean[])a).length;
+    	if (a instanceof Object[]) return 8L * ((Object[])a).length;
+    	return 0;
+    }
+
+    /**
+     * Hands out the next slot as an array of the given class with at least 
+     * 'size' elements. The slot is reused if it has the right class and size,
+     * otherwise it is replaced by a new array. The elements [0..size) are 
+     * cleared, like in a fresh allocation.
+     */
+    private Object AllocateSlot(Class<?> arrayClass, int size, int elementBytes) {
+    	Object slot = PeekSlot();
+    	Object a;
+    	boolean replaced = slot == null || slot.getClass() != arrayClass || Array.getLength(slot) < size;
+    	if (replaced) {
+    		a = Array.newInstance(arrayClass.getComponentType(), ReserveCapacity(size));
+    		AccountRetained(slot, a);
+    	} else {
+    		a = slot;
+    		ClearSlot(a, size);
+    	}
+    	CommitSlot(a, size * elementBytes, replaced);
+    	return a;
+    }
+
+    private static void ClearSlot(Object a, int size) {
+    	if (a instanceof double[]) {
+    		Arrays.fill((double[])a, 0, size, 0);
+    	} else if (a instanceof int[]) {
+    		Arrays.fill((int[])a, 0, size, 0);
+    	} else if (a instanceof boolean[]) {
+    		Arrays.fill((boolean[])a, 0, size, false);
+    	} else {
+    		Arrays.fill((Object[])a, 0, size, null);
+    	}
+    }
+
     public final double[] AllocateArrayDReal(int size) {
-        return new double[size];
+    	return (double[]) AllocateSlot(double[].class, size, 8);
     }
 
     public final int[] AllocateArrayInt(int size) {
-        return new int[size];
+    	return (int[]) AllocateSlot(int[].class, size, 4);
     }
 
     /**
@@ -226,37 +374,129 @@ public final class DxWorldProcessMemArena {
     }
 
     public final double[][] AllocateArrayDRealDReal(int n) {
-        return new double[n][];
+    	return (double[][]) AllocateSlot(double[][].class, n, 8);
     }
 
     public final boolean[] AllocateArrayBool(int n) {
-        return new boolean[n];
+    	return (boolean[]) AllocateSlot(boolean[].class, n, 1);
     }
 
-    public BlockPointer BEGIN_STATE_SAVE() {
+    public int BEGIN_STATE_SAVE() {
         return SaveState();
     }
 
-    public void END_STATE_SAVE(BlockPointer saveInner) {
+    public void END_STATE_SAVE(int saveInner) {
         RestoreState(saveInner);
     }
 
     public static DxWorldProcessMemArena allocateTemporary(int memreq,
-            Object object, Object object2) {
-        return new DxWorldProcessMemArena();
+    		DxWorldProcessMemoryManager memmgr, DxWorldProcessMemoryReserveInfo reserveinfo) {
+    	final DxWorldProcessMemoryManager surememmgr = memmgr != null ? memmgr : DxUtil.g_WorldProcessMallocMemoryManager;
+    	final DxWorldProcessMemoryReserveInfo surereserveinfo = reserveinfo != null ? reserveinfo : DxUtil.g_WorldProcessDefaultReserveInfo;
+    	DxWorldProcessMemArena arena = ReallocateMemArena(null, memreq, surememmgr, 
+    			surereserveinfo.m_fReserveFactor, surereserveinfo.m_uiReserveMinimum);
+    	if (arena != null) {
+    		arena.ResetState();
+    	}
+        return arena;
     }
 
     public static void freeTemporary(DxWorldProcessMemArena arena) {
-        // TODO Auto-generated method stub
-
+    	FreeMemArena(arena);
     }
 
     public DxBody[] AllocateArrayDxBody(int nb) {
-        return new DxBody[nb];
+    	return (DxBody[]) AllocateSlot(DxBody[].class, nb, 8);
     }
 
     public DxJoint[] AllocateArrayDxJoint(int nj) {
-        return new DxJoint[nj];
+    	return (DxJoint[]) AllocateSlot(DxJoint[].class, nj, 8);
+    }
+
+    /**
+     * Factory for arrays of small helper objects that are kept in the arena 
+     * together with their elements (TZ: replacement for arrays of structs).
+     * @param <T> element type
+     */
+    public interface PooledArrayFactory<T> {
+    	/** @return 'true' if the given slot is an array created by this factory. */
+    	boolean isInstance(Object array);
+    	T[] newArray(int size);
+    	T newElement();
+    	/** Bring a reused element into the state of a new element. */
+    	void resetElement(T element);
+    }
+
+    /**
+     * Allocate an array with at least 'n' elements. Unlike other allocations, the
+     * elements [0..n) are never 'null', they are either new or reset.
+     * @param <T> element type
+     * @param factory factory
+     * @param n requested size
+     * @return the array
+     */
+    @SuppressWarnings("unchecked")
+	public <T> T[] AllocateArrayPooled(PooledArrayFactory<T> factory, int n) {
+    	Object slot = PeekSlot();
+    	T[] a;
+    	boolean matching = factory.isInstance(slot);
+    	boolean replaced = !matching || ((T[])slot).length < n;
+    	int reused = 0;
+    	if (replaced) {
+    		a = factory.newArray(ReserveCapacity(n));
+    		if (matching) {
+    			// keep the elements that have been created before
+    			T[] old = (T[]) slot;
+    			System.arraycopy(old, 0, a, 0, old.length);
+    		}
+    		AccountRetained(slot, a);
+    	} else {
+    		a = (T[]) slot;
+    	}
+    	for (int i = 0; i < n; i++) {
+    		T e = a[i];
+    		if (e == null) {
+    			a[i] = factory.newElement();
+    		} else {
+    			factory.resetElement(e);
+    			reused++;
+    		}
+    	}
+    	CommitSlot(a, n * 8, replaced || reused < n);
+    	return a;
+    }
+
+    /**
+     * Allocate a single object that is kept in the arena, like an element of
+     * {@link #AllocateArrayPooled(PooledArrayFactory, int)}.
+     * @param <T> element type
+     * @param factory factory
+     * @return the new or reset object
+     */
+    public <T> T AllocatePooled(PooledArrayFactory<T> factory) {
+    	return AllocateArrayPooled(factory, 1)[0];
     }
 
+    /**
+     * @return Maximum number of bytes that have been in use at the same time 
+     * since this arena was created (approximated with 8 bytes per reference).
+     */
+    public long GetHighWaterBytes() {
+    	return m_nHighWaterBytes;
+    }
+
+    /**
+     * @return Number of bytes currently held by the slots of this arena.
+     */
+    public long GetRetainedBytes() {
+    	return m_nRetainedBytes;
+    }
+
+    /**
+     * @return Number of times a slot had to be (re-)allocated on the heap.
+     * This does not change once the arena has warmed up for a given scene.
+     */
+    public long GetSlabAllocationCount() {
+    	return m_nSlabAllocations;
+    }
 }
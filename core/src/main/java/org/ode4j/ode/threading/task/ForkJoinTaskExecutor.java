@@ -0,0 +1,88 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.threading.task;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Task executor backed by a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Tasks submitted from a worker thread of the pool are pushed onto that
+ * worker's own deque, so the island stepping jobs and their stepper stages
+ * stay on the thread that created them unless another worker runs out of
+ * work and steals them. Together with the largest-first island schedule
+ * used by the world for more than one thread this keeps all workers busy
+ * until the last island is done.
+ */
+public class ForkJoinTaskExecutor extends AbstractTaskExecutor {
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create an executor with its own pool.
+	 * @param threads number of worker threads
+	 */
+	public ForkJoinTaskExecutor(int threads) {
+		this(new ForkJoinPool(threads));
+	}
+
+	/**
+	 * Create an executor on an existing pool, e.g. to share it between worlds.
+	 * @param pool the pool
+	 */
+	public ForkJoinTaskExecutor(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void submit(Task task) {
+		if (isPoolThread()) {
+			ForkJoinTask.adapt(task).fork();
+		} else {
+			pool.execute(task);
+		}
+	}
+
+	@Override
+	public int getThreadCount() {
+		return pool.getParallelism();
+	}
+
+	@Override
+	public void flush() {
+		// A world stepped from inside the pool must not block its worker
+		// while the island tasks wait in the queue: help running them.
+		if (isPoolThread()) {
+			ForkJoinTask.helpQuiesce();
+		}
+	}
+
+	private boolean isPoolThread() {
+		Thread t = Thread.currentThread();
+		return t instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) t).getPool() == pool;
+	}
+
+}
@@ -1,6 +1,10 @@
 package org.ode4j.ode.internal;
 
+import java.util.Random;
+
 import org.junit.Test;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.internal.CollisionLibccd.ccd_cap_t;
 import org.ode4j.ode.internal.CollisionLibccd.ccd_cyl_t;
 import org.ode4j.ode.internal.CollisionLibccd.ccd_sphere_t;
@@ -97,4 +101,104 @@ public class CollisionLibccdTest {
 		assertEquals(-5, v.get1(), 0.00000001f);
 		assertEquals(6.0, v.get2(), 0.00000001f);
 	}
+
+	/**
+	 * A sphere of latitude rings with quads between the rings and 
+	 * triangles at the poles.
+	 */
+	private static DxConvex uvSphere(double r, int rings, int segments) {
+		int n = rings * segments + 2;
+		double[] points = new double[n * 3];
+		points[2] = r;
+		points[(n - 1) * 3 + 2] = -r;
+		for (int i = 1; i <= rings; i++) {
+			double theta = Math.PI * i / (rings + 1);
+			for (int j = 0; j < segments; j++) {
+				double phi = 2 * Math.PI * j / segments;
+				int p = (1 + (i - 1) * segments + j) * 3;
+				points[p] = r * Math.sin(theta) * Math.cos(phi);
+				points[p + 1] = r * Math.sin(theta) * Math.sin(phi);
+				points[p + 2] = r * Math.cos(theta);
+			}
+		}
+		int planecount = 2 * segments + (rings - 1) * segments;
+		int[] polygons = new int[2 * segments * 4 + (rings - 1) * segments * 5];
+		int k = 0;
+		for (int j = 0; j < segments; j++) {
+			int j1 = (j + 1) % segments;
+			polygons[k++] = 3;
+			polygons[k++] = 0;
+			polygons[k++] = 1 + j;
+			polygons[k++] = 1 + j1;
+			for (int i = 1; i < rings; i++) {
+				polygons[k++] = 4;
+				polygons[k++] = 1 + (i - 1) * segments + j;
+				polygons[k++] = 1 + i * segments + j;
+				polygons[k++] = 1 + i * segments + j1;
+				polygons[k++] = 1 + (i - 1) * segments + j1;
+			}
+			polygons[k++] = 3;
+			polygons[k++] = n - 1;
+			polygons[k++] = 1 + (rings - 1) * segments + j1;
+			polygons[k++] = 1 + (rings - 1) * segments + j;
+		}
+		double[] planes = new double[planecount * 4];
+		for (int f = 0, pos = 0; f < planecount; f++) {
+			int a = polygons[pos + 1] * 3, b = polygons[pos + 2] * 3, c = polygons[pos + 3] * 3;
+			double ux = points[b] - points[a], uy = points[b + 1] - points[a + 1], uz = points[b + 2] - points[a + 2];
+			double vx = points[c] - points[a], vy = points[c + 1] - points[a + 1], vz = points[c + 2] - points[a + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			double l = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			planes[f * 4] = nx / l;
+			planes[f * 4 + 1] = ny / l;
+			planes[f * 4 + 2] = nz / l;
+			planes[f * 4 + 3] = (nx * points[a] + ny * points[a + 1] + nz * points[a + 2]) / l;
+			pos += polygons[pos] + 1;
+		}
+		return new DxConvex(null, planes, planecount, points, n, polygons);
+	}
+
+	@Test
+	public void testConvexHillClimbingSupport() {
+		DxConvex convex = uvSphere(1, 14, 18);
+		assertTrue(convex.getPointcount() >= DxConvex.SUPPORT_HILL_CLIMBING_MIN_POINTS);
+		double[] p = convex.getPoints();
+		Random random = new Random(21);
+		int start = 0;
+		for (int n = 0; n < 1000; n++) {
+			double dx = random.nextGaussian(), dy = random.nextGaussian(), dz = random.nextGaussian();
+			double max = -Double.MAX_VALUE;
+			for (int i = 0; i < convex.getPointcount(); i++) {
+				max = Math.max(max, dx * p[i * 3] + dy * p[i * 3 + 1] + dz * p[i * 3 + 2]);
+			}
+			// from the last result and from a random vertex
+			start = convex.supportVertex(dx, dy, dz, start);
+			assertEquals(max, dx * p[start * 3] + dy * p[start * 3 + 1] + dz * p[start * 3 + 2], 1e-12);
+			int v = convex.supportVertex(dx, dy, dz, random.nextInt(convex.getPointcount()));
+			assertEquals(max, dx * p[v * 3] + dy * p[v * 3 + 1] + dz * p[v * 3 + 2], 1e-12);
+		}
+	}
+
+	@Test
+	public void testConvexConvexCollide() {
+		DxConvex c1 = uvSphere(1, 14, 18);
+		DxConvex c2 = uvSphere(1, 14, 18);
+		double l = Math.sqrt(1.3 * 1.3 + 0.9 * 0.9 + 1.0 * 1.0);
+		c2.setPosition(1.3 / l * 1.9, 0.9 / l * 1.9, 1.0 / l * 1.9);
+		DContactGeomBuffer contacts = new DContactGeomBuffer(1);
+		CollisionLibccd.CollideConvexConvexCCD collider = new CollisionLibccd.CollideConvexConvexCCD();
+		assertEquals(1, collider.dColliderFn(c1, c2, 1, contacts));
+		DContactGeom contact = contacts.get();
+		double depth = contact.depth;
+		assertEquals(-1.3 / l, contact.normal.get0(), 0.05);
+		// same depth as the separating axis test
+		DContactGeomBuffer sat = new DContactGeomBuffer(1);
+		assertEquals(1, new DxConvex.CollideConvexConvex().dColliderFn(c1, c2, 1, sat));
+		assertEquals(sat.get().depth, depth, 1e-3);
+		// again, with the support vertices of the first run as start
+		assertEquals(1, collider.dColliderFn(c1, c2, 1, contacts));
+		assertEquals(depth, contacts.get().depth, 1e-9);
+		c2.setPosition(2.1, 0, 0);
+		assertEquals(0, collider.dColliderFn(c1, c2, 1, contacts));
+	}
 }
@@ -1,8 +1,17 @@
 package org.ode4j.ode.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
 
 import org.junit.Test;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTriMesh;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.MultiThreadTaskExecutor;
 
 public class DxGimpactDataTest {
 
@@ -70,4 +79,88 @@ public class DxGimpactDataTest {
 		assertEquals(Math.PI * 2, data.getEdgeAngle(1, 2), 0.001);
 	}
 
+	private static final int GRID = 80;
+
+	private static float[] gridVertices() {
+		float[] v = new float[GRID * GRID * 3];
+		for (int i = 0; i < GRID * GRID; i++) {
+			v[i * 3] = i % GRID * 0.1f;
+			v[i * 3 + 1] = i / GRID * 0.1f;
+		}
+		return v;
+	}
+
+	private static int[] gridIndices() {
+		int[] idx = new int[(GRID - 1) * (GRID - 1) * 6];
+		int n = 0;
+		for (int y = 0; y < GRID - 1; y++) {
+			for (int x = 0; x < GRID - 1; x++) {
+				int i = y * GRID + x;
+				idx[n++] = i;
+				idx[n++] = i + 1;
+				idx[n++] = i + GRID;
+				idx[n++] = i + 1;
+				idx[n++] = i + GRID + 1;
+				idx[n++] = i + GRID;
+			}
+		}
+		return idx;
+	}
+
+	@Test
+	public void testUpdateAngles() {
+		float[] vertices = gridVertices();
+		int[] indices = gridIndices();
+		DxGimpactData data = new DxGimpactData();
+		data.build(vertices, indices);
+		data.preprocess();
+		Random r = new Random(1);
+		MultiThreadTaskExecutor executor = new MultiThreadTaskExecutor(4);
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < GRID * GRID; i++) {
+				vertices[i * 3 + 2] = r.nextFloat() * 0.2f;
+			}
+			data.update(pass == 0 ? null : executor);
+
+			DxGimpactData expected = new DxGimpactData();
+			expected.build(vertices.clone(), indices);
+			expected.preprocess();
+			for (int t = 0; t < indices.length / 3; t++) {
+				for (int e = 0; e < 3; e++) {
+					assertEquals(expected.getEdgeAngle(t, e), data.getEdgeAngle(t, e), 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUpdateRefitsTriMesh() {
+		OdeHelper.initODE2(0);
+		float[] vertices = gridVertices();
+		DxGimpactData data = (DxGimpactData) OdeHelper.createTriMeshData();
+		data.build(vertices, gridIndices());
+		data.preprocess();
+		DSpace space = OdeHelper.createSimpleSpace();
+		DTriMesh mesh = OdeHelper.createTriMesh(space, data, null, null, null);
+		DGeom sphere = OdeHelper.createSphere(space, 0.3);
+		sphere.setPosition(4, 4, 1);
+		DContactGeomBuffer contacts = new DContactGeomBuffer(4);
+
+		space.cleanGeoms();
+		assertEquals(0, mesh.getAABB().getMax2(), 1e-6);
+		assertEquals(0, OdeHelper.collide(mesh, sphere, 4, contacts));
+
+		// raise the middle of the grid under the sphere
+		for (int i = 0; i < GRID * GRID; i++) {
+			float dx = vertices[i * 3] - 4, dy = vertices[i * 3 + 1] - 4;
+			vertices[i * 3 + 2] = (float) Math.max(0, 0.9 - Math.sqrt(dx * dx + dy * dy));
+		}
+		data.update();
+		space.cleanGeoms();
+		assertEquals(0.9, mesh.getAABB().getMax2(), 1e-3);
+		assertTrue(OdeHelper.collide(mesh, sphere, 4, contacts) > 0);
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+
 }
@@ -0,0 +1,142 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.OdeHelper;
+
+public class DxHeightfieldTilesTest {
+
+	private static final int W = 150;
+	private static final int D = 110;
+	private static final int HEADER = 6;
+
+	private static short[] createSamples() {
+		short[] samples = new short[W * D];
+		for (int z = 0; z < D; z++) {
+			for (int x = 0; x < W; x++) {
+				// low rolling ground, and a high hill near x = 0, z = 0
+				double h = 20 * Math.sin(x * 0.3) * Math.cos(z * 0.2);
+				if (x < 20 && z < 20) {
+					h += 3000;
+				}
+				samples[x + z * W] = (short) h;
+			}
+		}
+		return samples;
+	}
+
+	private static DxHeightfieldData createMapped(short[] samples, int tileSize, int cachedTiles,
+			boolean wrap) throws IOException {
+		File f = File.createTempFile("heightfield", ".raw");
+		f.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(HEADER + 2 * samples.length).order(ByteOrder.BIG_ENDIAN);
+			buf.position(HEADER);
+			buf.asShortBuffer().put(samples);
+			buf.position(0);
+			raf.getChannel().write(buf, 0);
+			DxHeightfieldData d = (DxHeightfieldData) OdeHelper.createHeightfieldData();
+			d.buildMapped(raf.getChannel(), HEADER, ByteOrder.BIG_ENDIAN, W, D, tileSize, cachedTiles,
+					W - 1, D - 1, 0.01, 0.5, 1, wrap);
+			return d;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static DxHeightfieldData createHeap(short[] samples, boolean wrap) {
+		DxHeightfieldData d = (DxHeightfieldData) OdeHelper.createHeightfieldData();
+		d.build(samples, false, W - 1, D - 1, W, D, 0.01, 0.5, 1, wrap);
+		return d;
+	}
+
+	@Test
+	public void testSamplesAndBounds() throws IOException {
+		short[] samples = createSamples();
+		for (boolean wrap : new boolean[] { false, true }) {
+			DxHeightfieldData heap = createHeap(samples, wrap);
+			// a small cache, so that tiles are evicted and loaded again
+			DxHeightfieldData mapped = createMapped(samples, 16, 8, wrap);
+			assertEquals(heap.m_fMinHeight, mapped.m_fMinHeight, 0);
+			assertEquals(heap.m_fMaxHeight, mapped.m_fMaxHeight, 0);
+			for (int z = -D; z < 2 * D; z += 3) {
+				for (int x = -W; x < 2 * W; x += 2) {
+					assertEquals(heap.GetHeight(x, z), mapped.GetHeight(x, z), 0);
+				}
+			}
+			DxHeightfieldTiles tiles = (DxHeightfieldTiles) mapped.m_pHeightData;
+			assertTrue(tiles.getLoadCount() > 8);
+
+			for (int i = 0; i < 200; i++) {
+				int minX = (i * 37) % (3 * W) - W;
+				int minZ = (i * 53) % (3 * D) - D;
+				int maxX = minX + (i * 7) % 40;
+				int maxZ = minZ + (i * 11) % 40;
+				double max = -Double.MAX_VALUE;
+				for (int z = minZ; z <= maxZ; z++) {
+					for (int x = minX; x <= maxX; x++) {
+						max = Math.max(max, heap.GetHeight(x, z));
+					}
+				}
+				double bound = mapped.GetMaxHeight(minX, maxX, minZ, maxZ);
+				assertTrue(bound >= max);
+			}
+		}
+	}
+
+	@Test
+	public void testCollideMatchesHeapData() throws IOException {
+		OdeHelper.initODE2(0);
+		short[] samples = createSamples();
+		DxHeightfieldData mapped = createMapped(samples, 32, 64, false);
+		DHeightfield g1 = OdeHelper.createHeightfield(null, createHeap(samples, false), true);
+		DHeightfield g2 = OdeHelper.createHeightfield(null, mapped, true);
+		DGeom sphere = OdeHelper.createSphere(null, 1.5);
+		DContactGeomBuffer c1 = new DContactGeomBuffer(10);
+		DContactGeomBuffer c2 = new DContactGeomBuffer(10);
+		int total = 0;
+		for (int i = 0; i < 100; i++) {
+			double x = (i * 13) % (W - 10) - (W - 1) / 2.0 + 5;
+			double z = (i * 29) % (D - 10) - (D - 1) / 2.0 + 5;
+			double y = 0.5 + (i % 5) * 0.1 - 0.2;
+			sphere.setPosition(x, y, z);
+			int n1 = OdeHelper.collide(g1, sphere, 10, c1);
+			int n2 = OdeHelper.collide(g2, sphere, 10, c2);
+			assertEquals(n1, n2);
+			for (int k = 0; k < n1; k++) {
+				assertEquals(c1.get(k).depth, c2.get(k).depth, 0);
+				for (int j = 0; j < 3; j++) {
+					assertEquals(c1.get(k).pos.get(j), c2.get(k).pos.get(j), 0);
+					assertEquals(c1.get(k).normal.get(j), c2.get(k).normal.get(j), 0);
+				}
+			}
+			total += n1;
+		}
+		assertTrue(total > 0);
+
+		// above the rolling ground but below the hill: no tile is read
+		DxHeightfieldData fresh = createMapped(samples, 32, 64, false);
+		DHeightfield g3 = OdeHelper.createHeightfield(null, fresh, true);
+		sphere.setPosition(30, 3, 30);
+		assertEquals(0, OdeHelper.collide(g1, sphere, 10, c1));
+		assertEquals(0, OdeHelper.collide(g3, sphere, 10, c2));
+		assertEquals(0, ((DxHeightfieldTiles) fresh.m_pHeightData).getLoadCount());
+		sphere.setPosition(30, 1, 30);
+		assertTrue(OdeHelper.collide(g3, sphere, 10, c2) > 0);
+		assertTrue(((DxHeightfieldTiles) fresh.m_pHeightData).getLoadCount() > 0);
+		OdeHelper.closeODE();
+	}
+}
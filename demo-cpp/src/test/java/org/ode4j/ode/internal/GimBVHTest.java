@@ -0,0 +1,191 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.ode4j.ode.internal.gimpact.GimBVH;
+import org.ode4j.ode.internal.gimpact.GimContact;
+import org.ode4j.ode.internal.gimpact.GimDynArray;
+import org.ode4j.ode.internal.gimpact.GimDynArrayInt;
+import org.ode4j.ode.internal.gimpact.GimGeometry.aabb3f;
+import org.ode4j.ode.internal.gimpact.GimGeometry.mat4f;
+import org.ode4j.ode.internal.gimpact.GimGeometry.vec3f;
+import org.ode4j.ode.internal.gimpact.GimTriCollision.GIM_TRIANGLE_RAY_CONTACT_DATA;
+import org.ode4j.ode.internal.gimpact.GimTrimesh;
+
+/**
+ * Checks that the midphase with a {@link GimBVH} finds the same triangles,
+ * in the same order, as the box pruning of the aabbset.
+ */
+public class GimBVHTest {
+
+	private static final int GRID = 16;
+
+	private final Random random = new Random(17);
+
+	private static float[] gridVertices(Random random) {
+		float[] v = new float[(GRID + 1) * (GRID + 1) * 3];
+		for (int i = 0; i <= GRID; i++) {
+			for (int j = 0; j <= GRID; j++) {
+				int p = (i * (GRID + 1) + j) * 3;
+				v[p] = i * 0.25f - 2;
+				v[p + 1] = j * 0.25f - 2;
+				v[p + 2] = random.nextFloat() * 0.3f;
+			}
+		}
+		return v;
+	}
+
+	private static int[] gridIndices() {
+		int[] idx = new int[GRID * GRID * 6];
+		int n = 0;
+		for (int i = 0; i < GRID; i++) {
+			for (int j = 0; j < GRID; j++) {
+				int a = i * (GRID + 1) + j;
+				int b = a + GRID + 1;
+				idx[n++] = a; idx[n++] = b; idx[n++] = a + 1;
+				idx[n++] = a + 1; idx[n++] = b; idx[n++] = b + 1;
+			}
+		}
+		return idx;
+	}
+
+	private mat4f randomTransform() {
+		double q0 = random.nextGaussian(), q1 = random.nextGaussian();
+		double q2 = random.nextGaussian(), q3 = random.nextGaussian();
+		double l = Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+		q0 /= l; q1 /= l; q2 /= l; q3 /= l;
+		float[] f = new mat4f().f;
+		f[0] = (float) (1 - 2 * (q2 * q2 + q3 * q3));
+		f[1] = (float) (2 * (q1 * q2 - q0 * q3));
+		f[2] = (float) (2 * (q1 * q3 + q0 * q2));
+		f[4] = (float) (2 * (q1 * q2 + q0 * q3));
+		f[5] = (float) (1 - 2 * (q1 * q1 + q3 * q3));
+		f[6] = (float) (2 * (q2 * q3 - q0 * q1));
+		f[8] = (float) (2 * (q1 * q3 - q0 * q2));
+		f[9] = (float) (2 * (q2 * q3 + q0 * q1));
+		f[10] = (float) (1 - 2 * (q1 * q1 + q2 * q2));
+		f[3] = random.nextFloat() - 0.5f;
+		f[7] = random.nextFloat() - 0.5f;
+		f[11] = random.nextFloat() - 0.5f;
+		f[15] = 1;
+		mat4f m = new mat4f();
+		m.f = f;
+		return m;
+	}
+
+	private static int[] boxQuery(GimTrimesh mesh, aabb3f box) {
+		GimDynArrayInt result = GimDynArrayInt.GIM_CREATE_BOXQUERY_LIST();
+		mesh.gim_trimesh_box_query(box, result);
+		int[] found = new int[result.size()];
+		System.arraycopy(result.GIM_DYNARRAY_POINTER(), 0, found, 0, found.length);
+		return found;
+	}
+
+	private static double[] contacts(GimTrimesh mesh1, GimTrimesh mesh2) {
+		GimDynArray<GimContact> contacts = GimContact.GIM_CREATE_CONTACT_LIST();
+		mesh1.gim_trimesh_trimesh_collision(mesh2, contacts);
+		double[] out = new double[contacts.size() * 4];
+		for (int i = 0; i < contacts.size(); i++) {
+			GimContact c = contacts.GIM_DYNARRAY_POINTER_V().at(i);
+			out[i * 4] = c.getFeature1();
+			out[i * 4 + 1] = c.getFeature2();
+			out[i * 4 + 2] = c.getDepth();
+			out[i * 4 + 3] = c.getPoint().f[0] + c.getPoint().f[1] + c.getPoint().f[2];
+		}
+		return out;
+	}
+
+	private void compare(GimTrimesh[] bvh, GimTrimesh[] brute) {
+		int boxHits = 0;
+		int rayHits = 0;
+		int contactCount = 0;
+		for (int n = 0; n < 200; n++) {
+			mat4f t = randomTransform();
+			bvh[0].gim_trimesh_set_tranform(t);
+			brute[0].gim_trimesh_set_tranform(t);
+			bvh[0].gim_trimesh_update();
+			brute[0].gim_trimesh_update();
+
+			aabb3f box = new aabb3f();
+			box.minX = random.nextFloat() * 4 - 2;
+			box.minY = random.nextFloat() * 4 - 2;
+			box.minZ = random.nextFloat() * 4 - 2;
+			box.maxX = box.minX + random.nextFloat() * 0.8f;
+			box.maxY = box.minY + random.nextFloat() * 0.8f;
+			box.maxZ = box.minZ + random.nextFloat() * 0.8f;
+			int[] expected = boxQuery(brute[0], box);
+			assertArrayEquals(expected, boxQuery(bvh[0], box));
+			boxHits += expected.length;
+
+			vec3f origin = new vec3f();
+			vec3f dir = new vec3f();
+			for (int k = 0; k < 3; k++) {
+				origin.f[k] = random.nextFloat() * 4 - 2;
+				dir.f[k] = (float) random.nextGaussian();
+			}
+			float l = (float) Math.sqrt(dir.f[0] * dir.f[0] + dir.f[1] * dir.f[1] + dir.f[2] * dir.f[2]);
+			for (int k = 0; k < 3; k++) {
+				dir.f[k] /= l;
+			}
+			GIM_TRIANGLE_RAY_CONTACT_DATA c1 = new GIM_TRIANGLE_RAY_CONTACT_DATA();
+			GIM_TRIANGLE_RAY_CONTACT_DATA c2 = new GIM_TRIANGLE_RAY_CONTACT_DATA();
+			int hit1 = brute[0].gim_trimesh_ray_collision(origin, dir, 10, c1);
+			int hit2 = bvh[0].gim_trimesh_ray_collision(origin, dir, 10, c2);
+			assertEquals(hit1, hit2);
+			if (hit1 != 0) {
+				rayHits++;
+				assertEquals(c1.getFaceID(), c2.getFaceID());
+				assertEquals(c1.getTParam(), c2.getTParam(), 0);
+			}
+
+			mat4f t2 = randomTransform();
+			bvh[1].gim_trimesh_set_tranform(t2);
+			brute[1].gim_trimesh_set_tranform(t2);
+			bvh[1].gim_trimesh_update();
+			brute[1].gim_trimesh_update();
+			double[] expectedContacts = contacts(brute[0], brute[1]);
+			assertArrayEquals(expectedContacts, contacts(bvh[0], bvh[1]), 0);
+			contactCount += expectedContacts.length;
+		}
+		assertTrue(boxHits > 0);
+		assertTrue(rayHits > 0);
+		assertTrue(contactCount > 0);
+	}
+
+	@Test
+	public void testSameResultsAsBruteForce() {
+		float[] vertices = gridVertices(random);
+		int[] indices = gridIndices();
+		DxGimpactData data = new DxGimpactData();
+		data.build(vertices, indices);
+		GimBVH bvh = data.getBVH();
+		assertNotNull(bvh);
+		assertEquals(2 * indices.length / 3 - 1, bvh.gim_bvh_get_node_count());
+
+		GimTrimesh[] withBVH = new GimTrimesh[2];
+		GimTrimesh[] bruteForce = new GimTrimesh[2];
+		for (int i = 0; i < 2; i++) {
+			withBVH[i] = GimTrimesh.gim_trimesh_create_from_data(vertices, false, indices, false, true);
+			withBVH[i].gim_trimesh_set_bvh(bvh);
+			bruteForce[i] = GimTrimesh.gim_trimesh_create_from_data(vertices, false, indices, false, true);
+		}
+		compare(withBVH, bruteForce);
+
+		// deform the mesh, the tree is refitted
+		for (int i = 2; i < vertices.length; i += 3) {
+			vertices[i] += (float) Math.sin(vertices[i - 2] * 3) * 0.5f;
+		}
+		data.UpdateData(null);
+		for (int i = 0; i < 2; i++) {
+			withBVH[i].gim_trimesh_update_source_vertices(vertices);
+			bruteForce[i].gim_trimesh_update_source_vertices(vertices);
+		}
+		compare(withBVH, bruteForce);
+	}
+}
@@ -0,0 +1,124 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dPAD;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+
+public class SparseLCPTest {
+
+	/**
+	 * A = J*J' + cfm for a chain of bodies with 6 dofs, row i acts on bodies 
+	 * i/3 and i/3+1, i.e. three rows per joint. Only the lower triangle is set.
+	 */
+	private static double[] createChain(int n, Random rnd) {
+		int nb = n/3 + 2;
+		double[][] J = new double[n][6*nb];
+		for (int i = 0; i < n; i++) {
+			int b = i/3;
+			for (int k = 0; k < 12; k++) {
+				J[i][6*b + k] = rnd.nextDouble() - 0.5;
+			}
+		}
+		int nskip = dPAD(n);
+		double[] A = new double[n*nskip];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double s = i == j ? 1e-3 : 0;
+				for (int k = 0; k < 6*nb; k++) {
+					s += J[i][k]*J[j][k];
+				}
+				A[i*nskip + j] = s;
+			}
+		}
+		return A;
+	}
+
+	@Test
+	public void testFactorChainHasNoFillIn() {
+		int n = 300;
+		Random rnd = new Random(1);
+		double[] A = createChain(n, rnd);
+		int nskip = dPAD(n);
+		int[] rows = new int[n];
+		for (int i = 0; i < n; i++) {
+			rows[i] = i;
+		}
+		SparseLCP.Factor f = SparseLCP.Factor.create(A, nskip, rows);
+		assertTrue(f != null);
+		// the lower triangle of a block tridiagonal matrix with 3x3 blocks
+		assertTrue(f.getNonZeroCount() <= 3*n + 3*n);
+
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++) {
+			b[i] = rnd.nextDouble();
+		}
+		double[] x = b.clone();
+		f.solve(x);
+		for (int i = 0; i < n; i++) {
+			double s = 0;
+			for (int j = 0; j < n; j++) {
+				s += (i >= j ? A[i*nskip + j] : A[j*nskip + i]) * x[j];
+			}
+			assertEquals(b[i], s, 1e-9);
+		}
+	}
+
+	@Test
+	public void testMinimumDegreeOrderEliminatesLeavesFirst() {
+		// star: 0 is connected to 1..4
+		int[] Ap = {0, 4, 5, 6, 7, 8};
+		int[] Ai = {1, 2, 3, 4, 0, 0, 0, 0};
+		int[] order = SparseLCP.minimumDegreeOrder(5, Ap, Ai);
+		assertEquals(5, order.length);
+		assertTrue(order[0] != 0 && order[1] != 0 && order[2] != 0);
+	}
+
+	@Test
+	public void testSameSolutionAsDantzig() {
+		int n = 90;
+		Random rnd = new Random(7);
+		double[] A = createChain(n, rnd);
+		int nskip = dPAD(n);
+		double[] b = new double[n];
+		double[] lo = new double[n];
+		double[] hi = new double[n];
+		int[] findex = new int[n];
+		for (int i = 0; i < n; i++) {
+			b[i] = 2*rnd.nextDouble() - 1;
+			lo[i] = -dInfinity;
+			hi[i] = dInfinity;
+			findex[i] = -1;
+		}
+		// contacts with friction, a limit and a motor
+		for (int i = 30; i < 60; i += 6) {
+			lo[i] = 0;
+			for (int k = 1; k <= 2; k++) {
+				lo[i + k] = -0.5;
+				hi[i + k] = 0.5;
+				findex[i + k] = i;
+			}
+		}
+		lo[70] = 0;
+		lo[80] = -0.05;
+		hi[80] = 0.05;
+
+		DxWorldProcessMemArena arena = DxWorldProcessMemArena.allocateTemporary(-1, null, null);
+		double[] xs = new double[n];
+		SparseLCP.dSolveLCP(arena, n, A.clone(), xs, b.clone(), 0, lo.clone(), hi.clone(), findex.clone());
+		double[] xd = new double[n];
+		DLCP.dSolveLCP(arena, n, A.clone(), xd, b.clone(), null, 0, lo.clone(), hi.clone(), findex.clone());
+		DxWorldProcessMemArena.freeTemporary(arena);
+
+		for (int i = 0; i < n; i++) {
+			assertEquals("row " + i, xd[i], xs[i], 1e-6 * (1 + Math.abs(xd[i])));
+		}
+		assertTrue(!Arrays.equals(xd, new double[n]));
+	}
+}
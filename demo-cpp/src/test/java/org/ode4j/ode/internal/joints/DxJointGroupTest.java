@@ -0,0 +1,129 @@
+package org.ode4j.ode.internal.joints;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContact.DSurfaceParameters;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxWorld;
+
+public class DxJointGroupTest {
+
+	private static final int MAX_CONTACTS = 4;
+
+	private static class Scene {
+		final DWorld world = OdeHelper.createWorld();
+		final DSpace space = OdeHelper.createSimpleSpace();
+		final DJointGroup contacts = OdeHelper.createJointGroup();
+		final List<DBody> bodies = new ArrayList<DBody>();
+		final DSurfaceParameters surface = new DSurfaceParameters();
+		final DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+
+		Scene() {
+			world.setGravity(0, 0, -9.81);
+			surface.mode = OdeConstants.dContactApprox1 | OdeConstants.dContactBounce;
+			surface.mu = 0.7;
+			surface.bounce = 0.2;
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < 8; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				b.setPosition((i % 2) * 0.6, 0, 0.5 + i * 1.05);
+				OdeHelper.createBox(space, 1, 1, 1).setBody(b);
+				bodies.add(b);
+			}
+		}
+
+		void collide(final boolean pooled) {
+			contacts.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DBody b1 = o1.getBody();
+					DBody b2 = o2.getBody();
+					if (pooled) {
+						int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buffer);
+						OdeHelper.createContactJoints(world, contacts, b1, b2, surface, buffer, n);
+					} else {
+						DContactBuffer cb = new DContactBuffer(MAX_CONTACTS);
+						int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, cb.getGeomBuffer());
+						for (int i = 0; i < n; i++) {
+							DContact c = cb.get(i);
+							c.surface.set(surface);
+							OdeHelper.createContactJoint(world, contacts, c).attach(b1, b2);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private static int numJoints(DWorld world) {
+		return ((DxWorld) world).nj;
+	}
+
+	@Test
+	public void testPooledContactsSameAsContactJoints() {
+		OdeHelper.initODE2(0);
+		Scene plain = new Scene();
+		Scene pooled = new Scene();
+		for (int step = 0; step < 200; step++) {
+			plain.collide(false);
+			pooled.collide(true);
+			assertEquals(numJoints(plain.world), numJoints(pooled.world));
+			plain.world.quickStep(0.01);
+			pooled.world.quickStep(0.01);
+		}
+		for (int i = 0; i < plain.bodies.size(); i++) {
+			for (int k = 0; k < 3; k++) {
+				assertEquals(Double.doubleToLongBits(plain.bodies.get(i).getPosition().get(k)),
+						Double.doubleToLongBits(pooled.bodies.get(i).getPosition().get(k)));
+			}
+		}
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testPoolIsReused() {
+		OdeHelper.initODE2(0);
+		Scene scene = new Scene();
+		DxJointGroup group = (DxJointGroup) scene.contacts;
+		int maxJoints = 0;
+		for (int step = 0; step < 100; step++) {
+			scene.collide(true);
+			maxJoints = Math.max(maxJoints, numJoints(scene.world));
+			assertEquals(numJoints(scene.world), group.getJointCount());
+			scene.world.quickStep(0.01);
+		}
+		assertTrue(maxJoints > 0);
+		// the pool never holds more joints than were used at the same time
+		assertEquals(maxJoints, group.getContactPoolSize());
+
+		ArrayList<DxJoint> joints = new ArrayList<DxJoint>();
+		group.exportJoints(joints);
+		DxJointContact j = (DxJointContact) joints.get(0);
+		scene.contacts.empty();
+		assertEquals(0, numJoints(scene.world));
+		assertNull(j.contact.geom.g1);
+		assertNull(j.getBody(0));
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,47 @@
+package org.ode4j.ode.internal.processmem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DxWorldProcessIslandsInfoTest {
+
+	@Test
+	public void testCostOrderedSchedule() {
+		// bodies, joints per island
+		int[] sizes = {
+				1, 0,
+				5, 4,
+				2, 1,
+				5, 4,
+				9, 8,
+				1, 0,
+		};
+		int n = sizes.length / 2;
+		int[] schedule = new int[n * DxWorldProcessIslandsInfo.dxISS__MAX];
+		DxWorldProcessIslandsInfo.BuildCostOrderedSchedule(n, sizes, schedule);
+
+		int[] expectedOrder = {4, 1, 3, 2, 0, 5};
+		int[] bodyStart = {0, 1, 6, 8, 13, 22};
+		int[] jointStart = {0, 0, 4, 5, 9, 17};
+		long prevCost = Long.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			int p = i * DxWorldProcessIslandsInfo.dxISS__MAX;
+			int island = schedule[p + DxWorldProcessIslandsInfo.dxISS_ISLAND_INDEX];
+			assertEquals(expectedOrder[i], island);
+			assertEquals(bodyStart[island], schedule[p + DxWorldProcessIslandsInfo.dxISS_BODIES_START]);
+			assertEquals(jointStart[island], schedule[p + DxWorldProcessIslandsInfo.dxISS_JOINTS_START]);
+			long cost = DxWorldProcessIslandsInfo.EstimateIslandCost(sizes[2 * island], sizes[2 * island + 1]);
+			assertTrue(cost <= prevCost);
+			prevCost = cost;
+		}
+	}
+
+	@Test
+	public void testCostGrowsWithBodiesAndJoints() {
+		assertTrue(DxWorldProcessIslandsInfo.EstimateIslandCost(1, 0) > 0);
+		assertTrue(DxWorldProcessIslandsInfo.EstimateIslandCost(2, 1) > DxWorldProcessIslandsInfo.EstimateIslandCost(1, 1));
+		assertTrue(DxWorldProcessIslandsInfo.EstimateIslandCost(2, 2) > DxWorldProcessIslandsInfo.EstimateIslandCost(2, 1));
+	}
+}
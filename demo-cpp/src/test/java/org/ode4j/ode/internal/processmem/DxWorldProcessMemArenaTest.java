@@ -0,0 +1,181 @@
+package org.ode4j.ode.internal.processmem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DPlane2DJoint;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class DxWorldProcessMemArenaTest {
+
+	@Test
+	public void testSaveRestoreReusesSlots() {
+		DxWorldProcessMemArena arena = DxWorldProcessMemArena.allocateTemporary(-1, null, null);
+		int state = arena.SaveState();
+		double[] d1 = arena.AllocateArrayDReal(10);
+		int[] i1 = arena.AllocateArrayInt(5);
+		assertTrue(d1.length >= 10);
+		assertTrue(i1.length >= 5);
+		d1[3] = 7;
+		i1[4] = 9;
+		arena.RestoreState(state);
+
+		double[] d2 = arena.AllocateArrayDReal(8);
+		int[] i2 = arena.AllocateArrayInt(5);
+		assertSame(d1, d2);
+		assertSame(i1, i2);
+		// Memory handed out again must look like a fresh allocation
+		assertEquals(0, d2[3], 0);
+		assertEquals(0, i2[4]);
+		DxWorldProcessMemArena.freeTemporary(arena);
+	}
+
+	@Test
+	public void testGrowAndHighWater() {
+		DxWorldProcessMemArena arena = DxWorldProcessMemArena.allocateTemporary(-1, null, null);
+		double[] d1 = arena.AllocateArrayDReal(10);
+		arena.AllocateArrayInt(4);
+		assertEquals(10 * 8 + 4 * 4, arena.GetHighWaterBytes());
+		long allocs = arena.GetSlabAllocationCount();
+		arena.ResetState();
+
+		double[] d2 = arena.AllocateArrayDReal(1000);
+		assertNotSame(d1, d2);
+		assertEquals(allocs + 1, arena.GetSlabAllocationCount());
+		assertEquals(1000 * 8, arena.GetHighWaterBytes());
+
+		arena.ResetState();
+		// a different type in the same slot replaces the slot
+		arena.AllocateArrayInt(3);
+		assertEquals(allocs + 2, arena.GetSlabAllocationCount());
+		DxWorldProcessMemArena.freeTemporary(arena);
+	}
+
+	@Test
+	public void testSteadyStateQuickStepKeepsArenaSlots() {
+		checkSteadyStateKeepsArenaSlots(true);
+	}
+
+	@Test
+	public void testSteadyStateStepKeepsArenaSlots() {
+		checkSteadyStateKeepsArenaSlots(false);
+	}
+
+	private void checkSteadyStateKeepsArenaSlots(boolean quickStep) {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		DBody prev = null;
+		for (int i = 0; i < 10; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setSphere(1, 0.2);
+			b.setMass(m);
+			b.setPosition(0, i * 0.5, 5);
+			if (prev != null) {
+				DHingeJoint h = OdeHelper.createHingeJoint(world);
+				h.attach(prev, b);
+				h.setAnchor(0, i * 0.5 - 0.25, 5);
+				h.setAxis(1, 0, 0);
+			}
+			prev = b;
+		}
+		assertEquals(0, world.getStepMemoryHighWaterMark());
+
+		for (int i = 0; i < 3; i++) {
+			step(world, quickStep);
+		}
+		long allocs = world.getStepMemoryAllocationCount();
+		long highWater = world.getStepMemoryHighWaterMark();
+		assertTrue(allocs > 0);
+		assertTrue(highWater > 0);
+
+		for (int i = 0; i < 20; i++) {
+			step(world, quickStep);
+		}
+		assertEquals(allocs, world.getStepMemoryAllocationCount());
+		assertEquals(highWater, world.getStepMemoryHighWaterMark());
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testQuickStepHeapAllocationDoesNotGrowWithIsland() {
+		checkHeapAllocationDoesNotGrowWithIsland(true);
+	}
+
+	@Test
+	public void testStepHeapAllocationDoesNotGrowWithIsland() {
+		checkHeapAllocationDoesNotGrowWithIsland(false);
+	}
+
+	/**
+	 * Measures the real heap allocation of the stepping thread. The island is
+	 * a chain of bodies linked by Plane2D joints, whose getInfo2() does not
+	 * allocate, so anything that grows with the island size comes from the
+	 * stepper itself. What remains per step is the constant island dispatch.
+	 */
+	private void checkHeapAllocationDoesNotGrowWithIsland(boolean quickStep) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+		if (!mx.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		mx.setThreadAllocatedMemoryEnabled(true);
+		OdeHelper.initODE2(0);
+		long small = allocatedBytesPerStep(mx, 4, quickStep);
+		long large = allocatedBytesPerStep(mx, 32, quickStep);
+		OdeHelper.closeODE();
+		assertTrue("small=" + small + " large=" + large, large <= small + 64);
+	}
+
+	private static long allocatedBytesPerStep(com.sun.management.ThreadMXBean mx, 
+			int bodies, boolean quickStep) {
+		DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, -9.81, 0);
+		DBody prev = null;
+		for (int i = 0; i < bodies; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setSphere(1, 0.2);
+			b.setMass(m);
+			b.setPosition(i * 0.5, 0, 0);
+			DPlane2DJoint p = OdeHelper.createPlane2DJoint(world);
+			p.attach(b, prev);
+			prev = b;
+		}
+		final int steps = 100;
+		for (int i = 0; i < steps; i++) {
+			step(world, quickStep);
+		}
+		long threadId = Thread.currentThread().getId();
+		long before = mx.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < steps; i++) {
+			step(world, quickStep);
+		}
+		long after = mx.getThreadAllocatedBytes(threadId);
+		world.destroy();
+		return (after - before) / steps;
+	}
+
+	private static void step(DWorld world, boolean quickStep) {
+		if (quickStep) {
+			world.quickStep(0.01);
+		} else {
+			world.step(0.01);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class AdaptiveSubstepsTest {
+
+	private static final double STEP = 0.02;
+
+	private static DBody createBody(DWorld world, double mass, double x, double y, double z) {
+		DBody b = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setSphereTotal(mass, 0.1);
+		b.setMass(m);
+		b.setPosition(x, y, z);
+		return b;
+	}
+
+	/**
+	 * Swings a light chain with a heavy ball at its end from a fixed point, 
+	 * next to a body that falls freely in its own island.
+	 * @return the largest distance of the anchors of a ball joint, and the 
+	 * final height of the falling body
+	 */
+	private static double[] swing(int maxSubsteps) {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setAdaptiveSubsteps(maxSubsteps);
+		assertEquals(maxSubsteps, world.getAdaptiveSubsteps());
+		DBallJoint[] joints = new DBallJoint[6];
+		DBody prev = null;
+		for (int i = 0; i < joints.length; i++) {
+			DBody link = createBody(world, i == joints.length - 1 ? 100 : 1, (i + 1) * 0.5, 0, 5);
+			joints[i] = OdeHelper.createBallJoint(world);
+			joints[i].attach(link, prev);
+			joints[i].setAnchor(i * 0.5, 0, 5);
+			prev = link;
+		}
+		DBody falling = createBody(world, 1, 10, 10, 5);
+
+		double error = 0;
+		DVector3 a1 = new DVector3(), a2 = new DVector3();
+		for (int step = 0; step < 50; step++) {
+			world.quickStep(STEP);
+			for (DBallJoint j : joints) {
+				j.getAnchor(a1);
+				j.getAnchor2(a2);
+				error = Math.max(error, a1.distance(a2));
+			}
+		}
+		double z = falling.getPosition().get2();
+		OdeHelper.closeODE();
+		return new double[] {error, z};
+	}
+
+	@Test
+	public void testOnlyStiffIslandIsSubstepped() {
+		double[] single = swing(1);
+		double[] sub = swing(8);
+		assertTrue("error " + single[0] + " " + sub[0], sub[0] < 0.6 * single[0]);
+		assertEquals(single[1], sub[1], 0);
+	}
+
+	@Test
+	public void testForcesActDuringAllSubsteps() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setAdaptiveSubsteps(8);
+		DBody body = createBody(world, 2, 0, 0, 0);
+		// a fast rotation enforces substeps
+		body.setAngularVel(0, 0, 100);
+		body.addForce(1, 0, 0);
+		world.quickStep(STEP);
+		assertEquals(STEP / 2, body.getLinearVel().get0(), 1e-12);
+		assertEquals(0, body.getForce().get0(), 0);
+		OdeHelper.closeODE();
+	}
+
+	/**
+	 * @return height of a fast ball with a sphere geom after one step
+	 */
+	private static double fly(int maxSubsteps, double ccdRadius) {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setAdaptiveSubsteps(maxSubsteps);
+		DSpace space = OdeHelper.createHashSpace();
+		DBody ball = createBody(world, 1, 0, 0, 0);
+		DGeom sphere = OdeHelper.createSphere(space, 0.1);
+		sphere.setBody(ball);
+		ball.setContinuousCollisionRadius(ccdRadius);
+		ball.setLinearVel(0, 0, 50);
+		// the broadphase computes the (swept) AABB before the step
+		space.collide(null, new DGeom.DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {}
+		});
+		world.quickStep(STEP);
+		double z = ball.getPosition().get2();
+		OdeHelper.closeODE();
+		return z;
+	}
+
+	@Test
+	public void testTravelUsesSizeOfUnsweptGeoms() {
+		// the ball moves 5 times its size per step
+		assertTrue(fly(8, 0) != fly(1, 0));
+		// a swept ball is left to continuous collision
+		assertEquals(fly(1, 0.1), fly(8, 0.1), 0);
+	}
+
+	@Test
+	public void testContactsMoveWithBodies() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setAdaptiveSubsteps(8);
+		DSpace space = OdeHelper.createHashSpace();
+		DGeom plane = OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody ball = createBody(world, 1, 0, 0, 0.09);
+		DGeom sphere = OdeHelper.createSphere(space, 0.1);
+		sphere.setBody(ball);
+		DJointGroup group = OdeHelper.createJointGroup();
+		for (int step = 0; step < 20; step++) {
+			// a spinning ball that starts 1 cm inside the ground
+			ball.setAngularVel(0, 0, 100);
+			group.empty();
+			DContactBuffer cb = new DContactBuffer(4);
+			int n = OdeHelper.collide(sphere, plane, 4, cb.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact c = cb.get(i);
+				c.surface.mu = 0;
+				OdeHelper.createContactJoint(world, group, c).attach(ball, null);
+			}
+			world.quickStep(STEP);
+			// the penetration is resolved once, not once per substep
+			assertTrue("z=" + ball.getPosition().get2(), ball.getPosition().get2() < 0.1 + 0.005);
+		}
+		OdeHelper.closeODE();
+	}
+}
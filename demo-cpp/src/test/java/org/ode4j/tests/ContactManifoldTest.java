@@ -0,0 +1,227 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DContactManifold;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class ContactManifoldTest {
+
+	/**
+	 * Fills the buffer with a 3x3 grid of contacts in the plane z = 0.
+	 * @param reversed whether the grid is filled in reverse order
+	 */
+	private static void fillGrid(DContactGeomBuffer contacts, double[] depths, boolean reversed) {
+		for (int i = 0; i < 9; i++) {
+			int k = reversed ? 8 - i : i;
+			DContactGeom c = contacts.get(i);
+			c.pos.set(k % 3, k / 3, 0);
+			c.normal.set(0, 0, 1);
+			c.depth = depths[k];
+		}
+	}
+
+	private static Set<String> positions(DContactGeomBuffer contacts, int n) {
+		Set<String> set = new HashSet<String>();
+		for (int i = 0; i < n; i++) {
+			DVector3C p = contacts.get(i).pos;
+			set.add(Math.round(p.get0()) + "," + Math.round(p.get1()));
+		}
+		return set;
+	}
+
+	private static Set<String> corners() {
+		Set<String> set = new HashSet<String>();
+		set.add("0,0");
+		set.add("2,0");
+		set.add("0,2");
+		set.add("2,2");
+		return set;
+	}
+
+	@Test
+	public void testReduceKeepsDeepestAndCorners() {
+		OdeHelper.initODE2(0);
+		DGeom g1 = OdeHelper.createSphere(1);
+		DGeom g2 = OdeHelper.createSphere(1);
+		DContactManifold manifold = OdeHelper.createContactManifold(4);
+		DContactGeomBuffer contacts = new DContactGeomBuffer(9);
+		double[] depths = { 0.02, 0.01, 0.01, 0.01, 0.01, 0.01, 0.01, 0.01, 0.01 };
+		fillGrid(contacts, depths, false);
+		assertEquals(4, manifold.reduce(g1, g2, contacts, 9));
+		assertEquals(0.02, contacts.get(0).depth, 0);
+		assertEquals(corners(), positions(contacts, 4));
+
+		depths[4] = 0.05;
+		fillGrid(contacts, depths, false);
+		assertEquals(4, manifold.reduce(g1, g2, contacts, 9));
+		assertEquals(0.05, contacts.get(0).depth, 0);
+		assertTrue(positions(contacts, 4).contains("1,1"));
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testPersistence() {
+		OdeHelper.initODE2(0);
+		DGeom g1 = OdeHelper.createSphere(1);
+		DGeom g2 = OdeHelper.createSphere(1);
+		DContactManifold manifold = OdeHelper.createContactManifold(4);
+		DContactGeomBuffer contacts = new DContactGeomBuffer(9);
+		double[] depths = new double[9];
+		for (int i = 0; i < 9; i++) {
+			depths[i] = 0.01;
+		}
+		fillGrid(contacts, depths, false);
+		manifold.reduce(g1, g2, contacts, 9);
+		Set<String> first = positions(contacts, 4);
+		assertEquals(corners(), first);
+
+		// same contacts in another order and slightly deeper in the middle
+		depths[4] = 0.011;
+		fillGrid(contacts, depths, true);
+		assertEquals(4, manifold.reduce(g1, g2, contacts, 9));
+		assertEquals(first, positions(contacts, 4));
+		manifold.purge();
+
+		// without history the middle contact is kept
+		DContactManifold fresh = OdeHelper.createContactManifold(4);
+		fillGrid(contacts, depths, true);
+		fresh.reduce(g1, g2, contacts, 9);
+		assertFalse(first.equals(positions(contacts, 4)));
+
+		// the pair is forgotten after a frame without contacts
+		manifold.purge();
+		fillGrid(contacts, depths, true);
+		manifold.reduce(g1, g2, contacts, 9);
+		assertFalse(first.equals(positions(contacts, 4)));
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testSwappedPairKeepsHistory() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		DBody b1 = OdeHelper.createBody(world);
+		DBody b2 = OdeHelper.createBody(world);
+		b1.setPosition(1, 1, 1);
+		b2.setPosition(1, 1, -1);
+		DGeom g1 = OdeHelper.createSphere(1);
+		DGeom g2 = OdeHelper.createSphere(1);
+		g1.setBody(b1);
+		g2.setBody(b2);
+		DContactManifold manifold = OdeHelper.createContactManifold(4);
+		DContactGeomBuffer contacts = new DContactGeomBuffer(9);
+		double[] depths = new double[9];
+		for (int i = 0; i < 9; i++) {
+			depths[i] = 0.01;
+		}
+		fillGrid(contacts, depths, false);
+		manifold.reduce(g1, g2, contacts, 9);
+		Set<String> first = positions(contacts, 4);
+		assertEquals(corners(), first);
+
+		// the same pair reported in the other order, with reversed normals
+		depths[4] = 0.011;
+		fillGrid(contacts, depths, true);
+		for (int i = 0; i < 9; i++) {
+			contacts.get(i).normal.scale(-1);
+		}
+		assertEquals(4, manifold.reduce(g2, g1, contacts, 9));
+		assertEquals(first, positions(contacts, 4));
+
+		// and back
+		fillGrid(contacts, depths, false);
+		assertEquals(4, manifold.reduce(g1, g2, contacts, 9));
+		assertEquals(first, positions(contacts, 4));
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testBoxStack() {
+		OdeHelper.initODE2(0);
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		DSpace space = OdeHelper.createHashSpace();
+		final DJointGroup group = OdeHelper.createJointGroup();
+		final DContactManifold manifold = OdeHelper.createContactManifold(4);
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody[] bodies = new DBody[3];
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			bodies[i].setMass(m);
+			bodies[i].setPosition(0.05 * i, 0, 0.5 + i * 0.999);
+			OdeHelper.createBox(space, 1, 1, 1).setBody(bodies[i]);
+		}
+		final int[] maxCount = new int[1];
+		for (int step = 0; step < 300; step++) {
+			group.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DContactBuffer cb = new DContactBuffer(16);
+					int n = manifold.collide(o1, o2, 16, cb.getGeomBuffer());
+					maxCount[0] = Math.max(maxCount[0], n);
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						c.surface.mu = 0.5;
+						DJoint j = OdeHelper.createContactJoint(world, group, c);
+						j.attach(o1.getBody(), o2.getBody());
+					}
+				}
+			});
+			manifold.purge();
+			world.quickStep(0.01);
+		}
+		assertEquals(4, maxCount[0]);
+		for (int i = 0; i < bodies.length; i++) {
+			DVector3C p = bodies[i].getPosition();
+			assertEquals(0.05 * i, p.get0(), 0.05);
+			assertEquals(0.5 + i, p.get2(), 0.05);
+		}
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,146 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class ContinuousCollisionTest {
+
+	private static final double STEP = 1.0 / 30;
+	private static final double SPEED = 100;
+	private static final double WALL = 8.5;
+
+	private int speculative;
+
+	/**
+	 * Shoots a small sphere at a thin wall with 30 steps per second.
+	 * @return the final x position of the sphere
+	 */
+	private double shoot(boolean ccd, boolean quickStep) {
+		OdeHelper.initODE2(0);
+		final DWorld world = OdeHelper.createWorld();
+		DSpace space = OdeHelper.createHashSpace();
+		final DJointGroup group = OdeHelper.createJointGroup();
+		DGeom wall = OdeHelper.createBox(space, 0.02, 4, 4);
+		wall.setPosition(WALL, 0, 0);
+
+		DBody bullet = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setSphere(10, 0.05);
+		bullet.setMass(m);
+		OdeHelper.createSphere(space, 0.05).setBody(bullet);
+		bullet.setLinearVel(SPEED, 0, 0);
+		if (ccd) {
+			bullet.setContinuousCollisionRadius(0.05);
+		}
+		assertEquals(ccd ? 0.05 : 0, bullet.getContinuousCollisionRadius(), 0);
+
+		for (int step = 0; step < 10; step++) {
+			group.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DContactBuffer cb = new DContactBuffer(4);
+					int n = OdeHelper.collide(o1, o2, 4, cb.getGeomBuffer());
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						if (c.geom.speculative) {
+							speculative++;
+							assertTrue(c.geom.depth < 0);
+						}
+						c.surface.mu = 0.5;
+						DJoint j = OdeHelper.createContactJoint(world, group, c);
+						j.attach(o1.getBody(), o2.getBody());
+					}
+				}
+			});
+			if (quickStep) {
+				world.quickStep(STEP);
+			} else {
+				world.step(STEP);
+			}
+		}
+		double x = bullet.getPosition().get0();
+		OdeHelper.closeODE();
+		return x;
+	}
+
+	@Test
+	public void testTunnelingWithoutContinuousCollision() {
+		double x = shoot(false, true);
+		assertTrue("x=" + x, x > WALL + 1);
+		assertEquals(0, speculative);
+	}
+
+	@Test
+	public void testStopsAtWallWithQuickStep() {
+		double x = shoot(true, true);
+		assertTrue(speculative > 0);
+		assertTrue("x=" + x, x < WALL - 0.01 - 0.05 + 1e-3);
+		assertTrue("x=" + x, x > WALL - 1);
+	}
+
+	@Test
+	public void testStopsAtWallWithStep() {
+		double x = shoot(true, false);
+		assertTrue(speculative > 0);
+		assertTrue("x=" + x, x < WALL - 0.01 - 0.05 + 1e-3);
+		assertTrue("x=" + x, x > WALL - 1);
+	}
+
+	@Test
+	public void testSweptAABB() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		DSpace space = OdeHelper.createHashSpace();
+		DBody body = OdeHelper.createBody(world);
+		DGeom sphere = OdeHelper.createSphere(space, 0.5);
+		sphere.setBody(body);
+		body.setLinearVel(0, -30, 0);
+		body.setContinuousCollisionRadius(0.5);
+		// nothing is swept before the first step
+		assertEquals(-0.5, sphere.getAABB().getMin1(), 1e-12);
+		world.step(0.1);
+		DAABBC aabb = sphere.getAABB();
+		double y = body.getPosition().get1();
+		assertEquals(y - 0.5 - 3, aabb.getMin1(), 1e-9);
+		assertEquals(y + 0.5, aabb.getMax1(), 1e-9);
+		assertEquals(-0.5, aabb.getMin0(), 1e-9);
+		OdeHelper.closeODE();
+	}
+}
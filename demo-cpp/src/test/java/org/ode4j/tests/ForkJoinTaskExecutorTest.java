@@ -0,0 +1,140 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+
+/**
+ * Steps worlds with many islands of different size on a
+ * {@link ForkJoinTaskExecutor}.
+ */
+public class ForkJoinTaskExecutorTest {
+
+	private static final int N_STEPS = 50;
+
+	private static List<DBody> createChains(DWorld world) {
+		List<DBody> bodies = new ArrayList<DBody>();
+		world.setGravity(0, 0, -9.81);
+		// chains of very different length, the longest one in the middle
+		int[] lengths = {1, 3, 1, 2, 40, 1, 5, 1, 1, 12, 2, 1};
+		for (int c = 0; c < lengths.length; c++) {
+			DBody prev = null;
+			for (int i = 0; i < lengths[c]; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setSphere(1, 0.2);
+				b.setMass(m);
+				b.setPosition(c * 2, i * 0.5, 5);
+				b.setAngularVel(0.1 * c, 0, 0);
+				if (prev != null) {
+					DHingeJoint h = OdeHelper.createHingeJoint(world);
+					h.attach(prev, b);
+					h.setAnchor(c * 2, i * 0.5 - 0.25, 5);
+					h.setAxis(1, 0, 0);
+				}
+				bodies.add(b);
+				prev = b;
+			}
+		}
+		return bodies;
+	}
+
+	@Test
+	public void testStepEqualsSameThread() {
+		OdeHelper.initODE2(0);
+		DWorld reference = OdeHelper.createWorld();
+		List<DBody> b1 = createChains(reference);
+		DWorld world = OdeHelper.createWorld();
+		world.setTaskExecutor(new ForkJoinTaskExecutor(4));
+		List<DBody> b2 = createChains(world);
+
+		for (int i = 0; i < N_STEPS; i++) {
+			reference.step(0.01);
+			world.step(0.01);
+		}
+		for (int i = 0; i < b1.size(); i++) {
+			DVector3C p1 = b1.get(i).getPosition();
+			DVector3C p2 = b2.get(i).getPosition();
+			for (int k = 0; k < 3; k++) {
+				assertEquals(Double.doubleToLongBits(p1.get(k)), Double.doubleToLongBits(p2.get(k)));
+			}
+		}
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testQuickStep() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		world.setTaskExecutor(new ForkJoinTaskExecutor(4));
+		List<DBody> bodies = createChains(world);
+		for (int i = 0; i < N_STEPS; i++) {
+			assertTrue(world.quickStep(0.01));
+		}
+		for (DBody b : bodies) {
+			assertTrue(b.getPosition().get2() < 5);
+			assertFalse(Double.isNaN(b.getPosition().get2()));
+		}
+		OdeHelper.closeODE();
+	}
+
+	@Test(timeout = 20000)
+	public void testStepFromInsidePool() throws Exception {
+		OdeHelper.initODE2(0);
+		// A single worker must run the island tasks itself instead of waiting for them
+		ForkJoinPool pool = new ForkJoinPool(1);
+		final DWorld world = OdeHelper.createWorld();
+		world.setTaskExecutor(new ForkJoinTaskExecutor(pool));
+		final List<DBody> bodies = createChains(world);
+		boolean ok = pool.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				boolean ok = true;
+				for (int i = 0; i < N_STEPS; i++) {
+					ok &= world.quickStep(0.01);
+				}
+				return ok;
+			}
+		}).get();
+		assertTrue(ok);
+		assertTrue(bodies.get(0).getPosition().get2() < 5);
+		pool.shutdown();
+		OdeHelper.closeODE();
+	}
+}
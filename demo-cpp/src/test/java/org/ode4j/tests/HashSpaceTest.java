@@ -0,0 +1,104 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHashSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Checks that the hash space reports the same potentially colliding pairs 
+ * as the simple space, each pair exactly once, also when its working 
+ * memory is reused between calls.
+ */
+public class HashSpaceTest {
+
+	private static final int N_GEOMS = 400;
+
+	private static Set<String> collide(DSpace space, final boolean checkDuplicates) {
+		final Set<String> pairs = new HashSet<String>();
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				int i1 = (Integer) o1.getData();
+				int i2 = (Integer) o2.getData();
+				String key = Math.min(i1, i2) + "/" + Math.max(i1, i2);
+				boolean added = pairs.add(key);
+				if (checkDuplicates) {
+					assertTrue("duplicate pair " + key, added);
+				}
+			}
+		});
+		return pairs;
+	}
+
+	@Test
+	public void testSamePairsAsSimpleSpace() {
+		OdeHelper.initODE2(0);
+		DHashSpace hash = OdeHelper.createHashSpace();
+		hash.setLevels(-2, 3);
+		DSpace simple = OdeHelper.createSimpleSpace();
+		Random r = new Random(42);
+		DGeom[] hg = new DGeom[N_GEOMS];
+		DGeom[] sg = new DGeom[N_GEOMS];
+		for (int i = 0; i < N_GEOMS; i++) {
+			// mostly small geoms, a few that span several levels or do
+			// not fit into the hash table at all
+			double size = i % 50 == 0 ? 20 : i % 10 == 0 ? 3 : 0.1 + r.nextDouble() * 0.5;
+			hg[i] = OdeHelper.createBox(hash, size, size, size);
+			sg[i] = OdeHelper.createBox(simple, size, size, size);
+			hg[i].setData(i);
+			sg[i].setData(i);
+		}
+		hg[0] = OdeHelper.createPlane(hash, 0, 0, 1, 0);
+		sg[0] = OdeHelper.createPlane(simple, 0, 0, 1, 0);
+		hg[0].setData(N_GEOMS);
+		sg[0].setData(N_GEOMS);
+
+		for (int round = 0; round < 5; round++) {
+			double extent = 5 + round * 5;
+			for (int i = 1; i < N_GEOMS; i++) {
+				double x = (r.nextDouble() - 0.5) * extent;
+				double y = (r.nextDouble() - 0.5) * extent;
+				double z = (r.nextDouble() - 0.5) * extent;
+				hg[i].setPosition(x, y, z);
+				sg[i].setPosition(x, y, z);
+			}
+			Set<String> expected = collide(simple, false);
+			Set<String> actual = collide(hash, true);
+			assertTrue(expected.size() > 0);
+			assertEquals(expected, actual);
+		}
+		OdeHelper.closeODE();
+	}
+}
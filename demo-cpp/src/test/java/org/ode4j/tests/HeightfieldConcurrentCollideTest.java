@@ -0,0 +1,147 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Collides many geoms with one heightfield from several threads at once and
+ * checks that the contacts are identical to colliding them one after another.
+ */
+public class HeightfieldConcurrentCollideTest {
+
+	private static final int N_GEOMS = 240;
+	private static final int N_THREADS = 6;
+	private static final int N_ROUNDS = 20;
+	private static final int MAX_CONTACTS = 16;
+
+	@Test
+	public void testConcurrentEqualsSequential() throws Exception {
+		OdeHelper.initODE2(0);
+		double[] heights = new double[64 * 64];
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = 0.4 * Math.sin(i * 0.37) + 0.3 * Math.cos(i / 64 * 0.5);
+		}
+		DHeightfieldData hfData = OdeHelper.createHeightfieldData();
+		hfData.build(heights, false, 32, 32, 64, 64, 1, 0, 1, false);
+		final DHeightfield hf = OdeHelper.createHeightfield(null, hfData, true);
+		DMatrix3 R = new DMatrix3();
+		DRotation.dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+		hf.setRotation(R);
+
+		// geoms of very different sizes, so that the zones and with them
+		// the scratch buffers of the threads differ from call to call
+		Random r = new Random(11);
+		final List<DGeom> geoms = new ArrayList<DGeom>();
+		for (int i = 0; i < N_GEOMS; i++) {
+			double size = 0.2 + r.nextDouble() * (i % 5 == 0 ? 4 : 0.8);
+			DGeom g;
+			switch (i % 4) {
+			case 0: g = OdeHelper.createBox(null, size, size * 0.7, size * 1.2); break;
+			case 1: g = OdeHelper.createSphere(null, size * 0.5); break;
+			case 2: g = OdeHelper.createCapsule(null, size * 0.3, size); break;
+			default: g = OdeHelper.createCylinder(null, size * 0.4, size); break;
+			}
+			g.setPosition(r.nextDouble() * 28 - 14, r.nextDouble() * 28 - 14, r.nextDouble() * 1.6 - 0.6);
+			DRotation.dRFromAxisAndAngle(R, r.nextDouble(), r.nextDouble(), r.nextDouble() + 0.1, r.nextDouble() * 3);
+			g.setRotation(R);
+			geoms.add(g);
+		}
+
+		DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+		final double[][] expected = new double[N_GEOMS][];
+		int total = 0;
+		for (int i = 0; i < N_GEOMS; i++) {
+			expected[i] = collide(hf, geoms.get(i), buffer);
+			total += expected[i].length / 7;
+		}
+		assertTrue(total > N_GEOMS / 2);
+
+		// every thread collides its own geoms, all with the same heightfield
+		ExecutorService pool = Executors.newFixedThreadPool(N_THREADS);
+		try {
+			List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>();
+			for (int t = 0; t < N_THREADS; t++) {
+				final int thread = t;
+				futures.add(pool.submit(new Callable<double[][]>() {
+					@Override
+					public double[][] call() {
+						DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+						double[][] result = new double[N_GEOMS][];
+						for (int round = 0; round < N_ROUNDS; round++) {
+							for (int i = thread; i < N_GEOMS; i += N_THREADS) {
+								result[i] = collide(hf, geoms.get(i), buffer);
+								if (!java.util.Arrays.equals(result[i], expected[i])) {
+									return result;
+								}
+							}
+						}
+						return result;
+					}
+				}));
+			}
+			for (int t = 0; t < N_THREADS; t++) {
+				double[][] result = futures.get(t).get();
+				for (int i = t; i < N_GEOMS; i += N_THREADS) {
+					assertArrayEquals(expected[i], result[i], 0);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		OdeHelper.closeODE();
+	}
+
+	private static double[] collide(DHeightfield hf, DGeom g, DContactGeomBuffer buffer) {
+		int n = OdeHelper.collide(hf, g, MAX_CONTACTS, buffer);
+		double[] result = new double[n * 7];
+		for (int i = 0; i < n; i++) {
+			DContactGeom c = buffer.get(i);
+			for (int k = 0; k < 3; k++) {
+				result[i * 7 + k] = c.pos.get(k);
+				result[i * 7 + 3 + k] = c.normal.get(k);
+			}
+			result[i * 7 + 6] = c.depth;
+		}
+		return result;
+	}
+}
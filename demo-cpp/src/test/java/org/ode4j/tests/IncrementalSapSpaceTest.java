@@ -0,0 +1,180 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Moves, adds and removes geoms in an incremental SAP space over many 
+ * frames and checks that it reports the same pairs as the simple space.
+ */
+public class IncrementalSapSpaceTest {
+
+	private static final long STATIC = 1 << 4;
+
+	private static Set<String> collide(DSpace space, final boolean checkDuplicates) {
+		final Set<String> pairs = new HashSet<String>();
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				int i1 = (Integer) o1.getData();
+				int i2 = (Integer) o2.getData();
+				String key = Math.min(i1, i2) + "/" + Math.max(i1, i2);
+				boolean added = pairs.add(key);
+				if (checkDuplicates) {
+					assertTrue("duplicate pair " + key, added);
+				}
+			}
+		});
+		return pairs;
+	}
+
+	private static Set<String> withoutStaticPairs(Set<String> pairs, List<DGeom> geoms) {
+		Set<String> result = new HashSet<String>();
+		for (String p : pairs) {
+			String[] ids = p.split("/");
+			DGeom g1 = find(geoms, Integer.parseInt(ids[0]));
+			DGeom g2 = find(geoms, Integer.parseInt(ids[1]));
+			if ((g1.getCategoryBits() & STATIC) == 0 || (g2.getCategoryBits() & STATIC) == 0) {
+				result.add(p);
+			}
+		}
+		return result;
+	}
+
+	private static DGeom find(List<DGeom> geoms, int id) {
+		for (DGeom g : geoms) {
+			if ((Integer) g.getData() == id) {
+				return g;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	@Test
+	public void testSamePairsAsSimpleSpace() {
+		OdeHelper.initODE2(0);
+		DSpace sap = OdeHelper.createIncrementalSapSpace(STATIC);
+		DSpace simple = OdeHelper.createSimpleSpace();
+		List<DGeom> sg = new ArrayList<DGeom>();
+		List<DGeom> ig = new ArrayList<DGeom>();
+		Random r = new Random(7);
+		int nextId = 0;
+
+		DGeom p1 = OdeHelper.createPlane(sap, 0, 0, 1, 0);
+		DGeom p2 = OdeHelper.createPlane(simple, 0, 0, 1, 0);
+		p1.setCategoryBits(1);
+		p2.setCategoryBits(1);
+		p1.setData(nextId);
+		p2.setData(nextId++);
+		ig.add(p1);
+		sg.add(p2);
+
+		for (int frame = 0; frame < 60; frame++) {
+			// add some geoms
+			int add = frame == 0 ? 200 : r.nextInt(5);
+			for (int i = 0; i < add; i++) {
+				double size = 0.2 + r.nextDouble() * (i % 20 == 0 ? 4 : 1);
+				DGeom a = OdeHelper.createBox(sap, size, size, size);
+				DGeom b = OdeHelper.createBox(simple, size, size, size);
+				a.setData(nextId);
+				b.setData(nextId++);
+				long category = r.nextInt(10) == 0 ? STATIC : 1;
+				a.setCategoryBits(category);
+				b.setCategoryBits(category);
+				double x = (r.nextDouble() - 0.5) * 10;
+				double y = (r.nextDouble() - 0.5) * 10;
+				double z = (r.nextDouble() - 0.5) * 10;
+				a.setPosition(x, y, z);
+				b.setPosition(x, y, z);
+				ig.add(a);
+				sg.add(b);
+			}
+			// remove some geoms
+			int remove = frame == 0 ? 0 : r.nextInt(4);
+			for (int i = 0; i < remove; i++) {
+				int k = 1 + r.nextInt(ig.size() - 1);
+				ig.remove(k).destroy();
+				sg.remove(k).destroy();
+			}
+			// move most geoms a little, a few a lot, disable some
+			for (int i = 1; i < ig.size(); i++) {
+				DGeom a = ig.get(i);
+				DGeom b = sg.get(i);
+				double step = r.nextInt(50) == 0 ? 8 : 0.1;
+				double x = a.getPosition().get0() + (r.nextDouble() - 0.5) * step;
+				double y = a.getPosition().get1() + (r.nextDouble() - 0.5) * step;
+				double z = a.getPosition().get2() + (r.nextDouble() - 0.5) * step;
+				if (r.nextInt(3) != 0) {
+					a.setPosition(x, y, z);
+					b.setPosition(x, y, z);
+				}
+				if (r.nextInt(100) == 0) {
+					if (a.isEnabled()) {
+						a.disable();
+						b.disable();
+					} else {
+						a.enable();
+						b.enable();
+					}
+				}
+			}
+			Set<String> expected = withoutStaticPairs(collide(simple, false), sg);
+			Set<String> actual = collide(sap, true);
+			assertTrue(expected.size() > 0);
+			assertEquals("frame " + frame, expected, actual);
+		}
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testTouchingBoxesOverlap() {
+		OdeHelper.initODE2(0);
+		DSpace sap = OdeHelper.createIncrementalSapSpace(0);
+		DGeom a = OdeHelper.createBox(sap, 1, 1, 1);
+		DGeom b = OdeHelper.createBox(sap, 1, 1, 1);
+		a.setData(0);
+		b.setData(1);
+		a.setPosition(0, 0, 0.5);
+		b.setPosition(0, 0, 1.5);
+		assertEquals(1, collide(sap, true).size());
+		b.setPosition(0, 0, 1.6);
+		assertEquals(0, collide(sap, true).size());
+		b.setPosition(0, 0, 1.5);
+		assertEquals(1, collide(sap, true).size());
+		OdeHelper.closeODE();
+	}
+}
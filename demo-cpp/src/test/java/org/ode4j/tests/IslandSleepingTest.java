@@ -0,0 +1,289 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DRay;
+import org.ode4j.ode.DRayCastResults;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Checks that islands go to sleep and wake up as a whole, and that the
+ * hash space does not report pairs of geoms that do not move.
+ */
+public class IslandSleepingTest {
+
+	private static final int N_STACK = 4;
+	private static final int MAX_STEPS = 1000;
+
+	private static class Scene implements DNearCallback {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contacts;
+		final List<DBody> stack1 = new ArrayList<DBody>();
+		final List<DBody> stack2 = new ArrayList<DBody>();
+
+		Scene(boolean islands) {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(20);
+			world.setAutoDisableFlag(true);
+			world.setAutoDisableAverageSamplesCount(5);
+			world.setAutoDisableLinearThreshold(0.05);
+			world.setAutoDisableAngularThreshold(0.05);
+			if (islands) {
+				world.setAutoDisableIslands(true);
+			}
+			space = OdeHelper.createHashSpace();
+			contacts = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < N_STACK; i++) {
+				stack1.add(createBox(0, 0, 0.5 + i * 0.999));
+				stack2.add(createBox(5, 0, 0.5 + i * 0.999));
+			}
+		}
+
+		DBody createBox(double x, double y, double z) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			b.setMass(m);
+			b.setPosition(x, y, z);
+			OdeHelper.createBox(space, 1, 1, 1).setBody(b);
+			return b;
+		}
+
+		void step() {
+			contacts.empty();
+			space.collide(null, this);
+			world.quickStep(0.01);
+		}
+
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			DContactBuffer buffer = new DContactBuffer(4);
+			int n = OdeHelper.collide(o1, o2, 4, buffer.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact c = buffer.get(i);
+				c.surface.mode = OdeConstants.dContactApprox1;
+				c.surface.mu = 0.8;
+				OdeHelper.createContactJoint(world, contacts, c).attach(o1.getBody(), o2.getBody());
+			}
+		}
+	}
+
+	private static int countEnabled(List<DBody> bodies) {
+		int n = 0;
+		for (DBody b : bodies) {
+			if (b.isEnabled()) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void assertAllOrNone(List<DBody> bodies) {
+		int n = countEnabled(bodies);
+		assertTrue("island partly disabled: " + n, n == 0 || n == bodies.size());
+	}
+
+	private static void sleepAll(Scene s) {
+		for (int step = 0; step < MAX_STEPS; step++) {
+			s.step();
+			assertAllOrNone(s.stack1);
+			assertAllOrNone(s.stack2);
+			if (countEnabled(s.stack1) == 0 && countEnabled(s.stack2) == 0) {
+				return;
+			}
+		}
+		throw new AssertionError("islands did not fall asleep");
+	}
+
+	@Test
+	public void testIslandSleepsAndWakesAsWhole() {
+		OdeHelper.initODE2(0);
+		Scene s = new Scene(true);
+		assertTrue(s.world.getAutoDisableIslands());
+		sleepAll(s);
+
+		// drop a sphere on the first stack
+		DBody ball = OdeHelper.createBody(s.world);
+		DMass m = OdeHelper.createMass();
+		m.setSphere(1, 0.3);
+		ball.setMass(m);
+		ball.setPosition(0, 0, N_STACK + 1);
+		ball.setAutoDisableFlag(false);
+		OdeHelper.createSphere(s.space, 0.3).setBody(ball);
+		boolean woken = false;
+		for (int step = 0; step < 200 && !woken; step++) {
+			s.step();
+			assertAllOrNone(s.stack1);
+			woken = countEnabled(s.stack1) == N_STACK;
+		}
+		assertTrue(woken);
+		assertEquals(0, countEnabled(s.stack2));
+
+		// enabling one body wakes the whole island
+		s.stack2.get(0).enable();
+		assertEquals(N_STACK, countEnabled(s.stack2));
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testHashSpaceSkipsParkedPairs() {
+		OdeHelper.initODE2(0);
+		Scene s = new Scene(true);
+		sleepAll(s);
+
+		// an awake box that moves through the second stack
+		DBody box = s.createBox(6, 0, 2);
+		box.setGravityMode(false);
+		for (int i = 0; i < 20; i++) {
+			box.setPosition(6.5 - i * 0.1, 0, 0.3 + i * 0.2);
+			assertEquals(expectedPairs(s.space), collidePairs(s.space));
+		}
+		// the ground and the parked stacks are not paired
+		for (String pair : collidePairs(s.space)) {
+			assertTrue(pair, pair.contains(box.toString()));
+		}
+
+		// rays still hit sleeping geoms
+		DRayCastResults results = new DRayCastResults(1);
+		s.space.rayCastBatch(new double[] { 0, 0, 10 }, new double[] { 0, 0, -1 }, 20, false, results);
+		assertTrue(results.isHit(0));
+		assertSame(s.stack1.get(N_STACK - 1), results.getGeom(0).getBody());
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testCollide2StillSeesParkedGeoms() {
+		OdeHelper.initODE2(0);
+		Scene s = new Scene(true);
+		sleepAll(s);
+
+		// a bodyless ray and a bodyless sensor queried with collide2()
+		DRay ray = OdeHelper.createRay(null, 1.5);
+		ray.set(0, 0, N_STACK + 1, 0, 0, -1);
+		assertEquals(1, countHits(s.space, ray));
+		DGeom sensor = OdeHelper.createSphere(null, 0.3);
+		sensor.setPosition(5, 0, N_STACK - 0.5);
+		assertEquals(1, countHits(s.space, sensor));
+		OdeHelper.closeODE();
+	}
+
+	private static int countHits(DSpace space, final DGeom query) {
+		final int[] hits = new int[1];
+		OdeHelper.spaceCollide2(query, space, null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				DContactBuffer buffer = new DContactBuffer(1);
+				if (OdeHelper.collide(o1, o2, 1, buffer.getGeomBuffer()) > 0) {
+					hits[0]++;
+				}
+			}
+		});
+		return hits[0];
+	}
+
+	private static Set<String> collidePairs(DSpace space) {
+		final Set<String> pairs = new HashSet<String>();
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				assertTrue(pairs.add(pairKey(o1, o2)));
+			}
+		});
+		return pairs;
+	}
+
+	private static Set<String> expectedPairs(DSpace space) {
+		List<DGeom> geoms = new ArrayList<DGeom>();
+		for (DGeom g : space.getGeoms()) {
+			geoms.add(g);
+		}
+		Set<String> pairs = new HashSet<String>();
+		for (int i = 0; i < geoms.size(); i++) {
+			for (int j = i + 1; j < geoms.size(); j++) {
+				DGeom g1 = geoms.get(i);
+				DGeom g2 = geoms.get(j);
+				boolean moves1 = g1.getBody() != null && g1.getBody().isEnabled();
+				boolean moves2 = g2.getBody() != null && g2.getBody().isEnabled();
+				if ((moves1 || moves2) && g1.getBody() != g2.getBody() && !g1.getAABB().isDisjoint(g2.getAABB())) {
+					pairs.add(pairKey(g1, g2));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private static String pairKey(DGeom g1, DGeom g2) {
+		String k1 = g1.toString();
+		String k2 = g2.toString();
+		return k1.compareTo(k2) < 0 ? k1 + "|" + k2 : k2 + "|" + k1;
+	}
+
+	@Test
+	public void testDefaultIsUnchanged() {
+		OdeHelper.initODE2(0);
+		Scene s1 = new Scene(false);
+		Scene s2 = new Scene(false);
+		assertFalse(s1.world.getAutoDisableIslands());
+		s2.world.setAutoDisableIslands(true);
+		s2.world.setAutoDisableIslands(false);
+		for (int step = 0; step < 300; step++) {
+			s1.step();
+			s2.step();
+		}
+		for (int i = 0; i < N_STACK; i++) {
+			DVector3C p1 = s1.stack1.get(i).getPosition();
+			DVector3C p2 = s2.stack1.get(i).getPosition();
+			for (int k = 0; k < 3; k++) {
+				assertEquals(Double.doubleToLongBits(p1.get(k)), Double.doubleToLongBits(p2.get(k)));
+			}
+			assertEquals(s1.stack1.get(i).isEnabled(), s2.stack1.get(i).isEnabled());
+		}
+		OdeHelper.closeODE();
+	}
+}
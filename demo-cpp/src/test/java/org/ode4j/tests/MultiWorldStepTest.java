@@ -0,0 +1,193 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.ode4j.math.DQuaternionC;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Steps many independent worlds concurrently and checks that the results
+ * are bit-identical to stepping the same worlds one after another.
+ */
+public class MultiWorldStepTest {
+
+	private static final int N_WORLDS = 24;
+	private static final int N_STEPS = 150;
+	private static final int N_THREADS = 6;
+
+	private static class Scene {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contacts;
+		final List<DBody> bodies = new ArrayList<DBody>();
+
+		Scene(int variant) {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(20);
+			space = OdeHelper.createHashSpace();
+			contacts = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < 12 + variant % 5; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				b.setPosition((i % 3) * 1.1 + variant * 0.01, (i / 3 % 2) * 1.1, 0.5 + (i / 6) * 1.05);
+				DGeom g = (i + variant) % 2 == 0 ?
+						OdeHelper.createBox(space, 1, 1, 1) : OdeHelper.createSphere(space, 0.5);
+				g.setBody(b);
+				bodies.add(b);
+			}
+			DBody prev = null;
+			for (int i = 0; i < 6; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setSphere(1, 0.2);
+				b.setMass(m);
+				b.setPosition(-3, i * 0.5, 4);
+				OdeHelper.createSphere(space, 0.2).setBody(b);
+				if (prev != null) {
+					DHingeJoint h = OdeHelper.createHingeJoint(world);
+					h.attach(prev, b);
+					h.setAnchor(-3, i * 0.5 - 0.25, 4);
+					h.setAxis(1, 0, 0);
+				}
+				bodies.add(b);
+				prev = b;
+			}
+		}
+
+		void collide() {
+			contacts.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DBody b1 = o1.getBody();
+					DBody b2 = o2.getBody();
+					if (b1 != null && b2 != null && OdeHelper.areConnected(b1, b2)) {
+						return;
+					}
+					DContactBuffer cb = new DContactBuffer(4);
+					int n = OdeHelper.collide(o1, o2, 4, cb.getGeomBuffer());
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						c.surface.mode = OdeConstants.dContactApprox1;
+						c.surface.mu = 0.8;
+						DJoint j = OdeHelper.createContactJoint(world, contacts, c);
+						j.attach(b1, b2);
+					}
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testQuickStepConcurrentEqualsSequential() {
+		check(true);
+	}
+
+	@Test
+	public void testStepConcurrentEqualsSequential() {
+		check(false);
+	}
+
+	private void check(boolean quickStep) {
+		OdeHelper.initODE2(0);
+		List<Scene> sequential = new ArrayList<Scene>();
+		List<Scene> concurrent = new ArrayList<Scene>();
+		List<DWorld> concurrentWorlds = new ArrayList<DWorld>();
+		for (int i = 0; i < N_WORLDS; i++) {
+			sequential.add(new Scene(i));
+			Scene s = new Scene(i);
+			concurrent.add(s);
+			concurrentWorlds.add(s.world);
+		}
+
+		for (int step = 0; step < N_STEPS; step++) {
+			for (Scene s : sequential) {
+				s.collide();
+				if (quickStep) {
+					s.world.quickStep(0.01);
+				} else {
+					s.world.step(0.01);
+				}
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(N_THREADS);
+		try {
+			for (int step = 0; step < N_STEPS; step++) {
+				for (Scene s : concurrent) {
+					s.collide();
+				}
+				boolean ok = quickStep ?
+						OdeHelper.quickStep(concurrentWorlds, 0.01, pool) :
+						OdeHelper.step(concurrentWorlds, 0.01, pool);
+				assertTrue(ok);
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		for (int i = 0; i < N_WORLDS; i++) {
+			List<DBody> b1 = sequential.get(i).bodies;
+			List<DBody> b2 = concurrent.get(i).bodies;
+			for (int j = 0; j < b1.size(); j++) {
+				DVector3C p1 = b1.get(j).getPosition();
+				DVector3C p2 = b2.get(j).getPosition();
+				DQuaternionC q1 = b1.get(j).getQuaternion();
+				DQuaternionC q2 = b2.get(j).getQuaternion();
+				for (int k = 0; k < 3; k++) {
+					assertEquals(Double.doubleToLongBits(p1.get(k)), Double.doubleToLongBits(p2.get(k)));
+				}
+				for (int k = 0; k < 4; k++) {
+					assertEquals(Double.doubleToLongBits(q1.get(k)), Double.doubleToLongBits(q2.get(k)));
+				}
+			}
+		}
+		OdeHelper.closeODE();
+	}
+}
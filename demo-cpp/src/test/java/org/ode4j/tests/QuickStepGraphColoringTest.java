@@ -0,0 +1,147 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxQuickStep;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+
+/**
+ * QuickStep with graph coloured constraint batches on a single big island.
+ */
+public class QuickStepGraphColoringTest {
+
+	private static final int N = 16;
+	private static final int N_STEPS = 60;
+	private static final double R = 0.2;
+
+	/**
+	 * A net of spheres linked by ball joints, falling onto the ground.
+	 * The ground contacts are created directly, so their order does not
+	 * depend on the collision detection.
+	 */
+	private static class Net {
+		final DWorld world;
+		final DJointGroup contacts;
+		final List<DBody> bodies = new ArrayList<DBody>();
+
+		Net() {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(20);
+			contacts = OdeHelper.createJointGroup();
+			for (int y = 0; y < N; y++) {
+				for (int x = 0; x < N; x++) {
+					DBody b = OdeHelper.createBody(world);
+					DMass m = OdeHelper.createMass();
+					m.setSphere(1, R);
+					b.setMass(m);
+					b.setPosition(x * 0.5, y * 0.5, 0.5 + 0.01 * ((x * 7 + y * 3) % 5));
+					if (x > 0) {
+						link(bodies.get(bodies.size() - 1), b);
+					}
+					if (y > 0) {
+						link(bodies.get(bodies.size() - N), b);
+					}
+					bodies.add(b);
+				}
+			}
+		}
+
+		private void link(DBody b1, DBody b2) {
+			DBallJoint j = OdeHelper.createBallJoint(world);
+			j.attach(b1, b2);
+			DVector3C p1 = b1.getPosition();
+			DVector3C p2 = b2.getPosition();
+			j.setAnchor((p1.get0() + p2.get0()) / 2, (p1.get1() + p2.get1()) / 2, (p1.get2() + p2.get2()) / 2);
+		}
+
+		void step() {
+			contacts.empty();
+			DContactBuffer cb = new DContactBuffer(bodies.size());
+			for (int i = 0; i < bodies.size(); i++) {
+				DBody b = bodies.get(i);
+				DVector3C p = b.getPosition();
+				if (p.get2() < R) {
+					DContact c = cb.get(i);
+					c.surface.mode = OdeConstants.dContactApprox1;
+					c.surface.mu = 0.5;
+					c.geom.pos.set(p.get0(), p.get1(), 0);
+					c.geom.normal.set(0, 0, 1);
+					c.geom.depth = R - p.get2();
+					DJoint j = OdeHelper.createContactJoint(world, contacts, c);
+					j.attach(b, null);
+				}
+			}
+			assertTrue(world.quickStep(0.01));
+		}
+	}
+
+	@Test
+	public void testColoredIterationsIndependentOfThreadCount() {
+		boolean old = DxQuickStep.ENABLE_LCP_GRAPH_COLORING;
+		DxQuickStep.ENABLE_LCP_GRAPH_COLORING = true;
+		OdeHelper.initODE2(0);
+		try {
+			Net single = new Net();
+			Net multi = new Net();
+			multi.world.setTaskExecutor(new ForkJoinTaskExecutor(4));
+			for (int i = 0; i < N_STEPS; i++) {
+				single.step();
+				multi.step();
+			}
+			for (int i = 0; i < single.bodies.size(); i++) {
+				DVector3C p1 = single.bodies.get(i).getPosition();
+				DVector3C p2 = multi.bodies.get(i).getPosition();
+				for (int k = 0; k < 3; k++) {
+					assertEquals(Double.doubleToLongBits(p1.get(k)), Double.doubleToLongBits(p2.get(k)));
+				}
+			}
+			// the net must have landed and rest on the ground
+			for (DBody b : single.bodies) {
+				assertTrue(b.getPosition().get2() > 0.1);
+				assertTrue(b.getPosition().get2() < 0.3);
+			}
+		} finally {
+			DxQuickStep.ENABLE_LCP_GRAPH_COLORING = old;
+			OdeHelper.closeODE();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Checks that warm starting of QuickStep carries the contact impulses over 
+ * to the recreated contact joints of the next step.
+ */
+public class QuickStepWarmStartingTest {
+
+	private static final int N_BOXES = 10;
+
+	private static class Stack {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contacts;
+		final DBody[] bodies = new DBody[N_BOXES];
+
+		Stack(int iterations, double warmStarting) {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(iterations);
+			world.setQuickStepWarmStarting(warmStarting);
+			space = OdeHelper.createSimpleSpace();
+			contacts = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < N_BOXES; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				b.setPosition(0, 0, 0.5 + i);
+				OdeHelper.createBox(space, 1, 1, 1).setBody(b);
+				bodies[i] = b;
+			}
+		}
+
+		void step() {
+			contacts.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DContactBuffer cb = new DContactBuffer(4);
+					int n = OdeHelper.collide(o1, o2, 4, cb.getGeomBuffer());
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						c.surface.mode = OdeConstants.dContactApprox1;
+						c.surface.mu = 0.5;
+						DJoint j = OdeHelper.createContactJoint(world, contacts, c);
+						j.attach(o1.getBody(), o2.getBody());
+					}
+				}
+			});
+			world.quickStep(0.01);
+		}
+
+		/** How far the top of the stack has sunk below its rest height. */
+		double sag() {
+			return N_BOXES - 0.5 - bodies[N_BOXES - 1].getPosition().get2();
+		}
+	}
+
+	@Test
+	public void testWarmStartingReducesStackSag() {
+		OdeHelper.initODE2(0);
+		Stack cold = new Stack(5, 0);
+		Stack warm = new Stack(5, 0.85);
+		assertEquals(0.85, warm.world.getQuickStepWarmStarting(), 0);
+		for (int i = 0; i < 400; i++) {
+			cold.step();
+			warm.step();
+		}
+		assertTrue("sag: " + warm.sag(), warm.sag() < 0.02);
+		assertTrue("sag: " + warm.sag() + " vs " + cold.sag(), warm.sag() < cold.sag() / 2);
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testWarmStartingIsDeterministic() {
+		OdeHelper.initODE2(0);
+		Stack s1 = new Stack(5, 0.85);
+		Stack s2 = new Stack(5, 0.85);
+		for (int i = 0; i < 100; i++) {
+			s1.step();
+			s2.step();
+		}
+		for (int i = 0; i < N_BOXES; i++) {
+			for (int k = 0; k < 3; k++) {
+				assertEquals(Double.doubleToLongBits(s1.bodies[i].getPosition().get(k)), 
+						Double.doubleToLongBits(s2.bodies[i].getPosition().get(k)));
+			}
+		}
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,197 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DGeom.DNearContactsCallback;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.MultiThreadTaskExecutor;
+import org.ode4j.ode.threading.task.SameThreadTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+/**
+ * Checks that the parallel narrowphase reports exactly the same contacts,
+ * in the same order, as colliding the pairs from a near callback, also
+ * with trimeshes and heightfields that are hit by many pairs.
+ */
+public class SpaceCollideParallelTest {
+
+	private static final int N_GEOMS = 300;
+	private static final int MAX_CONTACTS = 8;
+
+	private static String describe(DGeom o1, DGeom o2, DContactGeomBuffer contacts, int n) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(o1.getData()).append('/').append(o2.getData());
+		for (int i = 0; i < n; i++) {
+			DContactGeom c = contacts.get(i);
+			sb.append(" [").append(c.pos).append(' ').append(c.normal).append(' ').append(c.depth);
+			sb.append(' ').append(c.g1.getData()).append(' ').append(c.g2.getData());
+			sb.append(' ').append(c.side1).append(' ').append(c.side2).append(']');
+		}
+		return sb.toString();
+	}
+
+	private static List<String> collideSerial(DSpace space) {
+		final List<String> result = new ArrayList<String>();
+		final DContactGeomBuffer contacts = new DContactGeomBuffer(MAX_CONTACTS);
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				if (o1 instanceof DSpace || o2 instanceof DSpace) {
+					OdeHelper.spaceCollide2(o1, o2, data, this);
+					return;
+				}
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts);
+				if (n > 0) {
+					result.add(describe(o1, o2, contacts, n));
+				}
+			}
+		});
+		return result;
+	}
+
+	private static List<String> collideParallel(DSpace space, TaskExecutor executor) {
+		final List<String> result = new ArrayList<String>();
+		space.collideParallel(MAX_CONTACTS, executor, null, new DNearContactsCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2, DContactGeomBuffer contacts, int n) {
+				assertTrue(n > 0 && n <= MAX_CONTACTS);
+				result.add(describe(o1, o2, contacts, n));
+			}
+		});
+		return result;
+	}
+
+	private static DSpace createScene() {
+		DSpace space = OdeHelper.createHashSpace();
+		DSpace sub = OdeHelper.createSimpleSpace(space);
+		OdeHelper.createPlane(space, 0, 0, 1, -1).setData("plane");
+
+		// a trimesh floor, a grid of quads
+		int n = 8;
+		float[] vertices = new float[(n + 1) * (n + 1) * 3];
+		for (int i = 0; i <= n; i++) {
+			for (int j = 0; j <= n; j++) {
+				int v = (i * (n + 1) + j) * 3;
+				vertices[v] = i - n / 2f;
+				vertices[v + 1] = j - n / 2f;
+				vertices[v + 2] = 0.1f * ((i + j) % 3);
+			}
+		}
+		int[] indices = new int[n * n * 6];
+		for (int i = 0, k = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				int v = i * (n + 1) + j;
+				indices[k++] = v;
+				indices[k++] = v + n + 1;
+				indices[k++] = v + 1;
+				indices[k++] = v + 1;
+				indices[k++] = v + n + 1;
+				indices[k++] = v + n + 2;
+			}
+		}
+		DTriMeshData meshData = OdeHelper.createTriMeshData();
+		meshData.build(vertices, indices);
+		OdeHelper.createTriMesh(space, meshData, null, null, null).setData("mesh");
+
+		// a heightfield next to it
+		double[] heights = new double[16 * 16];
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = 0.2 * Math.sin(i * 0.7);
+		}
+		DHeightfieldData hfData = OdeHelper.createHeightfieldData();
+		hfData.build(heights, false, 8, 8, 16, 16, 1, 0, 1, false);
+		DHeightfield hf = OdeHelper.createHeightfield(space, hfData, true);
+		DMatrix3 R = new DMatrix3();
+		DRotation.dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+		hf.setRotation(R);
+		hf.setPosition(8, 0, 0);
+		hf.setData("hf");
+
+		Random r = new Random(7);
+		for (int i = 0; i < N_GEOMS; i++) {
+			DSpace s = i % 7 == 0 ? sub : space;
+			double size = 0.3 + r.nextDouble() * 0.5;
+			DGeom g;
+			switch (i % 4) {
+			case 0: g = OdeHelper.createBox(s, size, size * 0.7, size * 1.2); break;
+			case 1: g = OdeHelper.createSphere(s, size * 0.5); break;
+			case 2: g = OdeHelper.createCapsule(s, size * 0.3, size); break;
+			default: g = OdeHelper.createCylinder(s, size * 0.4, size); break;
+			}
+			g.setPosition(r.nextDouble() * 14 - 4, r.nextDouble() * 8 - 4, r.nextDouble() * 1.2 - 0.3);
+			DRotation.dRFromAxisAndAngle(R, r.nextDouble(), r.nextDouble(), r.nextDouble() + 0.1, r.nextDouble() * 3);
+			g.setRotation(R);
+			g.setData(i);
+		}
+		return space;
+	}
+
+	private static void check(List<String> expected, List<String> actual) {
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			assertEquals("pair " + i, expected.get(i), actual.get(i));
+		}
+		assertEquals(expected.size(), actual.size());
+	}
+
+	@Test
+	public void testSameContactsAsNearCallback() {
+		OdeHelper.initODE2(0);
+		DSpace space = createScene();
+		List<String> expected = collideSerial(space);
+		assertTrue(expected.size() > 100);
+		int meshPairs = 0, hfPairs = 0;
+		for (String s : expected) {
+			meshPairs += s.startsWith("mesh/") || s.contains("/mesh ") ? 1 : 0;
+			hfPairs += s.startsWith("hf/") || s.contains("/hf ") ? 1 : 0;
+		}
+		assertTrue(meshPairs > 10);
+		assertTrue(hfPairs > 10);
+
+		MultiThreadTaskExecutor executor = new MultiThreadTaskExecutor(4);
+		// the second round reuses the buffers of the first one
+		for (int round = 0; round < 2; round++) {
+			check(expected, collideParallel(space, executor));
+		}
+		check(expected, collideParallel(space, new SameThreadTaskExecutor()));
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+}
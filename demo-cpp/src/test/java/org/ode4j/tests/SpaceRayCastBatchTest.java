@@ -0,0 +1,296 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.DRay;
+import org.ode4j.ode.DRayCastResults;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.MultiThreadTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+/**
+ * Checks that batched ray casts find the same closest hits as colliding a
+ * ray geom with every geom, for every kind of space.
+ */
+public class SpaceRayCastBatchTest {
+
+	private static final int N_GEOMS = 400;
+	private static final int N_RAYS = 3000;
+	private static final double LENGTH = 30;
+
+	private final List<DGeom> geoms = new ArrayList<DGeom>();
+
+	private DSpace createSpace(String kind, DSpace parent) {
+		if ("simple".equals(kind)) {
+			return OdeHelper.createSimpleSpace(parent);
+		} else if ("hash".equals(kind)) {
+			return OdeHelper.createHashSpace(parent);
+		} else if ("quadtree".equals(kind)) {
+			return OdeHelper.createQuadTreeSpace(parent, new DVector3(0, 0, 0), new DVector3(10, 10, 10), 5);
+		} else if ("sap".equals(kind)) {
+			return OdeHelper.createSapSpace(parent, DSapSpace.AXES.XYZ);
+		} else if ("bvh".equals(kind)) {
+			return OdeHelper.createBHVSpace(parent, 4, false, 0.1, 0);
+		} else if ("incrementalSap".equals(kind)) {
+			return OdeHelper.createIncrementalSapSpace(parent, 0);
+		}
+		throw new IllegalArgumentException(kind);
+	}
+
+	private DSpace createScene(String kind) {
+		geoms.clear();
+		DSpace space = createSpace(kind, null);
+		DSpace sub = createSpace(kind, space);
+		geoms.add(OdeHelper.createPlane(space, 0, 0, 1, -2));
+
+		int n = 8;
+		float[] vertices = new float[(n + 1) * (n + 1) * 3];
+		for (int i = 0; i <= n; i++) {
+			for (int j = 0; j <= n; j++) {
+				int v = (i * (n + 1) + j) * 3;
+				vertices[v] = i - n / 2f;
+				vertices[v + 1] = j - n / 2f;
+				vertices[v + 2] = 0.1f * ((i + j) % 3) - 1;
+			}
+		}
+		int[] indices = new int[n * n * 6];
+		for (int i = 0, k = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				int v = i * (n + 1) + j;
+				indices[k++] = v;
+				indices[k++] = v + n + 1;
+				indices[k++] = v + 1;
+				indices[k++] = v + 1;
+				indices[k++] = v + n + 1;
+				indices[k++] = v + n + 2;
+			}
+		}
+		DTriMeshData meshData = OdeHelper.createTriMeshData();
+		meshData.build(vertices, indices);
+		geoms.add(OdeHelper.createTriMesh(space, meshData, null, null, null));
+
+		double[] heights = new double[16 * 16];
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = 0.2 * Math.sin(i * 0.7);
+		}
+		DHeightfieldData hfData = OdeHelper.createHeightfieldData();
+		hfData.build(heights, false, 8, 8, 16, 16, 1, 0, 1, false);
+		DHeightfield hf = OdeHelper.createHeightfield(space, hfData, true);
+		DMatrix3 R = new DMatrix3();
+		DRotation.dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+		hf.setRotation(R);
+		hf.setPosition(8, 0, -1);
+		geoms.add(hf);
+
+		Random r = new Random(11);
+		for (int i = 0; i < N_GEOMS; i++) {
+			DSpace s = i % 5 == 0 ? sub : space;
+			double size = 0.2 + r.nextDouble() * (i % 50 == 0 ? 4 : 0.6);
+			DGeom g;
+			switch (i % 4) {
+			case 0: g = OdeHelper.createBox(s, size, size * 0.7, size * 1.2); break;
+			case 1: g = OdeHelper.createSphere(s, size * 0.5); break;
+			case 2: g = OdeHelper.createCapsule(s, size * 0.3, size); break;
+			default: g = OdeHelper.createCylinder(s, size * 0.4, size); break;
+			}
+			g.setPosition(r.nextDouble() * 18 - 8, r.nextDouble() * 16 - 8, r.nextDouble() * 6 - 1);
+			DRotation.dRFromAxisAndAngle(R, r.nextDouble(), r.nextDouble(), r.nextDouble() + 0.1, r.nextDouble() * 3);
+			g.setRotation(R);
+			if (i % 37 == 0) {
+				g.disable();
+			}
+			geoms.add(g);
+		}
+		return space;
+	}
+
+	private static double[] randomRays(Random r, int n, boolean directions) {
+		double[] a = new double[n * 3];
+		for (int i = 0; i < n; i++) {
+			if (directions) {
+				a[i * 3] = r.nextDouble() * 2 - 1;
+				a[i * 3 + 1] = r.nextDouble() * 2 - 1;
+				// some rays parallel to the axes
+				a[i * 3 + 2] = i % 10 == 0 ? 0 : r.nextDouble() * 2 - 1.3;
+			} else {
+				a[i * 3] = r.nextDouble() * 24 - 12;
+				a[i * 3 + 1] = r.nextDouble() * 24 - 12;
+				a[i * 3 + 2] = r.nextDouble() * 10 - 1;
+			}
+		}
+		return a;
+	}
+
+	/** Closest hit of each ray from a ray geom collided with every geom. */
+	private DContactGeom[] reference(double[] origins, double[] directions) {
+		DRay ray = OdeHelper.createRay(null, LENGTH);
+		ray.setClosestHit(true);
+		DContactGeomBuffer buffer = new DContactGeomBuffer(1);
+		DContactGeom[] result = new DContactGeom[origins.length / 3];
+		for (int i = 0; i < result.length; i++) {
+			ray.set(origins[i * 3], origins[i * 3 + 1], origins[i * 3 + 2],
+					directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2]);
+			for (DGeom g : geoms) {
+				if (!g.isEnabled()) {
+					continue;
+				}
+				if (OdeHelper.collide(ray, g, 1, buffer) > 0 
+						&& (result[i] == null || buffer.get(0).depth < result[i].depth)) {
+					result[i] = new DContactGeom();
+					result[i].set(buffer.get(0));
+				}
+			}
+		}
+		ray.destroy();
+		return result;
+	}
+
+	private void check(String kind, TaskExecutor executor) {
+		OdeHelper.initODE2(0);
+		DSpace space = createScene(kind);
+		// trimeshes update their vertices with their AABB
+		space.cleanGeoms();
+		Random r = new Random(3);
+		double[] origins = randomRays(r, N_RAYS, false);
+		double[] directions = randomRays(r, N_RAYS, true);
+		DContactGeom[] expected = reference(origins, directions);
+
+		DRayCastResults results = new DRayCastResults(N_RAYS);
+		space.rayCastBatch(origins, directions, LENGTH, false, executor, results);
+		assertEquals(N_RAYS, results.getNumRays());
+		int hits = 0;
+		DVector3 v = new DVector3();
+		for (int i = 0; i < N_RAYS; i++) {
+			if (expected[i] == null) {
+				assertNull(kind + " ray " + i, results.getGeom(i));
+				continue;
+			}
+			hits++;
+			assertSame(kind + " ray " + i, expected[i].g2, results.getGeom(i));
+			assertEquals(kind + " ray " + i, expected[i].depth, results.getDistance(i), 1e-12);
+			results.getPosition(i, v);
+			assertEquals(0, v.distance(expected[i].pos), 1e-9);
+			results.getNormal(i, v);
+			assertEquals(0, v.distance(expected[i].normal), 1e-9);
+		}
+		assertTrue(hits > N_RAYS / 3);
+		assertTrue(hits < N_RAYS);
+
+		// any hit: same rays hit something
+		space.rayCastBatch(origins, directions, LENGTH, true, executor, results);
+		for (int i = 0; i < N_RAYS; i++) {
+			assertEquals(kind + " ray " + i, expected[i] != null, results.isHit(i));
+			if (results.isHit(i)) {
+				assertTrue(results.getDistance(i) <= LENGTH);
+				assertTrue(results.getDistance(i) >= expected[i].depth - 1e-6);
+			}
+		}
+
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testSimpleSpace() {
+		check("simple", null);
+	}
+
+	@Test
+	public void testHashSpace() {
+		check("hash", null);
+	}
+
+	@Test
+	public void testQuadTreeSpace() {
+		check("quadtree", null);
+	}
+
+	@Test
+	public void testSapSpace() {
+		check("sap", null);
+	}
+
+	@Test
+	public void testBvhSpace() {
+		check("bvh", null);
+	}
+
+	@Test
+	public void testIncrementalSapSpace() {
+		check("incrementalSap", null);
+	}
+
+	@Test
+	public void testMultiThreaded() {
+		MultiThreadTaskExecutor executor = new MultiThreadTaskExecutor(4);
+		check("hash", executor);
+		check("bvh", executor);
+	}
+
+	@Test
+	public void testEmptyAndDegenerateRays() {
+		OdeHelper.initODE2(0);
+		DSpace space = OdeHelper.createHashSpace();
+		DGeom sphere = OdeHelper.createSphere(space, 1);
+		DRayCastResults results = new DRayCastResults(3);
+		space.rayCastBatch(new double[] { 0, 0, 5, 0, 0, 5, 0, 0, 5 }, 
+				new double[] { 0, 0, -1, 0, 0, 0, 0, 0, 1 }, 10, false, results);
+		assertSame(sphere, results.getGeom(0));
+		assertEquals(4, results.getDistance(0), 1e-12);
+		DVector3 normal = new DVector3();
+		results.getNormal(0, normal);
+		assertEquals(1, normal.get2(), 1e-12);
+		// zero direction and pointing away
+		assertFalse(results.isHit(1));
+		assertFalse(results.isHit(2));
+		assertNotNull(results.getDistances());
+
+		space.rayCastBatch(new double[0], new double[0], 10, false, results);
+		assertEquals(0, results.getNumRays());
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,143 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+public class StepSparseSolverTest {
+
+	private static final int LINKS = 30;
+	private static final int STEPS = 60;
+
+	/**
+	 * Steps a chain of spheres that hangs from a fixed point. The chain has
+	 * ball joints and one hinge with limits, its end lies on the ground.
+	 * @return the final positions of the links
+	 */
+	private static double[] run(boolean sparse) {
+		OdeHelper.initODE2(0);
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setStepSparseSolver(sparse);
+		assertEquals(sparse, world.getStepSparseSolver());
+		DSpace space = OdeHelper.createHashSpace();
+		final DJointGroup group = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody[] links = new DBody[LINKS];
+		for (int i = 0; i < LINKS; i++) {
+			links[i] = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setSphere(1, 0.1);
+			links[i].setMass(m);
+			// a horizontal chain at height 2 whose end is bent to the ground
+			double z = i < LINKS - 5 ? 2 : 2 - (i - LINKS + 6) * 0.3;
+			links[i].setPosition(Math.min(i, LINKS - 6) * 0.3, 0, Math.max(z, 0.1));
+			OdeHelper.createSphere(space, 0.1).setBody(links[i]);
+		}
+		DBallJoint anchor = OdeHelper.createBallJoint(world);
+		anchor.attach(links[0], null);
+		anchor.setAnchor(0, 0, 2);
+		for (int i = 1; i < LINKS; i++) {
+			if (i == LINKS / 2) {
+				DHingeJoint hinge = OdeHelper.createHingeJoint(world);
+				hinge.attach(links[i - 1], links[i]);
+				hinge.setAnchor(links[i - 1].getPosition());
+				hinge.setAxis(0, 1, 0);
+				hinge.setParamLoStop(-0.2);
+				hinge.setParamHiStop(0.2);
+			} else {
+				DBallJoint ball = OdeHelper.createBallJoint(world);
+				ball.attach(links[i - 1], links[i]);
+				ball.setAnchor(links[i - 1].getPosition());
+			}
+		}
+		for (int step = 0; step < STEPS; step++) {
+			group.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					if (o1.getBody() != null && o2.getBody() != null) {
+						return;
+					}
+					DContactBuffer cb = new DContactBuffer(4);
+					int n = OdeHelper.collide(o1, o2, 4, cb.getGeomBuffer());
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						c.surface.mode = OdeConstants.dContactBounce;
+						c.surface.mu = 0.5;
+						c.surface.bounce = 0.1;
+						DJoint j = OdeHelper.createContactJoint(world, group, c);
+						j.attach(o1.getBody(), o2.getBody());
+					}
+				}
+			});
+			world.step(0.01);
+		}
+		double[] positions = new double[LINKS * 3];
+		for (int i = 0; i < LINKS; i++) {
+			positions[i * 3] = links[i].getPosition().get0();
+			positions[i * 3 + 1] = links[i].getPosition().get1();
+			positions[i * 3 + 2] = links[i].getPosition().get2();
+		}
+		OdeHelper.closeODE();
+		return positions;
+	}
+
+	@Test
+	public void testSameResultAsDenseSolver() {
+		double[] dense = run(false);
+		double[] sparse = run(true);
+		for (int i = 0; i < dense.length; i++) {
+			assertFalse(Double.isNaN(sparse[i]));
+			assertEquals(dense[i], sparse[i], 1e-6);
+		}
+		// the chain still hangs from its anchor
+		assertEquals(0, sparse[0], 0.01);
+		assertEquals(2, sparse[2], 0.01);
+	}
+
+	@Test
+	public void testDefault() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		assertFalse(world.getStepSparseSolver());
+		OdeHelper.closeODE();
+	}
+}
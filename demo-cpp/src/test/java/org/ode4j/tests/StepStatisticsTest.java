@@ -0,0 +1,191 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DStepStatistics;
+import org.ode4j.ode.DStepStatistics.Stage;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DStepListener;
+import org.ode4j.ode.OdeHelper;
+
+public class StepStatisticsTest {
+
+	private static final int STEPS = 50;
+
+	private static class Recorder implements DStepListener {
+		int calls;
+		int islands;
+		int bodies;
+		int rows;
+		int iterations;
+		double residual;
+		long stepNanos;
+		long[] stageNanos = new long[Stage.values().length];
+		boolean quickStep;
+
+		@Override
+		public void stepFinished(DWorld world, DStepStatistics statistics) {
+			calls++;
+			islands = statistics.getIslandCount();
+			bodies = statistics.getBodyCount();
+			rows = statistics.getConstraintRowCount();
+			iterations = statistics.getLcpIterationCount();
+			residual = statistics.getResidual();
+			quickStep = statistics.isQuickStep();
+			assertEquals(0.01, statistics.getStepSize(), 0);
+			stepNanos += statistics.getStepNanos();
+			for (Stage s : Stage.values()) {
+				stageNanos[s.ordinal()] += statistics.getStageNanos(s);
+			}
+		}
+	}
+
+	/**
+	 * Steps two separate stacks of boxes.
+	 * @return the final positions of the boxes
+	 */
+	private static double[] run(boolean quickStep, DStepListener listener) {
+		OdeHelper.initODE2(0);
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setStepListener(listener);
+		assertSame(listener, world.getStepListener());
+		DSpace space = OdeHelper.createHashSpace();
+		final DJointGroup group = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody[] bodies = new DBody[4];
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			bodies[i].setMass(m);
+			bodies[i].setPosition((i / 2) * 3, 0, 0.5 + (i % 2) * 1.01);
+			OdeHelper.createBox(space, 1, 1, 1).setBody(bodies[i]);
+		}
+		for (int step = 0; step < STEPS; step++) {
+			group.empty();
+			space.collide(null, new DNearCallback() {
+				@Override
+				public void call(Object data, DGeom o1, DGeom o2) {
+					DContactBuffer cb = new DContactBuffer(4);
+					int n = OdeHelper.collide(o1, o2, 4, cb.getGeomBuffer());
+					for (int i = 0; i < n; i++) {
+						DContact c = cb.get(i);
+						c.surface.mu = 0.5;
+						DJoint j = OdeHelper.createContactJoint(world, group, c);
+						j.attach(o1.getBody(), o2.getBody());
+					}
+				}
+			});
+			if (quickStep) {
+				world.quickStep(0.01);
+			} else {
+				world.step(0.01);
+			}
+		}
+		double[] positions = new double[bodies.length * 3];
+		for (int i = 0; i < bodies.length; i++) {
+			positions[i * 3] = bodies[i].getPosition().get0();
+			positions[i * 3 + 1] = bodies[i].getPosition().get1();
+			positions[i * 3 + 2] = bodies[i].getPosition().get2();
+		}
+		OdeHelper.closeODE();
+		return positions;
+	}
+
+	private static void check(boolean quickStep) {
+		double[] expected = run(quickStep, null);
+		Recorder recorder = new Recorder();
+		double[] positions = run(quickStep, recorder);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], positions[i], 0);
+		}
+
+		assertEquals(STEPS, recorder.calls);
+		assertEquals(quickStep, recorder.quickStep);
+		assertEquals(2, recorder.islands);
+		assertEquals(4, recorder.bodies);
+		assertTrue(recorder.rows > 0);
+		assertTrue(recorder.stepNanos > 0);
+		long stages = 0;
+		for (Stage s : Stage.values()) {
+			stages += recorder.stageNanos[s.ordinal()];
+		}
+		assertTrue(stages > 0);
+		assertTrue(stages <= recorder.stepNanos);
+		assertTrue(recorder.stageNanos[Stage.ISLAND_SEARCH.ordinal()] > 0);
+		assertTrue(recorder.stageNanos[Stage.LCP.ordinal()] > 0);
+		assertTrue(recorder.residual >= 0);
+		if (quickStep) {
+			// two islands with the default number of iterations
+			assertEquals(2 * 20, recorder.iterations);
+			assertTrue(recorder.stageNanos[Stage.STAGE6.ordinal()] > 0);
+		} else {
+			assertEquals(0, recorder.iterations);
+			assertEquals(0, recorder.residual, 0);
+			assertEquals(0, recorder.stageNanos[Stage.STAGE6.ordinal()]);
+		}
+	}
+
+	@Test
+	public void testQuickStep() {
+		check(true);
+	}
+
+	@Test
+	public void testStep() {
+		check(false);
+	}
+
+	@Test
+	public void testRemoveListener() {
+		OdeHelper.initODE2(0);
+		DWorld world = OdeHelper.createWorld();
+		OdeHelper.createBody(world);
+		Recorder recorder = new Recorder();
+		world.setStepListener(recorder);
+		world.quickStep(0.01);
+		world.setStepListener(null);
+		assertNull(world.getStepListener());
+		world.quickStep(0.01);
+		assertEquals(1, recorder.calls);
+		assertEquals(1, recorder.islands);
+		assertEquals(0, recorder.rows);
+		OdeHelper.closeODE();
+	}
+}
@@ -0,0 +1,199 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ode4j.math.DQuaternionC;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Tests the bulk body state API of {@link DWorld}.
+ */
+public class WorldBodyStatesTest {
+
+	private static final int N_BODIES = 20;
+
+	private DWorld world;
+	private DSpace space;
+	private final List<DBody> bodies = new ArrayList<DBody>();
+
+	private void createWorld() {
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		space = OdeHelper.createSimpleSpace();
+		bodies.clear();
+		for (int i = 0; i < N_BODIES; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			b.setMass(m);
+			b.setPosition(i, i * 0.5, 3);
+			b.setLinearVel(0.1 * i, 0, 1);
+			b.setAngularVel(0, 0.2 * i, 0.3);
+			OdeHelper.createBox(space, 1, 1, 1).setBody(b);
+			bodies.add(b);
+		}
+	}
+
+	/** Enabled bodies, in the order of the state buffer. */
+	private List<DBody> enabledBodies() {
+		List<DBody> list = new ArrayList<DBody>();
+		for (int i = bodies.size() - 1; i >= 0; i--) {
+			if (bodies.get(i).isEnabled()) {
+				list.add(bodies.get(i));
+			}
+		}
+		return list;
+	}
+
+	private static void assertState(DBody b, DoubleBuffer states, int offset, double eps) {
+		DVector3C pos = b.getPosition();
+		DQuaternionC q = b.getQuaternion();
+		DVector3C lvel = b.getLinearVel();
+		DVector3C avel = b.getAngularVel();
+		for (int k = 0; k < 3; k++) {
+			assertEquals(pos.get(k), states.get(offset + k), eps);
+			assertEquals(lvel.get(k), states.get(offset + 7 + k), eps);
+			assertEquals(avel.get(k), states.get(offset + 10 + k), eps);
+		}
+		for (int k = 0; k < 4; k++) {
+			assertEquals(q.get(k), states.get(offset + 3 + k), eps);
+		}
+	}
+
+	@Test
+	public void testRead() {
+		OdeHelper.initODE2(0);
+		createWorld();
+		for (int i = 0; i < 10; i++) {
+			world.quickStep(0.01);
+		}
+		bodies.get(3).disable();
+		bodies.get(11).disable();
+		assertEquals(N_BODIES - 2, world.getNumEnabledBodies());
+
+		DoubleBuffer states = ByteBuffer.allocateDirect(
+				world.getNumEnabledBodies() * DWorld.BODY_STATE_SIZE * 8).asDoubleBuffer();
+		assertEquals(N_BODIES - 2, world.readBodyStates(states));
+		assertEquals(states.capacity(), states.position());
+		List<DBody> enabled = enabledBodies();
+		for (int i = 0; i < enabled.size(); i++) {
+			assertState(enabled.get(i), states, i * DWorld.BODY_STATE_SIZE, 0);
+		}
+
+		// too small
+		DoubleBuffer small = DoubleBuffer.allocate(DWorld.BODY_STATE_SIZE);
+		try {
+			world.readBodyStates(small);
+			fail();
+		} catch (BufferOverflowException e) {
+			// expected
+		}
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testWriteRestoresState() {
+		OdeHelper.initODE2(0);
+		createWorld();
+		DoubleBuffer saved = DoubleBuffer.allocate(N_BODIES * DWorld.BODY_STATE_SIZE);
+		world.readBodyStates(saved);
+		DoubleBuffer expected = DoubleBuffer.allocate(N_BODIES * DWorld.BODY_STATE_SIZE);
+		for (int i = 0; i < 20; i++) {
+			world.quickStep(0.01);
+		}
+		world.readBodyStates(expected);
+
+		// rewind to the saved state and step again
+		saved.flip();
+		assertEquals(N_BODIES, world.writeBodyStates(saved));
+		List<DBody> enabled = enabledBodies();
+		for (int i = 0; i < enabled.size(); i++) {
+			assertState(enabled.get(i), saved, i * DWorld.BODY_STATE_SIZE, 1e-15);
+			// attached geoms follow the body
+			DGeom g = enabled.get(i).getFirstGeom();
+			for (int k = 0; k < 3; k++) {
+				assertEquals(enabled.get(i).getPosition().get(k), 
+						(g.getAABB().getMin(k) + g.getAABB().getMax(k)) / 2, 1e-9);
+			}
+		}
+		for (int i = 0; i < 20; i++) {
+			world.quickStep(0.01);
+		}
+		for (int i = 0; i < enabled.size(); i++) {
+			assertState(enabled.get(i), expected, i * DWorld.BODY_STATE_SIZE, 1e-9);
+		}
+		world.destroy();
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testWriteLeavesDisabledBodies() {
+		OdeHelper.initODE2(0);
+		createWorld();
+		DBody disabled = bodies.get(5);
+		disabled.disable();
+		DoubleBuffer saved = DoubleBuffer.allocate(N_BODIES * DWorld.BODY_STATE_SIZE);
+		DoubleBuffer before = DoubleBuffer.allocate(DWorld.BODY_STATE_SIZE);
+		before.put(disabled.getPosition().get0()).put(disabled.getPosition().get1())
+				.put(disabled.getPosition().get2());
+		before.put(disabled.getQuaternion().get0()).put(disabled.getQuaternion().get1())
+				.put(disabled.getQuaternion().get2()).put(disabled.getQuaternion().get3());
+		before.put(disabled.getLinearVel().get0()).put(disabled.getLinearVel().get1())
+				.put(disabled.getLinearVel().get2());
+		before.put(disabled.getAngularVel().get0()).put(disabled.getAngularVel().get1())
+				.put(disabled.getAngularVel().get2());
+		assertEquals(N_BODIES - 1, world.readBodyStates(saved));
+		for (int i = 0; i < 20; i++) {
+			world.quickStep(0.01);
+		}
+
+		saved.flip();
+		assertEquals(N_BODIES - 1, world.writeBodyStates(saved));
+		// the states of the enabled bodies are consumed, the disabled body 
+		// is neither set nor enabled
+		assertEquals(saved.limit(), saved.position());
+		assertEquals(false, disabled.isEnabled());
+		assertState(disabled, before, 0, 0);
+		world.destroy();
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+}
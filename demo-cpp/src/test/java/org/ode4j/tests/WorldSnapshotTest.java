@@ -0,0 +1,280 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ode4j.math.DQuaternionC;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorldSnapshot;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Checks that stepping after restoring a snapshot gives bit-identical 
+ * results to stepping after saving it.
+ */
+public class WorldSnapshotTest {
+
+	private static final int N_WARMUP = 40;
+	private static final int N_STEPS = 60;
+
+	private static class Scene implements DNearCallback {
+		final DWorld world;
+		final DSpace space;
+		final DSpace subSpace;
+		final DJointGroup contacts;
+		final List<DBody> bodies = new ArrayList<DBody>();
+		final DContactGeomBuffer buffer = new DContactGeomBuffer(4);
+		final DContact.DSurfaceParameters surface = new DContact.DSurfaceParameters();
+
+		Scene() {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(20);
+			world.setQuickStepWarmStarting(0.9);
+			world.setAutoDisableFlag(true);
+			world.setAutoDisableAverageSamplesCount(3);
+			space = OdeHelper.createHashSpace();
+			subSpace = OdeHelper.createSimpleSpace(space);
+			contacts = OdeHelper.createJointGroup();
+			surface.mode = OdeConstants.dContactApprox1;
+			surface.mu = 0.8;
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < 12; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				b.setPosition((i % 3) * 1.1, (i / 3 % 2) * 1.1, 0.5 + (i / 6) * 1.05);
+				b.setAngularVel(0, 0, i * 0.1);
+				DGeom g = i % 2 == 0 ?
+						OdeHelper.createBox(space, 1, 1, 1) : OdeHelper.createSphere(subSpace, 0.5);
+				g.setBody(b);
+				bodies.add(b);
+			}
+			DBody prev = null;
+			for (int i = 0; i < 6; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setSphere(1, 0.2);
+				b.setMass(m);
+				b.setPosition(-3, i * 0.5, 4);
+				OdeHelper.createSphere(space, 0.2).setBody(b);
+				if (prev != null) {
+					DHingeJoint h = OdeHelper.createHingeJoint(world);
+					h.attach(prev, b);
+					h.setAnchor(-3, i * 0.5 - 0.25, 4);
+					h.setAxis(1, 0, 0);
+				}
+				bodies.add(b);
+				prev = b;
+			}
+		}
+
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			if (o1 instanceof DSpace || o2 instanceof DSpace) {
+				OdeHelper.spaceCollide2(o1, o2, data, this);
+				return;
+			}
+			DBody b1 = o1.getBody();
+			DBody b2 = o2.getBody();
+			if (b1 != null && b2 != null && OdeHelper.areConnected(b1, b2)) {
+				return;
+			}
+			int n = OdeHelper.collide(o1, o2, 4, buffer);
+			OdeHelper.createContactJoints(world, contacts, b1, b2, surface, buffer, n);
+		}
+
+		void step() {
+			contacts.empty();
+			space.collide(null, this);
+			subSpace.collide(null, this);
+			world.quickStep(0.01);
+		}
+
+		/** @return the state of all bodies after each step */
+		long[] run(int steps) {
+			long[] states = new long[steps * bodies.size() * 14];
+			int k = 0;
+			for (int i = 0; i < steps; i++) {
+				step();
+				for (DBody b : bodies) {
+					DVector3C p = b.getPosition();
+					DVector3C v = b.getLinearVel();
+					DVector3C w = b.getAngularVel();
+					DQuaternionC q = b.getQuaternion();
+					for (int j = 0; j < 3; j++) {
+						states[k++] = Double.doubleToLongBits(p.get(j));
+						states[k++] = Double.doubleToLongBits(v.get(j));
+						states[k++] = Double.doubleToLongBits(w.get(j));
+					}
+					for (int j = 0; j < 4; j++) {
+						states[k++] = Double.doubleToLongBits(q.get(j));
+					}
+					states[k++] = b.isEnabled() ? 1 : 0;
+				}
+			}
+			return states;
+		}
+	}
+
+	private static void assertSameStates(long[] expected, long[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("state " + i, expected[i], actual[i]);
+		}
+	}
+
+	@Test
+	public void testRestoreIsBitExact() {
+		OdeHelper.initODE2(0);
+		Scene s = new Scene();
+		s.run(N_WARMUP);
+		DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+		s.world.saveSnapshot(snapshot, s.contacts);
+		long[] expected = s.run(N_STEPS);
+
+		s.world.restoreSnapshot(snapshot);
+		assertSameStates(expected, s.run(N_STEPS));
+		// a snapshot can be restored more than once
+		s.world.restoreSnapshot(snapshot);
+		assertSameStates(expected, s.run(N_STEPS));
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testSerializedDeltaIntoOtherWorld() {
+		OdeHelper.initODE2(0);
+		Scene a = new Scene();
+		Scene b = new Scene();
+		// assigns the ids of the geoms and the contact group of b
+		b.world.saveSnapshot(OdeHelper.createWorldSnapshot(), b.contacts);
+
+		a.run(N_WARMUP);
+		DWorldSnapshot base = OdeHelper.createWorldSnapshot();
+		a.world.saveSnapshot(base, a.contacts);
+		a.run(5);
+		DWorldSnapshot current = OdeHelper.createWorldSnapshot();
+		a.world.saveSnapshot(current, a.contacts);
+
+		ByteBuffer full = ByteBuffer.allocate(base.getSerializedSize());
+		base.write(full);
+		assertEquals(0, full.remaining());
+		full.flip();
+		DWorldSnapshot received = OdeHelper.createWorldSnapshot();
+		received.read(full);
+
+		ByteBuffer delta = ByteBuffer.allocate(current.getSerializedSize() + 8);
+		current.writeDelta(base, delta);
+		assertTrue(delta.position() < current.getSerializedSize());
+		delta.flip();
+		received.readDelta(received, delta);
+
+		long[] expected = a.run(N_STEPS);
+		b.world.restoreSnapshot(received);
+		assertSameStates(expected, b.run(N_STEPS));
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testRestoreKeepsSpeculativeContacts() {
+		OdeHelper.initODE2(0);
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		DSpace space = OdeHelper.createSimpleSpace();
+		final DJointGroup contacts = OdeHelper.createJointGroup();
+		final DContactGeomBuffer buffer = new DContactGeomBuffer(4);
+		final DContact.DSurfaceParameters surface = new DContact.DSurfaceParameters();
+		surface.mode = OdeConstants.dContactApprox1;
+		surface.mu = 0.8;
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody ball = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setSphere(1, 0.2);
+		ball.setMass(m);
+		ball.setPosition(0, 0, 3);
+		ball.setLinearVel(0, 0, -40);
+		ball.setContinuousCollisionRadius(0.2);
+		OdeHelper.createSphere(space, 0.2).setBody(ball);
+		final int[] speculative = new int[1];
+		DNearCallback callback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				int n = OdeHelper.collide(o1, o2, 4, buffer);
+				for (int i = 0; i < n; i++) {
+					if (buffer.get(i).speculative) {
+						speculative[0]++;
+					}
+				}
+				OdeHelper.createContactJoints(world, contacts, o1.getBody(), o2.getBody(), surface, buffer, n);
+			}
+		};
+
+		// save between collide() and the step while the contacts are speculative
+		DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+		for (int i = 0; i < 20 && speculative[0] == 0; i++) {
+			world.quickStep(0.01);
+			contacts.empty();
+			space.collide(null, callback);
+		}
+		assertTrue(speculative[0] > 0);
+		world.saveSnapshot(snapshot, contacts);
+		world.quickStep(0.01);
+		DVector3C p = ball.getPosition();
+		DVector3C v = ball.getLinearVel();
+		long[] expected = new long[] { Double.doubleToLongBits(p.get2()), Double.doubleToLongBits(v.get2()) };
+
+		// resting contacts reuse the pooled contacts with the flag cleared
+		speculative[0] = 0;
+		for (int i = 0; i < 20; i++) {
+			contacts.empty();
+			space.collide(null, callback);
+			world.quickStep(0.01);
+		}
+		assertEquals(0, speculative[0]);
+
+		world.restoreSnapshot(snapshot);
+		world.quickStep(0.01);
+		long[] actual = new long[] { Double.doubleToLongBits(p.get2()), Double.doubleToLongBits(v.get2()) };
+		assertSameStates(expected, actual);
+		OdeHelper.closeODE();
+	}
+}